@@ -3,6 +3,14 @@ package edu.uob;
 import edu.uob.cmdinterpreter.Parser;
 import edu.uob.cmdinterpreter.Tokenizer;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbfilesystem.DBCatalog;
+import edu.uob.dbfilesystem.IndexCatalog;
+import edu.uob.dbfilesystem.MemoryBudget;
+import edu.uob.dbfilesystem.StatisticsCatalog;
+import edu.uob.dbfilesystem.TableCache;
+import edu.uob.dbfilesystem.TableCompactor;
+import edu.uob.dbfilesystem.TableRegistry;
+import edu.uob.dbfilesystem.WriteAheadLog;
 import edu.uob.exceptions.DBException;
 
 import java.io.BufferedReader;
@@ -14,6 +22,22 @@ import java.io.OutputStreamWriter;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static edu.uob.dbfilesystem.DBFileConstants.COMPACTION_DEAD_ROW_RATIO;
+import static edu.uob.dbfilesystem.DBFileConstants.COMPACTION_MIN_DEAD_ROWS;
+import static edu.uob.dbfilesystem.DBFileConstants.QUERY_MEMORY_FRACTION;
+import static edu.uob.dbfilesystem.DBFileConstants.QUERY_MEMORY_SHARES;
+import static edu.uob.dbfilesystem.DBFileConstants.SPILL_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_CACHE_CAPACITY;
+import static edu.uob.dbfilesystem.DBFileConstants.WAL_FILENAME;
 
 /** This class implements the DB server. */
 public final class DBServer {
@@ -21,6 +45,16 @@ public final class DBServer {
   private static final char END_OF_TRANSMISSION = 4;
   private File databaseDirectory;
   private File useDatabaseDirectory;
+  private final TableCache tableCache;
+  private final DBCatalog catalog;
+  private final TableRegistry tableRegistry;
+  private final ReadWriteLock tableLock;
+  private final TableCompactor tableCompactor;
+  private MemoryBudget memoryBudget;
+  private final Map<String, WriteAheadLog> writeAheadLogs;
+  private final Map<String, IndexCatalog> indexCatalogs;
+  private final Map<String, StatisticsCatalog> statisticsCatalogs;
+  private final Map<String, Lock> tableWriteLocks;
   private static final String STATUS_OK = "[OK]";
   private static final String STATUS_ERROR = "[ERROR] ";
   private static final String METADATA_FILENAME = "databases.data";
@@ -53,6 +87,17 @@ public final class DBServer {
     File base = new File(top);
     this.databaseDirectory = base;
     this.useDatabaseDirectory = null;
+    this.tableCache = new TableCache(TABLE_CACHE_CAPACITY);
+    this.tableRegistry = new TableRegistry();
+    // commands share the read lock; compacting a table in the background takes the write lock
+    this.tableLock = new ReentrantReadWriteLock();
+    this.tableCompactor = new TableCompactor(COMPACTION_MIN_DEAD_ROWS, COMPACTION_DEAD_ROW_RATIO, tableLock.writeLock());
+    long queryMemory = (long) (Runtime.getRuntime().maxMemory() * QUERY_MEMORY_FRACTION);
+    this.memoryBudget = new MemoryBudget(queryMemory, queryMemory / QUERY_MEMORY_SHARES);
+    this.writeAheadLogs = new HashMap<>();
+    this.indexCatalogs = new ConcurrentHashMap<>();
+    this.statisticsCatalogs = new ConcurrentHashMap<>();
+    this.tableWriteLocks = new ConcurrentHashMap<>();
 
     File metadata = new File(METADATA_FILENAME);
     try {
@@ -62,7 +107,43 @@ public final class DBServer {
     }catch(Exception e){
       System.out.println("ERROR: the 'databases.data' metadata file does not exist and was not able to be created");
     }
+    this.catalog = new DBCatalog(metadata);
+    try {
+      catalog.load();
+    } catch(Exception e){
+      System.out.println("ERROR: unable to load the 'databases.data' metadata file");
+    }
 
+    recoverDatabases();
+  }
+
+  /**
+   * Redoes any changes left in the databases' write-ahead logs (i.e., changes that were logged but may not have reached
+   * their table files before the server last stopped), and deletes any rows spilled to disk by queries that were still
+   * running then.
+   */
+  private void recoverDatabases() {
+    File[] databases = new File(".").listFiles(File::isDirectory);
+    if (databases == null) {
+      return;
+    }
+    for (File database : databases) {
+      // rows spilled by queries that were running when the server stopped
+      File[] spillFiles = database.listFiles((dir, name) -> name.endsWith(SPILL_EXT));
+      if (spillFiles != null) {
+        for (File spillFile : spillFiles) {
+          spillFile.delete();
+        }
+      }
+      File log = new File(database, WAL_FILENAME);
+      if (log.isFile() && log.length() > 0) {
+        try {
+          WriteAheadLog.recover(database);
+        } catch (Exception e) {
+          System.out.println("ERROR: unable to recover database '" + database.getName() + "' from its write-ahead log");
+        }
+      }
+    }
   }
 
   /**
@@ -79,7 +160,12 @@ public final class DBServer {
         if(tokenizer.tokenize(command)){
           Parser parser = new Parser(tokenizer);
           DBCmd cmd = parser.parse();
-          return cmd.query(this);
+          tableLock.readLock().lock();
+          try {
+            return cmd.query(this);
+          } finally {
+            tableLock.readLock().unlock();
+          }
         }
 
         throw new DBException();
@@ -159,5 +245,89 @@ public final class DBServer {
     this.useDatabaseDirectory = useDatabaseDirectory;
   }
 
+  public TableCache getTableCache(){
+    return this.tableCache;
+  }
+
+  public DBCatalog getCatalog(){
+    return this.catalog;
+  }
+
+  public TableRegistry getTableRegistry(){
+    return this.tableRegistry;
+  }
+
+  public TableCompactor getTableCompactor(){
+    return this.tableCompactor;
+  }
+
+  public MemoryBudget getMemoryBudget(){
+    return this.memoryBudget;
+  }
+
+  public void setMemoryBudget(MemoryBudget memoryBudget){
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * Returns the lock that commands changing the table hold while they change it (see DBCmd.lockTableForWrite)
+   * @param tableFile
+   * @return
+   */
+  public Lock getTableWriteLock(File tableFile){
+    return tableWriteLocks.computeIfAbsent(tableFile.getPath().toLowerCase(Locale.ROOT), key -> new ReentrantLock());
+  }
+
+  /**
+   * Returns the write-ahead log for the database, opening it on first use
+   * @param databaseDirectory
+   * @return
+   * @throws IOException
+   */
+  public synchronized WriteAheadLog getWriteAheadLog(File databaseDirectory) throws IOException {
+    String key = databaseDirectory.getPath().toLowerCase(Locale.ROOT);
+    WriteAheadLog log = writeAheadLogs.get(key);
+    if (log == null) {
+      log = new WriteAheadLog(databaseDirectory);
+      writeAheadLogs.put(key, log);
+    }
+    return log;
+  }
+
+  /**
+   * Returns the catalog of the database's indexes, loading it on first use
+   * @param databaseDirectory
+   * @return
+   */
+  public IndexCatalog getIndexCatalog(File databaseDirectory){
+    return indexCatalogs.computeIfAbsent(databaseDirectory.getPath().toLowerCase(Locale.ROOT),
+            key -> new IndexCatalog(databaseDirectory));
+  }
+
+  public void removeIndexCatalog(File databaseDirectory){
+    indexCatalogs.remove(databaseDirectory.getPath().toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Returns the catalog of the statistics of the database's tables, loading it on first use
+   * @param databaseDirectory
+   * @return
+   */
+  public StatisticsCatalog getStatisticsCatalog(File databaseDirectory){
+    return statisticsCatalogs.computeIfAbsent(databaseDirectory.getPath().toLowerCase(Locale.ROOT),
+            key -> new StatisticsCatalog(databaseDirectory));
+  }
+
+  public void removeStatisticsCatalog(File databaseDirectory){
+    statisticsCatalogs.remove(databaseDirectory.getPath().toLowerCase(Locale.ROOT));
+  }
+
+  public synchronized void closeWriteAheadLog(File databaseDirectory) throws IOException {
+    WriteAheadLog log = writeAheadLogs.remove(databaseDirectory.getPath().toLowerCase(Locale.ROOT));
+    if (log != null) {
+      log.close();
+    }
+  }
+
 
 }
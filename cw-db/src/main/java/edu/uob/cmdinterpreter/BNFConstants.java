@@ -14,6 +14,12 @@ public class BNFConstants {
     public static final String AND = "AND";
     public static final String ON = "ON";
     public static final String OR ="OR";
+    public static final String WITH = "WITH";
+    public static final String FORMAT = "FORMAT";
+    public static final String INDEX = "INDEX";
+    public static final String PARTITIONS = "PARTITIONS";
+    public static final String BY = "BY";
+    public static final String DATA = "DATA";
 
     // Command types
     public static final String USE = "USE";
@@ -25,6 +31,8 @@ public class BNFConstants {
     public static final String UPDATE = "UPDATE";
     public static final String DELETE = "DELETE";
     public static final String JOIN = "JOIN";
+    public static final String ANALYZE = "ANALYZE";
+    public static final String LOAD = "LOAD";
 
     // Symbol characters
     public static final String EXCLAMATION_MARK = "!";
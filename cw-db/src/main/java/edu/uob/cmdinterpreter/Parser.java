@@ -3,6 +3,7 @@ package edu.uob.cmdinterpreter;
 import edu.uob.cmdinterpreter.commands.*;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
 import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbfilesystem.TableFormat;
 import edu.uob.exceptions.ParsingException;
 import edu.uob.exceptions.ParsingException.*;
 
@@ -83,6 +84,7 @@ public class Parser {
 
     /**
      * <CommandType>  ::=  <Use> | <Create> | <Drop> | <Alter> | <Insert> | <Select> | <Update> | <Delete> | <Join>
+     *                      | <Analyze> | <Load>
      *
      * @return
      */
@@ -138,8 +140,20 @@ public class Parser {
             }
             return false;
         }
+        if(BNFConstants.ANALYZE.equalsIgnoreCase(getCurrentTokenSeq())){
+            if(isAnalyze()){
+                return true;
+            }
+            return false;
+        }
+        if(BNFConstants.LOAD.equalsIgnoreCase(getCurrentTokenSeq())){
+            if(isLoad()){
+                return true;
+            }
+            return false;
+        }
         throw new InvalidGrammarException(getCurrentToken(), "<CommandType> ::= <Use> | <Create> | <Drop> | <Alter> | <Insert> | <Select> " +
-                "| <Update> | <Delete> | <Join>");
+                "| <Update> | <Delete> | <Join> | <Analyze> | <Load>");
     }
 
     /**
@@ -159,7 +173,7 @@ public class Parser {
     }
 
     /**
-     * <Create>  ::=  <CreateDatabase> | <CreateTable>
+     * <Create>  ::=  <CreateDatabase> | <CreateTable> | <CreateIndex>
      *
      * @return
      */
@@ -172,8 +186,11 @@ public class Parser {
             if (isCreateTable()) {
                 return true;
             }
+            if (isCreateIndex()) {
+                return true;
+            }
         }
-        throw new InvalidGrammarException(getCurrentToken(), "<Create>  ::=  <CreateDatabase> | <CreateTable> ;");
+        throw new InvalidGrammarException(getCurrentToken(), "<Create>  ::=  <CreateDatabase> | <CreateTable> | <CreateIndex> ;");
     }
 
     /**
@@ -195,7 +212,7 @@ public class Parser {
     }
 
     /**
-     * <CreateTable>  ::=  "CREATE TABLE " <TableName> | "CREATE TABLE " <TableName> "(" <AttributeList> ")"
+     * <CreateTable>  ::=  "CREATE TABLE " <TableName> <TableOptions> | "CREATE TABLE " <TableName> "(" <AttributeList> ")" <TableOptions>
      *
      * @return
      */
@@ -207,25 +224,129 @@ public class Parser {
                 if (BNFConstants.SEMI_COLON.equalsIgnoreCase(getCurrentTokenSeq())) {
                     return true;
                 }
+                if (isTableOptions()) {
+                    return true;
+                }
 
                 if (BNFConstants.LEFT_BRACKET.equals(getCurrentTokenSeq())) {
                     incrementToken();
                     if (isAttributeList()) {
                         if (BNFConstants.RIGHT_BRACKET.equals(getCurrentTokenSeq())) {
                             incrementToken();
-                            return true;
+                            if (BNFConstants.SEMI_COLON.equalsIgnoreCase(getCurrentTokenSeq()) || isTableOptions()) {
+                                return true;
+                            }
                         }
                     }
                 }
             }
-            throw new InvalidGrammarException(getCurrentToken(), "<CreateTable>  ::=  \"CREATE TABLE \" <TableName> | \"CREATE TABLE \" <TableName> \"(\" <AttributeList> \")\";");
+            throw new InvalidGrammarException(getCurrentToken(), "<CreateTable>  ::=  \"CREATE TABLE \" <TableName> <TableOptions> | \"CREATE TABLE \" <TableName> \"(\" <AttributeList> \")\" <TableOptions>;");
+        }
+        return false;
+    }
+
+    /**
+     * <CreateIndex>  ::=  "CREATE INDEX " <IndexName> " ON " <TableName> "(" <AttributeName> ")"
+     *
+     * @return
+     */
+    private boolean isCreateIndex() throws ParsingException {
+        if(BNFConstants.INDEX.equalsIgnoreCase(getCurrentTokenSeq())) {
+            cmd = new CreateCMD(BNFConstants.INDEX);
+            incrementToken();
+            if (isIndexName()) {
+                if (BNFConstants.ON.equalsIgnoreCase(getCurrentTokenSeq())) {
+                    incrementToken();
+                    if (isTableName()) {
+                        if (BNFConstants.LEFT_BRACKET.equals(getCurrentTokenSeq())) {
+                            incrementToken();
+                            if (isAttributeName()) {
+                                if (BNFConstants.RIGHT_BRACKET.equals(getCurrentTokenSeq())) {
+                                    incrementToken();
+                                    return true;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            throw new InvalidGrammarException(getCurrentToken(), "<CreateIndex>  ::=  \"CREATE INDEX \" <IndexName> \" ON \" <TableName> \"(\" <AttributeName> \")\" ;");
+        }
+        return false;
+    }
+
+    /**
+     * <TableOptions>  ::=  [<TableFormat>] [<Partitions>]
+     *
+     * @return whether there were any options
+     */
+    private boolean isTableOptions() throws ParsingException {
+        boolean format = isTableFormat();
+        boolean partitions = isPartitions();
+        return format || partitions;
+    }
+
+    /**
+     * <Partitions>  ::=  " PARTITIONS " <DigitSequence> [" BY " <AttributeName>]
+     *
+     * @return
+     */
+    private boolean isPartitions() throws ParsingException {
+        if(BNFConstants.PARTITIONS.equalsIgnoreCase(getCurrentTokenSeq())) {
+            incrementToken();
+            String partitionCount = getCurrentTokenSeq();
+            if (isIntegerLiteral() && parsePartitionCount(partitionCount) > 0) {
+                ((CreateCMD) cmd).setPartitionCount(parsePartitionCount(partitionCount));
+                if (!BNFConstants.BY.equalsIgnoreCase(getCurrentTokenSeq())) {
+                    return true;
+                }
+                incrementToken();
+                // not added to the command's column names, which are the table's attributes
+                if (isPlainText()) {
+                    ((CreateCMD) cmd).setPartitionKey(getPreviousTokenSeq());
+                    return true;
+                }
+            }
+            throw new InvalidGrammarException(getCurrentToken(), "<Partitions>  ::=  \" PARTITIONS \" <DigitSequence> [\" BY \" <AttributeName>];");
+        }
+        return false;
+    }
+
+    private int parsePartitionCount(String partitionCount){
+        try {
+            return Integer.parseInt(partitionCount);
+        } catch (NumberFormatException nfe) {
+            // too big for an int, so no use as a partition count either
+            return -1;
+        }
+    }
+
+    /**
+     * <TableFormat>  ::=  " WITH FORMAT " <PlainText>
+     *
+     * @return
+     */
+    private boolean isTableFormat() throws ParsingException {
+        if(BNFConstants.WITH.equalsIgnoreCase(getCurrentTokenSeq())) {
+            incrementToken();
+            if (BNFConstants.FORMAT.equalsIgnoreCase(getCurrentTokenSeq())) {
+                incrementToken();
+                for (TableFormat format : TableFormat.values()) {
+                    if (format.name().equalsIgnoreCase(getCurrentTokenSeq())) {
+                        ((CreateCMD) cmd).setTableFormat(format);
+                        incrementToken();
+                        return true;
+                    }
+                }
+            }
+            throw new InvalidGrammarException(getCurrentToken(), "<TableFormat>  ::=  \" WITH FORMAT \" <PlainText>;");
         }
         return false;
     }
 
 
     /**
-     * <Drop>  ::=  "DROP DATABASE " <DatabaseName> | "DROP TABLE " <TableName>
+     * <Drop>  ::=  "DROP DATABASE " <DatabaseName> | "DROP TABLE " <TableName> | "DROP INDEX " <IndexName>
      *
      * @return
      */
@@ -246,8 +367,15 @@ public class Parser {
                     return true;
                 }
             }
+            if(BNFConstants.INDEX.equalsIgnoreCase(getCurrentTokenSeq())){
+                cmd = new DropCMD(BNFConstants.INDEX);
+                incrementToken();
+                if(isIndexName()){
+                    return true;
+                }
+            }
         }
-        throw new InvalidGrammarException(getCurrentToken(), "<Drop>  ::=  \"DROP DATABASE \" <DatabaseName> | \"DROP TABLE \" <TableName> ;");
+        throw new InvalidGrammarException(getCurrentToken(), "<Drop>  ::=  \"DROP DATABASE \" <DatabaseName> | \"DROP TABLE \" <TableName> | \"DROP INDEX \" <IndexName> ;");
     }
 
     /**
@@ -415,6 +543,48 @@ public class Parser {
                 + "<AttributeName> \" AND \" <AttributeName>");
     }
 
+    /**
+     * <Analyze>  ::=  "ANALYZE " <TableName>
+     *
+     * @return
+     */
+    private boolean isAnalyze() throws ParsingException {
+        if(BNFConstants.ANALYZE.equalsIgnoreCase(getCurrentTokenSeq())){
+            cmd = new AnalyzeCMD();
+            incrementToken();
+            if(isTableName()){
+                return true;
+            }
+        }
+        throw new InvalidGrammarException(getCurrentToken(), "<Analyze>  ::=  \"ANALYZE \" <TableName> ;");
+    }
+
+    /**
+     * <Load>  ::=  "LOAD DATA " "'" <StringLiteral> "'" " INTO " <TableName>
+     *
+     * @return
+     */
+    private boolean isLoad() throws ParsingException {
+        if(BNFConstants.LOAD.equalsIgnoreCase(getCurrentTokenSeq())){
+            cmd = new LoadCMD();
+            incrementToken();
+            if(BNFConstants.DATA.equalsIgnoreCase(getCurrentTokenSeq())){
+                incrementToken();
+                if(getCurrentToken().isStringLiteral() && !getCurrentTokenSeq().isEmpty()){
+                    ((LoadCMD) cmd).setFileName(getCurrentTokenSeq());
+                    incrementToken();
+                    if(BNFConstants.INTO.equalsIgnoreCase(getCurrentTokenSeq())){
+                        incrementToken();
+                        if(isTableName()){
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        throw new InvalidGrammarException(getCurrentToken(), "<Load>  ::=  \"LOAD DATA \" \"'\" <StringLiteral> \"'\" \" INTO \" "
+                + "<TableName> ;");
+    }
 
     /**
      * <PlainText>  ::=  <Letter> | <Digit> | <Letter> <PlainText> | <Digit> <PlainText>
@@ -724,6 +894,19 @@ public class Parser {
         return false;
     }
 
+    /**
+     * <IndexName>  ::=  <PlainText>
+     *
+     * @return
+     */
+    private boolean isIndexName() throws TokenIndexOutOfBoundsException {
+        if(isPlainText()){
+            cmd.setIndexName(getPreviousTokenSeq());
+            return true;
+        }
+        return false;
+    }
+
     /**
      * <WildAttribList> ::=  <AttributeList> | "*"
      *
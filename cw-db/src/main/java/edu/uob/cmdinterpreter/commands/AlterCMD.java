@@ -8,16 +8,16 @@ import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
 import edu.uob.dbelements.ColumnHeader;
 import edu.uob.dbelements.Table;
 import edu.uob.dbelements.Record;
-import edu.uob.dbfilesystem.DBFileConstants;
-import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbelements.TablePartitioning;
+import edu.uob.dbfilesystem.LogEntry;
 import edu.uob.exceptions.DBException;
 import edu.uob.exceptions.DBException.*;
 import edu.uob.exceptions.ParsingException;
 import edu.uob.exceptions.ParsingException.InvalidGrammarException;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 public class AlterCMD extends DBCmd {
 
@@ -46,19 +46,26 @@ public class AlterCMD extends DBCmd {
         try {
             if (hasDatabase(server)) {
                 if (hasTable(server, tableName)) {
-                    DBTableFile dbFile = new DBTableFile();
-                    File file = new File(server.getUseDatabaseDirectory() + File.separator + tableName);
                     Table table;
-                    String filepath = file.getPath() + DBFileConstants.TABLE_EXT;
+                    String filepath = getTableFile(server, tableName).getPath();
 
+                    Lock lock = lockTableForWrite(server, tableName);
                     try {
-                        table = readTableFromFile(server, tableName);
+                        table = readTableForUpdate(server, tableName);
                         alterTable(table, attributeName, commandParameter);
-                        dbFile.storeEntityIntoDBFile(table);
+                        storeTableToFile(server, table, LogEntry.alter(tableName, commandParameter, attributeName));
+                        if (BNFConstants.DROP.equalsIgnoreCase(commandParameter)) {
+                            server.getIndexCatalog(server.getUseDatabaseDirectory()).removeAttribute(tableName, attributeName);
+                            server.getStatisticsCatalog(server.getUseDatabaseDirectory()).removeAttribute(tableName, attributeName);
+                        } else {
+                            server.getStatisticsCatalog(server.getUseDatabaseDirectory()).addAttribute(tableName, table);
+                        }
                         return STATUS_OK;
 
                     } catch (IOException ioe) {
                         throw new IOException("Unable to read file: " + filepath);
+                    } finally {
+                        lock.unlock();
                     }
                 }
                 throw new DBTableDoesNotExistException(tableName);
@@ -101,15 +108,20 @@ public class AlterCMD extends DBCmd {
     }
 
     private void populateNewData(List<Record> data){
-        for(Record row: data){
-            row.addDefaultAttribute();
-        }
+        // rows may be shared with a version of the table that is being read, so change copies of them
+        data.replaceAll(row -> {
+            Record copy = row.copy();
+            copy.addDefaultAttribute();
+            return copy;
+        });
     }
 
     private void deleteExistingData(List<Record> data, int index) {
-        for (Record row : data) {
-            row.getAttributes().remove(index);
-        }
+        data.replaceAll(row -> {
+            Record copy = row.copy();
+            copy.getAttributes().remove(index);
+            return copy;
+        });
     }
 
     private void alterTable(Table table, String attributeName, String alterationType) throws DBException, ParsingException {
@@ -121,6 +133,10 @@ public class AlterCMD extends DBCmd {
                 throw new DBAttributeExistsException(attributeName);
             }
         } else if (BNFConstants.DROP.equalsIgnoreCase(alterationType)) {
+            TablePartitioning partitioning = table.getHeader().getPartitioning();
+            if (partitioning != null && partitioning.getKeyColumn().equalsIgnoreCase(attributeName)) {
+                throw new DBException("Cannot drop the partition key of a table");
+            }
             if (hasAttribute(table, attributeName)) {
                 removeAttribute(table, attributeName);
                 return;
@@ -0,0 +1,100 @@
+package edu.uob.cmdinterpreter.commands;
+
+import edu.uob.DBServer;
+import edu.uob.cmdinterpreter.BNFConstants;
+import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.ColumnStatistics;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.TableHeader;
+import edu.uob.dbelements.TableStatistics;
+import edu.uob.exceptions.DBException.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Collects the statistics of a table (see StatisticsCatalog) and shows them a row per attribute: the table's number of
+ * rows, how many rows were written between the last ANALYZE and this one (a measure of how far the table had drifted
+ * from its last statistics), and the attribute's estimated number of distinct values, fraction of rows with no value,
+ * smallest and largest numbers and histogram.
+ */
+public class AnalyzeCMD extends DBCmd {
+
+    @Override
+    public String query(DBServer server) {
+
+        byte indexOfTable = 0;
+        String tableName = getTableNames().get(indexOfTable);
+
+        try {
+            if (hasDatabase(server)) {
+                if (hasTable(server, tableName)) {
+                    // writes to the table wait, so none of them is left out of the statistics
+                    Lock lock = lockTableForWrite(server, tableName);
+                    try {
+                        Table table = readTableFromFile(server, tableName);
+                        TableStatistics previous = server.getStatisticsCatalog(server.getUseDatabaseDirectory())
+                                .analyze(tableName, table);
+                        TableStatistics statistics = server.getStatisticsCatalog(server.getUseDatabaseDirectory())
+                                .getStatistics(tableName);
+                        return STATUS_OK + System.lineSeparator() + buildResult(statistics, previous);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                throw new DBTableDoesNotExistException(tableName);
+            }
+            throw new DBDoesNotExistException(getDatabaseName());
+
+        } catch(Exception e){
+            return STATUS_ERROR + e.getMessage();
+        }
+    }
+
+    private Table buildResult(TableStatistics statistics, TableStatistics previous){
+        Table result = new Table();
+        result.setHeader(new TableHeader());
+        result.setColHeadings(new ArrayList<>());
+        for(String heading : List.of("attribute", "rows", "modified", "distinct", "nulls", "min", "max", "histogram")){
+            result.getColHeadings().add(new ColumnHeader(heading));
+        }
+        String modified = previous != null ? Long.toString(previous.getModifiedRows()) : BNFConstants.NULL;
+        for(String attribute : statistics.getAttributes()){
+            ColumnStatistics column = statistics.getColumn(attribute);
+            List<Attribute> values = new ArrayList<>();
+            values.add(new Attribute(attribute));
+            values.add(new Attribute(Long.toString(statistics.getRowCount())));
+            values.add(new Attribute(modified));
+            values.add(new Attribute(Long.toString(column.getDistinctCount())));
+            double nullFraction = statistics.getRowCount() > 0 ? (double) column.getNullCount() / statistics.getRowCount() : 0;
+            values.add(new Attribute(String.format(Locale.ROOT, "%.2f", nullFraction)));
+            boolean numeric = column.getNumericCount() > 0;
+            values.add(new Attribute(numeric ? formatNumber(column.getMin()) : BNFConstants.NULL));
+            values.add(new Attribute(numeric ? formatNumber(column.getMax()) : BNFConstants.NULL));
+            values.add(new Attribute(numeric ? formatHistogram(column.getHistogram()) : BNFConstants.NULL));
+            result.getRows().add(new Record(values));
+        }
+        return result;
+    }
+
+    private String formatNumber(float number){
+        if(number == Math.rint(number) && Math.abs(number) < 1e15){
+            return Long.toString((long) number);
+        }
+        return Float.toString(number);
+    }
+
+    private String formatHistogram(long[] histogram){
+        StringBuilder buckets = new StringBuilder();
+        for(long bucket : histogram){
+            buckets.append(buckets.length() > 0 ? "," : "").append(bucket);
+        }
+        return buckets.toString();
+    }
+
+}
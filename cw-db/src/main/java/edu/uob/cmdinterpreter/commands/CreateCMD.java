@@ -6,8 +6,10 @@ import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
 import edu.uob.dbelements.ColumnHeader;
 import edu.uob.dbelements.Table;
 import edu.uob.dbelements.TableHeader;
+import edu.uob.dbelements.TablePartitioning;
 import edu.uob.dbfilesystem.DBFileConstants;
 import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.TableFormat;
 import edu.uob.exceptions.DBException;
 import edu.uob.exceptions.DBException.*;
 
@@ -19,6 +21,10 @@ import java.util.Locale;
 
 public class CreateCMD extends DBCmd {
 
+    private TableFormat tableFormat = TableFormat.TAB;
+    private int partitionCount = 1;
+    private String partitionKey = "id";
+
     public CreateCMD(String createType){
         super(createType);
     }
@@ -27,6 +33,30 @@ public class CreateCMD extends DBCmd {
         return commandParameter;
     }
 
+    public TableFormat getTableFormat() {
+        return tableFormat;
+    }
+
+    public void setTableFormat(TableFormat tableFormat) {
+        this.tableFormat = tableFormat;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    public String getPartitionKey() {
+        return partitionKey;
+    }
+
+    public void setPartitionKey(String partitionKey) {
+        this.partitionKey = partitionKey;
+    }
+
     @Override
     public String query(DBServer server) throws DBException, IOException {
 
@@ -40,6 +70,11 @@ public class CreateCMD extends DBCmd {
                 createTable(server);
                 return STATUS_OK;
             }
+
+            if(BNFConstants.INDEX.equalsIgnoreCase(commandParameter)) {
+                createIndex(server);
+                return STATUS_OK;
+            }
             throw new DBException();
 
         } catch(Exception e){
@@ -65,6 +100,7 @@ public class CreateCMD extends DBCmd {
             String tableName = getTableNames().get(0);
             String dbName = server.getUseDatabaseDirectory().getName().toLowerCase(Locale.ROOT);
             File file = new File(dbName + File.separator + tableName.toLowerCase(Locale.ROOT) + DBFileConstants.TABLE_EXT);
+            checkPartitions();
 
                 if (!file.exists()) {
                     try {
@@ -73,6 +109,7 @@ public class CreateCMD extends DBCmd {
                             TableHeader header = new TableHeader();
                             header.setTableName(tableName);
                             header.setFileLocation(file);
+                            header.setFormat(tableFormat);
                             table.setHeader(header);
                             if (getColNames().size() > 0) {
                                 addAttributeList(table, getColNames());
@@ -80,9 +117,15 @@ public class CreateCMD extends DBCmd {
                             } else {
                                 addAttributeList(table, new ArrayList<>());
                             }
+                            if (partitionCount > 1) {
+                                int keyIndex = table.getColHeadings().indexOf(new ColumnHeader(partitionKey));
+                                header.setPartitioning(new TablePartitioning(partitionCount,
+                                        table.getColHeadings().get(keyIndex).getColName()));
+                            }
                             DBTableFile dbFile = new DBTableFile();
                             dbFile.storeEntityIntoDBFile(table);
-                            dbFile.addTableToMetadata(dbName, tableName);
+                            server.getCatalog().addTable(dbName, tableName);
+                            server.getTableRegistry().addTable(server.getUseDatabaseDirectory(), tableName);
                             return;
                         }
                     } catch (IOException ioe) {
@@ -96,6 +139,50 @@ public class CreateCMD extends DBCmd {
         throw new DBDoesNotExistException(server.getDatabaseDirectory().getName());
     }
 
+    /**
+     * Checks that the table can be partitioned as asked, before its DB file is created
+     * @throws DBException
+     */
+    private void checkPartitions() throws DBException {
+        if (partitionCount <= 1) {
+            return;
+        }
+        if (partitionCount > DBFileConstants.MAX_PARTITIONS) {
+            throw new DBException("A table can have at most " + DBFileConstants.MAX_PARTITIONS + " partitions");
+        }
+        if (tableFormat != TableFormat.TAB) {
+            throw new DBException("Only tables in the TAB format can be partitioned");
+        }
+        if (!"id".equalsIgnoreCase(partitionKey) && getColNames().stream().noneMatch(partitionKey::equalsIgnoreCase)) {
+            throw new DBAttributeDoesNotExistException(partitionKey);
+        }
+    }
+
+    private void createIndex(DBServer server) throws Exception {
+
+        if(hasDatabase(server)){
+            if(server.getUseDatabaseDirectory() == null) {
+                throw new DBException("No database has been selected, (hint: USE <database>)");
+            }
+            String tableName = getTableNames().get(0);
+            String attribute = getColNames().get(0);
+            if(!hasTable(server, tableName)){
+                throw new DBTableDoesNotExistException(tableName);
+            }
+            Table table = readTableFromFile(server, tableName);
+            int indexOfAttribute = table.getColHeadings().indexOf(new ColumnHeader(attribute));
+            if(indexOfAttribute < 0){
+                throw new DBAttributeDoesNotExistException(attribute);
+            }
+            server.getIndexCatalog(server.getUseDatabaseDirectory()).addIndex(getIndexName(), tableName,
+                    table.getColHeadings().get(indexOfAttribute).getColName());
+            // build the index for the current version of the table now, rather than on the first query that uses it
+            table.getSortedIndex(indexOfAttribute);
+            return;
+        }
+        throw new DBDoesNotExistException(server.getDatabaseDirectory().getName());
+    }
+
     private void addAttributeList(Table table, List<String> attributeList){
 
         List<ColumnHeader> columnHeaders = new ArrayList<>();
@@ -5,11 +5,16 @@ import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
 import edu.uob.dbelements.Table;
 import edu.uob.dbelements.Record;
 import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.LogEntry;
+import edu.uob.dbfilesystem.RowCursor;
 import edu.uob.exceptions.DBException;
 
 import java.io.File;
-
-import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
 
 public class DeleteCMD extends DBCmd {
 
@@ -21,25 +26,13 @@ public class DeleteCMD extends DBCmd {
                 int indexOfTable = 0;
                 String tableName = getTableNames().get(indexOfTable);
                 if (hasTable(server, tableName)) {
-                    String tablePath = server.getUseDatabaseDirectory() + File.separator + tableName + TABLE_EXT;
-                    Table table = new DBTableFile().readDBFileIntoEntity(tablePath);
-
-                    Table dataToDelete = null;
-
-                    dataToDelete = doConditions(table, dataToDelete);
-
-                    if(dataToDelete.getRows().size() > 0) {
-
-                        for (Record deleteRow : dataToDelete.getRows()) {
-
-                            if (table.getRows().contains(deleteRow)) {
-                                table.getRows().remove(deleteRow);
-                            }
-                        }
-                        new DBTableFile().storeEntityIntoDBFile(table);
+                    Lock lock = lockTableForWrite(server, tableName);
+                    try {
+                        deleteFromFile(server, tableName);
+                        return STATUS_OK;
+                    } finally {
+                        lock.unlock();
                     }
-
-                    return STATUS_OK;
                 }
                 throw new DBException.DBTableDoesNotExistException(getTableNames().get(0));
             }
@@ -50,4 +43,48 @@ public class DeleteCMD extends DBCmd {
         }
     }
 
+    /**
+     * Finds the rows to delete one at a time (reading them from the cache if the table is cached, otherwise straight
+     * from the DB file) and marks them as deleted, so the cost of the write depends on the number of rows deleted
+     * rather than the size of the table. The table is queued for compaction once enough of its rows are dead.
+     * @param server
+     * @param tableName
+     * @throws Exception
+     */
+    private void deleteFromFile(DBServer server, String tableName) throws Exception {
+        File file = getTableFile(server, tableName);
+        Table cached = server.getTableCache().get(file);
+        List<String> deletedIds = new ArrayList<>();
+        List<Record> deletedRows = new ArrayList<>();
+        long liveRowCount = 0;
+
+        if (cached != null) {
+            // the whole table is in memory, so conditions can be tested a column at a time
+            BitSet matches = findMatchingRows(cached, getIndexedAttributes(server, tableName));
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                deletedRows.add(cached.getRows().get(i));
+                deletedIds.add(cached.getRows().get(i).getId());
+            }
+            liveRowCount = cached.getRows().size() - deletedIds.size();
+        } else {
+            try (RowCursor cursor = new DBTableFile().openRowCursor(file.getPath())) {
+                Predicate<Record> filter = buildConditionFilter(cursor.getColHeadings());
+                Record row;
+                while ((row = cursor.next()) != null) {
+                    if (filter.test(row)) {
+                        deletedRows.add(row);
+                        deletedIds.add(row.getId());
+                    } else {
+                        liveRowCount++;
+                    }
+                }
+            }
+        }
+        if (deletedIds.size() > 0) {
+            deleteRowsFromFile(server, file, deletedIds, LogEntry.delete(tableName, deletedIds));
+            server.getStatisticsCatalog(server.getUseDatabaseDirectory()).removeRows(tableName, deletedRows);
+            server.getTableCompactor().compactIfNeeded(file, liveRowCount);
+        }
+    }
+
 }
@@ -3,13 +3,16 @@ package edu.uob.cmdinterpreter.commands;
 import edu.uob.DBServer;
 import edu.uob.cmdinterpreter.BNFConstants;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbfilesystem.BloomFilterFile;
 import edu.uob.dbfilesystem.DBFileConstants;
-import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.LsmTableFile;
+import edu.uob.dbfilesystem.PartitionedTableFile;
+import edu.uob.dbfilesystem.TombstoneFile;
 import edu.uob.exceptions.DBException;
 import edu.uob.exceptions.DBException.*;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 
 public class DropCMD extends DBCmd {
 
@@ -33,6 +36,9 @@ public class DropCMD extends DBCmd {
                 } if (BNFConstants.TABLE.equalsIgnoreCase(commandParameter)) {
                     dropTable(server);
                     return STATUS_OK;
+                } if (BNFConstants.INDEX.equalsIgnoreCase(commandParameter)) {
+                    dropIndex(server);
+                    return STATUS_OK;
                 }
                 throw new DBException();
             }
@@ -43,20 +49,19 @@ public class DropCMD extends DBCmd {
         }
     }
 
-    private void dropDatabase(DBServer server) throws FileNotFoundException {
+    private void dropDatabase(DBServer server) throws IOException {
         File database = new File(getDatabaseName());
         if(server.getUseDatabaseDirectory()  != null) {
             if (server.getUseDatabaseDirectory().getName().equalsIgnoreCase(getDatabaseName())) {
                 server.setUseDatabaseDirectory(null);
             }
         }
-        File [] contents = database.listFiles();
-        if(contents != null) {
-            for (File dbfile : contents) {
-                removeTableMetadata(database, dbfile, dbfile.getName().substring(0, dbfile.getName().length() - 4));
-                dbfile.delete();
-            }
-        }
+        server.getTableCache().invalidateDatabase(database);
+        server.closeWriteAheadLog(database);
+        server.getCatalog().removeDatabase(database.getName());
+        server.getTableRegistry().removeDatabase(database);
+        server.removeIndexCatalog(database);
+        server.removeStatisticsCatalog(database);
         deleteDirectory(database);
     }
 
@@ -65,12 +70,30 @@ public class DropCMD extends DBCmd {
         byte indexOfTable = 0;
         File table = new File( db.toString() + File.separator + getTableNames().get(indexOfTable) + DBFileConstants.TABLE_EXT);
         if(table.exists() && table.isFile()){
-            removeTableMetadata(db, table, getTableNames().get(indexOfTable));
+            server.getTableCache().invalidate(table);
+            // logged changes must not be redone against a new table that is later created with the same name
+            server.getWriteAheadLog(db).checkpoint();
+            BloomFilterFile.clear(table);
+            table.delete();
+            TombstoneFile.clear(table);
+            LsmTableFile.remove(table);
+            PartitionedTableFile.remove(table);
+            server.getCatalog().removeTable(db.getName(), getTableNames().get(indexOfTable));
+            server.getTableRegistry().removeTable(db, getTableNames().get(indexOfTable));
+            server.getIndexCatalog(db).removeTable(getTableNames().get(indexOfTable));
+            server.getStatisticsCatalog(db).removeTable(getTableNames().get(indexOfTable));
             return;
         }
         throw new DBTableDoesNotExistException(table.getName());
     }
 
+    private void dropIndex(DBServer server) throws Exception {
+        if(server.getUseDatabaseDirectory() == null){
+            throw new DBException("No database has been selected, (hint: USE <database>)");
+        }
+        server.getIndexCatalog(server.getUseDatabaseDirectory()).removeIndex(getIndexName());
+    }
+
     private void deleteDirectory(File dir) {
         File[] contents = dir.listFiles();
         for (File dbfile : contents) {
@@ -78,13 +101,4 @@ public class DropCMD extends DBCmd {
         }
         dir.delete();
     }
-
-    private void removeTableMetadata(File db, File table, String tablename) throws FileNotFoundException {
-        if(table.exists() && table.isFile()){
-            table.delete();
-            DBTableFile dbFile = new DBTableFile();
-            dbFile.removeTableFromMetadata(db.getName(), tablename);
-            return;
-        }
-    }
 }
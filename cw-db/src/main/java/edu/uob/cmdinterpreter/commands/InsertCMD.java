@@ -5,11 +5,11 @@ import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
 import edu.uob.dbelements.Attribute;
 import edu.uob.dbelements.Table;
 import edu.uob.dbelements.Record;
-import edu.uob.dbfilesystem.DBTableFile;
 import edu.uob.exceptions.DBException.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 public class InsertCMD extends DBCmd {
 
@@ -22,18 +22,21 @@ public class InsertCMD extends DBCmd {
         try {
             if (hasDatabase(server)) {
                 if (hasTable(server, tableName)) {
-                    DBTableFile dbFile = new DBTableFile();
-                    Table table = readTableFromFile(server, tableName);
+                    Lock lock = lockTableForWrite(server, tableName);
+                    try {
+                        Table table = readTableForUpdate(server, tableName);
 
-                    if(!hasCorrectAttributeList(table, getVariables())){
-                        throw new DBInvalidAttributeListException(table.getColHeadings().size(), getVariables().size());
-                    }
-
-                    List<Record> data = table.getRows();
+                        if(!hasCorrectAttributeList(table, getVariables())){
+                            throw new DBInvalidAttributeListException(table.getColHeadings().size(), getVariables().size());
+                        }
 
-                    insertEntity(server, data, getVariables());
-                    dbFile.storeEntityIntoDBFile(table);
-                    return STATUS_OK;
+                        Record record = buildEntity(server, getVariables());
+                        appendRecordToFile(server, table, record);
+                        server.getStatisticsCatalog(server.getUseDatabaseDirectory()).addRow(tableName, record);
+                        return STATUS_OK;
+                    } finally {
+                        lock.unlock();
+                    }
                 }
                 throw new DBTableDoesNotExistException(tableName);
             }
@@ -48,18 +51,17 @@ public class InsertCMD extends DBCmd {
         return table.getColHeadings().size() == variables.size() + 1;
     }
 
-    private void insertEntity(DBServer server, List<Record> data, List<String> variables) throws Exception {
+    private Record buildEntity(DBServer server, List<String> variables) throws Exception {
         List<Attribute> attributes = new ArrayList<>();
-        attributes.add(new Attribute(getNextSeq(server.getUseDatabaseDirectory().getName(), getTableNames().get(0))));
+        attributes.add(new Attribute(getNextSeq(server, server.getUseDatabaseDirectory().getName(), getTableNames().get(0))));
         for(String var: variables){
             attributes.add(new Attribute(var));
         }
-        data.add(new Record(attributes));
+        return new Record(attributes);
     }
 
-    private String getNextSeq(String databaseName, String tableName) throws Exception {
-        DBTableFile file = new DBTableFile();
-        int seq = file.nextSeq(databaseName, tableName);
+    private String getNextSeq(DBServer server, String databaseName, String tableName) throws Exception {
+        int seq = server.getCatalog().nextSeq(databaseName, tableName);
         return Integer.toString(seq);
     }
 
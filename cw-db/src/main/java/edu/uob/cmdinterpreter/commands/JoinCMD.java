@@ -4,13 +4,27 @@ import edu.uob.DBServer;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
 import edu.uob.dbelements.*;
 import edu.uob.dbelements.Record;
+import edu.uob.dbfilesystem.MemoryBudget;
+import edu.uob.dbfilesystem.RowCursor;
+import edu.uob.dbfilesystem.SpillableRowList;
+import edu.uob.exceptions.DBException;
 import edu.uob.exceptions.DBException.*;
 import edu.uob.exceptions.QueryException;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class JoinCMD extends DBCmd {
 
+    private static final int NO_JOIN_KEY = -1;
+    private static final int UNKNOWN_JOIN_KEY = -2;
+    private static final int NO_ROW = -1;
+
     @Override
     public String query(DBServer server) {
 
@@ -35,10 +49,22 @@ public class JoinCMD extends DBCmd {
 
                         Table result = new Table();
                         addColumnHeading(result, tableA, tableB, indexOfAttrA, indexOfAttrB);
-                        doJoin(result, tableA, tableB, indexOfAttrA, indexOfAttrB);
-                        result.setHeader(new TableHeader());
 
-                        return STATUS_OK + System.lineSeparator() + result;
+                        // the joined tables are held for the whole query, so they count against its share of the
+                        // server's memory budget; the joined rows are held within what is left of the share, and
+                        // spilled to the database directory beyond it
+                        try (MemoryBudget.Reservation reservation = server.getMemoryBudget().open();
+                             SpillableRowList rows = new SpillableRowList(result.getColHeadings(), reservation,
+                                     server.getUseDatabaseDirectory())) {
+                            long tableBytes = SpillableRowList.estimateBytes(tableA.getRows())
+                                    + SpillableRowList.estimateBytes(tableB.getRows());
+                            if (!reservation.tryReserve(tableBytes)) {
+                                throw new DBException("Not enough query memory to join " + tableNameA + " and "
+                                        + tableNameB);
+                            }
+                            doJoin(rows, tableA, tableB, indexOfAttrA, indexOfAttrB);
+                            return STATUS_OK + System.lineSeparator() + resultToString(rows, reservation);
+                        }
                     }
                     String errorMsg = attributeNameA + " or " + attributeNameB;
                     throw new DBAttributeDoesNotExistException(errorMsg);
@@ -54,24 +80,133 @@ public class JoinCMD extends DBCmd {
     }
 
 
-    private void doJoin(Table result, Table tableA, Table tableB, int indexOfAttrA, int indexOfAttrB) {
+    private void doJoin(SpillableRowList result, Table tableA, Table tableB, int indexOfAttrA, int indexOfAttrB)
+            throws IOException {
 
-        result.setRows(new ArrayList<>());
         int newRowId = 1;
 
-        for(Record rowA : tableA.getRows()){
-            for(Record rowB : tableB.getRows()){
-                if(rowA.getAttributes().get(indexOfAttrA).equals(rowB.getAttributes().get(indexOfAttrB))){
-                    Record newRow = new Record(new ArrayList<>());
-                    newRow.getAttributes().add(new Attribute(String.valueOf(newRowId++)));
+        Map<String, Integer> joinCodes = new HashMap<>();
+        int[] keysA = getJoinKeys(tableA, indexOfAttrA, joinCodes);
+        int[] keysB = getJoinKeys(tableB, indexOfAttrB, joinCodes);
+
+        // B's rows are chained together by code (in table order), so each row of A only visits the rows it joins with
+        int[] firstRowB = new int[joinCodes.size()];
+        int[] lastRowB = new int[joinCodes.size()];
+        int[] nextRowB = new int[keysB.length];
+        Arrays.fill(firstRowB, NO_ROW);
+        for(int b = 0; b < keysB.length; b++){
+            nextRowB[b] = NO_ROW;
+            if(keysB[b] == NO_JOIN_KEY){
+                continue;
+            }
+            if(firstRowB[keysB[b]] == NO_ROW){
+                firstRowB[keysB[b]] = b;
+            } else {
+                nextRowB[lastRowB[keysB[b]]] = b;
+            }
+            lastRowB[keysB[b]] = b;
+        }
+
+        for(int a = 0; a < keysA.length; a++){
+            if(keysA[a] == NO_JOIN_KEY){
+                continue;
+            }
+            Record rowA = tableA.getRows().get(a);
+            for(int b = firstRowB[keysA[a]]; b != NO_ROW; b = nextRowB[b]){
+                Record rowB = tableB.getRows().get(b);
+                Record newRow = new Record(new ArrayList<>());
+                newRow.getAttributes().add(new Attribute(String.valueOf(newRowId++)));
+
+                addAttributesToJoin(newRow, rowA, indexOfAttrA);
+                addAttributesToJoin(newRow, rowB, indexOfAttrB);
 
-                    addAttributesToJoin(newRow, rowA, indexOfAttrA);
-                    addAttributesToJoin(newRow, rowB, indexOfAttrB);
+                result.add(newRow);
+            }
+        }
+    }
 
-                    result.getRows().add(newRow);
+    /**
+     * Writes out the joined rows in the same layout as Table.toString(). The response is held in memory in full, so
+     * each row's text is reserved from the query's share of the budget as it is added.
+     * @param rows
+     * @param reservation
+     * @return
+     * @throws IOException
+     * @throws DBException if the response won't fit in what is left of the query's share
+     */
+    private String resultToString(SpillableRowList rows, MemoryBudget.Reservation reservation)
+            throws IOException, DBException {
+        StringBuilder result = new StringBuilder();
+        try (RowCursor cursor = rows.openCursor()) {
+            List<ColumnHeader> colHeadings = cursor.getColHeadings();
+            for(int i = 0; i < colHeadings.size(); i++){
+                result.append(colHeadings.get(i).getColName());
+                result.append(i < colHeadings.size() - 1 ? "\t" : "\n");
+            }
+            Record row;
+            while((row = cursor.next()) != null){
+                int start = result.length();
+                List<Attribute> values = row.getAttributes();
+                for(int i = 0; i < values.size(); i++){
+                    result.append(values.get(i).getValue());
+                    result.append(i < values.size() - 1 ? "\t" : "\n");
+                }
+                if(!reservation.tryReserve((long) Character.BYTES * (result.length() - start))){
+                    throw new DBException("Join result of " + rows.size()
+                            + " rows is too large to return within the query memory");
                 }
             }
         }
+        return result.toString();
+    }
+
+    /**
+     * Gives each row's join value a code, so the join compares numbers rather than strings. Values that are equal
+     * (ignoring case, as Attribute.equals does) get the same code, and a value held in a column dictionary is only
+     * looked up once, however many rows share it.
+     * @param table
+     * @param indexOfAttribute
+     * @param joinCodes the codes handed out so far, shared by both sides of the join
+     * @return the code for each row
+     */
+    private int[] getJoinKeys(Table table, int indexOfAttribute, Map<String, Integer> joinCodes){
+        int[] keys = new int[table.getRows().size()];
+        Map<ColumnDictionary, int[]> keysByDictionary = new IdentityHashMap<>();
+        for(int row = 0; row < keys.length; row++){
+            Attribute attribute = table.getRows().get(row).getAttributes().get(indexOfAttribute);
+            if(attribute instanceof ColumnDictionary.Entry){
+                ColumnDictionary.Entry entry = (ColumnDictionary.Entry) attribute;
+                int[] dictionaryKeys = keysByDictionary.computeIfAbsent(entry.getDictionary(), dictionary -> {
+                    int[] codes = new int[dictionary.size()];
+                    Arrays.fill(codes, UNKNOWN_JOIN_KEY);
+                    return codes;
+                });
+                if(dictionaryKeys[entry.getCode()] == UNKNOWN_JOIN_KEY){
+                    dictionaryKeys[entry.getCode()] = getJoinKey(entry.getValue(), joinCodes);
+                }
+                keys[row] = dictionaryKeys[entry.getCode()];
+            } else {
+                keys[row] = getJoinKey(attribute.getValue(), joinCodes);
+            }
+        }
+        return keys;
+    }
+
+    private int getJoinKey(String value, Map<String, Integer> joinCodes){
+        if(value == null){
+            // a missing value never equals anything
+            return NO_JOIN_KEY;
+        }
+        return joinCodes.computeIfAbsent(foldCase(value), key -> joinCodes.size());
+    }
+
+    private String foldCase(String value){
+        // folds each character the same way String.equalsIgnoreCase compares them
+        StringBuilder folded = new StringBuilder(value.length());
+        for(int i = 0; i < value.length(); i++){
+            folded.append(Character.toLowerCase(Character.toUpperCase(value.charAt(i))));
+        }
+        return folded.toString();
     }
 
     private int getAttributeIndex(Table table, Attribute attribute) throws QueryException.AttributeNotFoundException {
@@ -0,0 +1,260 @@
+package edu.uob.cmdinterpreter.commands;
+
+import edu.uob.DBServer;
+import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.exceptions.DBException;
+import edu.uob.exceptions.DBException.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+
+import static edu.uob.dbfilesystem.DBFileConstants.LOAD_BATCH_ROWS;
+
+/**
+ * LOAD DATA 'file' INTO table: adds the rows of a tab-separated file (laid out as a DB file, i.e., a line of headings
+ * then a line per row) to the table. The file is named relative to the database's directory, and has to be inside it. The file's headings name the table's attributes its values are for, in any order;
+ * an id column is skipped, as the rows are given new ids. The file is read twice: once to check every row (so a bad
+ * row fails the load before anything is written) and count them, so their ids can be handed out in one block, then
+ * again to append the rows in batches, each logged with one flush and written to the DB file with one write.
+ */
+public class LoadCMD extends DBCmd {
+
+    private static final String PRIMARY_KEY = "id";
+    // a value left empty in the file is stored as a space, as an empty value isn't read back (see Record)
+    private static final String EMPTY_VALUE = " ";
+
+    private String fileName;
+
+    @Override
+    public String query(DBServer server) {
+
+        byte indexOfTable = 0;
+        String tableName = getTableNames().get(indexOfTable);
+
+        try {
+            if (hasDatabase(server)) {
+                if (hasTable(server, tableName)) {
+                    File dataFile = getDataFile(server);
+                    Lock lock = lockTableForWrite(server, tableName);
+                    try {
+                        long start = System.nanoTime();
+                        Table table = readTableForUpdate(server, tableName);
+                        int[] columns = readColumns(dataFile, table);
+                        int rowCount = countRows(dataFile, columns);
+                        if (rowCount > 0) {
+                            loadRows(server, table, dataFile, columns, rowCount);
+                        }
+                        double seconds = (System.nanoTime() - start) / 1e9;
+                        return STATUS_OK + System.lineSeparator() + "rows\tseconds\trowsPerSecond\n" + rowCount + "\t"
+                                + String.format(Locale.ROOT, "%.3f", seconds) + "\t" + getRowsPerSecond(rowCount, seconds)
+                                + "\n";
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+                throw new DBTableDoesNotExistException(tableName);
+            }
+            throw new DBDoesNotExistException(getDatabaseName());
+
+        } catch(Exception e){
+            return STATUS_ERROR + e.getMessage();
+        }
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Finds the data file in the database's directory, as the server may not touch files outside its directory
+     * @param server
+     * @return
+     * @throws IOException
+     * @throws DBException if the file isn't in the database's directory (e.g., its name is an absolute path, or has
+     * .. or a link in it that leads out of the directory), or doesn't exist
+     */
+    private File getDataFile(DBServer server) throws IOException, DBException {
+        Path directory = server.getUseDatabaseDirectory().toPath().toAbsolutePath().normalize();
+        Path path = directory.resolve(fileName).normalize();
+        if (!path.startsWith(directory) || path.equals(directory)) {
+            throw new DBException("Data file must be in the database directory: " + fileName);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new DBException("Unable to find data file: " + fileName);
+        }
+        if (!path.toRealPath().startsWith(directory.toRealPath())) {
+            throw new DBException("Data file must be in the database directory: " + fileName);
+        }
+        return path.toFile();
+    }
+
+    /**
+     * Matches the file's headings to the table's attributes
+     * @param dataFile
+     * @param table
+     * @return for each of the table's attributes, the column of the file that holds its values (-1 for the id)
+     * @throws IOException
+     * @throws DBException
+     */
+    private int[] readColumns(File dataFile, Table table) throws IOException, DBException {
+        String headings;
+        try (BufferedReader reader = new BufferedReader(new FileReader(dataFile))) {
+            headings = reader.readLine();
+        }
+        if (headings == null || headings.isBlank()) {
+            throw new DBException("Data file has no headings: " + fileName);
+        }
+        // a heading is reported by its position rather than quoted, as the file's text isn't shown to the client
+        List<ColumnHeader> colHeadings = table.getColHeadings();
+        int[] columns = new int[colHeadings.size()];
+        Arrays.fill(columns, -1);
+        int valueCount = 0;
+        String[] fileHeadings = headings.split("\t", -1);
+        for (int col = 0; col < fileHeadings.length; col++) {
+            String heading = fileHeadings[col].strip();
+            if (PRIMARY_KEY.equalsIgnoreCase(heading)) {
+                continue;
+            }
+            int index = colHeadings.indexOf(new ColumnHeader(heading));
+            if (index < 0) {
+                throw new DBException("Heading " + (col + 1) + " of " + fileName + " is not an attribute of "
+                        + getTableNames().get(0));
+            }
+            if (columns[index] >= 0) {
+                throw new DBException("Heading " + (col + 1) + " of " + fileName + " repeats an attribute");
+            }
+            columns[index] = col;
+            valueCount++;
+        }
+        if (valueCount != colHeadings.size() - 1) {
+            throw new DBInvalidAttributeListException(colHeadings.size() - 1, valueCount);
+        }
+        return columns;
+    }
+
+    private int countRows(File dataFile, int[] columns) throws IOException, DBException {
+        int width = getWidth(columns);
+        int rowCount = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(dataFile))) {
+            reader.readLine();
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                checkWidth(countValues(line), width, lineNumber, 0);
+                if (rowCount == Integer.MAX_VALUE) {
+                    throw new DBException("Too many rows in data file: " + fileName);
+                }
+                rowCount++;
+            }
+        }
+        return rowCount;
+    }
+
+    private void loadRows(DBServer server, Table table, File dataFile, int[] columns, int rowCount)
+            throws IOException, DBException {
+        String tableName = getTableNames().get(0);
+        int nextId = server.getCatalog().nextSeqs(server.getUseDatabaseDirectory().getName(), tableName, rowCount);
+        int width = getWidth(columns);
+        int loaded = 0;
+        List<Record> batch = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(dataFile))) {
+            reader.readLine();
+            String line;
+            int lineNumber = 1;
+            while (loaded + batch.size() < rowCount && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                // the file may have changed since its rows were checked, so a short row fails the load before the
+                // batch it would have been in is written
+                String[] values = line.split("\t", -1);
+                checkWidth(values.length, width, lineNumber, loaded);
+                batch.add(buildRecord(nextId++, values, columns));
+                if (batch.size() == LOAD_BATCH_ROWS) {
+                    appendBatch(server, table, batch);
+                    loaded += batch.size();
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        appendBatch(server, table, batch);
+        server.getTableCache().put(table.getHeader().getFileLocation(), table);
+        server.getTableCompactor().mergeRunsIfNeeded(table.getHeader().getFileLocation());
+    }
+
+    private void appendBatch(DBServer server, Table table, List<Record> batch) throws IOException, DBException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        appendRecordsToFile(server, table, batch);
+        server.getStatisticsCatalog(server.getUseDatabaseDirectory()).addRows(getTableNames().get(0), batch);
+    }
+
+    private Record buildRecord(int id, String[] values, int[] columns){
+        List<Attribute> attributes = new ArrayList<>(columns.length);
+        attributes.add(new Attribute(Integer.toString(id)));
+        for (int col = 1; col < columns.length; col++) {
+            String value = values[columns[col]];
+            attributes.add(new Attribute(value.isEmpty() ? EMPTY_VALUE : value));
+        }
+        return new Record(attributes);
+    }
+
+    /**
+     * @param values the number of values on a line of the file
+     * @param width the number of values the headings have
+     * @param lineNumber
+     * @param loaded the number of rows already added to the table
+     * @throws DBException if the line has fewer values than the headings
+     */
+    private void checkWidth(int values, int width, int lineNumber, int loaded) throws DBException {
+        if (values < width) {
+            throw new DBException("Line " + lineNumber + " of " + fileName + " has " + values
+                    + " values, but the headings have " + width
+                    + (loaded > 0 ? " (" + loaded + " rows were loaded before it)" : ""));
+        }
+    }
+
+    private int getWidth(int[] columns){
+        int width = 0;
+        for (int column : columns) {
+            width = Math.max(width, column + 1);
+        }
+        return width;
+    }
+
+    private int countValues(String line){
+        int values = 1;
+        for (int i = line.indexOf('\t'); i >= 0; i = line.indexOf('\t', i + 1)) {
+            values++;
+        }
+        return values;
+    }
+
+    private long getRowsPerSecond(long rows, double seconds){
+        return seconds > 0 ? Math.round(rows / seconds) : rows;
+    }
+
+}
@@ -1,14 +1,21 @@
 package edu.uob.cmdinterpreter.commands;
 
 import edu.uob.DBServer;
+import edu.uob.cmdinterpreter.QueryCondition;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
 import edu.uob.dbelements.Table;
-import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.RowCursor;
+import edu.uob.dbfilesystem.TableRowCursor;
 import edu.uob.exceptions.DBException.*;
 
-import java.io.File;
-
-import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
 
 public class SelectCMD extends DBCmd {
 
@@ -21,22 +28,42 @@ public class SelectCMD extends DBCmd {
                 String tableName = getTableNames().get(indexOfTable);
 
                 if (hasTable(server, tableName)) {
-                    String tablePath = server.getUseDatabaseDirectory() + File.separator + tableName + TABLE_EXT;
-                    Table table = new DBTableFile().readDBFileIntoEntity(tablePath);
+                    Set<String> queriedColumns = isSelectStar() ? null : getQueriedColumns();
 
-                    if(table.getColHeadings() == null || table.getColHeadings().size() == 0){
-                        return STATUS_OK;
-                    }
-                    Table result = null;
+                    // rows are filtered and projected as they are read, so only the result is built up in memory
+                    try (RowCursor cursor = openRowCursor(server, tableName, queriedColumns)) {
+                        List<ColumnHeader> colHeadings = cursor.getColHeadings();
+                        if (colHeadings == null || colHeadings.size() == 0) {
+                            return STATUS_OK;
+                        }
+                        List<ColumnHeader> resultHeadings = new ArrayList<>();
+                        List<Integer> resultIndices = getResultColumnIndices(colHeadings, resultHeadings);
 
-                    if(getConditions().size() > 0) {
-                        result = doConditions(table, result);
-                        result = buildResultTable(result);
+                        StringBuilder result = new StringBuilder(STATUS_OK).append(System.lineSeparator());
+                        List<String> headings = new ArrayList<>();
+                        for (ColumnHeader heading : resultHeadings) {
+                            headings.add(heading.getColName());
+                        }
+                        appendResultRow(result, headings);
 
-                    } else {
-                        result = buildResultTable(table);
+                        if (cursor instanceof TableRowCursor) {
+                            // the whole table is in memory, so conditions can be tested a column at a time
+                            Table table = ((TableRowCursor) cursor).getTable();
+                            BitSet matches = findMatchingRows(table, getIndexedAttributes(server, tableName));
+                            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                                appendResultRow(result, table.getRows().get(i), resultIndices);
+                            }
+                            return result.toString();
+                        }
+                        Predicate<Record> filter = buildConditionFilter(colHeadings);
+                        Record row;
+                        while ((row = cursor.next()) != null) {
+                            if (filter.test(row)) {
+                                appendResultRow(result, row, resultIndices);
+                            }
+                        }
+                        return result.toString();
                     }
-                    return STATUS_OK + System.lineSeparator() + result.toString();
                 }
                 throw new DBTableDoesNotExistException(getTableNames().get(0));
             }
@@ -47,4 +74,28 @@ public class SelectCMD extends DBCmd {
         }
     }
 
+    private Set<String> getQueriedColumns(){
+        Set<String> columns = new LinkedHashSet<>(getColNames());
+        for(QueryCondition condition : getConditions()){
+            columns.add(condition.getAttribute());
+        }
+        return columns;
+    }
+
+    private void appendResultRow(StringBuilder result, Record row, List<Integer> resultIndices){
+        List<String> values = new ArrayList<>(resultIndices.size());
+        for (Integer i : resultIndices) {
+            values.add(row.getAttributes().get(i).getValue());
+        }
+        appendResultRow(result, values);
+    }
+
+    private void appendResultRow(StringBuilder result, List<String> values){
+        // same layout as Table.toString()
+        for(int i = 0; i < values.size(); i++){
+            result.append(values.get(i));
+            result.append(i < values.size() - 1 ? "\t" : "\n");
+        }
+    }
+
 }
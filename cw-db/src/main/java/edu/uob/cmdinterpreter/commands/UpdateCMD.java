@@ -3,16 +3,18 @@ package edu.uob.cmdinterpreter.commands;
 import edu.uob.DBServer;
 import edu.uob.cmdinterpreter.NameValuePair;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbelements.Attribute;
 import edu.uob.dbelements.ColumnHeader;
 import edu.uob.dbelements.Record;
 import edu.uob.dbelements.Table;
-import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.LogEntry;
 import edu.uob.exceptions.DBException;
 import edu.uob.exceptions.QueryException;
 
-import java.io.File;
-
-import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 
 public class UpdateCMD extends DBCmd {
@@ -26,16 +28,28 @@ public class UpdateCMD extends DBCmd {
                 String tableName = getTableNames().get(indexOfTable);
 
                 if (hasTable(server, tableName)) {
-                    String tablePath = server.getUseDatabaseDirectory() + File.separator + tableName + TABLE_EXT;
-                    Table table = new DBTableFile().readDBFileIntoEntity(tablePath);
-
-                    Table dataToUpdate = null;
-                    dataToUpdate = doConditions(table, dataToUpdate);
-
-                    if(dataToUpdate.getRows().size() > 0) {
-                        for(Record row: table.getRows()){
-
-                            if(dataToUpdate.getRows().contains(row)){
+                    Lock lock = lockTableForWrite(server, tableName);
+                    try {
+                        // rows are found in the version of the table that queries read (so its id index and
+                        // parsed columns are used), then changed in a copy, where they are at the same positions
+                        Table current = readTableFromFile(server, tableName);
+                        BitSet matches = findMatchingRows(current, getIndexedAttributes(server, tableName));
+
+                        if(!matches.isEmpty()) {
+                            Table table = readTableForUpdate(server, tableName);
+                            // only other columns change, so the copy's rows keep the same ids
+                            table.setIdIndex(current.getIdIndex());
+                            List<String> updatedIds = new ArrayList<>();
+                            List<Record> oldRows = new ArrayList<>();
+                            List<Record> newRows = new ArrayList<>();
+                            for(int rowIndex = matches.nextSetBit(0); rowIndex >= 0; rowIndex = matches.nextSetBit(rowIndex + 1)){
+
+                                // the row may be shared with a version of the table that is being read, so change a copy
+                                Record row = table.getRows().get(rowIndex).copy();
+                                table.getRows().set(rowIndex, row);
+                                updatedIds.add(row.getId());
+                                oldRows.add(current.getRows().get(rowIndex));
+                                newRows.add(row);
                                 for(NameValuePair nameValuePair: getNameValuePair()) {
 
                                     String name = nameValuePair.getName();
@@ -47,17 +61,21 @@ public class UpdateCMD extends DBCmd {
 
                                     if(table.getColHeadings().contains(new ColumnHeader(name))) {
                                         int indexOfName = table.getColHeadings().indexOf(new ColumnHeader(name));
-                                        row.getAttributes().get(indexOfName).setValue(value);
+                                        row.getAttributes().set(indexOfName, new Attribute(value));
 
                                     } else {
                                         throw new QueryException.AttributeNotFoundException(name);
                                     }
                                 }
                             }
+                            storeRowsToFile(server, table, newRows, LogEntry.update(tableName, updatedIds, getNames(), getValues()));
+                            server.getStatisticsCatalog(server.getUseDatabaseDirectory())
+                                    .updateRows(tableName, oldRows, newRows);
                         }
-                        new DBTableFile().storeEntityIntoDBFile(table);
+                        return STATUS_OK;
+                    } finally {
+                        lock.unlock();
                     }
-                    return STATUS_OK;
                 }
                 throw new DBException.DBTableDoesNotExistException(getTableNames().get(0));
             }
@@ -67,4 +85,20 @@ public class UpdateCMD extends DBCmd {
         }
     }
 
+    private List<String> getNames(){
+        List<String> names = new ArrayList<>();
+        for(NameValuePair nameValuePair: getNameValuePair()){
+            names.add(nameValuePair.getName());
+        }
+        return names;
+    }
+
+    private List<String> getValues(){
+        List<String> values = new ArrayList<>();
+        for(NameValuePair nameValuePair: getNameValuePair()){
+            values.add(nameValuePair.getValue());
+        }
+        return values;
+    }
+
 }
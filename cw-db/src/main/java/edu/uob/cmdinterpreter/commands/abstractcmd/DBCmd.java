@@ -7,22 +7,50 @@ import edu.uob.cmdinterpreter.Token;
 import edu.uob.cmdinterpreter.TokenType;
 import edu.uob.cmdinterpreter.NameValuePair;
 import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.BitmapIndex;
+import edu.uob.dbelements.BloomFilter;
+import edu.uob.dbelements.ColumnDictionary;
 import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.ColumnStatistics;
+import edu.uob.dbelements.IdIndex;
 import edu.uob.dbelements.Record;
+import edu.uob.dbelements.SortedIndex;
 import edu.uob.dbelements.Table;
+import edu.uob.dbelements.TablePartitioning;
+import edu.uob.dbelements.TypedColumn;
+import edu.uob.dbelements.ZoneMap;
+import edu.uob.dbelements.ValueType;
+import edu.uob.dbfilesystem.ColumnarTableFile;
 import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.LogEntry;
+import edu.uob.dbfilesystem.MappedTableFile;
+import edu.uob.dbfilesystem.PartitionedTableFile;
+import edu.uob.dbfilesystem.RowCursor;
+import edu.uob.dbfilesystem.StatisticsCatalog;
+import edu.uob.dbfilesystem.TableRowCursor;
+import edu.uob.dbfilesystem.TableCache;
+import edu.uob.dbfilesystem.TombstoneFile;
+import edu.uob.dbfilesystem.WriteAheadLog;
 import edu.uob.exceptions.DBException;
 import edu.uob.exceptions.QueryException.AttributeNotFoundException;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Predicate;
+
+import static edu.uob.dbfilesystem.DBFileConstants.INDEX_MAX_SELECTIVITY;
+import static edu.uob.dbfilesystem.DBFileConstants.PARALLEL_SCAN_MIN_ROWS;
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
 
 public abstract class DBCmd {
 
     /* Variables */
     protected String commandParameter;
     protected String databaseName;
+    protected String indexName;
     protected List<String> tableNames;
     protected List<String> colNames;
     protected List<String> variables;
@@ -63,6 +91,14 @@ public abstract class DBCmd {
         this.databaseName = databaseName.toLowerCase(Locale.ROOT);
     }
 
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public void setIndexName(String indexName){
+        this.indexName = indexName.toLowerCase(Locale.ROOT);
+    }
+
     public List<String> getTableNames(){
         return tableNames;
     }
@@ -95,15 +131,8 @@ public abstract class DBCmd {
     }
 
     public boolean hasTable(DBServer server, String tableName) {
-         if(server.getUseDatabaseDirectory() != null) {
-            File db = new File(server.getUseDatabaseDirectory().getName());
-            File[] tables = db.listFiles();
-            for (File table : tables) {
-                int indexOfFileExt = table.getName().length() - 4;
-                if (tableName.equalsIgnoreCase(table.getName().toLowerCase(Locale.ROOT).substring(0, indexOfFileExt))) {
-                    return true;
-                }
-            }
+        if(server.getUseDatabaseDirectory() != null) {
+            return server.getTableRegistry().hasTable(server.getUseDatabaseDirectory(), tableName);
         }
         return false;
     }
@@ -147,37 +176,321 @@ public abstract class DBCmd {
 
     /* Methods */
 
+    public File getTableFile(DBServer server, String tableName) {
+        String tablePath = server.getUseDatabaseDirectory() + File.separator + tableName + TABLE_EXT;
+        return new File(tablePath.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Locks the table against other commands that change it, so changes to the same table are made one at a time.
+     * Queries never take the lock: they read the version of the table that was current when they started.
+     * @param server
+     * @param tableName
+     * @return the lock, which the caller must unlock once the change has been stored
+     */
+    public Lock lockTableForWrite(DBServer server, String tableName) {
+        Lock lock = server.getTableWriteLock(getTableFile(server, tableName));
+        lock.lock();
+        return lock;
+    }
+
+    /**
+     * Reads the table through the server's table cache, so repeated reads of an unchanged table don't re-parse the
+     * DB file. The returned table is shared with the cache and must not be modified (see readTableForUpdate); as
+     * changes are made to copies, it stays as it was when read (a snapshot) for as long as the caller holds it.
+     * @param server
+     * @param tableName
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
     public Table readTableFromFile(DBServer server, String tableName) throws IOException, DBException {
-        DBTableFile dbFile = new DBTableFile();
-        File file = new File(server.getUseDatabaseDirectory() + File.separator + tableName);
-        return dbFile.readDBFileIntoEntity(file.getPath() + ".tab");
+        File file = getTableFile(server, tableName);
+        TableCache cache = server.getTableCache();
+        Table table = cache.get(file);
+        if(table == null){
+            table = new DBTableFile().readDBFileIntoReadOnlyEntity(file.getPath());
+            cache.put(file, table);
+        }
+        return table;
+    }
+
+    /**
+     * Reads the table for a query that only touches the named columns. A table that is already cached is returned
+     * whole; otherwise a columnar table is read with just those columns (and not cached, as it is incomplete), and a
+     * tab-separated one (or a columnar one big enough to be mapped, which only touches the columns used) is read in
+     * full through the cache.
+     * @param server
+     * @param tableName
+     * @param columnNames
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public Table readTableColumnsFromFile(DBServer server, String tableName, Collection<String> columnNames)
+            throws IOException, DBException {
+        File file = getTableFile(server, tableName);
+        Table table = server.getTableCache().get(file);
+        if(table != null){
+            return table;
+        }
+        if(ColumnarTableFile.isColumnarFile(file) && !DBTableFile.isReadByMapping(file)){
+            return new DBTableFile().readDBFileColumnsIntoEntity(file.getPath(), columnNames);
+        }
+        return readTableFromFile(server, tableName);
+    }
+
+    /**
+     * Opens a cursor over the table's rows. A cached table (or one that can be read or mapped through the cache) is
+     * walked in memory; a table too big to map is streamed from its DB file a row at a time.
+     * @param server
+     * @param tableName
+     * @param columnNames the only columns the caller needs, or null for all of them
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public RowCursor openRowCursor(DBServer server, String tableName, Collection<String> columnNames)
+            throws IOException, DBException {
+        File file = getTableFile(server, tableName);
+        Table table = server.getTableCache().get(file);
+        if(table != null){
+            return new TableRowCursor(table);
+        }
+        int partition = findQueriedPartition(file);
+        if(partition >= 0){
+            return new TableRowCursor(new DBTableFile().readDBFilePartitionIntoEntity(file.getPath(), partition));
+        }
+        if(!DBTableFile.isReadByMapping(file) && file.length() > Integer.MAX_VALUE){
+            return new DBTableFile().openRowCursor(file.getPath());
+        }
+        if(columnNames == null){
+            return new TableRowCursor(readTableFromFile(server, tableName));
+        }
+        return new TableRowCursor(readTableColumnsFromFile(server, tableName, columnNames));
     }
 
-    public Table buildResultTable(Table queryTable) throws AttributeNotFoundException {
+    /**
+     * Finds the one partition of a partitioned table (see PartitionedTableFile) that the command's conditions can
+     * match rows in, which is the case when the first condition (which the second, if any, is joined to with AND) is
+     * an equality condition on the key column. A condition comparing the key with a number only counts if the key is
+     * the id column, whose values are all numbers, so leaving out the other partitions can't leave out an error
+     * testing their rows would raise.
+     * @param file
+     * @return the partition, or -1 if the conditions can match rows in any partition
+     * @throws IOException
+     */
+    private int findQueriedPartition(File file) throws IOException {
+        if(getConditions().isEmpty() || getConditions().size() > 2 || getConditions().size() == 2
+                && !BNFConstants.AND.equalsIgnoreCase(getConditionJoinOperators().get(0))){
+            return -1;
+        }
+        TablePartitioning partitioning = PartitionedTableFile.readPartitioning(file);
+        QueryCondition condition = getConditions().get(0);
+        if(partitioning == null || !partitioning.getKeyColumn().equalsIgnoreCase(condition.getAttribute())
+                || !BNFConstants.EQUAL_TO.equals(condition.getOperator())){
+            return -1;
+        }
+        TokenType type = condition.getValue().getTokenType();
+        if(type == TokenType.LIT_STR || type == TokenType.LIT_NUM && "id".equalsIgnoreCase(partitioning.getKeyColumn())){
+            return partitioning.partitionOf(condition.getValue().getSequence());
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a copy of the table (from the server's table cache, or read from file) that can be modified without
+     * changing the version that queries may be reading. The copy replaces that version once it is stored; if the
+     * command fails before then, the (possibly half-modified) copy is simply dropped.
+     * @param server
+     * @param tableName
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public Table readTableForUpdate(DBServer server, String tableName) throws IOException, DBException {
+        File file = getTableFile(server, tableName);
+        Table table = server.getTableCache().get(file);
+        // a large table may be cached as a read-only view of its mapped file, so read it in full to modify it
+        if(table == null || MappedTableFile.isMapped(table)){
+            Table read = new DBTableFile().readDBFileIntoEntity(file.getPath());
+            // the file's zone maps and Bloom filters don't follow the changes about to be made
+            read.clearFileSummaries();
+            return read;
+        }
+        return table.copy();
+    }
+
+    /**
+     * Logs the change to the database's write-ahead log, writes the table to its DB file and puts it (back) into the
+     * server's table cache
+     * @param server
+     * @param table
+     * @param change
+     * @throws DBException
+     * @throws IOException
+     */
+    public void storeTableToFile(DBServer server, Table table, LogEntry change) throws DBException, IOException {
+        writeLogged(server, List.of(change), () -> new DBTableFile().storeEntityIntoDBFile(table));
+        server.getTableCache().put(table.getHeader().getFileLocation(), table);
+    }
+
+    /**
+     * Logs the change to the database's write-ahead log, stores the changed rows of the table (see
+     * DBTableFile.storeRecordsIntoDBFile) and puts it (back) into the server's table cache
+     * @param server
+     * @param table
+     * @param rows the rows of the table that were changed
+     * @param change
+     * @throws DBException
+     * @throws IOException
+     */
+    public void storeRowsToFile(DBServer server, Table table, List<Record> rows, LogEntry change)
+            throws DBException, IOException {
+        writeLogged(server, List.of(change), () -> new DBTableFile().storeRecordsIntoDBFile(table, rows));
+        server.getTableCache().put(table.getHeader().getFileLocation(), table);
+        server.getTableCompactor().mergeRunsIfNeeded(table.getHeader().getFileLocation());
+    }
+
+    /**
+     * Logs the deletion to the database's write-ahead log, then adds the rows' ids to the table's tombstone file
+     * rather than rewriting its DB file. A cached copy of the table is replaced by a copy without the rows, unless it
+     * is a read-only view of the mapped file, in which case it is dropped from the cache.
+     * @param server
+     * @param file
+     * @param ids
+     * @param change
+     * @throws IOException
+     */
+    public void deleteRowsFromFile(DBServer server, File file, List<String> ids, LogEntry change)
+            throws DBException, IOException {
+        writeLogged(server, List.of(change), () -> TombstoneFile.append(file, ids));
+        Table cached = server.getTableCache().remove(file);
+        if(cached != null && !MappedTableFile.isMapped(cached)){
+            Set<String> deletedIds = new HashSet<>(ids);
+            Table table = cached.copy();
+            table.getRows().removeIf(row -> deletedIds.contains(row.getId()));
+            server.getTableCache().put(file, table);
+        }
+    }
+
+    /**
+     * Logs the new row to the database's write-ahead log, appends it to the table's DB file (and the table) without
+     * rewriting the rest of the file, then puts the table (back) into the server's table cache
+     * @param server
+     * @param table
+     * @param record
+     * @throws DBException
+     * @throws IOException
+     */
+    public void appendRecordToFile(DBServer server, Table table, Record record) throws DBException, IOException {
+        LogEntry change = LogEntry.insert(table.getHeader().getTableName(), record);
+        Table previous = getCachedVersion(server, table);
+        writeLogged(server, List.of(change), () -> new DBTableFile().appendRecordIntoDBFile(table, record));
+        if(previous != null){
+            table.carrySortedIndexes(previous);
+        }
+        server.getTableCache().put(table.getHeader().getFileLocation(), table);
+        server.getTableCompactor().mergeRunsIfNeeded(table.getHeader().getFileLocation());
+    }
+
+    /**
+     * Logs the new rows to the database's write-ahead log (with one flush) and appends them to the table's DB file (and
+     * the table) in one write. As rows may be appended a batch at a time, the caller puts the table (back) into the
+     * server's table cache once it has appended them all.
+     * @param server
+     * @param table
+     * @param records
+     * @throws DBException
+     * @throws IOException
+     */
+    public void appendRecordsToFile(DBServer server, Table table, List<Record> records) throws DBException, IOException {
+        List<LogEntry> changes = new ArrayList<>(records.size());
+        for(Record record : records){
+            changes.add(LogEntry.insert(table.getHeader().getTableName(), record));
+        }
+        Table previous = getCachedVersion(server, table);
+        writeLogged(server, changes, () -> new DBTableFile().appendRecordsIntoDBFile(table, records));
+        if(previous != null){
+            table.carrySortedIndexes(previous);
+        }
+    }
+
+    /**
+     * Returns the version of the table in the server's table cache, which a table that rows are about to be appended to
+     * was copied from (see readTableForUpdate), so the appended table can carry over its sorted indexes
+     * @param server
+     * @param table
+     * @return the cached version, or null if there isn't one (or it is a read-only view of the mapped file)
+     */
+    private Table getCachedVersion(DBServer server, Table table){
+        Table cached = server.getTableCache().get(table.getHeader().getFileLocation());
+        return cached != table && cached != null && !MappedTableFile.isMapped(cached) ? cached : null;
+    }
+
+    /**
+     * Logs the changes to the database's write-ahead log (with one flush), then makes the write to the table's files.
+     * If the write fails the changes are aborted in the log, so a change the command reports as an error isn't redone
+     * on the next start; either way, the changes no longer hold back the log's checkpoints.
+     * @param server
+     * @param changes
+     * @param write
+     * @throws DBException
+     * @throws IOException
+     */
+    private void writeLogged(DBServer server, List<LogEntry> changes, LoggedWrite write) throws DBException, IOException {
+        WriteAheadLog log = server.getWriteAheadLog(server.getUseDatabaseDirectory());
+        long lastLsn = log.commitAll(changes);
+        boolean written = false;
+        try {
+            write.write();
+            written = true;
+        } finally {
+            if(!written){
+                log.aborted(lastLsn - changes.size() + 1, lastLsn);
+            }
+        }
+        for(LogEntry change : changes){
+            log.applied(change);
+        }
+    }
+
+    /**
+     * A write to a table's files that has been logged (see writeLogged)
+     */
+    private interface LoggedWrite {
+        void write() throws DBException, IOException;
+    }
+
+    /**
+     * Works out which of the table's columns make up the query result (in result order), adding their headings to
+     * resultHeadings
+     * @param colHeadings
+     * @param resultHeadings
+     * @return the indices of the result columns in the table
+     * @throws AttributeNotFoundException
+     */
+    public List<Integer> getResultColumnIndices(List<ColumnHeader> colHeadings, List<ColumnHeader> resultHeadings)
+            throws AttributeNotFoundException {
 
         Table result = new Table();
-        result.setColHeadings(new ArrayList<>());
+        result.setColHeadings(resultHeadings);
         List<Integer> queryAttributeIndices = new ArrayList<>();
 
         List<String> queryAttributes;
         if(isSelectStar()){
-            queryAttributes = tableAttributesAsStrings(queryTable.getColHeadings());
+            queryAttributes = tableAttributesAsStrings(colHeadings);
         }  else {
             queryAttributes = getColNames();
         }
 
         for(String attribute: queryAttributes){
-            addResultHeadings(result, attribute, tableAttributesAsStrings(queryTable.getColHeadings()), queryAttributeIndices);
-        }
-
-        for(Record row: queryTable.getRows()){
-            addRowToResult(result, row.getAttributes(), queryAttributeIndices);
+            addResultHeadings(result, attribute, tableAttributesAsStrings(colHeadings), queryAttributeIndices);
         }
-
-        return result;
+        return queryAttributeIndices;
     }
 
-    private boolean isSelectStar(){
+    protected boolean isSelectStar(){
         byte sizeOfWildcardSelect = 1;
         byte indexOfWildcardSelect = 0;
         if(getColNames().size() == sizeOfWildcardSelect
@@ -207,84 +520,412 @@ public abstract class DBCmd {
         throw new AttributeNotFoundException(queryAttribute);
     }
 
-    private void addRowToResult(Table resultSet, List<Attribute> row, List<Integer> queryAttributeIndices){
-        List<Attribute> newRow = new ArrayList<>();
-        for(Integer i : queryAttributeIndices) {
-            newRow.add(new Attribute(row.get(i).getValue()));
+    /**
+     * Builds a test for whether a row of a table with the given headings meets the command's conditions, for use
+     * when the rows are read one at a time (see findMatchingRows for whole tables)
+     * @param colHeadings
+     * @return
+     * @throws DBException
+     */
+    public Predicate<Record> buildConditionFilter(List<ColumnHeader> colHeadings) throws DBException {
+
+        if(getConditions().size() == 0){
+            return row -> true;
+        }
+        if(getConditions().size() == 1){
+            QueryCondition condition = getConditions().get(0);
+            int attrIndex = getAttributeIndex(colHeadings, condition);
+            Predicate<Attribute> matches = buildAttributeTest(condition);
+            return row -> matches.test(row.getAttributes().get(attrIndex));
+        }
+        if(getConditions().size() == 2){
+            QueryCondition conditionA = getConditions().get(0);
+            QueryCondition conditionB = getConditions().get(1);
+            int attrIndexA = getAttributeIndex(colHeadings, conditionA);
+            int attrIndexB = getAttributeIndex(colHeadings, conditionB);
+            Predicate<Attribute> testA = buildAttributeTest(conditionA);
+            Predicate<Attribute> testB = buildAttributeTest(conditionB);
+            Predicate<Record> matchesA = row -> testA.test(row.getAttributes().get(attrIndexA));
+            Predicate<Record> matchesB = row -> testB.test(row.getAttributes().get(attrIndexB));
+
+            if(BNFConstants.AND.equalsIgnoreCase(getConditionJoinOperators().get(0))){
+                return matchesA.and(matchesB);
+            }
+            return matchesA.or(matchesB);
         }
-        resultSet.getRows().add(new Record(newRow));
+        throw new DBException("Sorry, haven't managed to implement nested conditions!");
     }
 
+    /**
+     * Returns the (lower-cased) names of the table's attributes that have an index (see CREATE INDEX) worth using for
+     * the command's conditions. If the table has been analyzed, an index is left out when its statistics estimate that
+     * a condition on the attribute is met by more than INDEX_MAX_SELECTIVITY of the rows, as testing the whole column
+     * is then cheaper.
+     * @param server
+     * @param tableName
+     * @return
+     * @throws IOException
+     */
+    public Set<String> getIndexedAttributes(DBServer server, String tableName) throws IOException {
+        Set<String> indexedAttributes = server.getIndexCatalog(server.getUseDatabaseDirectory()).getIndexedAttributes(tableName);
+        if(indexedAttributes.isEmpty()){
+            return indexedAttributes;
+        }
+        StatisticsCatalog statistics = server.getStatisticsCatalog(server.getUseDatabaseDirectory());
+        long rowCount = statistics.getRowCount(tableName);
+        for(QueryCondition condition : getConditions()){
+            String attribute = condition.getAttribute().toLowerCase(Locale.ROOT);
+            if(rowCount > 0 && indexedAttributes.contains(attribute)
+                    && estimateMatches(statistics.getStatistics(tableName, attribute), condition, rowCount)
+                    > rowCount * INDEX_MAX_SELECTIVITY){
+                indexedAttributes.remove(attribute);
+            }
+        }
+        return indexedAttributes;
+    }
 
-    public Table doConditions(Table table, Table result) throws DBException {
+    /**
+     * @param column the statistics of the condition's attribute
+     * @param condition
+     * @param rowCount the table's number of rows
+     * @return the estimated number of rows that meet the condition, or -1 if there is no estimate
+     */
+    private double estimateMatches(ColumnStatistics column, QueryCondition condition, long rowCount){
+        if(column == null){
+            return -1;
+        }
+        String operator = condition.getOperator();
+        Token value = condition.getValue();
+        if(value.getTokenType() == TokenType.LIT_STR && BNFConstants.EQUAL_TO.equals(operator)){
+            return column.estimateEqualTo(rowCount);
+        }
+        if(value.getTokenType() != TokenType.LIT_NUM){
+            return -1;
+        }
+        float number;
+        try {
+            number = Float.parseFloat(value.getSequence());
+        } catch(NumberFormatException nfe){
+            return -1;
+        }
+        if(BNFConstants.EQUAL_TO.equals(operator)){
+            return column.estimateEqualTo(number, rowCount);
+        }
+        if(BNFConstants.GREATER_THAN.equals(operator)){
+            return column.estimateGreaterThan(number);
+        }
+        if(BNFConstants.LESS_THAN.equals(operator)){
+            return column.estimateLessThan(number);
+        }
+        if(BNFConstants.GREATER_OR_EQUAL_TO.equals(operator)){
+            return column.estimateGreaterThan(number) + column.estimateEqualTo(number, rowCount);
+        }
+        if(BNFConstants.LESS_OR_EQUAL_TO.equals(operator)){
+            return column.estimateLessThan(number) + column.estimateEqualTo(number, rowCount);
+        }
+        return -1;
+    }
 
+    /**
+     * Finds the rows of an in-memory table that meet the command's conditions. A condition on an indexed attribute is
+     * answered from the attribute's sorted index (see Table.getSortedIndex) where it can be. A condition comparing a
+     * numeric (or boolean) column with a number (or boolean) is otherwise tested a column at a time against the
+     * column's parsed values (see Table.getTypedColumn); any other condition is tested row by row, as
+     * buildConditionFilter would. Where the table's zone maps rule out most of its rows for a comparison with a number,
+     * only the rows of the other zones are tested. The rows of a large partitioned table are tested a partition at a
+     * time, in parallel, and an equality condition on its key column only tests the rows of one partition.
+     * @param table
+     * @param indexedAttributes the (lower-cased) names of the table's indexed attributes
+     * @return the indices of the matching rows
+     * @throws DBException
+     */
+    public BitSet findMatchingRows(Table table, Set<String> indexedAttributes) throws DBException {
+        int rowCount = table.getRows().size();
+        if(getConditions().size() == 0){
+            BitSet matches = new BitSet(rowCount);
+            matches.set(0, rowCount);
+            return matches;
+        }
         if(getConditions().size() == 1){
-            result = filterResultByCondition(table, getConditions().get(0));
+            return findMatchingRows(table, indexedAttributes, getConditions().get(0), null);
         }
-        else if(getConditions().size() == 2){
+        if(getConditions().size() == 2){
+            BitSet matchesA = findMatchingRows(table, indexedAttributes, getConditions().get(0), null);
+            // only test the second condition on the rows where its result counts, the same as && and ||
             if(BNFConstants.AND.equalsIgnoreCase(getConditionJoinOperators().get(0))){
-                result = filterResultByAndConditions(table, getConditions().get(0), getConditions().get(1));
-
-            } else { // else OR
-                result = filterResultByOrConditions(table, getConditions().get(0), getConditions().get(1));
+                return findMatchingRows(table, indexedAttributes, getConditions().get(1), matchesA);
             }
-        } else {
-            throw new DBException("Sorry, haven't managed to implement nested conditions!");
+            BitSet candidates = (BitSet) matchesA.clone();
+            candidates.flip(0, rowCount);
+            matchesA.or(findMatchingRows(table, indexedAttributes, getConditions().get(1), candidates));
+            return matchesA;
         }
-        return result;
+        throw new DBException("Sorry, haven't managed to implement nested conditions!");
     }
 
+    private BitSet findMatchingRows(Table table, Set<String> indexedAttributes, QueryCondition condition,
+                                    BitSet candidates) throws DBException {
+        int attrIndex = getAttributeIndex(table.getColHeadings(), condition);
+        boolean indexed = indexedAttributes.contains(condition.getAttribute().toLowerCase(Locale.ROOT));
+        BitSet zoneRows = indexed ? null : findZoneRows(table, attrIndex, condition);
+        BitSet filterRows = indexed ? null : findFilterRows(table, attrIndex, condition);
+        BitSet partitionRows = indexed ? null : findPartitionRows(table, attrIndex, condition);
+        if(partitionRows != null){
+            if(filterRows != null){
+                partitionRows.and(filterRows);
+            }
+            filterRows = partitionRows;
+        }
+        if(filterRows != null){
+            if(zoneRows != null){
+                filterRows.and(zoneRows);
+            }
+            zoneRows = filterRows;
+        }
+        if(zoneRows != null){
+            if(candidates != null){
+                zoneRows.and(candidates);
+            }
+            candidates = zoneRows;
+        }
+        BitSet matches = zoneRows == null ? findMatchingValues(table, attrIndex, condition, indexed) : null;
+        if(matches != null){
+            if(candidates != null){
+                matches.and(candidates);
+            }
+            return matches;
+        }
 
-    public Table filterResultByCondition(Table result, QueryCondition condition){
-
-        Table filteredResult = new Table();
-        filteredResult.setColHeadings(result.getColHeadings());
-
-        int attrIndex = getAttributeIndex(result.getColHeadings(), condition);
+        List<Record> rows = table.getRows();
+        if(candidates == null){
+            candidates = new BitSet(rows.size());
+            candidates.set(0, rows.size());
+        }
+        int[] partitionStarts = rows.size() >= PARALLEL_SCAN_MIN_ROWS ? table.getPartitionStarts() : null;
+        if(partitionStarts == null){
+            return testRows(rows, attrIndex, condition, candidates, 0, rows.size());
+        }
 
-        for(Record row: result.getRows()){
-            if(isCondition(row.getAttributes().get(attrIndex).getValue(), condition.getOperator(), condition.getValue())){
-                filteredResult.getRows().add(row);
+        // the rows of each partition that has candidates are tested in a task of their own
+        List<Callable<BitSet>> tasks = new ArrayList<>();
+        BitSet partitionCandidates = candidates;
+        for(int partition = 0; partition < partitionStarts.length - 1; partition++){
+            int from = partitionStarts[partition];
+            int to = partitionStarts[partition + 1];
+            int first = candidates.nextSetBit(from);
+            if(first >= 0 && first < to){
+                tasks.add(() -> testRows(rows, attrIndex, condition, partitionCandidates, from, to));
             }
         }
-
-        return filteredResult;
+        if(tasks.size() < 2){
+            return testRows(rows, attrIndex, condition, candidates, 0, rows.size());
+        }
+        matches = new BitSet(rows.size());
+        try {
+            // an error raised testing a row is raised from the first partition it is raised in, as it would be if
+            // the rows were tested in order
+            for(BitSet partitionMatches : PartitionedTableFile.invokeAll(tasks)){
+                matches.or(partitionMatches);
+            }
+        } catch(IOException ioe){
+            throw new DBException(ioe.getMessage());
+        }
+        return matches;
     }
 
-    public Table filterResultByAndConditions(Table result, QueryCondition conditionA, QueryCondition conditionB){
+    private BitSet testRows(List<Record> rows, int attrIndex, QueryCondition condition, BitSet candidates, int from,
+                            int to){
+        // built for each call, as a test remembers its results for dictionary codes and can't be shared by threads
+        Predicate<Attribute> test = buildAttributeTest(condition);
+        BitSet matches = new BitSet(to);
+        for(int row = candidates.nextSetBit(from); row >= 0 && row < to; row = candidates.nextSetBit(row + 1)){
+            if(test.test(rows.get(row).getAttributes().get(attrIndex))){
+                matches.set(row);
+            }
+        }
+        return matches;
+    }
 
-        Table filteredResult = new Table();
-        filteredResult.setColHeadings(result.getColHeadings());
+    /**
+     * Finds the rows of the partition (see Table.getPartitionStarts) that an equality condition on a partitioned
+     * table's key column can only match, so the other partitions' rows aren't tested. Only for a condition comparing
+     * the key with a string: one comparing it with a number is tested against the parsed column where there is one,
+     * and where there isn't, some value isn't a number and testing it would raise an error.
+     * @param table
+     * @param attrIndex
+     * @param condition
+     * @return the rows, or null if the condition can match rows in any partition
+     */
+    private BitSet findPartitionRows(Table table, int attrIndex, QueryCondition condition){
+        TablePartitioning partitioning = table.getHeader() != null ? table.getHeader().getPartitioning() : null;
+        if(partitioning == null || partitioning.getKeyIndex(table.getColHeadings()) != attrIndex
+                || !BNFConstants.EQUAL_TO.equals(condition.getOperator())
+                || condition.getValue().getTokenType() != TokenType.LIT_STR){
+            return null;
+        }
+        int[] partitionStarts = table.getPartitionStarts();
+        if(partitionStarts == null){
+            return null;
+        }
+        int partition = partitioning.partitionOf(condition.getValue().getSequence());
+        BitSet rows = new BitSet(table.getRows().size());
+        rows.set(partitionStarts[partition], partitionStarts[partition + 1]);
+        return rows;
+    }
 
-        int attrIndexA = getAttributeIndex(result.getColHeadings(), conditionA);
-        int attrIndexB = getAttributeIndex(result.getColHeadings(), conditionB);
+    /**
+     * Finds the rows of the zones (see Table.getZoneMap) that may meet a condition comparing the column with a number.
+     * The other zones' values are all numbers that don't meet the condition, so leaving their rows out can't change
+     * the result, or whether an error is raised.
+     * @param table
+     * @param attrIndex
+     * @param condition
+     * @return the rows, or null if the column has no zone map or it rules out less than half of the rows
+     */
+    private BitSet findZoneRows(Table table, int attrIndex, QueryCondition condition){
+        ZoneMap zoneMap = table.getZoneMap(attrIndex);
+        if(zoneMap == null || condition.getValue().getTokenType() != TokenType.LIT_NUM){
+            return null;
+        }
+        float number;
+        try {
+            number = Float.parseFloat(condition.getValue().getSequence());
+        } catch(NumberFormatException nfe){
+            return null;
+        }
+        String operator = condition.getOperator();
+        BitSet rows;
+        if(BNFConstants.EQUAL_TO.equals(operator)){
+            rows = zoneMap.mayEqual(number);
+        } else if(BNFConstants.GREATER_THAN.equals(operator)){
+            rows = zoneMap.mayBeGreaterThan(number);
+        } else if(BNFConstants.LESS_THAN.equals(operator)){
+            rows = zoneMap.mayBeLessThan(number);
+        } else if(BNFConstants.GREATER_OR_EQUAL_TO.equals(operator)){
+            rows = zoneMap.mayBeGreaterThan(number);
+            rows.or(zoneMap.mayEqual(number));
+        } else if(BNFConstants.LESS_OR_EQUAL_TO.equals(operator)){
+            rows = zoneMap.mayBeLessThan(number);
+            rows.or(zoneMap.mayEqual(number));
+        } else {
+            return null;
+        }
+        // testing what is left row by row only pays off if most of the table has been ruled out
+        return rows.cardinality() <= zoneMap.getRowCount() / 2 ? rows : null;
+    }
 
-        for(Record row: result.getRows()){
-            if(isCondition(row.getAttributes().get(attrIndexA).getValue(), conditionA.getOperator(), conditionA.getValue())
-            && isCondition(row.getAttributes().get(attrIndexB).getValue(), conditionB.getOperator(), conditionB.getValue())){
-                filteredResult.getRows().add(row);
+    /**
+     * Finds the rows of the segments whose Bloom filters (see Table.getBloomFilter) may hold the value an equality
+     * condition looks for. The other segments can't hold it, and hold no values that would raise an error when tested
+     * against it, so leaving their rows out can't change the result.
+     * @param table
+     * @param attrIndex
+     * @param condition
+     * @return the rows, or null if the column has no filters or they rule out less than half of the rows
+     */
+    private BitSet findFilterRows(Table table, int attrIndex, QueryCondition condition){
+        // an id is found straight away through the table's id index
+        BloomFilter bloomFilter = attrIndex > 0 ? table.getBloomFilter(attrIndex) : null;
+        if(bloomFilter == null || !BNFConstants.EQUAL_TO.equals(condition.getOperator())){
+            return null;
+        }
+        BitSet rows;
+        Token value = condition.getValue();
+        if(value.getTokenType() == TokenType.LIT_STR){
+            rows = bloomFilter.mayEqual(value.getSequence());
+        } else if(value.getTokenType() == TokenType.LIT_NUM){
+            try {
+                rows = bloomFilter.mayEqual(Float.parseFloat(value.getSequence()));
+            } catch(NumberFormatException nfe){
+                return null;
             }
+        } else {
+            return null;
         }
-
-        return filteredResult;
+        return rows.cardinality() <= bloomFilter.getRowCount() / 2 ? rows : null;
     }
 
-    public Table filterResultByOrConditions(Table result, QueryCondition conditionA, QueryCondition conditionB){
-
-        Table filteredResult = new Table();
-        filteredResult.setColHeadings(result.getColHeadings());
+    /**
+     * Tests the condition against a column's parsed values, looking values up in the column's sorted index (or an id
+     * in the table's id index) rather than testing every row where there is one. A condition on a column with few
+     * distinct values is tested once per value (see Table.getBitmapIndex).
+     * @param table
+     * @param attrIndex
+     * @param condition
+     * @param indexed whether the column has a sorted index
+     * @return the matching rows, or null if the condition can't be tested this way
+     */
+    private BitSet findMatchingValues(Table table, int attrIndex, QueryCondition condition, boolean indexed){
+        TypedColumn column = table.getTypedColumn(attrIndex);
+        if(column == null){
+            return null;
+        }
+        String operator = condition.getOperator();
+        Token value = condition.getValue();
+        SortedIndex index = indexed ? table.getSortedIndex(attrIndex) : null;
 
-        int attrIndexA = getAttributeIndex(result.getColHeadings(), conditionA);
-        int attrIndexB = getAttributeIndex(result.getColHeadings(), conditionB);
+        if(value.getTokenType() == TokenType.LIT_STR && BNFConstants.EQUAL_TO.equals(operator)
+                && index != null && !index.isNumeric()){
+            return index.equalTo(value.getSequence());
+        }
 
-        for(Record row: result.getRows()){
-            if(isCondition(row.getAttributes().get(attrIndexA).getValue(), conditionA.getOperator(), conditionA.getValue())
-                    || isCondition(row.getAttributes().get(attrIndexB).getValue(), conditionB.getOperator(), conditionB.getValue())){
-                filteredResult.getRows().add(row);
+        if(value.getTokenType() == TokenType.LIT_NUM && column.isNumeric()){
+            float number;
+            try {
+                number = Float.parseFloat(value.getSequence());
+            } catch(NumberFormatException nfe){
+                return null;
+            }
+            boolean useIndex = index != null && index.isNumeric();
+            if(BNFConstants.EQUAL_TO.equals(operator)){
+                IdIndex idIndex = attrIndex == 0 ? table.getIdIndex() : null;
+                if(idIndex != null){
+                    return idIndex.lookup(number);
+                }
+                return useIndex ? index.equalTo(number) : column.equalTo(number);
+            }
+            if(BNFConstants.NOT_EQUAL_TO.equals(operator)){
+                return column.notEqualTo(number);
+            }
+            if(BNFConstants.GREATER_THAN.equals(operator)){
+                return useIndex ? index.greaterThan(number) : column.greaterThan(number);
+            }
+            if(BNFConstants.LESS_THAN.equals(operator)){
+                return useIndex ? index.lessThan(number) : column.lessThan(number);
+            }
+            if(BNFConstants.GREATER_OR_EQUAL_TO.equals(operator)){
+                BitSet matches = useIndex ? index.greaterThan(number) : column.greaterThan(number);
+                matches.or(useIndex ? index.equalTo(number) : column.equalTo(number));
+                return matches;
+            }
+            if(BNFConstants.LESS_OR_EQUAL_TO.equals(operator)){
+                BitSet matches = useIndex ? index.lessThan(number) : column.lessThan(number);
+                matches.or(useIndex ? index.equalTo(number) : column.equalTo(number));
+                return matches;
+            }
+            return null;
+        }
+        if(value.getTokenType() == TokenType.LIT_BOOL && column.getType() == ValueType.BOOL){
+            boolean bool = Boolean.parseBoolean(value.getSequence());
+            if(BNFConstants.EQUAL_TO.equals(operator)){
+                return column.booleanEqualTo(bool);
+            }
+            if(BNFConstants.NOT_EQUAL_TO.equals(operator)){
+                return column.booleanEqualTo(!bool);
             }
         }
 
-        return filteredResult;
+        BitmapIndex bitmapIndex = table.getBitmapIndex(attrIndex);
+        if(bitmapIndex != null){
+            try {
+                return bitmapIndex.select(attribute -> isCondition(attribute, operator, value));
+            } catch(NumberFormatException nfe){
+                // the value can't be compared like this; test row by row, so the error is only raised if a row that
+                // is tested holds it
+                return null;
+            }
+        }
+        return null;
     }
 
     private int getAttributeIndex(List<ColumnHeader> colHeader,QueryCondition condition){
@@ -299,6 +940,29 @@ public abstract class DBCmd {
         return attrIndex;
     }
 
+    /**
+     * Builds a test for whether a value meets the condition. A value held in a column dictionary is only tested the
+     * first time its code is seen; after that the result for the code is reused.
+     * @param condition
+     * @return
+     */
+    private Predicate<Attribute> buildAttributeTest(QueryCondition condition){
+        final byte unknown = 0, match = 1, noMatch = 2;
+        Map<ColumnDictionary, byte[]> resultsByDictionary = new IdentityHashMap<>();
+        return attribute -> {
+            if(!(attribute instanceof ColumnDictionary.Entry)){
+                return isCondition(attribute.getValue(), condition.getOperator(), condition.getValue());
+            }
+            ColumnDictionary.Entry entry = (ColumnDictionary.Entry) attribute;
+            byte[] results = resultsByDictionary.computeIfAbsent(entry.getDictionary(), dictionary -> new byte[dictionary.size()]);
+            if(results[entry.getCode()] == unknown){
+                boolean matches = isCondition(entry.getValue(), condition.getOperator(), condition.getValue());
+                results[entry.getCode()] = matches ? match : noMatch;
+            }
+            return results[entry.getCode()] == match;
+        };
+    }
+
     private boolean isCondition(String value, String operator, Token condition){
         if(BNFConstants.EQUAL_TO.equals(operator)){
             return conditionEqualTo(value,condition);
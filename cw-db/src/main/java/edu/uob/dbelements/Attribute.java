@@ -21,7 +21,11 @@ public class Attribute extends AbstractColumnData {
         if (obj == null) {
             return false;
         }
-        if (obj.getClass() != this.getClass()) {
+        if (obj == this) {
+            return true;
+        }
+        // values held in a column dictionary are still just attributes
+        if (!(obj instanceof Attribute)) {
             return false;
         }
         final Attribute other = (Attribute) obj;
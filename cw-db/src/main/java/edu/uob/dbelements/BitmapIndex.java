@@ -0,0 +1,129 @@
+package edu.uob.dbelements;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Index of a column with few distinct values (e.g., a boolean or a category) holding the set of rows for each value,
+ * so a condition on the column is tested once per distinct value rather than once per row, and the matching rows are
+ * the union of the sets of the values that pass. As in a roaring bitmap, each set is held in whichever form is
+ * smaller: the positions of its rows if the value is rare, or a bitmap over all the rows if it is common.
+ */
+public class BitmapIndex {
+
+    // a value is held as a bitmap once it is in more than one row in this many (the point where an int per row
+    // takes more space than a bit per row)
+    private static final int DENSE_ROW_RATIO = Integer.SIZE;
+
+    private final int rowCount;
+    private final List<String> values;
+    private final List<RowSet> rowSets;
+
+    private BitmapIndex(int rowCount, List<String> values, List<RowSet> rowSets){
+        this.rowCount = rowCount;
+        this.values = values;
+        this.rowSets = rowSets;
+    }
+
+    /**
+     * @param rows
+     * @param col
+     * @param maxValues
+     * @return the index, or null if the column has more than maxValues distinct values or a row has no value for it
+     */
+    public static BitmapIndex build(List<Record> rows, int col, int maxValues){
+        Map<String, Integer> codes = new HashMap<>();
+        List<String> values = new ArrayList<>();
+        int[] rowCodes = new int[rows.size()];
+        int[] counts = new int[maxValues];
+        for(int row = 0; row < rows.size(); row++){
+            List<Attribute> attributes = rows.get(row).getAttributes();
+            if(col >= attributes.size() || attributes.get(col).getValue() == null){
+                return null;
+            }
+            String value = attributes.get(col).getValue();
+            Integer code = codes.get(value);
+            if(code == null){
+                if(values.size() == maxValues){
+                    return null;
+                }
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            rowCodes[row] = code;
+            counts[code]++;
+        }
+
+        List<RowSet> rowSets = new ArrayList<>(values.size());
+        for(int code = 0; code < values.size(); code++){
+            boolean dense = (long) counts[code] * DENSE_ROW_RATIO > rows.size();
+            rowSets.add(dense ? new RowSet(new BitSet(rows.size())) : new RowSet(new int[counts[code]]));
+        }
+        int[] filled = new int[values.size()];
+        for(int row = 0; row < rowCodes.length; row++){
+            rowSets.get(rowCodes[row]).add(filled[rowCodes[row]]++, row);
+        }
+        return new BitmapIndex(rows.size(), values, rowSets);
+    }
+
+    /**
+     * Finds the rows whose value passes the test, testing each distinct value once
+     * @param test
+     * @return
+     */
+    public BitSet select(Predicate<String> test){
+        BitSet matches = new BitSet(rowCount);
+        for(int code = 0; code < values.size(); code++){
+            if(test.test(values.get(code))){
+                rowSets.get(code).addTo(matches);
+            }
+        }
+        return matches;
+    }
+
+    public int getValueCount(){
+        return values.size();
+    }
+
+    /**
+     * The rows holding one value: a bitmap, or the positions of the rows (in order)
+     */
+    private static class RowSet {
+        private final BitSet bits;
+        private final int[] positions;
+
+        private RowSet(BitSet bits){
+            this.bits = bits;
+            this.positions = null;
+        }
+
+        private RowSet(int[] positions){
+            this.bits = null;
+            this.positions = positions;
+        }
+
+        private void add(int index, int row){
+            if(bits != null){
+                bits.set(row);
+            } else {
+                positions[index] = row;
+            }
+        }
+
+        private void addTo(BitSet matches){
+            if(bits != null){
+                matches.or(bits);
+            } else {
+                for(int row : positions){
+                    matches.set(row);
+                }
+            }
+        }
+    }
+
+}
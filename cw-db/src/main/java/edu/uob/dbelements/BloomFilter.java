@@ -0,0 +1,288 @@
+package edu.uob.dbelements;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A Bloom filter for each segment (fixed-size block of rows) of one column, built as the rows are written to the DB
+ * file (see BloomFilterFile). It answers whether a segment may hold a value equal to a given one: a "no" is certain, so
+ * an equality condition can skip the segment without looking at its rows, while a "yes" may be wrong (about one time
+ * in a hundred). Each value is added as it is (for conditions on strings) and, if it is a number, as its float (for
+ * conditions on numbers, which compare values as floats).
+ * <p>
+ * A segment is never skipped if testing its rows could raise an error the condition would otherwise raise: one with
+ * rows that have no value for the column is always a candidate, as is, for a number, one with values that aren't
+ * numbers. Rows the filters weren't built for (e.g., rows appended since the file was written) are in a segment with
+ * no filter, which is always a candidate.
+ */
+public class BloomFilter {
+
+    private static final int BITS_PER_VALUE = 10;
+    private static final int HASH_COUNT = 7;
+    private static final int MIN_BITS = Long.SIZE;
+
+    // told apart from a string's hash, so a number and a string whose hashes collide don't share bits
+    private static final long NUMBER_SEED = 0x9e3779b97f4a7c15L;
+
+    public static final byte MISSING_VALUES = 1;
+    public static final byte NON_NUMERIC_VALUES = 2;
+
+    // the first row of each segment, followed by the number of rows
+    private final int[] segmentStarts;
+    // the bits of each segment's filter, or null for a segment with no filter
+    private final long[][] bits;
+    private final byte[] flags;
+
+    /**
+     * @param segmentStarts the first row of each segment, followed by the number of rows
+     * @param bits the bits of each segment's filter (a power of two of them), or null for a segment with no filter
+     * @param flags MISSING_VALUES and/or NON_NUMERIC_VALUES for each segment
+     */
+    public BloomFilter(int[] segmentStarts, long[][] bits, byte[] flags){
+        this.segmentStarts = segmentStarts;
+        this.bits = bits;
+        this.flags = flags;
+    }
+
+    /**
+     * Builds the filters of the column for segments of segmentRows rows
+     * @param rows
+     * @param col
+     * @param segmentRows
+     * @return
+     */
+    public static BloomFilter build(List<Record> rows, int col, int segmentRows){
+        Builder builder = new Builder(segmentRows);
+        for(Record row : rows){
+            List<Attribute> attributes = row.getAttributes();
+            builder.add(col < attributes.size() ? attributes.get(col).getValue() : null);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Moves the segments onto a table that leaves out some of the rows they were built for (e.g., deleted rows).
+     * The filters still hold, as each segment can only have lost values.
+     * @param segmentStarts the first row of each segment in the table, followed by the table's number of rows
+     * @return
+     */
+    public BloomFilter withSegmentStarts(int[] segmentStarts){
+        return new BloomFilter(segmentStarts, bits, flags);
+    }
+
+    /**
+     * @param rowCount
+     * @return the filters with the rows after those they were built for (up to rowCount) in a segment of their own
+     * with no filter
+     */
+    public BloomFilter withRowCount(int rowCount){
+        if(rowCount <= getRowCount()){
+            return this;
+        }
+        int segmentCount = getSegmentCount();
+        int[] starts = Arrays.copyOf(segmentStarts, segmentCount + 2);
+        starts[segmentCount + 1] = rowCount;
+        return new BloomFilter(starts, Arrays.copyOf(bits, segmentCount + 1), Arrays.copyOf(flags, segmentCount + 1));
+    }
+
+    public int getSegmentCount(){
+        return flags.length;
+    }
+
+    public int getSegmentStart(int segment){
+        return segmentStarts[segment];
+    }
+
+    public int getRowCount(){
+        return segmentStarts[flags.length];
+    }
+
+    /**
+     * @param segment
+     * @return the bits of the segment's filter, or null if it has none
+     */
+    public long[] getBits(int segment){
+        return bits[segment];
+    }
+
+    public byte getFlags(int segment){
+        return flags[segment];
+    }
+
+    /**
+     * @param value
+     * @return the rows of the segments that may hold the value (compared as a string)
+     */
+    public BitSet mayEqual(String value){
+        return findSegmentRows(hashString(value), MISSING_VALUES);
+    }
+
+    /**
+     * @param number
+     * @return the rows of the segments that may hold a value equal to the number (compared as Float.equals does)
+     */
+    public BitSet mayEqual(float number){
+        return findSegmentRows(hashNumber(number), (byte) (MISSING_VALUES | NON_NUMERIC_VALUES));
+    }
+
+    private BitSet findSegmentRows(long hash, byte alwaysIncluded){
+        BitSet rows = new BitSet(getRowCount());
+        for(int segment = 0; segment < flags.length; segment++){
+            if(bits[segment] == null || (flags[segment] & alwaysIncluded) != 0 || mayContain(bits[segment], hash)){
+                rows.set(segmentStarts[segment], segmentStarts[segment + 1]);
+            }
+        }
+        return rows;
+    }
+
+    private static boolean mayContain(long[] words, long hash){
+        long mask = (long) words.length * Long.SIZE - 1;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 0; i < HASH_COUNT; i++){
+            long bit = (h1 + (long) i * h2) & mask;
+            if((words[(int) (bit >>> 6)] & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void put(long[] words, long hash){
+        long mask = (long) words.length * Long.SIZE - 1;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for(int i = 0; i < HASH_COUNT; i++){
+            long bit = (h1 + (long) i * h2) & mask;
+            words[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    private static long hashString(String value){
+        long hash = 0xcbf29ce484222325L;
+        for(int i = 0; i < value.length(); i++){
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long hashNumber(float number){
+        return mix(Float.floatToIntBits(number) ^ NUMBER_SEED);
+    }
+
+    private static long mix(long hash){
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     * Builds the filters of a column from its values, one row at a time and in the order the rows are written
+     */
+    public static class Builder {
+
+        private final int segmentRows;
+        private final List<Integer> starts = new ArrayList<>();
+        private final List<long[]> segments = new ArrayList<>();
+        private final List<Byte> segmentFlags = new ArrayList<>();
+        private long[] hashes;
+        private int hashCount;
+        private int rowCount;
+        private byte flags;
+
+        public Builder(int segmentRows){
+            this.segmentRows = segmentRows;
+            this.hashes = new long[Math.min(segmentRows, 64) * 2];
+        }
+
+        /**
+         * @param value the row's value, or null if the row has none
+         */
+        public void add(String value){
+            if(rowCount % segmentRows == 0){
+                endSegment();
+                starts.add(rowCount);
+            }
+            rowCount++;
+            // a field that is empty, or would be split on reading, won't be read back as this value
+            if(value == null || value.isEmpty() || value.indexOf('\t') >= 0 || value.indexOf('\n') >= 0
+                    || value.indexOf('\r') >= 0){
+                flags |= MISSING_VALUES;
+                return;
+            }
+            addHash(hashString(value));
+            Float number = parseNumber(value);
+            if(number == null){
+                flags |= NON_NUMERIC_VALUES;
+            } else {
+                addHash(hashNumber(number));
+            }
+        }
+
+        public BloomFilter build(){
+            endSegment();
+            int[] segmentStarts = new int[starts.size() + 1];
+            byte[] flagArray = new byte[starts.size()];
+            for(int i = 0; i < flagArray.length; i++){
+                segmentStarts[i] = starts.get(i);
+                flagArray[i] = segmentFlags.get(i);
+            }
+            segmentStarts[flagArray.length] = rowCount;
+            return new BloomFilter(segmentStarts, segments.toArray(new long[0][]), flagArray);
+        }
+
+        private void addHash(long hash){
+            if(hashCount == hashes.length){
+                hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            }
+            hashes[hashCount++] = hash;
+        }
+
+        private void endSegment(){
+            if(starts.size() == segments.size()){
+                return;
+            }
+            // the filter is sized for the segment's distinct values rather than all of its rows
+            Arrays.sort(hashes, 0, hashCount);
+            int distinct = 0;
+            for(int i = 0; i < hashCount; i++){
+                if(i == 0 || hashes[i] != hashes[i - 1]){
+                    hashes[distinct++] = hashes[i];
+                }
+            }
+            int bitCount = Math.max(Integer.highestOneBit(Math.max(distinct * BITS_PER_VALUE - 1, 1)) << 1, MIN_BITS);
+            long[] words = new long[bitCount / Long.SIZE];
+            for(int i = 0; i < distinct; i++){
+                put(words, hashes[i]);
+            }
+            segments.add(words);
+            segmentFlags.add(flags);
+            hashCount = 0;
+            flags = 0;
+        }
+
+        /**
+         * Parses the value the same way conditions do (with Float.valueOf)
+         * @param value
+         * @return the number, or null if the value isn't one
+         */
+        private static Float parseNumber(String value){
+            // most values that aren't numbers are words, which can be turned away without the cost of an exception
+            char first = value.charAt(0);
+            if(Character.isLetter(first) && first != 'N' && first != 'I'){
+                return null;
+            }
+            try {
+                return Float.valueOf(value);
+            } catch(NumberFormatException nfe){
+                return null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package edu.uob.dbelements;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The distinct values of one column of a table, each stored once. Rows hold the dictionary's shared Attribute (an
+ * Entry) for their value rather than an Attribute and String of their own, and an entry's position in the dictionary
+ * is its code, so work that only depends on the value (e.g., testing a condition) can be done once per code.
+ *
+ * A dictionary is filled while its table is read and not changed after that. Entries are shared between rows (and
+ * between versions of the table), so they can't be modified: a changed row gets a new Attribute instead.
+ */
+public class ColumnDictionary {
+
+    private final List<Entry> entries;
+    private final Map<String, Entry> entriesByValue;
+    private final int capacity;
+
+    public ColumnDictionary(int capacity){
+        this.entries = new ArrayList<>();
+        this.entriesByValue = new HashMap<>();
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the entry for the value, adding it if it isn't in the dictionary yet. Once the dictionary is full (i.e.,
+     * the column has too many distinct values to be worth encoding) a new value gets an Attribute of its own.
+     * @param value
+     * @return
+     */
+    public Attribute encode(String value){
+        if(value == null){
+            return new Attribute(null);
+        }
+        Entry entry = entriesByValue.get(value);
+        if(entry != null){
+            return entry;
+        }
+        if(entries.size() >= capacity){
+            return new Attribute(value);
+        }
+        entry = new Entry(value, entries.size(), this);
+        entries.add(entry);
+        entriesByValue.put(value, entry);
+        return entry;
+    }
+
+    public Entry get(int code){
+        return entries.get(code);
+    }
+
+    /**
+     * @param value
+     * @return the value's code, or -1 if it isn't in the dictionary
+     */
+    public int getCode(String value){
+        Entry entry = entriesByValue.get(value);
+        return entry != null ? entry.code : -1;
+    }
+
+    public int size(){
+        return entries.size();
+    }
+
+    public static class Entry extends Attribute {
+
+        private final int code;
+        private final ColumnDictionary dictionary;
+
+        private Entry(String value, int code, ColumnDictionary dictionary){
+            super(value);
+            this.code = code;
+            this.dictionary = dictionary;
+        }
+
+        public int getCode(){
+            return code;
+        }
+
+        public ColumnDictionary getDictionary(){
+            return dictionary;
+        }
+
+        @Override
+        public void setValue(String value){
+            throw new UnsupportedOperationException("Dictionary values are shared and can't be changed");
+        }
+
+        @Override
+        public void setData(String data){
+            throw new UnsupportedOperationException("Dictionary values are shared and can't be changed");
+        }
+    }
+
+}
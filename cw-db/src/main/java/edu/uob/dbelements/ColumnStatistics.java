@@ -0,0 +1,228 @@
+package edu.uob.dbelements;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statistics of one column of a table (see ANALYZE): how many rows have no value (or NULL), an estimate of the number
+ * of distinct values, and for the values that are numbers, the smallest and largest and a histogram of how they are
+ * spread between them. The histogram's buckets split the range the numbers had when the statistics were collected
+ * into equal widths; numbers added since then that fall outside it are counted in the first or last bucket.
+ */
+public class ColumnStatistics {
+
+    public static final int HISTOGRAM_BUCKETS = 16;
+
+    private long nullCount;
+    private long numericCount;
+    private float min;
+    private float max;
+    // the range the histogram's buckets split up
+    private float low;
+    private float high;
+    private final long[] histogram;
+    private final DistinctCounter distinctValues;
+
+    public ColumnStatistics(long nullCount, long numericCount, float min, float max, float low, float high,
+                            long[] histogram, DistinctCounter distinctValues){
+        this.nullCount = nullCount;
+        this.numericCount = numericCount;
+        this.min = min;
+        this.max = max;
+        this.low = low;
+        this.high = high;
+        this.histogram = Arrays.copyOf(histogram, HISTOGRAM_BUCKETS);
+        this.distinctValues = distinctValues;
+    }
+
+    /**
+     * Collects the statistics of a column of the rows
+     * @param rows
+     * @param col
+     * @return
+     */
+    public static ColumnStatistics collect(List<Record> rows, int col){
+        ColumnStatistics statistics = new ColumnStatistics(0, 0, Float.NaN, Float.NaN, Float.NaN, Float.NaN,
+                new long[HISTOGRAM_BUCKETS], new DistinctCounter());
+        // the histogram's range has to be known before numbers can be put into buckets
+        for(Record row : rows){
+            Float number = parseNumber(getValue(row, col));
+            if(number != null && !number.isNaN()){
+                statistics.low = Float.isNaN(statistics.low) ? number : Math.min(statistics.low, number);
+                statistics.high = Float.isNaN(statistics.high) ? number : Math.max(statistics.high, number);
+            }
+        }
+        for(Record row : rows){
+            statistics.add(getValue(row, col));
+        }
+        return statistics;
+    }
+
+    private static String getValue(Record row, int col){
+        List<Attribute> attributes = row.getAttributes();
+        return col < attributes.size() ? attributes.get(col).getValue() : null;
+    }
+
+    /**
+     * Counts a value added to the column
+     * @param value the value, or null if the row has none
+     */
+    public void add(String value){
+        if(isNull(value)){
+            nullCount++;
+            return;
+        }
+        distinctValues.add(value);
+        Float number = parseNumber(value);
+        if(number == null){
+            return;
+        }
+        numericCount++;
+        min = Float.isNaN(min) ? number : Math.min(min, number);
+        max = Float.isNaN(max) ? number : Math.max(max, number);
+        if(Float.isNaN(low) && !number.isNaN()){
+            low = number;
+            high = number;
+        }
+        histogram[getBucket(number)]++;
+    }
+
+    /**
+     * Takes away a value removed from the column. The distinct value estimate and the smallest and largest numbers
+     * can't be worked out again without the other values, so are left as they are.
+     * @param value the value, or null if the row had none
+     */
+    public void remove(String value){
+        if(isNull(value)){
+            nullCount = Math.max(nullCount - 1, 0);
+            return;
+        }
+        Float number = parseNumber(value);
+        if(number != null){
+            numericCount = Math.max(numericCount - 1, 0);
+            int bucket = getBucket(number);
+            histogram[bucket] = Math.max(histogram[bucket] - 1, 0);
+        }
+    }
+
+    public ColumnStatistics copy(){
+        return new ColumnStatistics(nullCount, numericCount, min, max, low, high, histogram, distinctValues.copy());
+    }
+
+    /**
+     * @param number
+     * @param rowCount the table's number of rows
+     * @return the estimated number of rows whose value equals the number
+     */
+    public double estimateEqualTo(float number, long rowCount){
+        if(numericCount == 0 || number < min || number > max){
+            return 0;
+        }
+        return estimateEqualTo(rowCount);
+    }
+
+    /**
+     * @param rowCount the table's number of rows
+     * @return the estimated number of rows that hold any one of the column's values
+     */
+    public double estimateEqualTo(long rowCount){
+        return (double) Math.max(rowCount - nullCount, 0) / Math.max(distinctValues.estimate(), 1);
+    }
+
+    /**
+     * Estimates how many rows have a number below the given one, assuming the numbers in each bucket of the histogram
+     * are spread evenly over it
+     * @param number
+     * @return
+     */
+    public double estimateLessThan(float number){
+        if(numericCount == 0 || Float.isNaN(number) || number <= min){
+            return 0;
+        }
+        if(number > max){
+            return numericCount;
+        }
+        if(high == low){
+            return number > low ? histogram[0] : 0;
+        }
+        double position = (number - low) / (high - low) * HISTOGRAM_BUCKETS;
+        int bucket = (int) Math.max(Math.min(Math.floor(position), HISTOGRAM_BUCKETS - 1), 0);
+        double rows = 0;
+        for(int i = 0; i < bucket; i++){
+            rows += histogram[i];
+        }
+        return rows + histogram[bucket] * Math.max(Math.min(position - bucket, 1), 0);
+    }
+
+    /**
+     * @param number
+     * @return the estimated number of rows with a number above the given one
+     */
+    public double estimateGreaterThan(float number){
+        if(numericCount == 0 || Float.isNaN(number) || number >= max){
+            return 0;
+        }
+        return Math.max(numericCount - estimateLessThan(number), 0);
+    }
+
+    public long getNullCount(){
+        return nullCount;
+    }
+
+    public long getNumericCount(){
+        return numericCount;
+    }
+
+    public long getDistinctCount(){
+        return distinctValues.estimate();
+    }
+
+    public float getMin(){
+        return min;
+    }
+
+    public float getMax(){
+        return max;
+    }
+
+    public float getLow(){
+        return low;
+    }
+
+    public float getHigh(){
+        return high;
+    }
+
+    public long[] getHistogram(){
+        return Arrays.copyOf(histogram, HISTOGRAM_BUCKETS);
+    }
+
+    public DistinctCounter getDistinctValues(){
+        return distinctValues.copy();
+    }
+
+    private int getBucket(float number){
+        if(!(high > low)){
+            return 0;
+        }
+        int bucket = (int) ((number - low) / (high - low) * HISTOGRAM_BUCKETS);
+        return Math.max(Math.min(bucket, HISTOGRAM_BUCKETS - 1), 0);
+    }
+
+    private static boolean isNull(String value){
+        return value == null || "NULL".equalsIgnoreCase(value);
+    }
+
+    private static Float parseNumber(String value){
+        if(value == null || value.isEmpty() || Character.isLetter(value.charAt(0))){
+            // words are turned away without the cost of an exception (NaN and Infinity aren't counted as numbers)
+            return null;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch(NumberFormatException nfe){
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package edu.uob.dbelements;
+
+import java.util.Arrays;
+
+/**
+ * Estimates how many distinct values have been added to it (a HyperLogLog sketch), in a fixed amount of memory however
+ * many values there are. Each value is hashed to one of the registers, which keeps the longest run of leading zeros
+ * seen in the rest of the hash; the more distinct values, the longer the runs. Adding a value is cheap and values can't
+ * be taken away, so the estimate can be kept up to date as rows are added (but only grows as rows are removed).
+ */
+public class DistinctCounter {
+
+    private static final int INDEX_BITS = 10;
+    public static final int REGISTER_COUNT = 1 << INDEX_BITS;
+
+    private final byte[] registers;
+
+    public DistinctCounter(){
+        this.registers = new byte[REGISTER_COUNT];
+    }
+
+    /**
+     * @param registers the registers of a counter (see getRegisters)
+     */
+    public DistinctCounter(byte[] registers){
+        if(registers.length != REGISTER_COUNT){
+            throw new IllegalArgumentException("Expected " + REGISTER_COUNT + " registers, got " + registers.length);
+        }
+        this.registers = Arrays.copyOf(registers, REGISTER_COUNT);
+    }
+
+    public void add(String value){
+        int hash = mix(value.hashCode());
+        int register = hash >>> (Integer.SIZE - INDEX_BITS);
+        int rank = Math.min(Integer.numberOfLeadingZeros(hash << INDEX_BITS), Integer.SIZE - INDEX_BITS) + 1;
+        if(rank > registers[register]){
+            registers[register] = (byte) rank;
+        }
+    }
+
+    /**
+     * @return the estimated number of distinct values added
+     */
+    public long estimate(){
+        double sum = 0;
+        int emptyRegisters = 0;
+        for(byte rank : registers){
+            sum += 1.0 / (1L << rank);
+            if(rank == 0){
+                emptyRegisters++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+        double estimate = alpha * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if(estimate <= 2.5 * REGISTER_COUNT && emptyRegisters > 0){
+            // with few values, counting the registers that are still empty is more accurate
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / emptyRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] getRegisters(){
+        return Arrays.copyOf(registers, REGISTER_COUNT);
+    }
+
+    public DistinctCounter copy(){
+        return new DistinctCounter(registers);
+    }
+
+    /**
+     * Spreads the bits of a String hash code, which differ little between similar strings, over the whole int
+     */
+    private static int mix(int hash){
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+
+}
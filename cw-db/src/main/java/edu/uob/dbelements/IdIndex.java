@@ -0,0 +1,68 @@
+package edu.uob.dbelements;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Hash index from the values of a table's id column to the positions of the rows that hold them, so a row can be found
+ * by its id without scanning the table. Ids are keyed on their parsed (float) values, the same as conditions compare
+ * them, so a lookup finds exactly the rows that testing each row would. The index is an open-addressed table of
+ * primitive arrays rather than a map of boxed keys, to keep it small for large tables.
+ */
+public class IdIndex {
+
+    private static final int EMPTY = -1;
+
+    private final int[] keys;
+    private final int[] rows;
+    private final int mask;
+    private final int rowCount;
+
+    /**
+     * @param ids the table's (numeric) id column
+     */
+    public IdIndex(TypedColumn ids){
+        this.rowCount = ids.size();
+        int capacity = Integer.highestOneBit(Math.max(rowCount, 1) * 2 - 1) << 1;
+        this.keys = new int[capacity];
+        this.rows = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(rows, EMPTY);
+        for(int row = 0; row < rowCount; row++){
+            int key = Float.floatToIntBits(ids.getNumber(row));
+            int slot = hash(key) & mask;
+            // ids are normally unique, but rows sharing an id are each kept
+            while(rows[slot] != EMPTY){
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            rows[slot] = row;
+        }
+    }
+
+    /**
+     * @param id
+     * @return the positions of the rows whose id equals the given value
+     */
+    public BitSet lookup(float id){
+        int key = Float.floatToIntBits(id);
+        BitSet matches = new BitSet(rowCount);
+        for(int slot = hash(key) & mask; rows[slot] != EMPTY; slot = (slot + 1) & mask){
+            if(keys[slot] == key){
+                matches.set(rows[slot]);
+            }
+        }
+        return matches;
+    }
+
+    public int size(){
+        return rowCount;
+    }
+
+    private static int hash(int key){
+        // spread the bits, as ids that are close together differ only in the low bits of their mantissa
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+}
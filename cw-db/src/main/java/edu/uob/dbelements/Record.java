@@ -1,5 +1,6 @@
 package edu.uob.dbelements;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Record {
@@ -14,6 +15,15 @@ public class Record {
         this.attributes = attributes;
     }
 
+    public Record copy(){
+        List<Attribute> copiedAttributes = new ArrayList<>();
+        for(Attribute attribute : attributes){
+            // values from a column dictionary can't be changed, so they are shared rather than copied
+            copiedAttributes.add(attribute instanceof ColumnDictionary.Entry ? attribute : new Attribute(attribute.getValue()));
+        }
+        return new Record(copiedAttributes);
+    }
+
     public String getId() {
         return attributes.get(0).getValue();
     }
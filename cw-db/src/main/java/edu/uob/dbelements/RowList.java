@@ -0,0 +1,171 @@
+package edu.uob.dbelements;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+
+/**
+ * The rows of a version of a table, which a copy of the table (see Table.copy) shares rather than copying. A row
+ * appended to a copy goes in the free space at the end of the shared array, beyond the rows any other version can see,
+ * so appending a row to a new version of a table doesn't copy the rows before it. The array is only copied when it is
+ * full, when another version has already appended into it, or before a row the versions share is changed, removed or
+ * has a row inserted before it.
+ */
+public class RowList extends AbstractList<Record> implements RandomAccess {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private Chunk chunk;
+    private int size;
+    // whether no other version shares the array, so rows in it can be changed in place
+    private boolean exclusive;
+
+    public RowList(){
+        this.chunk = new Chunk(new Record[MIN_CAPACITY], 0);
+        this.size = 0;
+        this.exclusive = true;
+    }
+
+    public RowList(Collection<? extends Record> rows){
+        Record[] elements = rows.toArray(new Record[0]);
+        this.chunk = new Chunk(Arrays.copyOf(elements, Math.max(MIN_CAPACITY, elements.length)), elements.length);
+        this.size = elements.length;
+        this.exclusive = true;
+    }
+
+    private RowList(Chunk chunk, int size){
+        this.chunk = chunk;
+        this.size = size;
+        this.exclusive = false;
+    }
+
+    /**
+     * @return a list of the same rows that shares this list's array, for a new version of the table
+     */
+    public RowList copy(){
+        exclusive = false;
+        return new RowList(chunk, size);
+    }
+
+    @Override
+    public Record get(int index){
+        Objects.checkIndex(index, size);
+        return chunk.elements[index];
+    }
+
+    @Override
+    public int size(){
+        return size;
+    }
+
+    @Override
+    public Record set(int index, Record row){
+        Objects.checkIndex(index, size);
+        makeExclusive(0);
+        Record old = chunk.elements[index];
+        chunk.elements[index] = row;
+        return old;
+    }
+
+    @Override
+    public void add(int index, Record row){
+        Objects.checkIndex(index, size + 1);
+        modCount++;
+        if(index == size && chunk.claim(size)){
+            chunk.elements[size++] = row;
+            return;
+        }
+        makeExclusive(1);
+        System.arraycopy(chunk.elements, index, chunk.elements, index + 1, size - index);
+        chunk.elements[index] = row;
+        chunk.used = ++size;
+    }
+
+    @Override
+    public Record remove(int index){
+        Objects.checkIndex(index, size);
+        makeExclusive(0);
+        modCount++;
+        Record old = chunk.elements[index];
+        System.arraycopy(chunk.elements, index + 1, chunk.elements, index, size - index - 1);
+        chunk.elements[--size] = null;
+        chunk.used = size;
+        return old;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super Record> filter){
+        // one pass over the rows, rather than removing them one at a time
+        makeExclusive(0);
+        int kept = 0;
+        for(int row = 0; row < size; row++){
+            if(!filter.test(chunk.elements[row])){
+                chunk.elements[kept++] = chunk.elements[row];
+            }
+        }
+        if(kept == size){
+            return false;
+        }
+        modCount++;
+        Arrays.fill(chunk.elements, kept, size, null);
+        size = kept;
+        chunk.used = kept;
+        return true;
+    }
+
+    @Override
+    public void clear(){
+        modCount++;
+        chunk = new Chunk(new Record[MIN_CAPACITY], 0);
+        size = 0;
+        exclusive = true;
+    }
+
+    /**
+     * Copies the rows into an array of this list's own (if another version shares the array, or it hasn't room for
+     * the extra rows)
+     * @param extra
+     */
+    private void makeExclusive(int extra){
+        if(exclusive && size + extra <= chunk.elements.length){
+            return;
+        }
+        int capacity = Math.max(MIN_CAPACITY, Math.max(size + extra, size + (size >> 1)));
+        Record[] elements = new Record[capacity];
+        System.arraycopy(chunk.elements, 0, elements, 0, size);
+        chunk = new Chunk(elements, size);
+        exclusive = true;
+    }
+
+    /**
+     * An array of rows shared by versions of a table, each of which sees the rows before its own size
+     */
+    private static class Chunk {
+
+        private final Record[] elements;
+        // the number of slots handed out to versions
+        private int used;
+
+        private Chunk(Record[] elements, int used){
+            this.elements = elements;
+            this.used = used;
+        }
+
+        /**
+         * @param slot
+         * @return true if the slot is free (no version has appended into it) and was handed to the caller
+         */
+        private synchronized boolean claim(int slot){
+            if(slot != used || slot == elements.length){
+                return false;
+            }
+            used++;
+            return true;
+        }
+
+    }
+
+}
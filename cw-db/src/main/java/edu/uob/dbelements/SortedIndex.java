@@ -0,0 +1,240 @@
+package edu.uob.dbelements;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Index of a column (see CREATE INDEX) that holds the positions of a table's rows in order of their values in the
+ * column, so the rows in a range of values (or with a single value) are found by binary search rather than by testing
+ * every row. A numeric column is ordered by its parsed values and answers ==, <, >, <= and >= on a number, giving the
+ * same rows as the row-by-row comparisons (so NaN only equals NaN, and 0.0 neither equals nor is greater than -0.0).
+ * Any other column is ordered by its text and answers == on a string.
+ */
+public class SortedIndex {
+
+    private final int rowCount;
+    // positions of the rows, in order of their values
+    private final int[] rows;
+    // for a numeric column, the values as ints that order the same way as Float.compare (NaN last)
+    private final int[] keys;
+    // number of values that aren't NaN
+    private final int numberCount;
+    // for any other column, the values
+    private final String[] strings;
+
+    private SortedIndex(int rowCount, int[] rows, int[] keys, int numberCount, String[] strings){
+        this.rowCount = rowCount;
+        this.rows = rows;
+        this.keys = keys;
+        this.numberCount = numberCount;
+        this.strings = strings;
+    }
+
+    /**
+     * @param rows
+     * @param col
+     * @param column the column's parsed values
+     * @return the index, or null if the column can't be indexed (e.g., a row has no value for it)
+     */
+    public static SortedIndex build(List<Record> rows, int col, TypedColumn column){
+        if(column == null){
+            return null;
+        }
+        int rowCount = rows.size();
+        int[] order = new int[rowCount];
+        if(column.isNumeric()){
+            // sort (key, position) pairs packed into longs, so rows with equal values stay in table order
+            long[] packed = new long[rowCount];
+            for(int row = 0; row < rowCount; row++){
+                packed[row] = ((long) toKey(column.getNumber(row)) << 32) | row;
+            }
+            Arrays.sort(packed);
+            int[] keys = new int[rowCount];
+            int numberCount = 0;
+            for(int i = 0; i < rowCount; i++){
+                keys[i] = (int) (packed[i] >> 32);
+                order[i] = (int) packed[i];
+                if(!Float.isNaN(column.getNumber(order[i]))){
+                    numberCount++;
+                }
+            }
+            return new SortedIndex(rowCount, order, keys, numberCount, null);
+        }
+
+        String[] values = new String[rowCount];
+        Integer[] boxedOrder = new Integer[rowCount];
+        for(int row = 0; row < rowCount; row++){
+            values[row] = rows.get(row).getAttributes().get(col).getValue();
+            boxedOrder[row] = row;
+        }
+        Arrays.sort(boxedOrder, (a, b) -> values[a].compareTo(values[b]));
+        String[] strings = new String[rowCount];
+        for(int i = 0; i < rowCount; i++){
+            order[i] = boxedOrder[i];
+            strings[i] = values[order[i]];
+        }
+        return new SortedIndex(rowCount, order, null, 0, strings);
+    }
+
+    /**
+     * Extends the index with the rows appended to its table since it was built, sorting only the new rows and merging
+     * them into the order rather than sorting every row again
+     * @param rows the table's rows, the first of which are the rows the index was built for (unchanged and in the same
+     * positions)
+     * @param col
+     * @param column the column's parsed values
+     * @return the extended index, or null if it can't be extended (e.g., the column is no longer numeric)
+     */
+    public SortedIndex extend(List<Record> rows, int col, TypedColumn column){
+        if(column == null || column.isNumeric() != isNumeric() || rows.size() < rowCount){
+            return null;
+        }
+        int total = rows.size();
+        int added = total - rowCount;
+        if(added == 0){
+            return this;
+        }
+        int[] order = new int[total];
+        if(isNumeric()){
+            long[] packed = new long[added];
+            int addedNumbers = 0;
+            for(int i = 0; i < added; i++){
+                int row = rowCount + i;
+                packed[i] = ((long) toKey(column.getNumber(row)) << 32) | row;
+                if(!Float.isNaN(column.getNumber(row))){
+                    addedNumbers++;
+                }
+            }
+            Arrays.sort(packed);
+            int[] mergedKeys = new int[total];
+            // on equal values the rows already in the index come first, as they are earlier in the table
+            for(int i = 0, j = 0, k = 0; k < total; k++){
+                if(j == added || i < rowCount && keys[i] <= (int) (packed[j] >> 32)){
+                    mergedKeys[k] = keys[i];
+                    order[k] = this.rows[i++];
+                } else {
+                    mergedKeys[k] = (int) (packed[j] >> 32);
+                    order[k] = (int) packed[j++];
+                }
+            }
+            return new SortedIndex(total, order, mergedKeys, numberCount + addedNumbers, null);
+        }
+
+        String[] values = new String[added];
+        Integer[] boxedOrder = new Integer[added];
+        for(int i = 0; i < added; i++){
+            values[i] = rows.get(rowCount + i).getAttributes().get(col).getValue();
+            boxedOrder[i] = i;
+        }
+        Arrays.sort(boxedOrder, (a, b) -> values[a].compareTo(values[b]));
+        String[] mergedStrings = new String[total];
+        for(int i = 0, j = 0, k = 0; k < total; k++){
+            if(j == added || i < rowCount && strings[i].compareTo(values[boxedOrder[j]]) <= 0){
+                mergedStrings[k] = strings[i];
+                order[k] = this.rows[i++];
+            } else {
+                mergedStrings[k] = values[boxedOrder[j]];
+                order[k] = rowCount + boxedOrder[j++];
+            }
+        }
+        return new SortedIndex(total, order, null, 0, mergedStrings);
+    }
+
+    public boolean isNumeric(){
+        return keys != null;
+    }
+
+    public BitSet equalTo(float value){
+        int key = toKey(value);
+        return toRows(lowerBound(key), upperBound(key));
+    }
+
+    public BitSet greaterThan(float value){
+        if(Float.isNaN(value)){
+            return new BitSet(rowCount);
+        }
+        // nothing is greater than -0.0 that isn't also greater than 0.0
+        int start = upperBound(toKey(value == 0.0f ? 0.0f : value));
+        return toRows(Math.min(start, numberCount), numberCount);
+    }
+
+    public BitSet lessThan(float value){
+        if(Float.isNaN(value)){
+            return new BitSet(rowCount);
+        }
+        // likewise, nothing is less than 0.0 that isn't also less than -0.0
+        int end = lowerBound(toKey(value == 0.0f ? -0.0f : value));
+        return toRows(0, Math.min(end, numberCount));
+    }
+
+    public BitSet equalTo(String value){
+        int start = 0;
+        int end = strings.length;
+        while(start < end){
+            int mid = (start + end) >>> 1;
+            if(strings[mid].compareTo(value) < 0){
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        int first = start;
+        end = strings.length;
+        while(start < end){
+            int mid = (start + end) >>> 1;
+            if(strings[mid].compareTo(value) <= 0){
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return toRows(first, start);
+    }
+
+    private BitSet toRows(int start, int end){
+        BitSet matches = new BitSet(rowCount);
+        for(int i = start; i < end; i++){
+            matches.set(rows[i]);
+        }
+        return matches;
+    }
+
+    private int lowerBound(int key){
+        int start = 0;
+        int end = keys.length;
+        while(start < end){
+            int mid = (start + end) >>> 1;
+            if(keys[mid] < key){
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    private int upperBound(int key){
+        int start = 0;
+        int end = keys.length;
+        while(start < end){
+            int mid = (start + end) >>> 1;
+            if(keys[mid] <= key){
+                start = mid + 1;
+            } else {
+                end = mid;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Turns the float into an int that orders the same way as Float.compare, and is equal for equal floats (in the
+     * sense of Float.equals)
+     */
+    private static int toKey(float value){
+        int bits = Float.floatToIntBits(value);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+}
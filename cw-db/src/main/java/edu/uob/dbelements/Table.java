@@ -2,13 +2,31 @@ package edu.uob.dbelements;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
+import static edu.uob.dbfilesystem.DBFileConstants.BITMAP_INDEX_MAX_VALUES;
+
 public class Table {
 
     private TableHeader tableHeader;
     private List<ColumnHeader> colHeadings;
     private List<Record> rows;
+    // parsed copies of the columns and indexes of them, built as they are asked for
+    private TypedColumn[] typedColumns;
+    private IdIndex idIndex;
+    private SortedIndex[] sortedIndexes;
+    // sorted indexes of the version of the table this one was copied from, extended rather than rebuilt
+    private SortedIndex[] carriedIndexes;
+    private BitmapIndex[] bitmapIndexes;
+    // columns already found to have no parsed copy (or bitmap index), so they aren't looked at again
+    private BitSet untypedColumns;
+    private BitSet unindexedColumns;
+    // statistics of each zone of rows, kept in (and read from) the DB file
+    private ZoneMap[] zoneMaps;
+    private BloomFilter[] bloomFilters;
+    // the first row of each partition, followed by the number of rows, while the rows are grouped by partition
+    private int[] partitionStarts;
 
     public Table(){
         this.rows = new ArrayList<>();
@@ -22,6 +40,21 @@ public class Table {
 
     }
 
+    /**
+     * Copies the table so the copy can be changed without changing this table (e.g., one that other queries are
+     * reading). The rows themselves are shared, so a row is copied (see Record.copy) before it is changed, and so is
+     * the list of them (see RowList), so appending a row to the copy doesn't copy every row.
+     * @return
+     */
+    public Table copy(){
+        Table copy = new Table();
+        copy.tableHeader = tableHeader != null ? new TableHeader(tableHeader) : null;
+        copy.colHeadings = colHeadings != null ? new ArrayList<>(colHeadings) : null;
+        copy.rows = rows instanceof RowList ? ((RowList) rows).copy() : new RowList(rows);
+        copy.partitionStarts = partitionStarts != null ? partitionStarts.clone() : null;
+        return copy;
+    }
+
     public TableHeader getHeader() {
         return tableHeader;
     }
@@ -36,6 +69,7 @@ public class Table {
 
     public void setColHeadings(List<ColumnHeader> colHeadings) {
         this.colHeadings = colHeadings;
+        clearColumnCaches();
     }
 
     public List<Record> getRows() {
@@ -44,6 +78,274 @@ public class Table {
 
     public void setRows(List<Record> rows) {
         this.rows = rows;
+        clearColumnCaches();
+    }
+
+    /**
+     * Returns the column's values parsed into primitive storage, parsing them the first time the column is asked for.
+     * Only for tables that are no longer being changed (e.g., a version of a table held in the table cache), as the
+     * parsed values are kept and not updated if the rows change.
+     * @param col
+     * @return the column, or null if it can't be typed (e.g., a row has no value for it)
+     */
+    public synchronized TypedColumn getTypedColumn(int col){
+        if(colHeadings == null || col < 0 || col >= colHeadings.size()){
+            return null;
+        }
+        allocateColumnCaches();
+        if(typedColumns[col] == null && !untypedColumns.get(col)){
+            typedColumns[col] = TypedColumn.infer(rows, col);
+            untypedColumns.set(col, typedColumns[col] == null);
+        }
+        return typedColumns[col];
+    }
+
+    /**
+     * Returns the index of the table's id column, building it the first time it is asked for. As with
+     * getTypedColumn, only for tables that are no longer being changed.
+     * @return the index, or null if the table has no id column or an id isn't a number
+     */
+    public synchronized IdIndex getIdIndex(){
+        if(idIndex == null && colHeadings != null && !colHeadings.isEmpty()
+                && "id".equalsIgnoreCase(colHeadings.get(0).getColName())){
+            TypedColumn ids = getTypedColumn(0);
+            if(ids != null && ids.isNumeric()){
+                idIndex = new IdIndex(ids);
+            }
+        }
+        return idIndex;
+    }
+
+    /**
+     * Returns the sorted index of the column (see CREATE INDEX), building it (or extending the index carried over from
+     * the version of the table this one was copied from, see carrySortedIndexes) the first time it is asked for. As
+     * with getTypedColumn, only for tables that are no longer being changed.
+     * @param col
+     * @return the index, or null if the column can't be indexed
+     */
+    public synchronized SortedIndex getSortedIndex(int col){
+        TypedColumn column = getTypedColumn(col);
+        if(column == null){
+            return null;
+        }
+        if(sortedIndexes[col] == null){
+            if(carriedIndexes != null && carriedIndexes.length == colHeadings.size() && carriedIndexes[col] != null){
+                sortedIndexes[col] = carriedIndexes[col].extend(rows, col, column);
+                carriedIndexes[col] = null;
+            }
+            if(sortedIndexes[col] == null){
+                sortedIndexes[col] = SortedIndex.build(rows, col, column);
+            }
+        }
+        return sortedIndexes[col];
+    }
+
+    /**
+     * Returns the bitmap index of a column with few distinct values, building it the first time it is asked for. As
+     * with getTypedColumn, only for tables that are no longer being changed.
+     * @param col
+     * @return the index, or null if the column has too many distinct values (or a row has no value for it)
+     */
+    public synchronized BitmapIndex getBitmapIndex(int col){
+        if(colHeadings == null || col < 0 || col >= colHeadings.size()){
+            return null;
+        }
+        allocateColumnCaches();
+        if(bitmapIndexes[col] == null && !unindexedColumns.get(col)){
+            bitmapIndexes[col] = BitmapIndex.build(rows, col, BITMAP_INDEX_MAX_VALUES);
+            unindexedColumns.set(col, bitmapIndexes[col] == null);
+        }
+        return bitmapIndexes[col];
+    }
+
+    /**
+     * Returns the statistics of each zone of rows of the column (see ZoneMap), if the table was read from a DB file
+     * that keeps them. As with getTypedColumn, only for tables that are no longer being changed.
+     * @param col
+     * @return the zone map, or null if there isn't one (or rows have been added or removed since it was read)
+     */
+    public synchronized ZoneMap getZoneMap(int col){
+        if(zoneMaps == null || col < 0 || col >= zoneMaps.length || zoneMaps[col] == null
+                || zoneMaps[col].getRowCount() != rows.size()){
+            return null;
+        }
+        return zoneMaps[col];
+    }
+
+    /**
+     * Gives a column the zone map kept for it in the DB file the table was read from
+     * @param col
+     * @param zoneMap
+     */
+    public synchronized void setZoneMap(int col, ZoneMap zoneMap){
+        if(zoneMaps == null || zoneMaps.length != colHeadings.size()){
+            zoneMaps = new ZoneMap[colHeadings.size()];
+        }
+        zoneMaps[col] = zoneMap;
+    }
+
+    /**
+     * Returns the Bloom filters of each segment of rows of the column (see BloomFilter), if the table was read from a
+     * DB file that has them. As with getTypedColumn, only for tables that are no longer being changed.
+     * @param col
+     * @return the filters, or null if there aren't any (or rows have been added or removed since they were read)
+     */
+    public synchronized BloomFilter getBloomFilter(int col){
+        if(bloomFilters == null || col < 0 || col >= bloomFilters.length || bloomFilters[col] == null
+                || bloomFilters[col].getRowCount() != rows.size()){
+            return null;
+        }
+        return bloomFilters[col];
+    }
+
+    /**
+     * Gives a column the Bloom filters kept for it next to the DB file the table was read from
+     * @param col
+     * @param bloomFilter
+     */
+    public synchronized void setBloomFilter(int col, BloomFilter bloomFilter){
+        if(bloomFilters == null || bloomFilters.length != colHeadings.size()){
+            bloomFilters = new BloomFilter[colHeadings.size()];
+        }
+        bloomFilters[col] = bloomFilter;
+    }
+
+    /**
+     * Drops the zone maps and Bloom filters read from the table's DB file, before the table's rows or headings are
+     * changed in place (they are only checked against the number of rows, so would otherwise go on being used for rows
+     * or columns they no longer describe)
+     */
+    public synchronized void clearFileSummaries(){
+        zoneMaps = null;
+        bloomFilters = null;
+    }
+
+    /**
+     * Returns where each partition's rows start, for a table whose rows are spread over partitions (see
+     * TablePartitioning). The rows are read grouped by partition and kept that way as rows are added (see
+     * addToPartition); if they are no longer grouped (e.g., a row's key has been changed) there are no partition starts
+     * until the table is written out again. As with getTypedColumn, only for tables that are no longer being changed.
+     * @return the first row of each partition, followed by the number of rows, or null if the rows aren't grouped
+     */
+    public synchronized int[] getPartitionStarts(){
+        TablePartitioning partitioning = tableHeader != null ? tableHeader.getPartitioning() : null;
+        if(partitioning == null || partitioning.getPartitionCount() < 2){
+            return null;
+        }
+        if(partitionStarts == null || partitionStarts[partitionStarts.length - 1] != rows.size()){
+            // rows have been removed since the starts were worked out
+            partitionStarts = findPartitionStarts(partitioning);
+        }
+        return partitionStarts;
+    }
+
+    /**
+     * Sets where each partition's rows start, for rows that have just been grouped by partition
+     * @param partitionStarts the first row of each partition, followed by the number of rows
+     */
+    public synchronized void setPartitionStarts(int[] partitionStarts){
+        this.partitionStarts = partitionStarts;
+    }
+
+    /**
+     * Adds a row at the end of its partition's rows (or at the end of the table, if the rows aren't grouped by
+     * partition)
+     * @param record
+     * @param partition
+     */
+    public synchronized void addToPartition(Record record, int partition){
+        int[] starts = getPartitionStarts();
+        if(starts == null){
+            rows.add(record);
+            return;
+        }
+        rows.add(starts[partition + 1], record);
+        carriedIndexes = null;
+        for(int next = partition + 1; next < starts.length; next++){
+            starts[next]++;
+        }
+    }
+
+    private int[] findPartitionStarts(TablePartitioning partitioning){
+        int keyIndex = partitioning.getKeyIndex(colHeadings);
+        if(keyIndex < 0){
+            return null;
+        }
+        int[] starts = new int[partitioning.getPartitionCount() + 1];
+        int partition = 0;
+        for(int row = 0; row < rows.size(); row++){
+            int rowPartition = partitioning.partitionOf(rows.get(row), keyIndex);
+            if(rowPartition < partition){
+                return null;
+            }
+            while(partition < rowPartition){
+                starts[++partition] = row;
+            }
+        }
+        while(partition < starts.length - 1){
+            starts[++partition] = rows.size();
+        }
+        return starts;
+    }
+
+    /**
+     * Gives the table the id index of another version of the table whose rows have the same ids in the same
+     * positions (e.g., a copy in which only other columns have been changed), so it doesn't have to be rebuilt
+     * @param idIndex
+     */
+    public synchronized void setIdIndex(IdIndex idIndex){
+        this.idIndex = idIndex;
+    }
+
+    /**
+     * Gives the table the sorted indexes of the version of the table it was copied from, when rows have only been
+     * appended to the end of it since, so each is extended with the new rows rather than rebuilt
+     * @param previous
+     */
+    public synchronized void carrySortedIndexes(Table previous){
+        if(getPartitionStarts() != null){
+            // the rows were added to the end of their partitions, so rows after them have moved
+            return;
+        }
+        carriedIndexes = previous.getSortedIndexesToCarry();
+    }
+
+    private synchronized SortedIndex[] getSortedIndexesToCarry(){
+        if(colHeadings == null){
+            return null;
+        }
+        SortedIndex[] indexes = new SortedIndex[colHeadings.size()];
+        for(int col = 0; col < indexes.length; col++){
+            if(sortedIndexes != null && col < sortedIndexes.length && sortedIndexes[col] != null){
+                indexes[col] = sortedIndexes[col];
+            } else if(carriedIndexes != null && col < carriedIndexes.length){
+                indexes[col] = carriedIndexes[col];
+            }
+        }
+        return indexes;
+    }
+
+    private void allocateColumnCaches(){
+        if(typedColumns == null || typedColumns.length != colHeadings.size()){
+            typedColumns = new TypedColumn[colHeadings.size()];
+            sortedIndexes = new SortedIndex[colHeadings.size()];
+            bitmapIndexes = new BitmapIndex[colHeadings.size()];
+            untypedColumns = new BitSet();
+            unindexedColumns = new BitSet();
+        }
+    }
+
+    private void clearColumnCaches(){
+        typedColumns = null;
+        idIndex = null;
+        sortedIndexes = null;
+        carriedIndexes = null;
+        bitmapIndexes = null;
+        untypedColumns = null;
+        unindexedColumns = null;
+        zoneMaps = null;
+        bloomFilters = null;
+        partitionStarts = null;
     }
 
     @Override
@@ -1,16 +1,31 @@
 package edu.uob.dbelements;
 
+import edu.uob.dbfilesystem.TableFormat;
+
 import java.io.File;
 
 public class TableHeader {
 
     private String tableName;
     private File fileLocation;
+    // Length of the DB file when it was last read or written, i.e., where the next appended row will start
+    private long tailOffset;
+    private TableFormat format = TableFormat.TAB;
+    // How the rows are spread over the table's DB files, or null if they are all in one
+    private TablePartitioning partitioning;
 
     public TableHeader(){
         super();
     }
 
+    public TableHeader(TableHeader other){
+        this.tableName = other.tableName;
+        this.fileLocation = other.fileLocation;
+        this.tailOffset = other.tailOffset;
+        this.format = other.format;
+        this.partitioning = other.partitioning;
+    }
+
     public String getTableName() {
         return tableName;
     }
@@ -27,4 +42,28 @@ public class TableHeader {
         this.fileLocation = fileLocation;
     }
 
+    public long getTailOffset() {
+        return tailOffset;
+    }
+
+    public void setTailOffset(long tailOffset) {
+        this.tailOffset = tailOffset;
+    }
+
+    public TableFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(TableFormat format) {
+        this.format = format;
+    }
+
+    public TablePartitioning getPartitioning() {
+        return partitioning;
+    }
+
+    public void setPartitioning(TablePartitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+
 }
@@ -0,0 +1,79 @@
+package edu.uob.dbelements;
+
+import java.util.List;
+
+/**
+ * How the rows of a table created with PARTITIONS n are spread over its DB files: each row is in the partition its
+ * key column's value hashes to (see PartitionedTableFile). The hash follows the way equality conditions compare
+ * values, so every row a condition "key == value" can match is in the same partition as the value: a value that is a
+ * number (as Float.valueOf reads it) is hashed as its float, so "5" and "5.0" are in the same partition, and any other
+ * value is hashed as it is.
+ */
+public class TablePartitioning {
+
+    private final int partitionCount;
+    private final String keyColumn;
+
+    public TablePartitioning(int partitionCount, String keyColumn){
+        this.partitionCount = partitionCount;
+        this.keyColumn = keyColumn;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * @param colHeadings
+     * @return the index of the key column among the headings, or -1 if it isn't one of them
+     */
+    public int getKeyIndex(List<ColumnHeader> colHeadings){
+        return colHeadings != null ? colHeadings.indexOf(new ColumnHeader(keyColumn)) : -1;
+    }
+
+    /**
+     * @param row
+     * @param keyIndex
+     * @return the partition the row belongs in
+     */
+    public int partitionOf(Record row, int keyIndex){
+        List<Attribute> attributes = row.getAttributes();
+        return partitionOf(keyIndex < attributes.size() ? attributes.get(keyIndex).getValue() : null);
+    }
+
+    /**
+     * @param value a value of the key column, or null if the row has none (which puts it in the first partition)
+     * @return the partition rows with the value belong in
+     */
+    public int partitionOf(String value){
+        if(value == null){
+            return 0;
+        }
+        Float number = parseNumber(value);
+        // Float.equals, as conditions compare numbers with, tells values apart by their bits
+        int hash = number != null ? Float.floatToIntBits(number) : value.hashCode();
+        // spread the bits, so keys that differ only in their high bits don't all fall in the same partition
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, partitionCount);
+    }
+
+    private static Float parseNumber(String value){
+        // most values that aren't numbers are words, which can be turned away without the cost of an exception
+        char first = value.isEmpty() ? ' ' : value.charAt(0);
+        if(Character.isLetter(first) && first != 'N' && first != 'I'){
+            return null;
+        }
+        try {
+            return Float.valueOf(value);
+        } catch(NumberFormatException nfe){
+            return null;
+        }
+    }
+
+}
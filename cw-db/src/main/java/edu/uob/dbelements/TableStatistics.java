@@ -0,0 +1,129 @@
+package edu.uob.dbelements;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of a table (see ANALYZE): its number of rows and the statistics of each of its columns, in column order.
+ * They are collected from the whole table and then kept up to date as rows are written, and count how many rows have
+ * been written since they were collected, which shows how far the table may have drifted from what was collected.
+ */
+public class TableStatistics {
+
+    private long rowCount;
+    private long modifiedRows;
+    private final List<String> attributes;
+    private final List<ColumnStatistics> columns;
+
+    public TableStatistics(long rowCount, long modifiedRows, List<String> attributes, List<ColumnStatistics> columns){
+        this.rowCount = rowCount;
+        this.modifiedRows = modifiedRows;
+        this.attributes = new ArrayList<>(attributes);
+        this.columns = new ArrayList<>(columns);
+    }
+
+    /**
+     * Collects the statistics of every column of the table
+     * @param table
+     * @return
+     */
+    public static TableStatistics collect(Table table){
+        List<String> attributes = new ArrayList<>();
+        List<ColumnStatistics> columns = new ArrayList<>();
+        for(int col = 0; col < table.getColHeadings().size(); col++){
+            attributes.add(table.getColHeadings().get(col).getColName());
+            columns.add(ColumnStatistics.collect(table.getRows(), col));
+        }
+        return new TableStatistics(table.getRows().size(), 0, attributes, columns);
+    }
+
+    public void addRow(Record row){
+        for(int col = 0; col < columns.size(); col++){
+            columns.get(col).add(getValue(row, col));
+        }
+        rowCount++;
+        modifiedRows++;
+    }
+
+    public void removeRow(Record row){
+        for(int col = 0; col < columns.size(); col++){
+            columns.get(col).remove(getValue(row, col));
+        }
+        rowCount = Math.max(rowCount - 1, 0);
+        modifiedRows++;
+    }
+
+    public void updateRow(Record oldRow, Record newRow){
+        for(int col = 0; col < columns.size(); col++){
+            String oldValue = getValue(oldRow, col);
+            String newValue = getValue(newRow, col);
+            if(oldValue == null ? newValue != null : !oldValue.equals(newValue)){
+                columns.get(col).remove(oldValue);
+                columns.get(col).add(newValue);
+            }
+        }
+        modifiedRows++;
+    }
+
+    /**
+     * Adds the statistics of a new (last) attribute of the table
+     * @param attribute
+     * @param column
+     */
+    public void addAttribute(String attribute, ColumnStatistics column){
+        attributes.add(attribute);
+        columns.add(column);
+    }
+
+    public void removeAttribute(String attribute){
+        int col = getAttributeIndex(attribute);
+        if(col >= 0){
+            attributes.remove(col);
+            columns.remove(col);
+        }
+    }
+
+    public TableStatistics copy(){
+        List<ColumnStatistics> copiedColumns = new ArrayList<>();
+        for(ColumnStatistics column : columns){
+            copiedColumns.add(column.copy());
+        }
+        return new TableStatistics(rowCount, modifiedRows, attributes, copiedColumns);
+    }
+
+    public long getRowCount(){
+        return rowCount;
+    }
+
+    public long getModifiedRows(){
+        return modifiedRows;
+    }
+
+    public List<String> getAttributes(){
+        return new ArrayList<>(attributes);
+    }
+
+    /**
+     * @param attribute
+     * @return the attribute's statistics (matched ignoring case), or null if there are none
+     */
+    public ColumnStatistics getColumn(String attribute){
+        int col = getAttributeIndex(attribute);
+        return col >= 0 ? columns.get(col) : null;
+    }
+
+    private int getAttributeIndex(String attribute){
+        for(int col = 0; col < attributes.size(); col++){
+            if(attributes.get(col).equalsIgnoreCase(attribute)){
+                return col;
+            }
+        }
+        return -1;
+    }
+
+    private static String getValue(Record row, int col){
+        List<Attribute> values = row.getAttributes();
+        return col < values.size() ? values.get(col).getValue() : null;
+    }
+
+}
@@ -0,0 +1,160 @@
+package edu.uob.dbelements;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of one column of a table, parsed once into primitive storage so conditions on the column can be tested a
+ * column at a time rather than parsing each value for each comparison. Numeric columns are held as floats (the same
+ * precision conditions have always compared at) and boolean columns as a bitset of the rows that are true.
+ */
+public class TypedColumn {
+
+    private final ValueType type;
+    private final int rowCount;
+    private final float[] numbers;
+    private final BitSet trueValues;
+
+    private TypedColumn(ValueType type, int rowCount, float[] numbers, BitSet trueValues){
+        this.type = type;
+        this.rowCount = rowCount;
+        this.numbers = numbers;
+        this.trueValues = trueValues;
+    }
+
+    /**
+     * Works out the column's type from its values: INT or FLOAT if every value is a number, BOOL if every value is
+     * true or false, otherwise STRING (which has no primitive storage)
+     * @param rows
+     * @param col
+     * @return the column, or null if some row has no value for it
+     */
+    public static TypedColumn infer(List<Record> rows, int col){
+        int rowCount = rows.size();
+        float[] numbers = new float[rowCount];
+        boolean integral = true;
+        // a value held in a column dictionary is only parsed once
+        Map<Attribute, Float> parsedEntries = new IdentityHashMap<>();
+
+        for(int row = 0; row < rowCount; row++){
+            List<Attribute> attributes = rows.get(row).getAttributes();
+            if(col >= attributes.size() || attributes.get(col).getValue() == null){
+                return null;
+            }
+            Attribute attribute = attributes.get(col);
+            Float parsed = attribute instanceof ColumnDictionary.Entry ? parsedEntries.get(attribute) : null;
+            if(parsed == null){
+                try {
+                    parsed = Float.parseFloat(attribute.getValue());
+                } catch(NumberFormatException nfe){
+                    return inferBoolean(rows, col);
+                }
+                integral = integral && isInteger(attribute.getValue());
+                if(attribute instanceof ColumnDictionary.Entry){
+                    parsedEntries.put(attribute, parsed);
+                }
+            }
+            numbers[row] = parsed;
+        }
+        return new TypedColumn(integral ? ValueType.INT : ValueType.FLOAT, rowCount, numbers, null);
+    }
+
+    private static TypedColumn inferBoolean(List<Record> rows, int col){
+        BitSet trueValues = new BitSet(rows.size());
+        for(int row = 0; row < rows.size(); row++){
+            String value = rows.get(row).getAttributes().get(col).getValue();
+            if(Boolean.parseBoolean(value)){
+                trueValues.set(row);
+            } else if(!"false".equalsIgnoreCase(value)){
+                return new TypedColumn(ValueType.STRING, rows.size(), null, null);
+            }
+        }
+        return new TypedColumn(ValueType.BOOL, rows.size(), null, trueValues);
+    }
+
+    private static boolean isInteger(String value){
+        int start = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+        if(start == value.length()){
+            return false;
+        }
+        for(int i = start; i < value.length(); i++){
+            if(!Character.isDigit(value.charAt(i))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public ValueType getType(){
+        return type;
+    }
+
+    public boolean isNumeric(){
+        return numbers != null;
+    }
+
+    public int size(){
+        return rowCount;
+    }
+
+    /**
+     * @param row
+     * @return the row's value in a numeric column
+     */
+    public float getNumber(int row){
+        return numbers[row];
+    }
+
+    public BitSet equalTo(float value){
+        // the same test as Float.equals, so NaN equals NaN and 0.0 doesn't equal -0.0
+        int bits = Float.floatToIntBits(value);
+        BitSet matches = new BitSet(rowCount);
+        for(int row = 0; row < rowCount; row++){
+            if(Float.floatToIntBits(numbers[row]) == bits){
+                matches.set(row);
+            }
+        }
+        return matches;
+    }
+
+    public BitSet notEqualTo(float value){
+        BitSet matches = equalTo(value);
+        matches.flip(0, rowCount);
+        return matches;
+    }
+
+    public BitSet greaterThan(float value){
+        BitSet matches = new BitSet(rowCount);
+        for(int row = 0; row < rowCount; row++){
+            if(numbers[row] > value){
+                matches.set(row);
+            }
+        }
+        return matches;
+    }
+
+    public BitSet lessThan(float value){
+        BitSet matches = new BitSet(rowCount);
+        for(int row = 0; row < rowCount; row++){
+            if(numbers[row] < value){
+                matches.set(row);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * @param value
+     * @return the rows of a BOOL column that hold the value
+     */
+    public BitSet booleanEqualTo(boolean value){
+        BitSet matches = (BitSet) trueValues.clone();
+        if(!value){
+            matches.flip(0, rowCount);
+        }
+        return matches;
+    }
+
+}
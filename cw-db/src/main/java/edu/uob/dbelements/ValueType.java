@@ -0,0 +1,8 @@
+package edu.uob.dbelements;
+
+public enum ValueType {
+    INT,
+    FLOAT,
+    BOOL,
+    STRING
+}
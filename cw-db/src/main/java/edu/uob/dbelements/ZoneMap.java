@@ -0,0 +1,170 @@
+package edu.uob.dbelements;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Statistics for each zone (fixed-size block of rows) of one column: the smallest and largest of its numeric values,
+ * and how many of its rows have no numeric value (no value at all, or one that isn't a number). A condition comparing
+ * the column with a number can't match any row of a zone whose values are all numbers and whose range rules the
+ * number out, so the zone can be skipped without looking at its rows. Values are compared as floats, the same as
+ * conditions compare them, and ordered as Float.compare orders them (so -0.0 is below 0.0, and NaN above everything).
+ */
+public class ZoneMap {
+
+    // the first row of each zone, followed by the number of rows
+    private final int[] zoneStarts;
+    private final float[] mins;
+    private final float[] maxes;
+    private final int[] nullCounts;
+
+    /**
+     * @param zoneStarts the first row of each zone, followed by the number of rows
+     * @param mins
+     * @param maxes
+     * @param nullCounts
+     */
+    public ZoneMap(int[] zoneStarts, float[] mins, float[] maxes, int[] nullCounts){
+        this.zoneStarts = zoneStarts;
+        this.mins = mins;
+        this.maxes = maxes;
+        this.nullCounts = nullCounts;
+    }
+
+    /**
+     * Works out the statistics of the column for zones of zoneRows rows
+     * @param rows
+     * @param col
+     * @param zoneRows
+     * @return
+     */
+    public static ZoneMap build(List<Record> rows, int col, int zoneRows){
+        int zoneCount = (rows.size() + zoneRows - 1) / zoneRows;
+        int[] zoneStarts = new int[zoneCount + 1];
+        float[] mins = new float[zoneCount];
+        float[] maxes = new float[zoneCount];
+        int[] nullCounts = new int[zoneCount];
+        for(int zone = 0; zone < zoneCount; zone++){
+            zoneStarts[zone] = zone * zoneRows;
+            mins[zone] = Float.NaN;
+            maxes[zone] = Float.NEGATIVE_INFINITY;
+            int end = Math.min(rows.size(), (zone + 1) * zoneRows);
+            for(int row = zone * zoneRows; row < end; row++){
+                List<Attribute> attributes = rows.get(row).getAttributes();
+                Float number = col < attributes.size() ? parseNumber(attributes.get(col).getValue()) : null;
+                if(number == null){
+                    nullCounts[zone]++;
+                    continue;
+                }
+                if(Float.compare(number, mins[zone]) < 0){
+                    mins[zone] = number;
+                }
+                if(Float.compare(number, maxes[zone]) > 0){
+                    maxes[zone] = number;
+                }
+            }
+        }
+        zoneStarts[zoneCount] = rows.size();
+        return new ZoneMap(zoneStarts, mins, maxes, nullCounts);
+    }
+
+    /**
+     * Parses the value the same way conditions do
+     * @param value
+     * @return the number, or null if the value isn't one
+     */
+    private static Float parseNumber(String value){
+        if(value == null || value.isEmpty()){
+            return null;
+        }
+        // most values that aren't numbers are words, which can be turned away without the cost of an exception
+        char first = value.charAt(0);
+        if(Character.isLetter(first) && first != 'N' && first != 'I'){
+            return null;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch(NumberFormatException nfe){
+            return null;
+        }
+    }
+
+    /**
+     * Moves the zones onto a table that leaves out some of the rows they were worked out for (e.g., deleted rows).
+     * The statistics still hold, as each zone can only have lost values.
+     * @param zoneStarts the first row of each zone in the table, followed by the table's number of rows
+     * @return
+     */
+    public ZoneMap withZoneStarts(int[] zoneStarts){
+        return new ZoneMap(zoneStarts, mins, maxes, nullCounts);
+    }
+
+    public int getZoneCount(){
+        return mins.length;
+    }
+
+    public int getZoneStart(int zone){
+        return zoneStarts[zone];
+    }
+
+    public int getRowCount(){
+        return zoneStarts[mins.length];
+    }
+
+    public float getMin(int zone){
+        return mins[zone];
+    }
+
+    public float getMax(int zone){
+        return maxes[zone];
+    }
+
+    public int getNullCount(int zone){
+        return nullCounts[zone];
+    }
+
+    /**
+     * @param number
+     * @return the rows of the zones that may hold a value equal to the number
+     */
+    public BitSet mayEqual(float number){
+        BitSet rows = new BitSet(getRowCount());
+        for(int zone = 0; zone < mins.length; zone++){
+            if(nullCounts[zone] > 0 || (Float.compare(number, mins[zone]) >= 0 && Float.compare(number, maxes[zone]) <= 0)){
+                rows.set(zoneStarts[zone], zoneStarts[zone + 1]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param number
+     * @return the rows of the zones that may hold a value greater than the number
+     */
+    public BitSet mayBeGreaterThan(float number){
+        BitSet rows = new BitSet(getRowCount());
+        for(int zone = 0; zone < mins.length; zone++){
+            // a NaN maximum says nothing about the zone's other values
+            if(nullCounts[zone] > 0 || Float.isNaN(maxes[zone]) || maxes[zone] > number){
+                rows.set(zoneStarts[zone], zoneStarts[zone + 1]);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @param number
+     * @return the rows of the zones that may hold a value less than the number
+     */
+    public BitSet mayBeLessThan(float number){
+        BitSet rows = new BitSet(getRowCount());
+        for(int zone = 0; zone < mins.length; zone++){
+            // the minimum is only NaN if every value is, and NaN is never less than anything
+            if(nullCounts[zone] > 0 || mins[zone] < number){
+                rows.set(zoneStarts[zone], zoneStarts[zone + 1]);
+            }
+        }
+        return rows;
+    }
+
+}
@@ -0,0 +1,182 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.BloomFilter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.IntUnaryOperator;
+import java.util.zip.CRC32;
+
+import static edu.uob.dbfilesystem.DBFileConstants.BLOOM_FILTER_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.BLOOM_FILTER_SEGMENT_ROWS;
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * Sidecar file (<table>.blm) holding the Bloom filters of each column of the table's DB file (see BloomFilter), for
+ * the rows the file had when it was last written out in full: <version, file key, columns, rows, segment rows>, then
+ * for each column and segment its flags, number of words and words, and lastly a checksum of all that. Rows appended
+ * after that aren't in the filters, and rows deleted after it are still in them, which only means more rows are looked
+ * at.
+ * <p>
+ * The sidecar is removed before the DB file is replaced and written again after, and records the file key (i.e., the
+ * inode) of the DB file it was written for, so a reader that opened the file before it was replaced never takes the
+ * new file's filters for its own. It isn't forced to disk: one that doesn't match its checksum is ignored, and the
+ * filters are written again the next time the table is.
+ */
+public class BloomFilterFile {
+
+    private static final int VERSION = 1;
+
+    private BloomFilterFile(){
+
+    }
+
+    public static File getFile(File dbFile){
+        String path = dbFile.getPath();
+        if(path.endsWith(TABLE_EXT)){
+            path = path.substring(0, path.length() - TABLE_EXT.length());
+        }
+        return new File(path + BLOOM_FILTER_EXT);
+    }
+
+    /**
+     * Writes the filters of the table's columns into its sidecar
+     * @param dbFile
+     * @param filters the filters, all built for the same rows in segments of BLOOM_FILTER_SEGMENT_ROWS rows
+     * @throws IOException
+     */
+    public static void write(File dbFile, BloomFilter[] filters) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            out.writeInt(VERSION);
+            out.writeUTF(String.valueOf(getFileKey(dbFile)));
+            out.writeInt(filters.length);
+            out.writeInt(filters.length > 0 ? filters[0].getRowCount() : 0);
+            out.writeInt(BLOOM_FILTER_SEGMENT_ROWS);
+            for(BloomFilter filter : filters){
+                out.writeInt(filter.getSegmentCount());
+                for(int segment = 0; segment < filter.getSegmentCount(); segment++){
+                    long[] words = filter.getBits(segment);
+                    out.writeByte(filter.getFlags(segment));
+                    out.writeInt(words.length);
+                    for(long word : words){
+                        out.writeLong(word);
+                    }
+                }
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes.toByteArray());
+            out.writeLong(checksum.getValue());
+        }
+        File tempFile = new File(getFile(dbFile).getPath() + TEMP_FILE_EXT);
+        try {
+            Files.write(tempFile.toPath(), bytes.toByteArray());
+            DBTableFile.replaceFile(tempFile, getFile(dbFile));
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * @param dbFile
+     * @return what tells the DB file apart from any other file that has been or will be at its path, or null if the
+     * file system doesn't say (in which case the filters aren't used)
+     */
+    public static String getFileKey(File dbFile){
+        try {
+            Object fileKey = Files.readAttributes(dbFile.toPath(), BasicFileAttributes.class).fileKey();
+            return fileKey != null ? fileKey.toString() : null;
+        } catch(IOException ioe){
+            return null;
+        }
+    }
+
+    /**
+     * Reads the filters of the table's columns
+     * @param dbFile
+     * @param fileKey the key (see getFileKey) of the DB file the table was read from, taken before it was opened
+     * @param columnCount the number of columns the table has
+     * @param rowCount the number of rows in the DB file (deleted rows included)
+     * @return the filters, covering all rowCount rows, or null if there are none for the file as it is
+     */
+    public static BloomFilter[] read(File dbFile, String fileKey, int columnCount, int rowCount){
+        File file = getFile(dbFile);
+        if(fileKey == null || !file.exists()){
+            return null;
+        }
+        try {
+            byte[] contents = Files.readAllBytes(file.toPath());
+            if(contents.length < Long.BYTES){
+                return null;
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(contents, 0, contents.length - Long.BYTES);
+            if(checksum.getValue() != ByteBuffer.wrap(contents, contents.length - Long.BYTES, Long.BYTES).getLong()){
+                return null;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(contents));
+            int filterRows;
+            int segmentRows;
+            if(in.readInt() != VERSION || !fileKey.equals(in.readUTF()) || in.readInt() != columnCount
+                    || (filterRows = in.readInt()) > rowCount || (segmentRows = in.readInt()) <= 0){
+                return null;
+            }
+            BloomFilter[] filters = new BloomFilter[columnCount];
+            for(int col = 0; col < columnCount; col++){
+                int segmentCount = in.readInt();
+                if(segmentCount != (filterRows + segmentRows - 1) / segmentRows){
+                    return null;
+                }
+                int[] segmentStarts = new int[segmentCount + 1];
+                long[][] bits = new long[segmentCount][];
+                byte[] flags = new byte[segmentCount];
+                for(int segment = 0; segment < segmentCount; segment++){
+                    segmentStarts[segment] = segment * segmentRows;
+                    flags[segment] = in.readByte();
+                    bits[segment] = new long[in.readInt()];
+                    for(int word = 0; word < bits[segment].length; word++){
+                        bits[segment][word] = in.readLong();
+                    }
+                }
+                segmentStarts[segmentCount] = filterRows;
+                filters[col] = new BloomFilter(segmentStarts, bits, flags).withRowCount(rowCount);
+            }
+            return filters;
+        } catch(IOException | RuntimeException e){
+            // includes a sidecar cut short; the rows are just looked at without its filters
+            return null;
+        }
+    }
+
+    /**
+     * Works out where each segment starts among the rows that are left once deleted rows are left out
+     * @param filter
+     * @param liveRows the row of the DB file that each row left is, in order
+     * @param liveCount the number of rows left
+     * @return
+     */
+    public static int[] findLiveSegmentStarts(BloomFilter filter, IntUnaryOperator liveRows, int liveCount){
+        int[] segmentStarts = new int[filter.getSegmentCount() + 1];
+        int liveRow = 0;
+        for(int segment = 0; segment < filter.getSegmentCount(); segment++){
+            while(liveRow < liveCount && liveRows.applyAsInt(liveRow) < filter.getSegmentStart(segment)){
+                liveRow++;
+            }
+            segmentStarts[segment] = liveRow;
+        }
+        segmentStarts[filter.getSegmentCount()] = liveCount;
+        return segmentStarts;
+    }
+
+    /**
+     * Removes the sidecar, before the table's DB file is replaced (or dropped)
+     * @param dbFile
+     */
+    public static void clear(File dbFile){
+        getFile(dbFile).delete();
+    }
+
+}
@@ -0,0 +1,7 @@
+package edu.uob.dbfilesystem;
+
+public enum ColumnType {
+    STRING,
+    INTEGER,
+    DICTIONARY
+}
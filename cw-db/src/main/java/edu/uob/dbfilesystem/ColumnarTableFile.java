@@ -0,0 +1,486 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnDictionary;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.ZoneMap;
+import edu.uob.exceptions.DBException;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static edu.uob.dbfilesystem.DBFileConstants.COLUMNAR_MAGIC;
+import static edu.uob.dbfilesystem.DBFileConstants.COLUMNAR_VERSION;
+import static edu.uob.dbfilesystem.DBFileConstants.DICTIONARY_MAX_ENTRIES;
+import static edu.uob.dbfilesystem.DBFileConstants.ZONE_MAP_ROWS;
+
+/**
+ * Reads and writes tables in the binary columnar format. The file is laid out as:
+ *
+ *   magic, version
+ *   one block per column: type, row count, payload length, payload
+ *   footer: column count, row count, rows per zone, then for each column its name, type, block offset, block length
+ *           and zone map (zone count, then the minimum, maximum and null count of each zone)
+ *   trailer: footer offset, magic
+ *
+ * A column whose values are all canonical integers is stored as 8-byte longs. A column with few distinct values (at
+ * most one for every two rows) is stored as a dictionary: the distinct values, then a code (the value's position in
+ * the dictionary) per row. Anything else is stored as length-prefixed UTF-8 strings. In both of the latter a length or
+ * code of -1 means the row has no value for that column. Because the footer says where each block is, a query can
+ * read just the columns it needs. Files written before zone maps were kept (version 2) have no rows per zone or zone
+ * maps in their footer, and are read without them.
+ *
+ * When a table is read, the values of each column other than the id are held in a ColumnDictionary, so a value that
+ * is repeated down a column is only held in memory once. A large table can instead be mapped, leaving its column
+ * blocks off the heap (see OffHeapColumnStore).
+ */
+public class ColumnarTableFile {
+
+    private static final byte[] MAGIC = COLUMNAR_MAGIC.getBytes(StandardCharsets.US_ASCII);
+    /* default */ static final int BLOCK_HEADER_BYTES = 1 + 4 + 4;
+    private static final int TRAILER_BYTES = 8 + MAGIC.length;
+    /* default */ static final int NO_VALUE = -1;
+    // the first version of the format whose footer has zone maps
+    private static final int ZONE_MAP_VERSION = 3;
+
+    /**
+     * Checks whether the file starts with the columnar magic number (a tab-separated file never does)
+     * @param dbFile
+     * @return
+     */
+    public static boolean isColumnarFile(File dbFile){
+        if(dbFile == null || dbFile.length() < MAGIC.length){
+            return false;
+        }
+        try(FileInputStream in = new FileInputStream(dbFile)){
+            byte[] start = in.readNBytes(MAGIC.length);
+            return Arrays.equals(MAGIC, start);
+        } catch(IOException ioe){
+            return false;
+        }
+    }
+
+    /* default */ Table readFileIntoEntity(File dbFile, String tableName) throws IOException, DBException {
+        try(FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)){
+            Footer footer = readFooter(channel);
+            List<Integer> allColumns = new ArrayList<>();
+            for(int i = 0; i < footer.columns.size(); i++){
+                allColumns.add(i);
+            }
+            return buildTable(channel, footer, allColumns, dbFile, tableName);
+        }
+    }
+
+    /**
+     * Maps the file's column blocks into an off-heap column store rather than reading them onto the heap. Each block
+     * is mapped on its own, so the file as a whole may be bigger than a single mapping can cover.
+     * @param dbFile
+     * @param tableName
+     * @param deletedIds the ids of rows to leave out of the table
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ Table mapIntoEntity(File dbFile, String tableName, Set<String> deletedIds)
+            throws IOException, DBException {
+        // taken before the file is opened, so a file swapped in after that isn't taken for the one mapped
+        String fileKey = BloomFilterFile.getFileKey(dbFile);
+        try(FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)){
+            Footer footer = readFooter(channel);
+            OffHeapColumnStore store = new OffHeapColumnStore(footer.rowCount);
+            for(BlockIndex column : footer.columns){
+                if(column.offset + column.length > channel.size() || column.length < BLOCK_HEADER_BYTES){
+                    throw new DBException("Unable to read column from DB file: " + column.name);
+                }
+                // the mapping stays valid after the channel is closed
+                ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, column.offset, column.length);
+                if(block.get(0) != column.type.ordinal() || block.getInt(1) != footer.rowCount
+                        || block.getInt(5) != column.length - BLOCK_HEADER_BYTES){
+                    throw new DBException("Unable to read column from DB file: " + column.name);
+                }
+                store.addColumn(column.name, column.type, block, column.zoneMap);
+            }
+            store.setBloomFilters(BloomFilterFile.read(dbFile, fileKey, footer.columns.size(), footer.rowCount));
+            Table table = store.asTable(tableName, dbFile, deletedIds);
+            table.getHeader().setTailOffset(channel.size());
+            return table;
+        }
+    }
+
+    /**
+     * Reads only the named columns (matched ignoring case) from the file, in file order. Returns null if any of the
+     * names is not a column of the table, so the caller can fall back to reading the whole table.
+     * @param dbFile
+     * @param tableName
+     * @param columnNames
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ Table readColumnsIntoEntity(File dbFile, String tableName, Collection<String> columnNames)
+            throws IOException, DBException {
+        try(FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)){
+            Footer footer = readFooter(channel);
+            List<Integer> selected = new ArrayList<>();
+            for(int i = 0; i < footer.columns.size(); i++){
+                if(containsIgnoreCase(columnNames, footer.columns.get(i).name)){
+                    selected.add(i);
+                }
+            }
+            for(String columnName : columnNames){
+                if(!footer.containsColumn(columnName)){
+                    return null;
+                }
+            }
+            return buildTable(channel, footer, selected, dbFile, tableName);
+        }
+    }
+
+    /* default */ void writeEntityIntoFile(Table table, File dbFile) throws IOException, DBException {
+        int columnCount = table.getColHeadings().size();
+        List<Record> rows = new ArrayList<>();
+        for(Record rec : table.getRows()){
+            if(rec.getAttributes() == null || rec.getAttributes().size() > columnCount){
+                throw new DBException("Unable to store rows in DB file");
+            }
+            // rows without any data are skipped, in line with the tab-separated format
+            if(rec.getAttributes().size() > 0){
+                rows.add(rec);
+            }
+        }
+
+        try(FileOutputStream fos = new FileOutputStream(dbFile, false);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))){
+
+            out.write(MAGIC);
+            out.writeInt(COLUMNAR_VERSION);
+            long position = MAGIC.length + 4;
+
+            List<BlockIndex> columns = new ArrayList<>();
+            for(int col = 0; col < columnCount; col++){
+                ColumnType type = chooseColumnType(rows, col);
+                byte[] payload = encodeColumn(rows, col, type);
+                out.writeByte(type.ordinal());
+                out.writeInt(rows.size());
+                out.writeInt(payload.length);
+                out.write(payload);
+
+                String name = table.getColHeadings().get(col).getColName();
+                int blockLength = BLOCK_HEADER_BYTES + payload.length;
+                columns.add(new BlockIndex(name, type, position, blockLength, ZoneMap.build(rows, col, ZONE_MAP_ROWS)));
+                position += blockLength;
+            }
+
+            out.writeInt(columns.size());
+            out.writeInt(rows.size());
+            out.writeInt(ZONE_MAP_ROWS);
+            for(BlockIndex column : columns){
+                out.writeUTF(column.name);
+                out.writeByte(column.type.ordinal());
+                out.writeLong(column.offset);
+                out.writeInt(column.length);
+                writeZoneMap(column.zoneMap, out);
+            }
+            out.writeLong(position);
+            out.write(MAGIC);
+            out.flush();
+            fos.getChannel().force(true);
+        }
+    }
+
+    private void writeZoneMap(ZoneMap zoneMap, DataOutputStream out) throws IOException {
+        out.writeInt(zoneMap.getZoneCount());
+        for(int zone = 0; zone < zoneMap.getZoneCount(); zone++){
+            out.writeFloat(zoneMap.getMin(zone));
+            out.writeFloat(zoneMap.getMax(zone));
+            out.writeInt(zoneMap.getNullCount(zone));
+        }
+    }
+
+    private ZoneMap readZoneMap(DataInputStream in, int rowCount, int zoneRows) throws IOException, DBException {
+        int zoneCount = in.readInt();
+        if(zoneRows <= 0 || zoneCount != (rowCount + zoneRows - 1) / zoneRows){
+            throw new DBException("Unable to read columnar DB file");
+        }
+        int[] zoneStarts = new int[zoneCount + 1];
+        float[] mins = new float[zoneCount];
+        float[] maxes = new float[zoneCount];
+        int[] nullCounts = new int[zoneCount];
+        for(int zone = 0; zone < zoneCount; zone++){
+            zoneStarts[zone] = zone * zoneRows;
+            mins[zone] = in.readFloat();
+            maxes[zone] = in.readFloat();
+            nullCounts[zone] = in.readInt();
+        }
+        zoneStarts[zoneCount] = rowCount;
+        return new ZoneMap(zoneStarts, mins, maxes, nullCounts);
+    }
+
+    private ColumnType chooseColumnType(List<Record> rows, int col){
+        if(rows.isEmpty()){
+            return ColumnType.STRING;
+        }
+        for(Record rec : rows){
+            if(col >= rec.getAttributes().size() || !isCanonicalInteger(rec.getAttributes().get(col).getValue())){
+                return hasFewDistinctValues(rows, col) ? ColumnType.DICTIONARY : ColumnType.STRING;
+            }
+        }
+        return ColumnType.INTEGER;
+    }
+
+    private boolean hasFewDistinctValues(List<Record> rows, int col){
+        int maxDistinct = rows.size() / 2;
+        Set<String> distinct = new HashSet<>();
+        for(Record rec : rows){
+            if(col < rec.getAttributes().size() && distinct.add(String.valueOf(rec.getAttributes().get(col).getValue()))
+                    && distinct.size() > maxDistinct){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isCanonicalInteger(String value){
+        if(value == null || value.isEmpty() || value.length() > 20){
+            return false;
+        }
+        try {
+            // only values that come back exactly as written (so not "+1", "01", "-0") can be stored as numbers
+            return Long.toString(Long.parseLong(value)).equals(value);
+        } catch(NumberFormatException nfe){
+            return false;
+        }
+    }
+
+    private byte[] encodeColumn(List<Record> rows, int col, ColumnType type) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream out = new DataOutputStream(bytes)){
+            if(type == ColumnType.DICTIONARY){
+                encodeDictionaryColumn(rows, col, out);
+                return bytes.toByteArray();
+            }
+            for(Record rec : rows){
+                List<Attribute> attributes = rec.getAttributes();
+                if(type == ColumnType.INTEGER){
+                    out.writeLong(Long.parseLong(attributes.get(col).getValue()));
+                } else if(col < attributes.size()){
+                    // same as the tab-separated format, which writes a null value out as "null"
+                    byte[] value = String.valueOf(attributes.get(col).getValue()).getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(value.length);
+                    out.write(value);
+                } else {
+                    out.writeInt(NO_VALUE);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void encodeDictionaryColumn(List<Record> rows, int col, DataOutputStream out) throws IOException {
+        Map<String, Integer> codes = new LinkedHashMap<>();
+        int[] rowCodes = new int[rows.size()];
+        for(int row = 0; row < rows.size(); row++){
+            List<Attribute> attributes = rows.get(row).getAttributes();
+            if(col < attributes.size()){
+                rowCodes[row] = codes.computeIfAbsent(String.valueOf(attributes.get(col).getValue()), value -> codes.size());
+            } else {
+                rowCodes[row] = NO_VALUE;
+            }
+        }
+        out.writeInt(codes.size());
+        for(String value : codes.keySet()){
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        for(int code : rowCodes){
+            out.writeInt(code);
+        }
+    }
+
+    private Footer readFooter(FileChannel channel) throws IOException, DBException {
+        long size = channel.size();
+        if(size < MAGIC.length + 4 + TRAILER_BYTES){
+            throw new DBException("Unable to read columnar DB file");
+        }
+        int version = readFully(channel, MAGIC.length, 4).getInt();
+        ByteBuffer trailer = readFully(channel, size - TRAILER_BYTES, TRAILER_BYTES);
+        long footerOffset = trailer.getLong();
+        byte[] magic = new byte[MAGIC.length];
+        trailer.get(magic);
+        if(!Arrays.equals(MAGIC, magic) || footerOffset < MAGIC.length + 4 || footerOffset > size - TRAILER_BYTES){
+            throw new DBException("Unable to read columnar DB file");
+        }
+
+        ByteBuffer footerBytes = readFully(channel, footerOffset, (int) (size - TRAILER_BYTES - footerOffset));
+        try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(footerBytes.array()))){
+            Footer footer = new Footer();
+            int columnCount = in.readInt();
+            footer.rowCount = in.readInt();
+            int zoneRows = version >= ZONE_MAP_VERSION ? in.readInt() : 0;
+            for(int i = 0; i < columnCount; i++){
+                String name = in.readUTF();
+                ColumnType type = ColumnType.values()[in.readByte()];
+                long offset = in.readLong();
+                int length = in.readInt();
+                ZoneMap zoneMap = version >= ZONE_MAP_VERSION ? readZoneMap(in, footer.rowCount, zoneRows) : null;
+                footer.columns.add(new BlockIndex(name, type, offset, length, zoneMap));
+            }
+            return footer;
+        } catch(IOException | ArrayIndexOutOfBoundsException e){
+            throw new DBException("Unable to read columnar DB file");
+        }
+    }
+
+    private Table buildTable(FileChannel channel, Footer footer, List<Integer> columnIndices, File dbFile,
+                             String tableName) throws IOException, DBException {
+        Table table = new Table(tableName, dbFile);
+        table.getHeader().setFormat(TableFormat.COLUMNAR);
+
+        List<ColumnHeader> headings = new ArrayList<>();
+        Attribute[][] values = new Attribute[columnIndices.size()][];
+        for(int i = 0; i < columnIndices.size(); i++){
+            BlockIndex column = footer.columns.get(columnIndices.get(i));
+            headings.add(new ColumnHeader(column.name));
+            // the first column is the id, which is unique, so there is nothing to gain from a dictionary
+            values[i] = readColumn(channel, column, footer.rowCount, columnIndices.get(i) > 0);
+        }
+        table.setColHeadings(headings);
+
+        for(int row = 0; row < footer.rowCount; row++){
+            List<Attribute> attributes = new ArrayList<>(values.length);
+            for(Attribute[] column : values){
+                if(column[row] == null){
+                    break;
+                }
+                attributes.add(column[row]);
+            }
+            table.getRows().add(new Record(attributes));
+        }
+        for(int i = 0; i < columnIndices.size(); i++){
+            ZoneMap zoneMap = footer.columns.get(columnIndices.get(i)).zoneMap;
+            if(zoneMap != null){
+                table.setZoneMap(i, zoneMap);
+            }
+        }
+        table.getHeader().setTailOffset(channel.size());
+        return table;
+    }
+
+    private Attribute[] readColumn(FileChannel channel, BlockIndex column, int rowCount, boolean encode)
+            throws IOException, DBException {
+        ByteBuffer block = readFully(channel, column.offset, column.length);
+        if(block.get() != column.type.ordinal() || block.getInt() != rowCount || block.getInt() != column.length - BLOCK_HEADER_BYTES){
+            throw new DBException("Unable to read column from DB file: " + column.name);
+        }
+        if(column.type == ColumnType.DICTIONARY){
+            return readDictionaryColumn(block, column, rowCount);
+        }
+
+        ColumnDictionary dictionary = new ColumnDictionary(encode ? DICTIONARY_MAX_ENTRIES : 0);
+        Attribute[] values = new Attribute[rowCount];
+        for(int row = 0; row < rowCount; row++){
+            if(column.type == ColumnType.INTEGER){
+                values[row] = dictionary.encode(Long.toString(block.getLong()));
+            } else {
+                int length = block.getInt();
+                if(length != NO_VALUE){
+                    values[row] = dictionary.encode(readString(block, length));
+                }
+            }
+        }
+        return values;
+    }
+
+    private Attribute[] readDictionaryColumn(ByteBuffer block, BlockIndex column, int rowCount) throws DBException {
+        try {
+            int size = block.getInt();
+            ColumnDictionary dictionary = new ColumnDictionary(size);
+            for(int code = 0; code < size; code++){
+                dictionary.encode(readString(block, block.getInt()));
+            }
+            Attribute[] values = new Attribute[rowCount];
+            for(int row = 0; row < rowCount; row++){
+                int code = block.getInt();
+                if(code != NO_VALUE){
+                    values[row] = dictionary.get(code);
+                }
+            }
+            return values;
+        } catch(BufferUnderflowException | IndexOutOfBoundsException e){
+            throw new DBException("Unable to read column from DB file: " + column.name);
+        }
+    }
+
+    private String readString(ByteBuffer block, int length){
+        String value = new String(block.array(), block.position(), length, StandardCharsets.UTF_8);
+        block.position(block.position() + length);
+        return value;
+    }
+
+    private ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer, position + buffer.position()) < 0){
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static boolean containsIgnoreCase(Collection<String> names, String name){
+        for(String candidate : names){
+            if(candidate.equalsIgnoreCase(name)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class BlockIndex {
+        private final String name;
+        private final ColumnType type;
+        private final long offset;
+        private final int length;
+        // null for files written before zone maps were kept
+        private final ZoneMap zoneMap;
+
+        private BlockIndex(String name, ColumnType type, long offset, int length, ZoneMap zoneMap){
+            this.name = name;
+            this.type = type;
+            this.offset = offset;
+            this.length = length;
+            this.zoneMap = zoneMap;
+        }
+    }
+
+    private static class Footer {
+        private final List<BlockIndex> columns = new ArrayList<>();
+        private int rowCount;
+
+        private boolean containsColumn(String name){
+            for(BlockIndex column : columns){
+                if(column.name.equalsIgnoreCase(name)){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,276 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.exceptions.DBException;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static edu.uob.dbfilesystem.DBFileConstants.SEQ_BLOCK_SIZE;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * In-memory copy of the databases.data metadata file (the tables of each database and their next id), loaded once by
+ * the server so lookups don't have to re-read the file.
+ *
+ * The file keeps its <db:table:seq> line format. New tables and sequence updates are appended, with the last line for
+ * a table winning; removing a table rewrites the file (atomically) without it, as does loading a file that has built
+ * up too many superseded lines. Tables are matched on their exact (lower-cased) names. A table that isn't in the catalog
+ * is only looked for in the file again if the file has been changed (by something other than this catalog) since it
+ * was last read or written.
+ *
+ * Ids are handed out from blocks (hi/lo): the catalog reserves SEQ_BLOCK_SIZE ids at a time by writing the end of the
+ * block to the file, then hands them out from memory. If the server stops part way through a block the unused ids are
+ * skipped, but as the file always holds the end of the reserved block, an id is never handed out twice.
+ */
+public class DBCatalog {
+
+    private final File metadataFile;
+    private final Map<String, SequenceBlock> sequences;
+    // number of lines in the metadata file, so it can be compacted once it is mostly superseded entries
+    private int fileLines;
+    // modification time and length of the metadata file when this catalog last read or wrote it
+    private volatile long fileModified;
+    private volatile long fileLength;
+
+    public DBCatalog(File metadataFile){
+        this.metadataFile = metadataFile;
+        this.sequences = new ConcurrentHashMap<>();
+        this.fileModified = -1;
+        this.fileLength = -1;
+    }
+
+    public boolean containsTable(String databaseName, String tableName) throws IOException {
+        String key = getKey(databaseName, tableName);
+        if(sequences.containsKey(key)){
+            return true;
+        }
+        // the file may have been changed by something other than this catalog
+        return isFileChanged() && reloadContains(key);
+    }
+
+    public synchronized void addTable(String databaseName, String tableName) throws IOException, DBException {
+        int newTableStartingSeq = 1;
+        addTable(databaseName, tableName, newTableStartingSeq);
+    }
+
+    public synchronized void addTable(String databaseName, String tableName, int sequence) throws IOException, DBException {
+        if(containsTable(databaseName, tableName)){
+            throw new DBException.DBTableExistsException(tableName);
+        }
+        String key = getKey(databaseName, tableName);
+        appendEntry(key, sequence);
+        sequences.put(key, new SequenceBlock(sequence));
+    }
+
+    public synchronized void removeTable(String databaseName, String tableName) throws IOException {
+        if(sequences.remove(getKey(databaseName, tableName)) != null){
+            rewrite();
+        }
+    }
+
+    public synchronized void removeDatabase(String databaseName) throws IOException {
+        String prefix = databaseName.toLowerCase(Locale.ROOT) + ":";
+        if(sequences.keySet().removeIf(key -> key.startsWith(prefix))){
+            rewrite();
+        }
+    }
+
+    /**
+     * Returns the table's current sequence number and moves it on to the next. Only touches the metadata file when a
+     * new block of ids has to be reserved.
+     * @param databaseName
+     * @param tableName
+     * @return
+     * @throws IOException
+     */
+    public int nextSeq(String databaseName, String tableName) throws IOException {
+        String key = getKey(databaseName, tableName);
+        if(!containsTable(databaseName, tableName)){
+            throw new IOException("seq attribute not found!");
+        }
+        SequenceBlock block = sequences.get(key);
+        while(true){
+            int seq = block.tryNext();
+            if(seq >= 0){
+                return seq;
+            }
+            reserveBlock(key, block);
+        }
+    }
+
+    /**
+     * Hands out count consecutive ids at once (e.g., for a bulk load), reserving them with at most one write to the
+     * metadata file however many there are
+     * @param databaseName
+     * @param tableName
+     * @param count
+     * @return the first of the ids
+     * @throws IOException
+     */
+    public synchronized int nextSeqs(String databaseName, String tableName, int count) throws IOException {
+        String key = getKey(databaseName, tableName);
+        if(!containsTable(databaseName, tableName)){
+            throw new IOException("seq attribute not found!");
+        }
+        SequenceBlock block = sequences.get(key);
+        while(true){
+            int seq = block.next.get();
+            if(seq + count > block.limit){
+                // reserve the ids and the usual block after them, so the next inserts don't have to
+                int limit = seq + count + SEQ_BLOCK_SIZE;
+                appendEntry(key, limit);
+                block.limit = limit;
+            }
+            // ids may still be handed out one at a time (see nextSeq) while this runs
+            if(block.next.compareAndSet(seq, seq + count)){
+                return seq;
+            }
+        }
+    }
+
+    private synchronized void reserveBlock(String key, SequenceBlock block) throws IOException {
+        if(block.hasNext()){
+            // another thread got here first
+            return;
+        }
+        int limit = block.next.get() + SEQ_BLOCK_SIZE;
+        appendEntry(key, limit);
+        block.limit = limit;
+    }
+
+    public int size(){
+        return sequences.size();
+    }
+
+    private synchronized boolean reloadContains(String key) throws IOException {
+        if(isFileChanged()){
+            load();
+        }
+        return sequences.containsKey(key);
+    }
+
+    private boolean isFileChanged(){
+        return metadataFile.lastModified() != fileModified || metadataFile.length() != fileLength;
+    }
+
+    private void recordFileState(){
+        fileModified = metadataFile.lastModified();
+        fileLength = metadataFile.length();
+    }
+
+    /**
+     * (Re)reads the catalog from the metadata file
+     * @throws IOException
+     */
+    public synchronized void load() throws IOException {
+        Map<String, Integer> entries = new HashMap<>();
+        fileLines = 0;
+        if(metadataFile.exists()){
+            try(BufferedReader br = new BufferedReader(new FileReader(metadataFile))){
+                String line;
+                while((line = br.readLine()) != null){
+                    if(line.isBlank()){
+                        continue;
+                    }
+                    fileLines++;
+                    // databases.data holds data as <db:table:seq>; anything else is skipped
+                    String[] split = line.trim().split(":");
+                    if(split.length == 3){
+                        try {
+                            entries.put(getKey(split[0], split[1]), Integer.parseInt(split[2]));
+                        } catch(NumberFormatException nfe){
+                            // not a catalog entry
+                        }
+                    }
+                }
+            }
+        }
+
+        sequences.keySet().retainAll(entries.keySet());
+        for(Map.Entry<String, Integer> entry : entries.entrySet()){
+            SequenceBlock block = sequences.get(entry.getKey());
+            // keep handing out the block this catalog reserved, unless the entry has been changed by something else
+            if(block == null || block.limit != entry.getValue()){
+                sequences.put(entry.getKey(), new SequenceBlock(entry.getValue()));
+            }
+        }
+        if(fileLines > 2 * sequences.size() + 64){
+            rewrite();
+        }
+        recordFileState();
+    }
+
+    private void appendEntry(String key, int sequence) throws IOException {
+        try(FileOutputStream fos = new FileOutputStream(metadataFile, true);
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, Charset.defaultCharset()))){
+            // the last line may not have been terminated, so start a new one first
+            bw.append(System.lineSeparator()).append(key).append(":").append(Integer.toString(sequence));
+            bw.flush();
+            // ids from a reserved block may be handed out as soon as this returns
+            fos.getChannel().force(true);
+        }
+        fileLines++;
+        recordFileState();
+    }
+
+    private void rewrite() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(Map.Entry<String, SequenceBlock> entry : sequences.entrySet()){
+            lines.add(entry.getKey() + ":" + entry.getValue().limit);
+        }
+        File tempFile = new File(metadataFile.getPath() + TEMP_FILE_EXT);
+        try(FileOutputStream fos = new FileOutputStream(tempFile, false);
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, Charset.defaultCharset()))){
+            bw.write(String.join(System.lineSeparator(), lines));
+            bw.flush();
+            fos.getChannel().force(true);
+        }
+        DBTableFile.replaceFile(tempFile, metadataFile);
+        fileLines = lines.size();
+        recordFileState();
+    }
+
+    private String getKey(String databaseName, String tableName){
+        return (databaseName + ":" + tableName).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The ids reserved for a table: next is handed out next, and everything below limit has been written to the file
+     */
+    private static class SequenceBlock {
+        private final AtomicInteger next;
+        private volatile int limit;
+
+        private SequenceBlock(int sequence){
+            this.next = new AtomicInteger(sequence);
+            this.limit = sequence;
+        }
+
+        private boolean hasNext(){
+            return next.get() < limit;
+        }
+
+        /**
+         * @return the next id, or -1 if the block is used up
+         */
+        private int tryNext(){
+            while(true){
+                int seq = next.get();
+                if(seq >= limit){
+                    return -1;
+                }
+                if(next.compareAndSet(seq, seq + 1)){
+                    return seq;
+                }
+            }
+        }
+    }
+
+}
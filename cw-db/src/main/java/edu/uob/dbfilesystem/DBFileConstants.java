@@ -3,7 +3,81 @@ package edu.uob.dbfilesystem;
 public class DBFileConstants {
 
     public static final String TABLE_EXT = ".tab";
+    public static final String TEMP_FILE_EXT = ".tmp";
+    public static final String TOMBSTONE_EXT = ".del";
+    public static final String BLOOM_FILTER_EXT = ".blm";
+    public static final String LSM_MANIFEST_EXT = ".lsm";
+    public static final String LSM_MEMTABLE_EXT = ".mem";
+    public static final String LSM_RUN_EXT = ".run";
+    public static final String PARTITION_SPEC_EXT = ".parts";
+    public static final String PARTITION_EXT = ".part";
+    public static final String SPILL_EXT = ".spill";
     public static final String METADATA_FILENAME = "databases.data";
+    public static final String WAL_FILENAME = "database.wal";
+    public static final String INDEX_CATALOG_FILENAME = "indexes.data";
+    public static final String STATISTICS_CATALOG_FILENAME = "statistics.data";
+
+    // Columnar table files start (and end) with this, which is how they are told apart from tab-separated ones
+    public static final String COLUMNAR_MAGIC = "\0CWDBCOL";
+    public static final int COLUMNAR_VERSION = 3;
+
+    // Once every logged change has reached its table file, the write-ahead log is emptied if it is bigger than this
+    public static final long WAL_CHECKPOINT_BYTES = 1024 * 1024;
+
+    // Tab-separated files at least this big are memory-mapped for queries rather than parsed into memory
+    public static final long MAPPED_READ_THRESHOLD_BYTES = 1024 * 1024;
+
+    // Size of the slabs of off-heap memory that the indexes of a mapped columnar table are allocated from
+    public static final int OFF_HEAP_SLAB_BYTES = 4 * 1024 * 1024;
+
+    // Number of ids reserved in databases.data at a time for a table's id sequence
+    public static final int SEQ_BLOCK_SIZE = 1000;
+
+    // Maximum number of distinct values of a column that are dictionary-encoded when a table is read into memory
+    public static final int DICTIONARY_MAX_ENTRIES = 4096;
+
+    // Maximum number of distinct values of a column that is given a bitmap index (one set of rows per value)
+    public static final int BITMAP_INDEX_MAX_VALUES = 64;
+
+    // Number of rows in each zone of a columnar DB file's zone maps (the minimum, maximum and null count of each column
+    // over the zone), which let a condition skip the zones that can't match it
+    public static final int ZONE_MAP_ROWS = 4096;
+
+    // Number of rows in each segment of a DB file's Bloom filters (one filter per column per segment), which let an
+    // equality condition skip the segments that can't hold the value it looks for
+    public static final int BLOOM_FILTER_SEGMENT_ROWS = 4096;
+
+    // An LSM table's memtable is flushed into a run once it holds this many bytes, and each tier of its runs holds runs
+    // LSM_TIER_RUNS times bigger than the tier below; LSM_TIER_RUNS runs of a tier are merged into one of the next
+    public static final long LSM_MEMTABLE_BYTES = 256 * 1024;
+    public static final int LSM_TIER_RUNS = 4;
+
+    // An index is passed over for a condition that a table's statistics estimate more than this fraction of its rows
+    // meet, as testing the whole column is then cheaper than finding the rows through the index
+    public static final double INDEX_MAX_SELECTIVITY = 0.25;
+
+    // Maximum number of partitions a table can be created with (each one but the first is a file of its own)
+    public static final int MAX_PARTITIONS = 256;
+
+    // Conditions on a partitioned table with at least this many rows test each partition's rows in parallel
+    public static final int PARALLEL_SCAN_MIN_ROWS = 16 * 1024;
+
+    // Fraction of the JVM's maximum heap that queries may hold their intermediate rows in, and the number of queries
+    // that share it (each query may hold at most its share); rows beyond a query's share are spilled to disk
+    public static final double QUERY_MEMORY_FRACTION = 0.25;
+    public static final int QUERY_MEMORY_SHARES = 4;
+
+    // LOAD DATA appends the rows of its file this many at a time (each batch logged with one flush and written with one
+    // write)
+    public static final int LOAD_BATCH_ROWS = 64 * 1024;
+
+    // Maximum number of parsed tables the server keeps in memory
+    public static final int TABLE_CACHE_CAPACITY = 64;
+
+    // A table is compacted (rewritten without its deleted rows) once at least this many of the rows in its DB file,
+    // and at least this fraction of them, have been deleted
+    public static final int COMPACTION_MIN_DEAD_ROWS = 1000;
+    public static final double COMPACTION_DEAD_ROW_RATIO = 0.3;
 
     private DBFileConstants(){
 
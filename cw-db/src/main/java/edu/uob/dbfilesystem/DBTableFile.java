@@ -2,17 +2,35 @@ package edu.uob.dbfilesystem;
 
 import edu.uob.dbelements.abstractelements.AbstractColumnData;
 import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.BloomFilter;
+import edu.uob.dbelements.ColumnDictionary;
 import edu.uob.dbelements.ColumnHeader;
 import edu.uob.dbelements.Record;
 import edu.uob.dbelements.Table;
+import edu.uob.dbelements.TablePartitioning;
 import edu.uob.exceptions.DBException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
+import static edu.uob.dbfilesystem.DBFileConstants.BLOOM_FILTER_SEGMENT_ROWS;
+import static edu.uob.dbfilesystem.DBFileConstants.DICTIONARY_MAX_ENTRIES;
+import static edu.uob.dbfilesystem.DBFileConstants.MAPPED_READ_THRESHOLD_BYTES;
 import static edu.uob.dbfilesystem.DBFileConstants.METADATA_FILENAME;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
 
 public class DBTableFile {
 
@@ -21,29 +39,267 @@ public class DBTableFile {
         File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
         String tableName = getTableName(fileToOpen);
 
-        if(fileToOpen.exists()){
-            Table table;
+        while(fileToOpen.exists()){
+            // taken before the file is opened, so a file swapped in after that isn't taken for the one read
+            String fileKey = BloomFilterFile.getFileKey(fileToOpen);
+            if(ColumnarTableFile.isColumnarFile(fileToOpen)){
+                return removeDeletedRows(new ColumnarTableFile().readFileIntoEntity(fileToOpen, tableName), fileKey);
+            }
+            TablePartitioning partitioning = PartitionedTableFile.readPartitioning(fileToOpen);
+            if(partitioning != null){
+                return removeDeletedRows(PartitionedTableFile.read(this, fileToOpen, tableName, partitioning), fileKey);
+            }
+            Table table = new Table(tableName, fileToOpen);
 
-            FileReader reader = new FileReader(fileToOpen);
-            try(BufferedReader br = new BufferedReader(reader)){
-                table = new Table(tableName, fileToOpen);
+            try(SnapshotReader br = openSnapshotReader(fileToOpen)){
+                readRowsIntoEntity(table, br);
+            }
+            if(LsmTableFile.isLsmTable(fileToOpen)){
+                table.getHeader().setFormat(TableFormat.LSM);
+                TreeMap<String, Record> changes;
+                try {
+                    changes = LsmTableFile.readChanges(fileToOpen);
+                } catch(FileNotFoundException fnfe){
+                    changes = null;
+                }
+                // if the table was written out in full while it was read, its runs may have gone with the rows read
+                if(changes == null || !Objects.equals(fileKey, BloomFilterFile.getFileKey(fileToOpen))){
+                    continue;
+                }
+                if(!changes.isEmpty()){
+                    LsmTableFile.mergeInto(table, changes);
+                    // the filters are only for the rows as they are in the DB file
+                    fileKey = null;
+                }
+            }
+            return removeDeletedRows(table, fileKey);
+        }
+        throw new IOException();
+    }
 
-                String line;
+    /**
+     * Reads the column headings and rows of a tab-separated file into the table
+     * @param table
+     * @param br
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ void readRowsIntoEntity(Table table, SnapshotReader br) throws IOException, DBException {
+        List<ColumnDictionary> dictionaries = new ArrayList<>();
 
-                if((line = br.readLine()) != null) {
-                    if (!readColumnHeadingsIntoEntity(table, line)) {
-                        throw new DBException("Unable to read column headers from DB file");
-                    }
+        String line;
+
+        if((line = br.readLine()) != null) {
+            if (!readColumnHeadingsIntoEntity(table, line)) {
+                throw new DBException("Unable to read column headers from DB file");
+            }
+        }
+        while((line = br.readLine()) != null){
+            Record record = parseRecord(line, dictionaries);
+            if(record == null){
+                throw new DBException("Unable to read rows from DB file");
+            }
+            table.getRows().add(record);
+        }
+        table.getHeader().setTailOffset(br.getLength());
+    }
+
+    /**
+     * Opens a reader over the DB file as it is at this moment: rows appended after it is opened (see
+     * appendRecordIntoDBFile) are not read, and a file swapped in for this one (see replaceFile) is not seen, so the
+     * reader only ever sees one version of the table
+     * @param dbFile
+     * @return
+     * @throws IOException
+     */
+    /* default */ SnapshotReader openSnapshotReader(File dbFile) throws IOException {
+        FileInputStream fis = new FileInputStream(dbFile);
+        try {
+            return new SnapshotReader(fis, fis.getChannel().size());
+        } catch (IOException ioe) {
+            fis.close();
+            throw ioe;
+        }
+    }
+
+    /* default */ static class SnapshotReader extends BufferedReader {
+
+        private final long length;
+
+        private SnapshotReader(FileInputStream fis, long length){
+            super(new InputStreamReader(new LimitedInputStream(fis, length), Charset.defaultCharset()));
+            this.length = length;
+        }
+
+        /**
+         * @return the length of the file when the reader was opened
+         */
+        /* default */ long getLength(){
+            return length;
+        }
+    }
+
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        private LimitedInputStream(InputStream in, long limit){
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if(remaining <= 0){
+                return -1;
+            }
+            int b = super.read();
+            if(b >= 0){
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if(remaining <= 0){
+                return -1;
+            }
+            int read = super.read(b, off, (int) Math.min(len, remaining));
+            if(read > 0){
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Drops the rows that have been deleted from the table but are still in its DB file (see TombstoneFile), and gives
+     * the table the Bloom filters kept for the file (see BloomFilterFile)
+     * @param table
+     * @param fileKey the key of the DB file (see BloomFilterFile.getFileKey), taken before it was read
+     * @return
+     * @throws IOException
+     */
+    private Table removeDeletedRows(Table table, String fileKey) throws IOException {
+        File dbFile = table.getHeader().getFileLocation();
+        List<Record> rows = table.getRows();
+        BloomFilter[] filters = BloomFilterFile.read(dbFile, fileKey, table.getColHeadings().size(), rows.size());
+        Set<String> deletedIds = TombstoneFile.read(dbFile);
+        int[] liveRows = null;
+        if(!deletedIds.isEmpty()){
+            liveRows = new int[rows.size()];
+            int liveCount = 0;
+            for(int row = 0; row < rows.size(); row++){
+                Record record = rows.get(row);
+                if(record.getAttributes().isEmpty() || !deletedIds.contains(record.getId())){
+                    liveRows[liveCount++] = row;
                 }
-                while((line = br.readLine()) != null){
-                    if(!readRecordIntoEntity(table, line)){
-                        throw new DBException("Unable to read rows from DB file");
-                    }
+            }
+            rows.removeIf(row -> !row.getAttributes().isEmpty() && deletedIds.contains(row.getId()));
+        }
+        if(filters != null){
+            int[] segmentStarts = null;
+            for(int col = 0; col < filters.length; col++){
+                if(liveRows != null){
+                    // every column's segments start at the same rows
+                    int[] fileRows = liveRows;
+                    segmentStarts = segmentStarts != null ? segmentStarts
+                            : BloomFilterFile.findLiveSegmentStarts(filters[col], row -> fileRows[row], rows.size());
+                    filters[col] = filters[col].withSegmentStarts(segmentStarts);
+                }
+                table.setBloomFilter(col, filters[col]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Reads a table that the caller won't modify. Large files are memory-mapped and their rows decoded as they are
+     * accessed: tab-separated files a line at a time (see MappedTableFile), columnar files a column block at a time
+     * (see OffHeapColumnStore). Anything else is read as normal.
+     * @param dbFilePath
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public Table readDBFileIntoReadOnlyEntity(String dbFilePath) throws IOException, DBException {
+
+        File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
+        if(isReadByMapping(fileToOpen)){
+            if(ColumnarTableFile.isColumnarFile(fileToOpen)){
+                return new ColumnarTableFile().mapIntoEntity(fileToOpen, getTableName(fileToOpen),
+                        TombstoneFile.read(fileToOpen));
+            }
+            // an LSM table's rows are only all in its DB file right after it has been written out in full, and a
+            // partitioned table's rows are never all in it
+            if(!LsmTableFile.hasChanges(fileToOpen) && !PartitionedTableFile.isPartitioned(fileToOpen)){
+                Table table = MappedTableFile.open(fileToOpen).asTable(getTableName(fileToOpen), fileToOpen,
+                        TombstoneFile.read(fileToOpen));
+                if(LsmTableFile.isLsmTable(fileToOpen)){
+                    table.getHeader().setFormat(TableFormat.LSM);
                 }
                 return table;
             }
         }
-        throw new IOException();
+        return readDBFileIntoEntity(dbFilePath);
+    }
+
+    /**
+     * Reads one partition of a partitioned table (see PartitionedTableFile), for a query that can only match rows in
+     * that partition. The table read only has some of the rows, so must not be cached or changed.
+     * @param dbFilePath
+     * @param partition
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public Table readDBFilePartitionIntoEntity(String dbFilePath, int partition) throws IOException, DBException {
+
+        File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
+        if(!fileToOpen.exists()){
+            throw new IOException();
+        }
+        return removeDeletedRows(PartitionedTableFile.readPartition(this, fileToOpen, getTableName(fileToOpen),
+                partition), null);
+    }
+
+    /**
+     * Checks whether readDBFileIntoReadOnlyEntity maps the file rather than reading it onto the heap
+     * @param dbFile
+     * @return
+     */
+    public static boolean isReadByMapping(File dbFile){
+        if(dbFile.length() < MAPPED_READ_THRESHOLD_BYTES){
+            return false;
+        }
+        // a tab-separated file is mapped as a whole, and a single mapping can't cover more than 2GB; a columnar
+        // file's blocks are mapped one at a time
+        return dbFile.length() <= Integer.MAX_VALUE || ColumnarTableFile.isColumnarFile(dbFile);
+    }
+
+    /**
+     * Reads the table with only the named columns. Only columnar DB files can skip the other columns; for a
+     * tab-separated file (or if a name isn't a column of the table) the whole table is read. The id column is needed
+     * to leave out deleted rows, so the whole table is also read while the table has any.
+     * @param dbFilePath
+     * @param columnNames
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public Table readDBFileColumnsIntoEntity(String dbFilePath, Collection<String> columnNames)
+            throws IOException, DBException {
+
+        File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
+        if(fileToOpen.exists() && ColumnarTableFile.isColumnarFile(fileToOpen)
+                && !TombstoneFile.getFile(fileToOpen).exists()){
+            Table table = new ColumnarTableFile().readColumnsIntoEntity(fileToOpen, getTableName(fileToOpen), columnNames);
+            if(table != null){
+                return table;
+            }
+        }
+        return readDBFileIntoEntity(dbFilePath);
     }
 
     /* default */ boolean readColumnHeadingsIntoEntity(Table table, String header) {
@@ -67,20 +323,83 @@ public class DBTableFile {
 
     /* default */ boolean readRecordIntoEntity(Table table, String row) {
 
-        if (table != null && row != null && row.length() > 0) {
+        if (table != null) {
+            Record record = parseRecord(row);
+            if (record != null) {
+                table.getRows().add(record);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /* default */ Record parseRecord(String row) {
+        return parseRecord(row, null);
+    }
+
+    /**
+     * Parses a row, storing the values of each column (other than the id, which is unique) in that column's dictionary
+     * so that repeated values are held once
+     * @param row
+     * @param dictionaries the dictionary for each column, added to as new columns are seen; or null to not encode
+     * @return
+     */
+    /* default */ Record parseRecord(String row, List<ColumnDictionary> dictionaries) {
+
+        if (row != null && row.length() > 0) {
             String[] tabDelimitedRow = row.split("\t");
             Record record = new Record();
-            List<Attribute> listOfAttributes = new ArrayList<>();
+            List<Attribute> listOfAttributes = new ArrayList<>(tabDelimitedRow.length);
 
-            for (String s : tabDelimitedRow) {
-                Attribute attr = new Attribute(s);
-                listOfAttributes.add(attr);
+            for (int col = 0; col < tabDelimitedRow.length; col++) {
+                if (dictionaries == null || col == 0) {
+                    listOfAttributes.add(new Attribute(tabDelimitedRow[col]));
+                    continue;
+                }
+                while (dictionaries.size() <= col) {
+                    dictionaries.add(new ColumnDictionary(DICTIONARY_MAX_ENTRIES));
+                }
+                listOfAttributes.add(dictionaries.get(col).encode(tabDelimitedRow[col]));
             }
             record.setAttributes(listOfAttributes);
-            table.getRows().add(record);
-            return true;
+            return record;
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Opens a cursor over the rows of the table's DB file. A tab-separated file is streamed a line at a time; a
+     * columnar file is read whole first (or mapped, if it is large).
+     * @param dbFilePath
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public RowCursor openRowCursor(String dbFilePath) throws IOException, DBException {
+
+        File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
+        if (!fileToOpen.exists()) {
+            throw new IOException();
+        }
+        if (ColumnarTableFile.isColumnarFile(fileToOpen) || LsmTableFile.hasChanges(fileToOpen)
+                || PartitionedTableFile.isPartitioned(fileToOpen)) {
+            return new TableRowCursor(readDBFileIntoReadOnlyEntity(dbFilePath));
+        }
+        return new FileRowCursor(this, fileToOpen, TombstoneFile.read(fileToOpen));
+    }
+
+    /**
+     * Opens a writer that replaces the table's (tab-separated) DB file with rows written one at a time (see
+     * TableFileWriter)
+     * @param dbFilePath
+     * @param colHeadings
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public TableFileWriter openTableFileWriter(String dbFilePath, List<ColumnHeader> colHeadings)
+            throws IOException, DBException {
+        return new TableFileWriter(this, new File(dbFilePath.toLowerCase(Locale.ROOT)), colHeadings);
     }
 
     /* default */ String getTableName(File dbFilePath){
@@ -102,26 +421,229 @@ public class DBTableFile {
             String dbFilePath = table.getHeader().getFileLocation().getPath();
             File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
 
-            if (!fileToOpen.exists()) {
-                if(!createDBFile(fileToOpen)){
-                    throw new DBException("Unable to read file: " + fileToOpen.getName());
+            if (table.getColHeadings() == null || table.getColHeadings().size() == 0) {
+                throw new DBException("Unable to store column headers in DB file");
+            }
+
+            // Write the whole table through a single stream into a temporary file, then swap it in for the old file
+            // in one step, so a failure part way through never leaves a truncated table behind
+            try {
+                if (table.getHeader().getFormat() == TableFormat.COLUMNAR) {
+                    File tempFile = new File(fileToOpen.getPath() + TEMP_FILE_EXT);
+                    try {
+                        new ColumnarTableFile().writeEntityIntoFile(table, tempFile);
+                        BloomFilterFile.clear(fileToOpen);
+                        replaceFile(tempFile, fileToOpen);
+                        TombstoneFile.clear(fileToOpen);
+                    } finally {
+                        tempFile.delete();
+                    }
+                    storeBloomFilters(table, fileToOpen);
+                } else if (table.getHeader().getPartitioning() != null) {
+                    PartitionedTableFile.write(this, fileToOpen, table, table.getHeader().getPartitioning());
+                } else {
+                    if (table.getHeader().getFormat() == TableFormat.LSM && !LsmTableFile.isLsmTable(fileToOpen)) {
+                        LsmTableFile.reset(fileToOpen);
+                    }
+                    try (TableFileWriter writer = new TableFileWriter(this, fileToOpen, table.getColHeadings())) {
+                        for (Record rec : table.getRows()) {
+                            writer.write(rec);
+                        }
+                        writer.commit();
+                    }
+                }
+                if (table.getHeader().getFormat() != TableFormat.LSM) {
+                    LsmTableFile.remove(fileToOpen);
                 }
+                if (table.getHeader().getPartitioning() == null) {
+                    PartitionedTableFile.remove(fileToOpen);
+                }
+            } catch (IOException ioe) {
+                throw new DBException("Unable to write file: " + fileToOpen.getName());
             }
+            table.getHeader().setTailOffset(fileToOpen.length());
+            return true;
+        }
+        throw new DBException();
+    }
 
-            if (!storeColumnHeaderIntoDBFile(table.getColHeadings(), fileToOpen)) {
-                throw new DBException("Unable to store column headers in DB file");
+    /**
+     * Writes the Bloom filters of the table's columns (see BloomFilterFile) for a columnar DB file just written out;
+     * a tab-separated file's are built as its rows are written (see TableFileWriter)
+     * @param table
+     * @param dbFile
+     */
+    private void storeBloomFilters(Table table, File dbFile){
+        List<Record> rows = new ArrayList<>();
+        for (Record rec : table.getRows()) {
+            // the same rows as the file holds
+            if (rec.getAttributes().size() > 0) {
+                rows.add(rec);
             }
+        }
+        BloomFilter[] filters = new BloomFilter[table.getColHeadings().size()];
+        for (int col = 0; col < filters.length; col++) {
+            filters[col] = BloomFilter.build(rows, col, BLOOM_FILTER_SEGMENT_ROWS);
+        }
+        try {
+            BloomFilterFile.write(dbFile, filters);
+        } catch (IOException ioe) {
+            // the table is just read without filters until it is next written out
+            BloomFilterFile.clear(dbFile);
+        }
+    }
 
-            for (Record rec : table.getRows()) {
-                if (!storeRecordIntoDBFile(rec.getAttributes(), fileToOpen)) {
-                    throw new DBException("Unable to store rows in DB file");
+    /* default */ static void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Writes a single new row to the end of the table's DB file (rather than rewriting the whole file) and adds it to
+     * the table (see appendRecordsIntoDBFile)
+     * @param table
+     * @param record
+     * @return
+     * @throws DBException
+     */
+    public boolean appendRecordIntoDBFile(Table table, Record record) throws DBException {
+        if(record == null || record.getAttributes() == null){
+            throw new DBException();
+        }
+        if(record.getAttributes().size() == 0 && table != null){
+            table.getRows().add(record);
+            return true;
+        }
+        return appendRecordsIntoDBFile(table, List.of(record));
+    }
+
+    /**
+     * Writes new rows to the end of the table's DB file in one write (rather than rewriting the whole file) and adds
+     * them to the table. The rows are written at the table's tail offset; if the file no longer ends there (i.e., it
+     * has been changed since the table was read) the whole table is rewritten instead.
+     * @param table
+     * @param records
+     * @return
+     * @throws DBException
+     */
+    public boolean appendRecordsIntoDBFile(Table table, List<Record> records) throws DBException {
+
+        if(table != null && records != null && table.getHeader() != null
+                && table.getHeader().getFileLocation() != null) {
+            String dbFilePath = table.getHeader().getFileLocation().getPath();
+            File fileToOpen = new File(dbFilePath.toLowerCase(Locale.ROOT));
+            long tailOffset = table.getHeader().getTailOffset();
+
+            if(records.isEmpty()){
+                return true;
+            }
+
+            // a partitioned table's new rows go to the end of their partitions' files
+            if(table.getHeader().getPartitioning() != null){
+                try {
+                    PartitionedTableFile.append(this, fileToOpen, table, records);
+                } catch (IOException ioe) {
+                    throw new DBException("Unable to append row to DB file: " + fileToOpen.getName());
                 }
+                return true;
             }
-            return true;
+
+            // an LSM table's new rows go to its memtable rather than its DB file
+            if(LsmTableFile.isLsmTable(fileToOpen)){
+                try {
+                    LsmTableFile.put(fileToOpen, records);
+                } catch (IOException ioe) {
+                    throw new DBException("Unable to append row to DB file: " + fileToOpen.getName());
+                }
+                table.getRows().addAll(records);
+                return true;
+            }
+
+            // a columnar file ends with its footer, so there is nowhere to add a row without rewriting it
+            if(fileToOpen.exists() && tailOffset > 0 && table.getHeader().getFormat() == TableFormat.TAB) {
+                try (FileChannel channel = FileChannel.open(fileToOpen.toPath(), StandardOpenOption.READ,
+                        StandardOpenOption.WRITE)) {
+                    if (channel.size() == tailOffset) {
+                        StringBuilder rows = new StringBuilder();
+                        if (!endsWithNewLine(channel, tailOffset)) {
+                            rows.append(System.lineSeparator());
+                        }
+                        for (int i = 0; i < records.size(); i++) {
+                            if (i > 0) {
+                                rows.append(System.lineSeparator());
+                            }
+                            rows.append(rowToString(records.get(i).getAttributes()));
+                        }
+                        ByteBuffer buffer = ByteBuffer.wrap(rows.toString().getBytes(Charset.defaultCharset()));
+                        long position = tailOffset;
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+                        // on disk before the write-ahead log entries for the rows can be checkpointed away
+                        channel.force(true);
+                        table.getHeader().setTailOffset(position);
+                        table.getRows().addAll(records);
+                        return true;
+                    }
+                } catch (IOException ioe) {
+                    throw new DBException("Unable to append row to DB file: " + fileToOpen.getName());
+                }
+            }
+
+            // the file isn't where we left it, so fall back to writing the table out in full
+            table.getRows().addAll(records);
+            return storeEntityIntoDBFile(table);
         }
         throw new DBException();
     }
 
+    /**
+     * Stores the table once the given rows of it have changed (or been added): an LSM table's rows are written to its
+     * memtable (see LsmTableFile), and any other table is written out in full
+     * @param table
+     * @param records
+     * @return
+     * @throws DBException
+     */
+    public boolean storeRecordsIntoDBFile(Table table, Collection<Record> records) throws DBException {
+
+        if(table != null && records != null && table.getHeader() != null
+                && table.getHeader().getFileLocation() != null) {
+            File fileToOpen = new File(table.getHeader().getFileLocation().getPath().toLowerCase(Locale.ROOT));
+            if(LsmTableFile.isLsmTable(fileToOpen)){
+                try {
+                    LsmTableFile.put(fileToOpen, records);
+                } catch (IOException ioe) {
+                    throw new DBException("Unable to write file: " + fileToOpen.getName());
+                }
+                return true;
+            }
+            return storeEntityIntoDBFile(table);
+        }
+        throw new DBException();
+    }
+
+    /**
+     * Rewrites the table's DB file in the given format (a no-op if it is already in that format)
+     * @param dbFilePath
+     * @param format
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public boolean convertDBFile(String dbFilePath, TableFormat format) throws IOException, DBException {
+        Table table = readDBFileIntoEntity(dbFilePath);
+        if(table.getHeader().getFormat() == format){
+            return true;
+        }
+        table.getHeader().setFormat(format);
+        return storeEntityIntoDBFile(table);
+    }
+
     /* default */ boolean createDBFile(File dbFile){
         if (dbFile != null) {
             try {
@@ -174,13 +696,7 @@ public class DBTableFile {
             if(newLine){
                 sb.append(System.lineSeparator());
             }
-
-            for (int i = 0; i < rowData.size(); i++) {
-                sb.append(rowData.get(i).getData());
-                if (i < rowData.size() - 1) {
-                    sb.append("\t");
-                }
-            }
+            sb.append(rowToString(rowData));
             bw.append(sb.toString());
             return true;
 
@@ -189,48 +705,21 @@ public class DBTableFile {
         }
     }
 
-    public boolean containsDbTable(String databaseName, String tableName) throws Exception {
-        File fileToOpen = new File(METADATA_FILENAME);
-
-        FileReader reader = new FileReader(fileToOpen);
-        try(BufferedReader br = new BufferedReader(reader)){
-            String line;
-
-            while((line = br.readLine()) != null){
-                String dbFile = databaseName + ":" + tableName;
-                if(line.toUpperCase().contains(dbFile.toUpperCase())){
-                    return true;
-                }
-            }
-
-            return false;
-        } catch(FileNotFoundException fnf){
-
-            throw new DBException("Unable to find databases.data metadata file");
-        }
-    }
-
-    public boolean addTableToMetadata(String databaseName, String tableName) throws Exception {
-        byte newTableStartingSeq = 1;
-        return (addTableToMetadata(databaseName, tableName, newTableStartingSeq));
+    /* default */ boolean endsWithNewLine(FileChannel channel, long tailOffset) throws IOException {
+        ByteBuffer lastByte = ByteBuffer.allocate(1);
+        channel.read(lastByte, tailOffset - 1);
+        return lastByte.get(0) == '\n';
     }
 
-    public boolean addTableToMetadata(String databaseName, String tableName, int sequence) throws Exception {
-
-        File dbFile = new File(METADATA_FILENAME);
-        boolean appendMode = true;
-
-        if(containsDbTable(databaseName, tableName)) {
-            throw new DBException.DBTableExistsException(tableName);
-        }
-
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(dbFile, appendMode))) {
-            bw.append(System.lineSeparator() + databaseName + ":" + tableName + ":" + sequence + System.lineSeparator());
-            return true;
-
-        } catch (IOException ioe) {
-            return false;
+    /* default */ String rowToString(List<? extends AbstractColumnData> rowData) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rowData.size(); i++) {
+            sb.append(rowData.get(i).getData());
+            if (i < rowData.size() - 1) {
+                sb.append("\t");
+            }
         }
+        return sb.toString();
     }
 
     public boolean removeTableFromMetadata(String databaseName, String tableName) throws FileNotFoundException{
@@ -247,7 +736,7 @@ public class DBTableFile {
             while((line = br.readLine()) != null){
                 String dbFile = databaseName + ":" + tableName;
                 if(!line.toLowerCase(Locale.ROOT).contains(dbFile.toLowerCase(Locale.ROOT))) {
-                    rewrite.append(line);
+                    rewrite.append(line).append(System.lineSeparator());
                 }
             }
 
@@ -267,35 +756,4 @@ public class DBTableFile {
         }
     }
 
-    /**
-     * Returns current sequence from databases.data and increments seq to next
-     * @param databaseName
-     * @param tableName
-     * @return
-     * @throws FileNotFoundException
-     */
-    public int nextSeq(String databaseName, String tableName) throws Exception{
-
-        File fileToOpen = new File(METADATA_FILENAME);
-        FileReader reader = new FileReader(fileToOpen);
-
-        try(BufferedReader br = new BufferedReader(reader)){
-
-            String line;
-            while((line = br.readLine()) != null){
-                String dbFile = databaseName + ":" + tableName;
-                if(line.toLowerCase(Locale.ROOT).contains(dbFile.toLowerCase(Locale.ROOT))) {
-                    String [] split = line.split(":");
-                    // database.data holds data as <db:table:seq>
-                    int indexOfSeq = 2;
-                    int currentSeq = Integer.parseInt(split[indexOfSeq]);
-                    removeTableFromMetadata(databaseName, tableName);
-                    addTableToMetadata(databaseName,tableName, currentSeq+1);
-                    return currentSeq;
-                }
-            }
-            throw new IOException("seq attribute not found!");
-        }
-    }
-
 }
@@ -0,0 +1,68 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.exceptions.DBException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cursor that reads a tab-separated DB file one line at a time, so only the current row is ever held in memory. Rows
+ * that have been deleted but are still in the file are skipped.
+ */
+public class FileRowCursor implements RowCursor {
+
+    private final DBTableFile dbTableFile;
+    private final BufferedReader reader;
+    private final List<ColumnHeader> colHeadings;
+    private final Set<String> deletedIds;
+
+    /* default */ FileRowCursor(DBTableFile dbTableFile, File dbFile, Set<String> deletedIds)
+            throws IOException, DBException {
+        this.dbTableFile = dbTableFile;
+        this.deletedIds = deletedIds;
+        // rows appended while the cursor is open are not returned, so the cursor reads a single version of the table
+        this.reader = dbTableFile.openSnapshotReader(dbFile);
+
+        Table headings = new Table();
+        String line = reader.readLine();
+        if(line != null && !dbTableFile.readColumnHeadingsIntoEntity(headings, line)){
+            reader.close();
+            throw new DBException("Unable to read column headers from DB file");
+        }
+        this.colHeadings = headings.getColHeadings();
+    }
+
+    @Override
+    public List<ColumnHeader> getColHeadings(){
+        return colHeadings;
+    }
+
+    @Override
+    public Record next() throws IOException, DBException {
+        while(true){
+            String line = reader.readLine();
+            if(line == null){
+                return null;
+            }
+            Record record = dbTableFile.parseRecord(line);
+            if(record == null){
+                throw new DBException("Unable to read rows from DB file");
+            }
+            if(!deletedIds.contains(record.getId())){
+                return record;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -0,0 +1,144 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.exceptions.DBException;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static edu.uob.dbfilesystem.DBFileConstants.INDEX_CATALOG_FILENAME;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * The indexes created on a database's tables (see CREATE INDEX), kept in the database's indexes.data file as
+ * <index:table:attribute> lines so they survive a restart. Only the definitions are kept; an index itself is built from
+ * a table the first time a query on the table uses it (see Table.getSortedIndex), so it never has to be brought up to
+ * date when the table changes. Names are matched ignoring case.
+ */
+public class IndexCatalog {
+
+    private final File catalogFile;
+    private final Map<String, IndexDefinition> indexes;
+    private boolean loaded;
+
+    public IndexCatalog(File databaseDirectory){
+        this.catalogFile = new File(databaseDirectory, INDEX_CATALOG_FILENAME);
+        this.indexes = new LinkedHashMap<>();
+    }
+
+    public synchronized void addIndex(String indexName, String tableName, String attribute)
+            throws IOException, DBException {
+        load();
+        String key = indexName.toLowerCase(Locale.ROOT);
+        if(indexes.containsKey(key)){
+            throw new DBException.DBIndexExistsException(indexName);
+        }
+        indexes.put(key, new IndexDefinition(key, tableName.toLowerCase(Locale.ROOT), attribute));
+        rewrite();
+    }
+
+    public synchronized void removeIndex(String indexName) throws IOException, DBException {
+        load();
+        if(indexes.remove(indexName.toLowerCase(Locale.ROOT)) == null){
+            throw new DBException.DBIndexDoesNotExistException(indexName);
+        }
+        rewrite();
+    }
+
+    /**
+     * Removes the table's indexes (e.g., when the table is dropped)
+     * @param tableName
+     * @throws IOException
+     */
+    public synchronized void removeTable(String tableName) throws IOException {
+        load();
+        String table = tableName.toLowerCase(Locale.ROOT);
+        if(indexes.values().removeIf(index -> index.table.equals(table))){
+            rewrite();
+        }
+    }
+
+    /**
+     * Removes the indexes on one of the table's attributes (e.g., when the attribute is dropped)
+     * @param tableName
+     * @param attribute
+     * @throws IOException
+     */
+    public synchronized void removeAttribute(String tableName, String attribute) throws IOException {
+        load();
+        String table = tableName.toLowerCase(Locale.ROOT);
+        if(indexes.values().removeIf(index -> index.table.equals(table) && index.attribute.equalsIgnoreCase(attribute))){
+            rewrite();
+        }
+    }
+
+    /**
+     * @param tableName
+     * @return the (lower-cased) names of the table's indexed attributes
+     * @throws IOException
+     */
+    public synchronized Set<String> getIndexedAttributes(String tableName) throws IOException {
+        load();
+        String table = tableName.toLowerCase(Locale.ROOT);
+        Set<String> attributes = new HashSet<>();
+        for(IndexDefinition index : indexes.values()){
+            if(index.table.equals(table)){
+                attributes.add(index.attribute.toLowerCase(Locale.ROOT));
+            }
+        }
+        return attributes;
+    }
+
+    private void load() throws IOException {
+        if(loaded){
+            return;
+        }
+        if(catalogFile.exists()){
+            try(BufferedReader br = new BufferedReader(new FileReader(catalogFile))){
+                String line;
+                while((line = br.readLine()) != null){
+                    // anything that isn't an <index:table:attribute> line is skipped
+                    String[] split = line.trim().split(":");
+                    if(split.length == 3){
+                        indexes.put(split[0], new IndexDefinition(split[0], split[1], split[2]));
+                    }
+                }
+            }
+        }
+        loaded = true;
+    }
+
+    private void rewrite() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(IndexDefinition index : indexes.values()){
+            lines.add(index.name + ":" + index.table + ":" + index.attribute);
+        }
+        File tempFile = new File(catalogFile.getPath() + TEMP_FILE_EXT);
+        try(FileOutputStream fos = new FileOutputStream(tempFile, false);
+            BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(fos, Charset.defaultCharset()))){
+            bw.write(String.join(System.lineSeparator(), lines));
+            bw.flush();
+            fos.getChannel().force(true);
+        }
+        DBTableFile.replaceFile(tempFile, catalogFile);
+    }
+
+    private static class IndexDefinition {
+        private final String name;
+        private final String table;
+        private final String attribute;
+
+        private IndexDefinition(String name, String table, String attribute){
+            this.name = name;
+            this.table = table;
+            this.attribute = attribute;
+        }
+    }
+
+}
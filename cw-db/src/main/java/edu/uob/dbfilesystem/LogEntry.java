@@ -0,0 +1,210 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A single write-ahead log record. Entries describe a change by row id rather than by position, so replaying an entry
+ * against a table that already contains the change leaves the table as it is (i.e., redo is idempotent).
+ */
+public class LogEntry {
+
+    private static final String ALTER_ADD = "ADD";
+    private static final String PRIMARY_KEY = "id";
+
+    private final LogOperation operation;
+    private final String tableName;
+    private final List<String> ids;
+    private final List<String> names;
+    private final List<String> values;
+
+    private LogEntry(LogOperation operation, String tableName, List<String> ids, List<String> names, List<String> values){
+        this.operation = operation;
+        this.tableName = tableName.toLowerCase(Locale.ROOT);
+        this.ids = ids;
+        this.names = names;
+        this.values = values;
+    }
+
+    public static LogEntry insert(String tableName, Record record){
+        List<String> values = new ArrayList<>();
+        for(Attribute attribute : record.getAttributes()){
+            values.add(attribute.getValue());
+        }
+        return new LogEntry(LogOperation.INSERT, tableName, new ArrayList<>(), new ArrayList<>(), values);
+    }
+
+    public static LogEntry update(String tableName, List<String> ids, List<String> names, List<String> values){
+        return new LogEntry(LogOperation.UPDATE, tableName, ids, names, values);
+    }
+
+    public static LogEntry delete(String tableName, List<String> ids){
+        return new LogEntry(LogOperation.DELETE, tableName, ids, new ArrayList<>(), new ArrayList<>());
+    }
+
+    public static LogEntry alter(String tableName, String alterationType, String attributeName){
+        List<String> names = new ArrayList<>();
+        names.add(attributeName);
+        List<String> values = new ArrayList<>();
+        values.add(alterationType.toUpperCase(Locale.ROOT));
+        return new LogEntry(LogOperation.ALTER, tableName, new ArrayList<>(), names, values);
+    }
+
+    /**
+     * @param entryIndices the positions in the log (counting from 0) of the entries whose changes never reached their
+     * table file
+     * @return an entry that cancels those entries, so they aren't redone
+     */
+    public static LogEntry abort(List<Long> entryIndices){
+        List<String> values = new ArrayList<>();
+        for(Long index : entryIndices){
+            values.add(Long.toString(index));
+        }
+        return new LogEntry(LogOperation.ABORT, "", new ArrayList<>(), new ArrayList<>(), values);
+    }
+
+    public LogOperation getOperation() {
+        return operation;
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public boolean isSchemaChange(){
+        return operation == LogOperation.ALTER;
+    }
+
+    /**
+     * @return the positions in the log of the entries an abort entry cancels (none, for any other entry)
+     */
+    public List<Long> getAbortedIndices(){
+        List<Long> indices = new ArrayList<>();
+        if(operation == LogOperation.ABORT){
+            for(String value : values){
+                indices.add(Long.parseLong(value));
+            }
+        }
+        return indices;
+    }
+
+    /* default */ void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(operation.ordinal());
+        out.writeUTF(tableName);
+        writeList(out, ids);
+        writeList(out, names);
+        writeList(out, values);
+    }
+
+    /* default */ static LogEntry readFrom(DataInputStream in) throws IOException {
+        int opIndex = in.readByte();
+        if(opIndex < 0 || opIndex >= LogOperation.values().length){
+            throw new IOException("Unknown log operation: " + opIndex);
+        }
+        LogOperation operation = LogOperation.values()[opIndex];
+        String tableName = in.readUTF();
+        return new LogEntry(operation, tableName, readList(in), readList(in), readList(in));
+    }
+
+    private static void writeList(DataOutputStream out, List<String> list) throws IOException {
+        out.writeInt(list.size());
+        for(String s : list){
+            out.writeUTF(s);
+        }
+    }
+
+    private static List<String> readList(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> list = new ArrayList<>();
+        for(int i = 0; i < size; i++){
+            list.add(in.readUTF());
+        }
+        return list;
+    }
+
+    /**
+     * Re-applies this change to the table, skipping anything the table already reflects
+     * @param table
+     */
+    public void redo(Table table){
+        switch(operation){
+            case INSERT -> redoInsert(table);
+            case UPDATE -> redoUpdate(table);
+            case DELETE -> redoDelete(table);
+            case ALTER -> redoAlter(table);
+        }
+    }
+
+    private void redoInsert(Table table){
+        if(values.isEmpty()){
+            return;
+        }
+        String id = values.get(0);
+        for(Record row : table.getRows()){
+            if(id.equals(row.getId())){
+                return;
+            }
+        }
+        List<Attribute> attributes = new ArrayList<>();
+        for(String value : values){
+            attributes.add(new Attribute(value));
+        }
+        table.getRows().add(new Record(attributes));
+    }
+
+    private void redoUpdate(Table table){
+        Set<String> idSet = new HashSet<>(ids);
+        for(int i = 0; i < names.size(); i++){
+            int index = table.getColHeadings().indexOf(new ColumnHeader(names.get(i)));
+            if(index < 0){
+                continue;
+            }
+            for(Record row : table.getRows()){
+                if(idSet.contains(row.getId()) && index < row.getAttributes().size()){
+                    row.getAttributes().set(index, new Attribute(values.get(i)));
+                }
+            }
+        }
+    }
+
+    private void redoDelete(Table table){
+        Set<String> idSet = new HashSet<>(ids);
+        table.getRows().removeIf(row -> idSet.contains(row.getId()));
+    }
+
+    private void redoAlter(Table table){
+        ColumnHeader attribute = new ColumnHeader(names.get(0));
+        int index = table.getColHeadings().indexOf(attribute);
+        if(ALTER_ADD.equals(values.get(0))){
+            if(index >= 0){
+                return;
+            }
+            if(table.getColHeadings().size() == 0){
+                table.getColHeadings().add(new ColumnHeader(PRIMARY_KEY));
+            }
+            table.getColHeadings().add(attribute);
+            for(Record row : table.getRows()){
+                row.addDefaultAttribute();
+            }
+        } else if(index >= 0) {
+            table.getColHeadings().remove(index);
+            for(Record row : table.getRows()){
+                if(index < row.getAttributes().size()){
+                    row.getAttributes().remove(index);
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,9 @@
+package edu.uob.dbfilesystem;
+
+public enum LogOperation {
+    INSERT,
+    UPDATE,
+    DELETE,
+    ALTER,
+    ABORT
+}
@@ -0,0 +1,399 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static edu.uob.dbfilesystem.DBFileConstants.LSM_MANIFEST_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.LSM_MEMTABLE_BYTES;
+import static edu.uob.dbfilesystem.DBFileConstants.LSM_MEMTABLE_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.LSM_RUN_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.LSM_TIER_RUNS;
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * Storage for tables created WITH FORMAT LSM (a log-structured merge tree), whose inserted and updated rows are
+ * written out sequentially rather than by rewriting the table's DB file:
+ * <ul>
+ *     <li>the memtable, the rows written since the last flush, is appended to <table>.mem (a full row per line, later
+ *     lines replacing earlier ones with the same id) and read into a map sorted by id when it is needed;</li>
+ *     <li>once the memtable has grown past LSM_MEMTABLE_BYTES it is flushed into an immutable run, <table>.<n>.run,
+ *     which holds the rows sorted by id;</li>
+ *     <li>the manifest, <table>.lsm, lists the table's runs from oldest to newest (and marks the table as an LSM
+ *     table). Runs of the same size tier (each tier LSM_TIER_RUNS times bigger than the last) are merged in the
+ *     background once there are LSM_TIER_RUNS of them, and once the runs are as big as the DB file they are folded
+ *     into it (see TableCompactor).</li>
+ * </ul>
+ * The table's DB file stays a tab-separated file holding the rows as they were when it was last written out in full,
+ * and a read merges the runs and the memtable into it, newest first (see DBTableFile.readDBFileIntoEntity). Deleted
+ * rows are left out through the table's tombstone file, the same as for other tables. Writing the table out in full
+ * empties the memtable and drops the runs (see reset), which is done before the tombstone file is removed, so a
+ * deleted row can't come back from a run.
+ */
+public class LsmTableFile {
+
+    // orders ids as numbers (ids are never negative and have no leading zeros)
+    public static final Comparator<String> ID_ORDER = Comparator.comparingInt(String::length)
+            .thenComparing(Comparator.naturalOrder());
+
+    private LsmTableFile(){
+
+    }
+
+    public static File getManifestFile(File dbFile){
+        return new File(getBasePath(dbFile) + LSM_MANIFEST_EXT);
+    }
+
+    public static File getMemtableFile(File dbFile){
+        return new File(getBasePath(dbFile) + LSM_MEMTABLE_EXT);
+    }
+
+    private static File getRunFile(File dbFile, int sequence){
+        return new File(getBasePath(dbFile) + "." + sequence + LSM_RUN_EXT);
+    }
+
+    private static String getBasePath(File dbFile){
+        String path = dbFile.getPath();
+        if(path.endsWith(TABLE_EXT)){
+            path = path.substring(0, path.length() - TABLE_EXT.length());
+        }
+        return path;
+    }
+
+    public static boolean isLsmTable(File dbFile){
+        return getManifestFile(dbFile).exists();
+    }
+
+    /**
+     * @param dbFile
+     * @return whether the table has rows in runs or its memtable that aren't in its DB file
+     * @throws IOException
+     */
+    public static boolean hasChanges(File dbFile) throws IOException {
+        return isLsmTable(dbFile) && (getMemtableFile(dbFile).length() > 0 || !readManifest(dbFile).isEmpty());
+    }
+
+    /**
+     * Adds the rows (new or changed) to the table's memtable, returning once they are on disk, and flushes the
+     * memtable into a run if it has grown past LSM_MEMTABLE_BYTES
+     * @param dbFile
+     * @param rows
+     * @throws IOException
+     */
+    public static void put(File dbFile, Collection<Record> rows) throws IOException {
+        DBTableFile dbTableFile = new DBTableFile();
+        StringBuilder lines = new StringBuilder();
+        for(Record row : rows){
+            if(!row.getAttributes().isEmpty()){
+                lines.append(dbTableFile.rowToString(row.getAttributes())).append('\n');
+            }
+        }
+        long size;
+        try(FileChannel channel = FileChannel.open(getMemtableFile(dbFile).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            size = TombstoneFile.dropTornLine(channel);
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(Charset.defaultCharset()));
+            while(buffer.hasRemaining()){
+                size += channel.write(buffer, size);
+            }
+            channel.force(true);
+        }
+        if(size >= LSM_MEMTABLE_BYTES){
+            flush(dbFile);
+        }
+    }
+
+    /**
+     * Writes the memtable out as the table's newest run and empties it. The run is listed in the manifest before the
+     * memtable is emptied, so a reader (or a crash) in between sees the rows twice rather than not at all.
+     * @param dbFile
+     * @throws IOException
+     */
+    public static void flush(File dbFile) throws IOException {
+        TreeMap<String, Record> memtable = new TreeMap<>(ID_ORDER);
+        readRows(getMemtableFile(dbFile), memtable);
+        if(!memtable.isEmpty()){
+            List<String> runs = readManifest(dbFile);
+            File run = writeRun(dbFile, memtable.values());
+            runs.add(run.getName());
+            writeManifest(dbFile, runs);
+        }
+        truncate(getMemtableFile(dbFile));
+    }
+
+    /**
+     * Reads the rows the table's runs and memtable hold, the newest version of each
+     * @param dbFile
+     * @return the rows, sorted by id
+     * @throws IOException (FileNotFoundException if a run was merged away while it was being read)
+     */
+    public static TreeMap<String, Record> readChanges(File dbFile) throws IOException {
+        TreeMap<String, Record> memtable = new TreeMap<>(ID_ORDER);
+        // the memtable is read first: rows flushed out of it after that are found in the run they were flushed to
+        readRows(getMemtableFile(dbFile), memtable);
+        TreeMap<String, Record> rows = new TreeMap<>(ID_ORDER);
+        for(String run : readManifest(dbFile)){
+            readRows(new File(dbFile.getParentFile(), run), rows);
+        }
+        rows.putAll(memtable);
+        return rows;
+    }
+
+    /**
+     * Merges the changed rows into a table read from the DB file: a row that is in the table is replaced where it is,
+     * and the others (rows inserted since the file was written out) are added at the end, in id order
+     * @param table
+     * @param changes
+     */
+    public static void mergeInto(Table table, TreeMap<String, Record> changes){
+        Map<String, Record> remaining = new HashMap<>(changes);
+        List<Record> rows = table.getRows();
+        for(int row = 0; row < rows.size(); row++){
+            Record changed = rows.get(row).getAttributes().isEmpty() ? null : remaining.remove(rows.get(row).getId());
+            if(changed != null){
+                rows.set(row, changed);
+            }
+        }
+        for(Record row : changes.values()){
+            if(remaining.containsKey(row.getId())){
+                rows.add(row);
+            }
+        }
+    }
+
+    /**
+     * Checks whether some of the table's runs are due to be merged (see mergeRuns)
+     * @param dbFile
+     * @return
+     * @throws IOException
+     */
+    public static boolean needsMerge(File dbFile) throws IOException {
+        return isLsmTable(dbFile) && findMergeableRuns(dbFile, readManifest(dbFile)) != null;
+    }
+
+    /**
+     * Merges the table's runs tier by tier: whenever LSM_TIER_RUNS runs in a row are in the same tier, they are
+     * replaced with a single run in the tier above. Runs are only merged with their neighbours, so the newer of two
+     * versions of a row is always in the newer run.
+     * @param dbFile
+     * @throws IOException
+     */
+    public static void mergeRuns(File dbFile) throws IOException {
+        List<String> runs = readManifest(dbFile);
+        int[] mergeable;
+        while((mergeable = findMergeableRuns(dbFile, runs)) != null){
+            List<String> merged = new ArrayList<>(runs.subList(mergeable[0], mergeable[1]));
+            TreeMap<String, Record> rows = new TreeMap<>(ID_ORDER);
+            for(String run : merged){
+                readRows(new File(dbFile.getParentFile(), run), rows);
+            }
+            File run = writeRun(dbFile, rows.values());
+            runs.subList(mergeable[0], mergeable[1]).clear();
+            runs.add(mergeable[0], run.getName());
+            writeManifest(dbFile, runs);
+            for(String oldRun : merged){
+                new File(dbFile.getParentFile(), oldRun).delete();
+            }
+        }
+    }
+
+    /**
+     * @param dbFile
+     * @return the total size of the table's runs, in bytes
+     * @throws IOException
+     */
+    public static long getRunBytes(File dbFile) throws IOException {
+        long bytes = 0;
+        for(String run : readManifest(dbFile)){
+            bytes += new File(dbFile.getParentFile(), run).length();
+        }
+        return bytes;
+    }
+
+    /**
+     * Empties the table's memtable and drops its runs, once its DB file has been written out with all of their rows
+     * (or makes a new table an LSM table)
+     * @param dbFile
+     * @throws IOException
+     */
+    public static void reset(File dbFile) throws IOException {
+        List<String> runs = isLsmTable(dbFile) ? readManifest(dbFile) : new ArrayList<>();
+        writeManifest(dbFile, new ArrayList<>());
+        truncate(getMemtableFile(dbFile));
+        for(String run : runs){
+            new File(dbFile.getParentFile(), run).delete();
+        }
+    }
+
+    /**
+     * Removes the table's manifest, memtable and runs (e.g., when the table is dropped)
+     * @param dbFile
+     * @throws IOException
+     */
+    public static void remove(File dbFile) throws IOException {
+        if(isLsmTable(dbFile)){
+            for(String run : readManifest(dbFile)){
+                new File(dbFile.getParentFile(), run).delete();
+            }
+        }
+        getMemtableFile(dbFile).delete();
+        getManifestFile(dbFile).delete();
+    }
+
+    /**
+     * Finds LSM_TIER_RUNS or more runs in a row that are in the same tier, starting from the newest
+     * @param dbFile
+     * @param runs
+     * @return the index of the first of the runs and of the run after the last, or null if there are none
+     */
+    private static int[] findMergeableRuns(File dbFile, List<String> runs){
+        int end = runs.size();
+        while(end > 0){
+            int tier = getTier(new File(dbFile.getParentFile(), runs.get(end - 1)));
+            int start = end - 1;
+            while(start > 0 && getTier(new File(dbFile.getParentFile(), runs.get(start - 1))) == tier){
+                start--;
+            }
+            if(end - start >= LSM_TIER_RUNS){
+                return new int[]{ start, end };
+            }
+            end = start;
+        }
+        return null;
+    }
+
+    private static int getTier(File run){
+        int tier = 0;
+        for(long size = run.length() / LSM_MEMTABLE_BYTES; size >= LSM_TIER_RUNS; size /= LSM_TIER_RUNS){
+            tier++;
+        }
+        return tier;
+    }
+
+    private static File writeRun(File dbFile, Collection<Record> rows) throws IOException {
+        File run = getRunFile(dbFile, nextRunSequence(dbFile));
+        File tempFile = new File(run.getPath() + TEMP_FILE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        try {
+            try(FileOutputStream fos = new FileOutputStream(tempFile, false);
+                BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(fos, Charset.defaultCharset()))){
+                for(Record row : rows){
+                    writer.write(dbTableFile.rowToString(row.getAttributes()));
+                    writer.write('\n');
+                }
+                writer.flush();
+                fos.getChannel().force(true);
+            }
+            DBTableFile.replaceFile(tempFile, run);
+        } finally {
+            tempFile.delete();
+        }
+        return run;
+    }
+
+    /**
+     * @param dbFile
+     * @return a run number that no run of the table has, listed in the manifest or not (e.g., a run left behind by a
+     * flush that didn't finish)
+     */
+    private static int nextRunSequence(File dbFile){
+        String prefix = getManifestFile(dbFile).getName();
+        prefix = prefix.substring(0, prefix.length() - LSM_MANIFEST_EXT.length()) + ".";
+        int sequence = 0;
+        File[] files = dbFile.getAbsoluteFile().getParentFile().listFiles();
+        for(File file : files != null ? files : new File[0]){
+            String name = file.getName();
+            if(name.startsWith(prefix) && name.endsWith(LSM_RUN_EXT)){
+                try {
+                    sequence = Math.max(sequence, Integer.parseInt(
+                            name.substring(prefix.length(), name.length() - LSM_RUN_EXT.length())));
+                } catch(NumberFormatException nfe){
+                    // not a run of this table
+                }
+            }
+        }
+        return sequence + 1;
+    }
+
+    private static List<String> readManifest(File dbFile) throws IOException {
+        List<String> runs = new ArrayList<>();
+        File manifest = getManifestFile(dbFile);
+        if(manifest.exists()){
+            for(String line : Files.readAllLines(manifest.toPath(), Charset.defaultCharset())){
+                if(!line.trim().isEmpty()){
+                    runs.add(line.trim());
+                }
+            }
+        }
+        return runs;
+    }
+
+    private static void writeManifest(File dbFile, List<String> runs) throws IOException {
+        File manifest = getManifestFile(dbFile);
+        File tempFile = new File(manifest.getPath() + TEMP_FILE_EXT);
+        try {
+            try(FileOutputStream fos = new FileOutputStream(tempFile, false)){
+                StringBuilder lines = new StringBuilder();
+                for(String run : runs){
+                    lines.append(run).append(System.lineSeparator());
+                }
+                fos.write(lines.toString().getBytes(Charset.defaultCharset()));
+                fos.getChannel().force(true);
+            }
+            DBTableFile.replaceFile(tempFile, manifest);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Reads the rows of a run or memtable into the map, replacing any with the same id. Anything after the last line
+     * break is the tail of an append that didn't finish, not a row.
+     * @param file
+     * @param rows
+     * @throws IOException
+     */
+    private static void readRows(File file, Map<String, Record> rows) throws IOException {
+        if(!file.exists()){
+            if(file.getName().endsWith(LSM_RUN_EXT)){
+                throw new FileNotFoundException(file.getName());
+            }
+            return;
+        }
+        DBTableFile dbTableFile = new DBTableFile();
+        String contents = new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset());
+        int start = 0;
+        int end;
+        while((end = contents.indexOf('\n', start)) >= 0){
+            Record row = dbTableFile.parseRecord(contents.substring(start, end));
+            if(row != null){
+                rows.put(row.getId(), row);
+            }
+            start = end + 1;
+        }
+    }
+
+    private static void truncate(File file) throws IOException {
+        if(file.exists()){
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)){
+                channel.truncate(0);
+                channel.force(true);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,264 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.BloomFilter;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.exceptions.DBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Read-only view of a tab-separated DB file that is memory-mapped rather than read line by line. Opening the file only
+ * builds an index of where each line starts; a row's fields are found and decoded when the row is accessed, and each
+ * field is only turned into a String when it is asked for. Nothing decoded is kept, so repeated scans share the
+ * operating system's page cache rather than holding a parsed copy of the table on the heap.
+ */
+public class MappedTableFile {
+
+    private final MappedByteBuffer buffer;
+    private final Charset charset;
+    // start offset of each line, followed by where the line after the last one would start
+    private final int[] lineStarts;
+    private final int rowCount;
+    // the key of the file that was mapped (see BloomFilterFile.getFileKey)
+    private final String fileKey;
+
+    private MappedTableFile(MappedByteBuffer buffer, int[] lineStarts, int rowCount, String fileKey){
+        this.buffer = buffer;
+        this.charset = Charset.defaultCharset();
+        this.lineStarts = lineStarts;
+        this.rowCount = rowCount;
+        this.fileKey = fileKey;
+    }
+
+    /**
+     * Maps the DB file and indexes its lines. Line 0 (the column headings) is included in the index, so row n is line
+     * n + 1.
+     * @param dbFile
+     * @return
+     * @throws IOException
+     * @throws DBException
+     */
+    public static MappedTableFile open(File dbFile) throws IOException, DBException {
+        String fileKey = BloomFilterFile.getFileKey(dbFile);
+        try(FileChannel channel = FileChannel.open(dbFile.toPath(), StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new DBException("DB file is too large to map: " + dbFile.getName());
+            }
+            int size = (int) channel.size();
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int[] lineStarts = new int[64];
+            int lineCount = 0;
+            int start = 0;
+            while(start < size){
+                if(lineCount + 1 >= lineStarts.length){
+                    lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+                }
+                lineStarts[lineCount++] = start;
+                int end = start;
+                while(end < size && buffer.get(end) != '\n'){
+                    end++;
+                }
+                start = end + 1;
+            }
+            lineStarts[lineCount] = start;
+            MappedTableFile mappedFile = new MappedTableFile(buffer, lineStarts, Math.max(lineCount - 1, 0), fileKey);
+
+            for(int row = 0; row < mappedFile.rowCount; row++){
+                // an empty line can't be read as a row, the same as when the file is read line by line
+                if(mappedFile.lineEnd(row + 1) == lineStarts[row + 1]){
+                    throw new DBException("Unable to read rows from DB file");
+                }
+            }
+            return mappedFile;
+        }
+    }
+
+    public int getRowCount(){
+        return rowCount;
+    }
+
+    /**
+     * Wraps the mapped file in a (read-only) table whose rows are decoded as they are accessed
+     * @param tableName
+     * @param dbFile
+     * @return
+     * @throws DBException
+     */
+    public Table asTable(String tableName, File dbFile) throws DBException {
+        return asTable(tableName, dbFile, Collections.emptySet());
+    }
+
+    /**
+     * Wraps the mapped file in a (read-only) table, leaving out the rows whose ids are given (i.e., rows that have
+     * been deleted but are still in the file), with the Bloom filters kept for the file (see BloomFilterFile)
+     * @param tableName
+     * @param dbFile
+     * @param deletedIds
+     * @return
+     * @throws DBException
+     */
+    public Table asTable(String tableName, File dbFile, Set<String> deletedIds) throws DBException {
+        Table table = new Table(tableName, dbFile);
+        if(buffer.limit() > 0){
+            if(!new DBTableFile().readColumnHeadingsIntoEntity(table, decode(lineStarts[0], lineEnd(0)))){
+                throw new DBException("Unable to read column headers from DB file");
+            }
+        }
+        int[] liveRows = deletedIds.isEmpty() ? null : findLiveRows(deletedIds);
+        table.setRows(new MappedRows(liveRows));
+        table.getHeader().setTailOffset(buffer.limit());
+        BloomFilter[] filters = BloomFilterFile.read(dbFile, fileKey, table.getColHeadings().size(), rowCount);
+        if(filters != null){
+            int[] segmentStarts = null;
+            for(int col = 0; col < filters.length; col++){
+                if(liveRows != null){
+                    // every column's segments start at the same rows
+                    segmentStarts = segmentStarts != null ? segmentStarts
+                            : BloomFilterFile.findLiveSegmentStarts(filters[col], row -> liveRows[row], liveRows.length);
+                    filters[col] = filters[col].withSegmentStarts(segmentStarts);
+                }
+                table.setBloomFilter(col, filters[col]);
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Checks whether the table's rows are backed by a mapped file, tab-separated or columnar (see
+     * OffHeapColumnStore), and so can't be modified
+     * @param table
+     * @return
+     */
+    public static boolean isMapped(Table table){
+        return table != null && (table.getRows() instanceof MappedRows || OffHeapColumnStore.isOffHeap(table));
+    }
+
+    /**
+     * Decodes a single field of a row without decoding the rest of the row
+     * @param row
+     * @param column
+     * @return the value, or null if the row has no such field
+     */
+    public String getValue(int row, int column){
+        List<Attribute> fields = new MappedFields(row + 1);
+        return column < fields.size() ? fields.get(column).getValue() : null;
+    }
+
+    private int[] findLiveRows(Set<String> deletedIds){
+        int[] liveRows = new int[rowCount];
+        int liveCount = 0;
+        for(int row = 0; row < rowCount; row++){
+            // only the id (the first field) has to be decoded to tell whether the row was deleted
+            int start = lineStarts[row + 1];
+            int end = lineEnd(row + 1);
+            int idEnd = start;
+            while(idEnd < end && buffer.get(idEnd) != '\t'){
+                idEnd++;
+            }
+            if(!deletedIds.contains(decode(start, idEnd))){
+                liveRows[liveCount++] = row;
+            }
+        }
+        return Arrays.copyOf(liveRows, liveCount);
+    }
+
+    private int lineEnd(int line){
+        int end = lineStarts[line + 1] - 1;
+        // lines may end with "\r\n" as well as "\n"
+        if(end > lineStarts[line] && buffer.get(end - 1) == '\r'){
+            end--;
+        }
+        return Math.min(end, buffer.limit());
+    }
+
+    private String decode(int start, int end){
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, charset);
+    }
+
+    private class MappedRows extends AbstractList<Record> implements RandomAccess {
+
+        // the rows of the file that make up the table, or null if that is all of them
+        private final int[] liveRows;
+
+        private MappedRows(int[] liveRows){
+            this.liveRows = liveRows;
+        }
+
+        @Override
+        public Record get(int index){
+            if(index < 0 || index >= size()){
+                throw new IndexOutOfBoundsException(index);
+            }
+            int row = liveRows == null ? index : liveRows[index];
+            return new Record(new MappedFields(row + 1));
+        }
+
+        @Override
+        public int size(){
+            return liveRows == null ? rowCount : liveRows.length;
+        }
+    }
+
+    /**
+     * The fields of one line, split the same way as String.split("\t") (so trailing empty fields are dropped)
+     */
+    private class MappedFields extends AbstractList<Attribute> implements RandomAccess {
+
+        private final int[] fieldStarts;
+        private final int fieldCount;
+
+        private MappedFields(int line){
+            int start = lineStarts[line];
+            int end = lineEnd(line);
+            int[] starts = new int[8];
+            int count = 0;
+            int fieldStart = start;
+            for(int i = start; i <= end; i++){
+                if(i == end || buffer.get(i) == '\t'){
+                    if(count + 1 >= starts.length){
+                        starts = Arrays.copyOf(starts, starts.length * 2);
+                    }
+                    starts[count++] = fieldStart;
+                    fieldStart = i + 1;
+                }
+            }
+            starts[count] = end + 1;
+            while(count > 0 && starts[count] - starts[count - 1] == 1){
+                count--;
+            }
+            this.fieldStarts = starts;
+            this.fieldCount = count;
+        }
+
+        @Override
+        public Attribute get(int index){
+            if(index < 0 || index >= fieldCount){
+                throw new IndexOutOfBoundsException(index);
+            }
+            return new Attribute(decode(fieldStarts[index], fieldStarts[index + 1] - 1));
+        }
+
+        @Override
+        public int size(){
+            return fieldCount;
+        }
+    }
+
+}
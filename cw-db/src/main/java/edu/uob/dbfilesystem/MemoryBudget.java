@@ -0,0 +1,105 @@
+package edu.uob.dbfilesystem;
+
+import java.io.Closeable;
+
+/**
+ * Server-wide budget for the memory queries hold their intermediate rows in (e.g., the rows of a join's result). Each
+ * query opens a Reservation and asks it for memory before it holds more rows; a request is turned down once the query
+ * holds its share of the budget, or once the budget is used up, and the query is then expected to spill rows to disk
+ * (see SpillableRowList) rather than hold more. Sizes are estimates, so the budget bounds the memory queries use
+ * rather than measuring it exactly.
+ */
+public class MemoryBudget {
+
+    private final long capacity;
+    private final long queryShare;
+    private long reservedBytes;
+
+    /**
+     * @param capacity the bytes all queries may hold between them
+     * @param queryShare the bytes any one query may hold
+     */
+    public MemoryBudget(long capacity, long queryShare){
+        this.capacity = capacity;
+        this.queryShare = queryShare;
+    }
+
+    /**
+     * @return a reservation for a query, holding no memory yet; to be closed once the query is done
+     */
+    public Reservation open(){
+        return new Reservation();
+    }
+
+    public long getCapacity(){
+        return capacity;
+    }
+
+    /**
+     * @return the bytes reserved by all open reservations
+     */
+    public synchronized long getReservedBytes(){
+        return reservedBytes;
+    }
+
+    private synchronized boolean tryReserve(long bytes){
+        if(reservedBytes + bytes > capacity){
+            return false;
+        }
+        reservedBytes += bytes;
+        return true;
+    }
+
+    private synchronized void release(long bytes){
+        reservedBytes -= bytes;
+    }
+
+    /**
+     * One query's hold on the budget
+     */
+    public class Reservation implements Closeable {
+
+        private long bytes;
+
+        private Reservation(){
+            this.bytes = 0;
+        }
+
+        /**
+         * @param more
+         * @return true if the query may hold a further number of bytes (which are then reserved for it), or false if
+         * that would take it over its share or the budget over its capacity
+         */
+        public synchronized boolean tryReserve(long more){
+            if(bytes + more > queryShare || !MemoryBudget.this.tryReserve(more)){
+                return false;
+            }
+            bytes += more;
+            return true;
+        }
+
+        /**
+         * Hands back bytes the query no longer holds (e.g., rows it has spilled)
+         * @param fewer
+         */
+        public synchronized void release(long fewer){
+            fewer = Math.min(fewer, bytes);
+            bytes -= fewer;
+            MemoryBudget.this.release(fewer);
+        }
+
+        /**
+         * @return the bytes reserved for the query
+         */
+        public synchronized long getBytes(){
+            return bytes;
+        }
+
+        @Override
+        public void close(){
+            release(getBytes());
+        }
+
+    }
+
+}
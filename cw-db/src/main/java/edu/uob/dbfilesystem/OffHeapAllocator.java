@@ -0,0 +1,53 @@
+package edu.uob.dbfilesystem;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Hands out off-heap (direct) memory for the indexes of an OffHeapColumnStore. Memory is taken a slab at a time and
+ * handed out from the current slab until it is used up, so a table with many columns doesn't need a direct buffer of
+ * its own per index. Nothing is freed on its own: the slabs are released together once the store that owns the
+ * allocator is no longer reachable.
+ */
+public class OffHeapAllocator {
+
+    private final int slabBytes;
+    private ByteBuffer currentSlab;
+    private long allocatedBytes;
+
+    public OffHeapAllocator(int slabBytes){
+        this.slabBytes = slabBytes;
+    }
+
+    /**
+     * @param count
+     * @return an off-heap buffer of count ints, all zero
+     */
+    public synchronized IntBuffer allocateInts(int count){
+        long bytes = (long) count * Integer.BYTES;
+        if(count < 0 || bytes > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Unable to allocate " + count + " ints off-heap");
+        }
+        int size = (int) bytes;
+        if(size > slabBytes){
+            // too big for a slab, so it gets a buffer of its own
+            allocatedBytes += size;
+            return ByteBuffer.allocateDirect(size).asIntBuffer();
+        }
+        if(currentSlab == null || currentSlab.remaining() < size){
+            currentSlab = ByteBuffer.allocateDirect(slabBytes);
+            allocatedBytes += slabBytes;
+        }
+        ByteBuffer slice = currentSlab.slice(currentSlab.position(), size);
+        currentSlab.position(currentSlab.position() + size);
+        return slice.asIntBuffer();
+    }
+
+    /**
+     * @return the off-heap memory taken so far, in bytes
+     */
+    public synchronized long getAllocatedBytes(){
+        return allocatedBytes;
+    }
+
+}
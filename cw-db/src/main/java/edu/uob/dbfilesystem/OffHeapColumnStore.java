@@ -0,0 +1,317 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.BloomFilter;
+import edu.uob.dbelements.ColumnDictionary;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.ZoneMap;
+import edu.uob.exceptions.DBException;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import static edu.uob.dbfilesystem.ColumnarTableFile.BLOCK_HEADER_BYTES;
+import static edu.uob.dbfilesystem.ColumnarTableFile.NO_VALUE;
+import static edu.uob.dbfilesystem.DBFileConstants.DICTIONARY_MAX_ENTRIES;
+import static edu.uob.dbfilesystem.DBFileConstants.OFF_HEAP_SLAB_BYTES;
+
+/**
+ * Read-only view of a columnar table whose column blocks stay off the heap, in segments mapped from the DB file. A
+ * value is found in its block and decoded when it is asked for; integers and dictionary codes are found by position,
+ * and string values through an index of where each one starts, which is kept off-heap as well (see OffHeapAllocator).
+ * Only the headings and the values of small column dictionaries are held on the heap, so the heap (and the garbage
+ * collector's work) doesn't grow with the size of the table, and the data can take up more memory than the heap is
+ * allowed.
+ */
+public class OffHeapColumnStore {
+
+    private final int rowCount;
+    private final OffHeapAllocator allocator;
+    private final List<ColumnHeader> headings;
+    private final List<Column> columns;
+    private final List<ZoneMap> zoneMaps;
+    private BloomFilter[] bloomFilters;
+
+    public OffHeapColumnStore(int rowCount){
+        this.rowCount = rowCount;
+        this.allocator = new OffHeapAllocator(OFF_HEAP_SLAB_BYTES);
+        this.headings = new ArrayList<>();
+        this.columns = new ArrayList<>();
+        this.zoneMaps = new ArrayList<>();
+    }
+
+    /**
+     * Adds a column held in a block of a columnar DB file (including the block header)
+     * @param name
+     * @param type
+     * @param block
+     * @param zoneMap the column's zone map, or null if the file doesn't keep one
+     * @throws DBException if the block can't be read
+     */
+    /* default */ void addColumn(String name, ColumnType type, ByteBuffer block, ZoneMap zoneMap) throws DBException {
+        try {
+            if(type == ColumnType.INTEGER){
+                if(block.limit() - BLOCK_HEADER_BYTES != (long) rowCount * Long.BYTES){
+                    throw new IndexOutOfBoundsException();
+                }
+                columns.add(new IntegerColumn(block));
+            } else if(type == ColumnType.DICTIONARY){
+                columns.add(new DictionaryColumn(block));
+            } else {
+                columns.add(new StringColumn(block));
+            }
+        } catch(IndexOutOfBoundsException e){
+            throw new DBException("Unable to read column from DB file: " + name);
+        }
+        headings.add(new ColumnHeader(name));
+        zoneMaps.add(zoneMap);
+    }
+
+    /**
+     * Gives the store's columns the Bloom filters kept for the DB file (see BloomFilterFile)
+     * @param bloomFilters a filter for each column, or null if there are none
+     */
+    /* default */ void setBloomFilters(BloomFilter[] bloomFilters){
+        this.bloomFilters = bloomFilters;
+    }
+
+    /**
+     * Wraps the store in a (read-only) table, leaving out the rows whose ids are given (i.e., rows that have been
+     * deleted but are still in the file)
+     * @param tableName
+     * @param dbFile
+     * @param deletedIds
+     * @return
+     */
+    public Table asTable(String tableName, File dbFile, Set<String> deletedIds){
+        Table table = new Table(tableName, dbFile);
+        table.getHeader().setFormat(TableFormat.COLUMNAR);
+        table.setColHeadings(headings);
+        IntBuffer liveRows = deletedIds.isEmpty() || columns.isEmpty() ? null : findLiveRows(deletedIds);
+        table.setRows(new OffHeapRows(liveRows));
+        int[] zoneStarts = null;
+        for(int col = 0; col < zoneMaps.size(); col++){
+            ZoneMap zoneMap = zoneMaps.get(col);
+            if(zoneMap != null && liveRows != null){
+                // every column's zones start at the same rows
+                zoneStarts = zoneStarts != null ? zoneStarts : findLiveZoneStarts(zoneMap, liveRows);
+                zoneMap = zoneMap.withZoneStarts(zoneStarts);
+            }
+            if(zoneMap != null){
+                table.setZoneMap(col, zoneMap);
+            }
+        }
+        int[] segmentStarts = null;
+        for(int col = 0; bloomFilters != null && col < bloomFilters.length; col++){
+            BloomFilter bloomFilter = bloomFilters[col];
+            if(liveRows != null){
+                // every column's segments start at the same rows
+                segmentStarts = segmentStarts != null ? segmentStarts
+                        : BloomFilterFile.findLiveSegmentStarts(bloomFilter, liveRows::get, liveRows.limit());
+                bloomFilter = bloomFilter.withSegmentStarts(segmentStarts);
+            }
+            table.setBloomFilter(col, bloomFilter);
+        }
+        return table;
+    }
+
+    /**
+     * Checks whether the table's rows are held in an off-heap column store (and so can't be modified)
+     * @param table
+     * @return
+     */
+    public static boolean isOffHeap(Table table){
+        return table != null && table.getRows() instanceof OffHeapRows;
+    }
+
+    /**
+     * @return the off-heap memory taken by the store's indexes, in bytes (the mapped blocks aren't counted)
+     */
+    public long getAllocatedBytes(){
+        return allocator.getAllocatedBytes();
+    }
+
+    private IntBuffer findLiveRows(Set<String> deletedIds){
+        IntBuffer liveRows = allocator.allocateInts(rowCount);
+        int liveCount = 0;
+        for(int row = 0; row < rowCount; row++){
+            // only the id (the first column) has to be decoded to tell whether the row was deleted
+            Attribute id = columns.get(0).getAttribute(row);
+            if(id == null || !deletedIds.contains(id.getValue())){
+                liveRows.put(liveCount++, row);
+            }
+        }
+        return liveRows.limit(liveCount);
+    }
+
+    /**
+     * Works out where each zone starts among the rows that are left once deleted rows are left out
+     * @param zoneMap
+     * @param liveRows
+     * @return
+     */
+    private int[] findLiveZoneStarts(ZoneMap zoneMap, IntBuffer liveRows){
+        int[] zoneStarts = new int[zoneMap.getZoneCount() + 1];
+        int liveRow = 0;
+        for(int zone = 0; zone < zoneMap.getZoneCount(); zone++){
+            while(liveRow < liveRows.limit() && liveRows.get(liveRow) < zoneMap.getZoneStart(zone)){
+                liveRow++;
+            }
+            zoneStarts[zone] = liveRow;
+        }
+        zoneStarts[zoneMap.getZoneCount()] = liveRows.limit();
+        return zoneStarts;
+    }
+
+    private static String decode(ByteBuffer block, int offset, int length){
+        byte[] bytes = new byte[length];
+        block.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds where each of count length-prefixed strings starts, from the given offset of the block
+     * @return the offset after the last of them
+     */
+    private static int indexStrings(ByteBuffer block, int offset, int count, IntBuffer starts){
+        for(int i = 0; i < count; i++){
+            starts.put(i, offset);
+            int length = block.getInt(offset);
+            offset += Integer.BYTES;
+            if(length != NO_VALUE){
+                if(length < 0 || length > block.limit() - offset){
+                    throw new IndexOutOfBoundsException(offset);
+                }
+                offset += length;
+            }
+        }
+        return offset;
+    }
+
+    private abstract static class Column {
+        /**
+         * @param row
+         * @return the row's value, or null if the row has no value for the column
+         */
+        abstract Attribute getAttribute(int row);
+    }
+
+    private class IntegerColumn extends Column {
+        private final ByteBuffer block;
+
+        private IntegerColumn(ByteBuffer block){
+            this.block = block;
+        }
+
+        @Override
+        Attribute getAttribute(int row){
+            return new Attribute(Long.toString(block.getLong(BLOCK_HEADER_BYTES + row * Long.BYTES)));
+        }
+    }
+
+    private class StringColumn extends Column {
+        private final ByteBuffer block;
+        private final IntBuffer starts;
+
+        private StringColumn(ByteBuffer block){
+            this.block = block;
+            this.starts = allocator.allocateInts(rowCount);
+            indexStrings(block, BLOCK_HEADER_BYTES, rowCount, starts);
+        }
+
+        @Override
+        Attribute getAttribute(int row){
+            int start = starts.get(row);
+            int length = block.getInt(start);
+            return length == NO_VALUE ? null : new Attribute(decode(block, start + Integer.BYTES, length));
+        }
+    }
+
+    private class DictionaryColumn extends Column {
+        private final ByteBuffer block;
+        private final int codesStart;
+        // a small dictionary is decoded onto the heap, so repeated values share one Attribute as when read in full
+        private final ColumnDictionary dictionary;
+        // otherwise where each of the dictionary's values starts in the block
+        private final IntBuffer valueStarts;
+
+        private DictionaryColumn(ByteBuffer block){
+            this.block = block;
+            int size = block.getInt(BLOCK_HEADER_BYTES);
+            if(size < 0){
+                throw new IndexOutOfBoundsException(size);
+            }
+            IntBuffer starts = allocator.allocateInts(size);
+            this.codesStart = indexStrings(block, BLOCK_HEADER_BYTES + Integer.BYTES, size, starts);
+            if(block.limit() - codesStart != (long) rowCount * Integer.BYTES){
+                throw new IndexOutOfBoundsException(codesStart);
+            }
+            if(size <= DICTIONARY_MAX_ENTRIES){
+                this.dictionary = new ColumnDictionary(size);
+                for(int code = 0; code < size; code++){
+                    dictionary.encode(decode(block, starts.get(code) + Integer.BYTES, block.getInt(starts.get(code))));
+                }
+                this.valueStarts = null;
+            } else {
+                this.dictionary = null;
+                this.valueStarts = starts;
+            }
+        }
+
+        @Override
+        Attribute getAttribute(int row){
+            int code = block.getInt(codesStart + row * Integer.BYTES);
+            if(code == NO_VALUE){
+                return null;
+            }
+            if(dictionary != null){
+                return dictionary.get(code);
+            }
+            int start = valueStarts.get(code);
+            return new Attribute(decode(block, start + Integer.BYTES, block.getInt(start)));
+        }
+    }
+
+    private class OffHeapRows extends AbstractList<Record> implements RandomAccess {
+
+        // the rows of the file that make up the table, or null if that is all of them
+        private final IntBuffer liveRows;
+
+        private OffHeapRows(IntBuffer liveRows){
+            this.liveRows = liveRows;
+        }
+
+        @Override
+        public Record get(int index){
+            if(index < 0 || index >= size()){
+                throw new IndexOutOfBoundsException(index);
+            }
+            int row = liveRows == null ? index : liveRows.get(index);
+            // the same as reading the file in full: a row's values stop at the first column it has no value for
+            List<Attribute> attributes = new ArrayList<>(columns.size());
+            for(Column column : columns){
+                Attribute value = column.getAttribute(row);
+                if(value == null){
+                    break;
+                }
+                attributes.add(value);
+            }
+            return new Record(attributes);
+        }
+
+        @Override
+        public int size(){
+            return liveRows == null ? rowCount : liveRows.limit();
+        }
+    }
+
+}
@@ -0,0 +1,416 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.TablePartitioning;
+import edu.uob.exceptions.DBException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import static edu.uob.dbfilesystem.DBFileConstants.MAX_PARTITIONS;
+import static edu.uob.dbfilesystem.DBFileConstants.PARTITION_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.PARTITION_SPEC_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * Storage for tables created with PARTITIONS n, whose rows are spread over n tab-separated files by the hash of a key
+ * column (see TablePartitioning): the first partition is the table's DB file, <table>.tab, and the others are
+ * <table>.<n>.part. The sidecar <table>.parts holds the number of partitions and the key column, and marks the table
+ * as partitioned.
+ * <p>
+ * A table is read with the partitions' rows one after the other, in partition order, and the partitions are parsed in
+ * parallel. Sidecars that belong to the table as a whole (its tombstones, and the Bloom filters of its first partition,
+ * whose rows come first) apply to the rows read as they do to those of any other table. Writing the table out in full
+ * swaps in its first partition last, as that also removes its tombstones.
+ */
+public class PartitionedTableFile {
+
+    private PartitionedTableFile(){
+
+    }
+
+    public static File getSpecFile(File dbFile){
+        return new File(getBasePath(dbFile) + PARTITION_SPEC_EXT);
+    }
+
+    /**
+     * @param dbFile
+     * @param partition
+     * @return the file holding the partition's rows (the DB file itself for the first partition)
+     */
+    public static File getPartitionFile(File dbFile, int partition){
+        return partition == 0 ? dbFile : new File(getBasePath(dbFile) + "." + partition + PARTITION_EXT);
+    }
+
+    private static String getBasePath(File dbFile){
+        String path = dbFile.getPath();
+        if(path.endsWith(TABLE_EXT)){
+            path = path.substring(0, path.length() - TABLE_EXT.length());
+        }
+        return path;
+    }
+
+    public static boolean isPartitioned(File dbFile){
+        return getSpecFile(dbFile).exists();
+    }
+
+    /**
+     * @param dbFile
+     * @return how the table's rows are spread over its files, or null if it isn't partitioned
+     * @throws IOException
+     */
+    public static TablePartitioning readPartitioning(File dbFile) throws IOException {
+        File specFile = getSpecFile(dbFile);
+        if(!specFile.exists()){
+            return null;
+        }
+        String[] spec = new String(Files.readAllBytes(specFile.toPath()), Charset.defaultCharset()).trim().split("\t");
+        try {
+            int partitionCount = Integer.parseInt(spec[0]);
+            if(partitionCount >= 1 && partitionCount <= MAX_PARTITIONS){
+                return new TablePartitioning(partitionCount, spec[1]);
+            }
+        } catch(NumberFormatException | ArrayIndexOutOfBoundsException e){
+            // reported below
+        }
+        throw new IOException("Unable to read partitions of table: " + dbFile.getName());
+    }
+
+    /* default */ static void writePartitioning(File dbFile, TablePartitioning partitioning) throws IOException {
+        File specFile = getSpecFile(dbFile);
+        File tempFile = new File(specFile.getPath() + TEMP_FILE_EXT);
+        try {
+            try(FileOutputStream fos = new FileOutputStream(tempFile, false)){
+                fos.write((partitioning.getPartitionCount() + "\t" + partitioning.getKeyColumn())
+                        .getBytes(Charset.defaultCharset()));
+                fos.getChannel().force(true);
+            }
+            DBTableFile.replaceFile(tempFile, specFile);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Reads the rows of all the table's partitions, parsing them in parallel. If a partition's file is replaced while
+     * the partitions are read (i.e., the table is written out in full), they are read again, so the rows are never a
+     * mix of two versions of the table.
+     * @param dbTableFile
+     * @param dbFile
+     * @param tableName
+     * @param partitioning
+     * @return the table, with its rows grouped by partition
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ static Table read(DBTableFile dbTableFile, File dbFile, String tableName,
+                                    TablePartitioning partitioning) throws IOException, DBException {
+        int partitionCount = partitioning.getPartitionCount();
+        while(true){
+            String[] fileKeys = new String[partitionCount];
+            List<DBTableFile.SnapshotReader> readers = new ArrayList<>();
+            try {
+                // every partition is opened before any is read, so they are all read as they were at about the same time
+                for(int partition = 0; partition < partitionCount; partition++){
+                    File file = getPartitionFile(dbFile, partition);
+                    fileKeys[partition] = BloomFilterFile.getFileKey(file);
+                    // a partition that was never written to has no file
+                    readers.add(partition == 0 || file.exists() ? dbTableFile.openSnapshotReader(file) : null);
+                }
+                List<Callable<Table>> tasks = new ArrayList<>();
+                for(int partition = 0; partition < partitionCount; partition++){
+                    DBTableFile.SnapshotReader reader = readers.get(partition);
+                    File file = getPartitionFile(dbFile, partition);
+                    tasks.add(() -> {
+                        Table part = new Table(tableName, file);
+                        if(reader != null){
+                            dbTableFile.readRowsIntoEntity(part, reader);
+                        }
+                        return part;
+                    });
+                }
+                List<Table> parts = invokeAll(tasks);
+
+                boolean replaced = false;
+                for(int partition = 0; partition < partitionCount; partition++){
+                    File file = getPartitionFile(dbFile, partition);
+                    replaced |= !Objects.equals(fileKeys[partition], BloomFilterFile.getFileKey(file));
+                }
+                if(replaced){
+                    continue;
+                }
+
+                Table table = new Table(tableName, dbFile);
+                table.setColHeadings(parts.get(0).getColHeadings());
+                table.getHeader().setTailOffset(parts.get(0).getHeader().getTailOffset());
+                table.getHeader().setPartitioning(partitioning);
+                int[] partitionStarts = new int[partitionCount + 1];
+                for(int partition = 0; partition < partitionCount; partition++){
+                    partitionStarts[partition] = table.getRows().size();
+                    table.getRows().addAll(parts.get(partition).getRows());
+                }
+                partitionStarts[partitionCount] = table.getRows().size();
+                table.setPartitionStarts(partitionStarts);
+                return table;
+            } finally {
+                for(DBTableFile.SnapshotReader reader : readers){
+                    if(reader != null){
+                        reader.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rows of one of the table's partitions
+     * @param dbTableFile
+     * @param dbFile
+     * @param tableName
+     * @param partition
+     * @return the table, holding only the rows of the partition
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ static Table readPartition(DBTableFile dbTableFile, File dbFile, String tableName, int partition)
+            throws IOException, DBException {
+        Table table = new Table(tableName, dbFile);
+        try(DBTableFile.SnapshotReader reader = dbTableFile.openSnapshotReader(dbFile)){
+            if(partition == 0){
+                dbTableFile.readRowsIntoEntity(table, reader);
+                return table;
+            }
+            // the column headings are only read from the first partition, which always has a file
+            table.setColHeadings(readHeadings(dbTableFile, dbFile, tableName, reader));
+        }
+        File file = getPartitionFile(dbFile, partition);
+        if(file.exists()){
+            Table part = new Table(tableName, file);
+            try(DBTableFile.SnapshotReader reader = dbTableFile.openSnapshotReader(file)){
+                dbTableFile.readRowsIntoEntity(part, reader);
+            }
+            table.getRows().addAll(part.getRows());
+        }
+        return table;
+    }
+
+    private static List<ColumnHeader> readHeadings(DBTableFile dbTableFile, File dbFile, String tableName,
+                                                   DBTableFile.SnapshotReader reader) throws IOException, DBException {
+        Table headings = new Table(tableName, dbFile);
+        String line = reader.readLine();
+        if(line != null && !dbTableFile.readColumnHeadingsIntoEntity(headings, line)){
+            throw new DBException("Unable to read column headers from DB file");
+        }
+        return headings.getColHeadings();
+    }
+
+    /**
+     * Writes the table's rows out in full, each into its partition's file. If the rows aren't grouped by partition
+     * (e.g., a row's key has been changed), the table's rows are put in the order they were written in.
+     * @param dbTableFile
+     * @param dbFile
+     * @param table
+     * @param partitioning
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ static void write(DBTableFile dbTableFile, File dbFile, Table table, TablePartitioning partitioning)
+            throws IOException, DBException {
+        int keyIndex = partitioning.getKeyIndex(table.getColHeadings());
+        if(keyIndex < 0){
+            throw new DBException("Unable to find partition key column: " + partitioning.getKeyColumn());
+        }
+        int partitionCount = partitioning.getPartitionCount();
+        List<List<Record>> partitions = new ArrayList<>();
+        for(int partition = 0; partition < partitionCount; partition++){
+            partitions.add(new ArrayList<>());
+        }
+        boolean grouped = true;
+        int lastPartition = 0;
+        for(Record row : table.getRows()){
+            int partition = partitioning.partitionOf(row, keyIndex);
+            grouped &= partition >= lastPartition;
+            lastPartition = partition;
+            partitions.get(partition).add(row);
+        }
+
+        List<TableFileWriter> writers = new ArrayList<>();
+        try {
+            for(int partition = 0; partition < partitionCount; partition++){
+                TableFileWriter writer = new TableFileWriter(dbTableFile, getPartitionFile(dbFile, partition),
+                        table.getColHeadings(), partition == 0);
+                writers.add(writer);
+                for(Record row : partitions.get(partition)){
+                    writer.write(row);
+                }
+            }
+            for(int partition = partitionCount - 1; partition >= 0; partition--){
+                writers.get(partition).commit();
+            }
+        } finally {
+            for(TableFileWriter writer : writers){
+                writer.close();
+            }
+        }
+        if(!isPartitioned(dbFile)){
+            writePartitioning(dbFile, partitioning);
+        }
+
+        int[] partitionStarts = new int[partitionCount + 1];
+        List<Record> rows = grouped ? null : new ArrayList<>(table.getRows().size());
+        for(int partition = 0; partition < partitionCount; partition++){
+            partitionStarts[partition + 1] = partitionStarts[partition] + partitions.get(partition).size();
+            if(rows != null){
+                rows.addAll(partitions.get(partition));
+            }
+        }
+        if(rows != null){
+            table.setRows(rows);
+        }
+        table.setPartitionStarts(partitionStarts);
+    }
+
+    /**
+     * Appends rows to the end of their partitions' files (with one write and one force per partition), and adds each
+     * to the end of its partition's rows in the table
+     * @param dbTableFile
+     * @param dbFile
+     * @param table
+     * @param records
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ static void append(DBTableFile dbTableFile, File dbFile, Table table, List<Record> records)
+            throws IOException, DBException {
+        TablePartitioning partitioning = table.getHeader().getPartitioning();
+        int keyIndex = partitioning.getKeyIndex(table.getColHeadings());
+        if(keyIndex < 0){
+            throw new DBException("Unable to find partition key column: " + partitioning.getKeyColumn());
+        }
+        int[] partitions = new int[records.size()];
+        List<StringBuilder> rows = new ArrayList<>();
+        for(int partition = 0; partition < partitioning.getPartitionCount(); partition++){
+            rows.add(new StringBuilder());
+        }
+        for(int i = 0; i < partitions.length; i++){
+            partitions[i] = partitioning.partitionOf(records.get(i), keyIndex);
+            StringBuilder partitionRows = rows.get(partitions[i]);
+            if(partitionRows.length() > 0){
+                partitionRows.append(System.lineSeparator());
+            }
+            partitionRows.append(dbTableFile.rowToString(records.get(i).getAttributes()));
+        }
+        for(int partition = 0; partition < rows.size(); partition++){
+            if(rows.get(partition).length() == 0){
+                continue;
+            }
+            File file = getPartitionFile(dbFile, partition);
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)){
+                long position = channel.size();
+                String row = rows.get(partition).toString();
+                if(position == 0){
+                    row = dbTableFile.rowToString(table.getColHeadings()) + System.lineSeparator() + row;
+                } else if(!dbTableFile.endsWithNewLine(channel, position)){
+                    row = System.lineSeparator() + row;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(row.getBytes(Charset.defaultCharset()));
+                while(buffer.hasRemaining()){
+                    position += channel.write(buffer, position);
+                }
+                channel.force(true);
+                if(partition == 0){
+                    table.getHeader().setTailOffset(position);
+                }
+            }
+        }
+        for(int i = 0; i < partitions.length; i++){
+            table.addToPartition(records.get(i), partitions[i]);
+        }
+    }
+
+    /**
+     * Removes the table's other partitions and its partition sidecar (e.g., when the table is dropped, or written out
+     * whole into its DB file)
+     * @param dbFile
+     * @throws IOException
+     */
+    public static void remove(File dbFile) throws IOException {
+        TablePartitioning partitioning = readPartitioning(dbFile);
+        if(partitioning != null){
+            for(int partition = 1; partition < partitioning.getPartitionCount(); partition++){
+                getPartitionFile(dbFile, partition).delete();
+            }
+        }
+        getSpecFile(dbFile).delete();
+    }
+
+    /**
+     * Runs the tasks in parallel on the common fork/join pool
+     * @param tasks
+     * @return the results of the tasks, in the same order
+     * @throws IOException
+     * @throws DBException
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> tasks) throws IOException, DBException {
+        // each task keeps what it throws, as the pool hands back a copy of an exception thrown in another thread
+        Throwable[] thrown = new Throwable[tasks.size()];
+        List<Callable<T>> caughtTasks = new ArrayList<>();
+        for(int i = 0; i < tasks.size(); i++){
+            int task = i;
+            caughtTasks.add(() -> {
+                try {
+                    return tasks.get(task).call();
+                } catch(Exception | Error e){
+                    thrown[task] = e;
+                    return null;
+                }
+            });
+        }
+        List<T> results = new ArrayList<>();
+        try {
+            for(Future<T> future : ForkJoinPool.commonPool().invokeAll(caughtTasks)){
+                results.add(future.get());
+            }
+        } catch(InterruptedException ie){
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for partitions");
+        } catch(ExecutionException ee){
+            throw new IOException(ee.getCause());
+        }
+        // the first task's error is raised, as it would be if the tasks had been run one after the other
+        for(Throwable cause : thrown){
+            if(cause instanceof IOException){
+                throw (IOException) cause;
+            }
+            if(cause instanceof DBException){
+                throw (DBException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error){
+                throw (Error) cause;
+            }
+            if(cause != null){
+                throw new IOException(cause);
+            }
+        }
+        return results;
+    }
+
+}
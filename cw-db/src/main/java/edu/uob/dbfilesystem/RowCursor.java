@@ -0,0 +1,29 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.exceptions.DBException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Forward-only cursor over a table's rows, so a command can work through a table one row at a time rather than having
+ * every row in memory at once
+ */
+public interface RowCursor extends Closeable {
+
+    /**
+     * @return the table's column headings (null if the table has none)
+     */
+    List<ColumnHeader> getColHeadings();
+
+    /**
+     * @return the next row, or null once every row has been read
+     * @throws IOException
+     * @throws DBException
+     */
+    Record next() throws IOException, DBException;
+
+}
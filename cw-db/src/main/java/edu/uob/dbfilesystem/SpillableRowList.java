@@ -0,0 +1,186 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.DBFileConstants.SPILL_EXT;
+
+/**
+ * The rows a query builds up (e.g., the rows of a join's result), held in memory for as long as the query's memory
+ * reservation allows. Once the reservation turns a row down, the rows held so far are written out to a spill file in
+ * the database directory (in the DB file's row format) and their memory handed back, so the query can carry on with
+ * its memory bounded. The rows are read back, in the order they were added, through a cursor.
+ */
+public class SpillableRowList implements Closeable {
+
+    // rough sizes of a row and of each of its values on the heap, on top of the value's characters
+    private static final long ROW_BYTES = 48;
+    private static final long ATTRIBUTE_BYTES = 64;
+
+    private final List<ColumnHeader> colHeadings;
+    private final MemoryBudget.Reservation reservation;
+    private final File directory;
+    private final DBTableFile dbTableFile;
+    private List<Record> rows;
+    private long heldBytes;
+    private File spillFile;
+    private BufferedWriter spillWriter;
+    private long spilledRows;
+
+    /**
+     * @param colHeadings the headings of the rows
+     * @param reservation the query's memory reservation, which the rows held in memory are reserved from
+     * @param directory the directory rows are spilled to
+     */
+    public SpillableRowList(List<ColumnHeader> colHeadings, MemoryBudget.Reservation reservation, File directory){
+        this.colHeadings = colHeadings;
+        this.reservation = reservation;
+        this.directory = directory;
+        this.dbTableFile = new DBTableFile();
+        this.rows = new ArrayList<>();
+        this.heldBytes = 0;
+        this.spilledRows = 0;
+    }
+
+    /**
+     * Adds a row after the rows added so far, spilling the rows held in memory if the reservation can't hold it
+     * @param row
+     * @throws IOException
+     */
+    public void add(Record row) throws IOException {
+        long bytes = estimateBytes(row);
+        rows.add(row);
+        if(reservation.tryReserve(bytes)){
+            heldBytes += bytes;
+        } else {
+            spill();
+        }
+    }
+
+    /**
+     * @return the number of rows added
+     */
+    public long size(){
+        return spilledRows + rows.size();
+    }
+
+    /**
+     * @return the number of rows written out to disk
+     */
+    public long getSpilledRows(){
+        return spilledRows;
+    }
+
+    /**
+     * Opens a cursor over the rows, in the order they were added: the spilled rows first, then those still in memory.
+     * No rows may be added once a cursor is open.
+     * @return
+     * @throws IOException
+     */
+    public RowCursor openCursor() throws IOException {
+        if(spillWriter != null){
+            spillWriter.flush();
+        }
+        BufferedReader spilled = spillFile != null ? new BufferedReader(new FileReader(spillFile)) : null;
+        return new RowCursor() {
+            private BufferedReader reader = spilled;
+            private int nextRow = 0;
+
+            @Override
+            public List<ColumnHeader> getColHeadings(){
+                return colHeadings;
+            }
+
+            @Override
+            public Record next() throws IOException {
+                if(reader != null){
+                    String line;
+                    while((line = reader.readLine()) != null){
+                        Record row = dbTableFile.parseRecord(line);
+                        if(row != null){
+                            return row;
+                        }
+                    }
+                    reader.close();
+                    reader = null;
+                }
+                return nextRow < rows.size() ? rows.get(nextRow++) : null;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if(reader != null){
+                    reader.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Drops the rows, deleting the spill file and handing their memory back to the reservation
+     */
+    @Override
+    public void close() throws IOException {
+        rows = new ArrayList<>();
+        reservation.release(heldBytes);
+        heldBytes = 0;
+        try {
+            if(spillWriter != null){
+                spillWriter.close();
+            }
+        } finally {
+            if(spillFile != null){
+                spillFile.delete();
+            }
+        }
+    }
+
+    private void spill() throws IOException {
+        if(spillWriter == null){
+            spillFile = File.createTempFile("rows", SPILL_EXT, directory);
+            spillFile.deleteOnExit();
+            spillWriter = new BufferedWriter(new FileWriter(spillFile));
+        }
+        for(Record row : rows){
+            spillWriter.write(dbTableFile.rowToString(row.getAttributes()));
+            spillWriter.write(System.lineSeparator());
+        }
+        spilledRows += rows.size();
+        rows = new ArrayList<>();
+        reservation.release(heldBytes);
+        heldBytes = 0;
+    }
+
+    /**
+     * @param rows
+     * @return a rough size of the rows on the heap
+     */
+    public static long estimateBytes(List<Record> rows){
+        long bytes = 0;
+        for(Record row : rows){
+            bytes += estimateBytes(row);
+        }
+        return bytes;
+    }
+
+    private static long estimateBytes(Record row){
+        long bytes = ROW_BYTES;
+        for(Attribute attribute : row.getAttributes()){
+            String value = attribute.getValue();
+            bytes += ATTRIBUTE_BYTES + (value != null ? value.length() : 0);
+        }
+        return bytes;
+    }
+
+}
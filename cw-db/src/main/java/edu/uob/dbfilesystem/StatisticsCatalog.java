@@ -0,0 +1,225 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.ColumnStatistics;
+import edu.uob.dbelements.DistinctCounter;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.TableStatistics;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static edu.uob.dbfilesystem.DBFileConstants.STATISTICS_CATALOG_FILENAME;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * The statistics of a database's tables (see ANALYZE), kept in the database's statistics.data file with a line per
+ * column: <table:attribute:rows:modified:nulls:numbers:min:max:low:high:histogram:distinct>, where the histogram is a
+ * comma-separated list of bucket counts and distinct is the (Base64) registers of the column's distinct value counter.
+ * Only tables that have been analyzed have statistics; after that they are kept up to date as rows are written, so
+ * the file is rewritten with each write to such a table. As statistics are only used to estimate, the file isn't
+ * forced to disk, and statistics lost in a crash are put right by the next ANALYZE.
+ */
+public class StatisticsCatalog {
+
+    private static final int FIELD_COUNT = 12;
+
+    private final File catalogFile;
+    private final Map<String, TableStatistics> statistics;
+    private boolean loaded;
+
+    public StatisticsCatalog(File databaseDirectory){
+        this.catalogFile = new File(databaseDirectory, STATISTICS_CATALOG_FILENAME);
+        this.statistics = new LinkedHashMap<>();
+    }
+
+    /**
+     * Collects the statistics of the table, replacing any it had
+     * @param tableName
+     * @param table
+     * @return the statistics the table had before, or null if it had none
+     * @throws IOException
+     */
+    public synchronized TableStatistics analyze(String tableName, Table table) throws IOException {
+        load();
+        TableStatistics previous = statistics.put(tableName.toLowerCase(Locale.ROOT), TableStatistics.collect(table));
+        rewrite();
+        return previous;
+    }
+
+    /**
+     * @param tableName
+     * @return a copy of the table's statistics, or null if it hasn't been analyzed
+     * @throws IOException
+     */
+    public synchronized TableStatistics getStatistics(String tableName) throws IOException {
+        load();
+        TableStatistics table = statistics.get(tableName.toLowerCase(Locale.ROOT));
+        return table != null ? table.copy() : null;
+    }
+
+    /**
+     * @param tableName
+     * @param attribute
+     * @return a copy of the attribute's statistics, or null if the table hasn't been analyzed
+     * @throws IOException
+     */
+    public synchronized ColumnStatistics getStatistics(String tableName, String attribute) throws IOException {
+        load();
+        TableStatistics table = statistics.get(tableName.toLowerCase(Locale.ROOT));
+        ColumnStatistics column = table != null ? table.getColumn(attribute) : null;
+        return column != null ? column.copy() : null;
+    }
+
+    /**
+     * @param tableName
+     * @return the table's number of rows, as its statistics have it, or -1 if it hasn't been analyzed
+     * @throws IOException
+     */
+    public synchronized long getRowCount(String tableName) throws IOException {
+        load();
+        TableStatistics table = statistics.get(tableName.toLowerCase(Locale.ROOT));
+        return table != null ? table.getRowCount() : -1;
+    }
+
+    public void addRow(String tableName, Record row) throws IOException {
+        update(tableName, table -> table.addRow(row));
+    }
+
+    public void addRows(String tableName, List<Record> rows) throws IOException {
+        update(tableName, table -> rows.forEach(table::addRow));
+    }
+
+    public void removeRows(String tableName, List<Record> rows) throws IOException {
+        update(tableName, table -> rows.forEach(table::removeRow));
+    }
+
+    public void updateRows(String tableName, List<Record> oldRows, List<Record> newRows) throws IOException {
+        update(tableName, table -> {
+            for(int i = 0; i < oldRows.size(); i++){
+                table.updateRow(oldRows.get(i), newRows.get(i));
+            }
+        });
+    }
+
+    /**
+     * Adds the statistics of an attribute just added to the table (see ALTER)
+     * @param tableName
+     * @param table the table, with the attribute as its last column
+     * @throws IOException
+     */
+    public void addAttribute(String tableName, Table table) throws IOException {
+        int col = table.getColHeadings().size() - 1;
+        update(tableName, statistics -> statistics.addAttribute(table.getColHeadings().get(col).getColName(),
+                ColumnStatistics.collect(table.getRows(), col)));
+    }
+
+    public void removeAttribute(String tableName, String attribute) throws IOException {
+        update(tableName, table -> table.removeAttribute(attribute));
+    }
+
+    /**
+     * Removes the table's statistics (e.g., when the table is dropped)
+     * @param tableName
+     * @throws IOException
+     */
+    public synchronized void removeTable(String tableName) throws IOException {
+        load();
+        if(statistics.remove(tableName.toLowerCase(Locale.ROOT)) != null){
+            rewrite();
+        }
+    }
+
+    private synchronized void update(String tableName, Consumer<TableStatistics> change) throws IOException {
+        load();
+        TableStatistics table = statistics.get(tableName.toLowerCase(Locale.ROOT));
+        if(table != null){
+            change.accept(table);
+            rewrite();
+        }
+    }
+
+    private void load() throws IOException {
+        if(loaded){
+            return;
+        }
+        Map<String, List<String>> attributes = new LinkedHashMap<>();
+        Map<String, List<ColumnStatistics>> columns = new LinkedHashMap<>();
+        Map<String, long[]> counts = new LinkedHashMap<>();
+        if(catalogFile.exists()){
+            try(BufferedReader br = new BufferedReader(new FileReader(catalogFile))){
+                String line;
+                while((line = br.readLine()) != null){
+                    String[] split = line.trim().split(":", -1);
+                    ColumnStatistics column = split.length == FIELD_COUNT ? parseColumn(split) : null;
+                    // anything that isn't a statistics line is skipped
+                    if(column != null){
+                        attributes.computeIfAbsent(split[0], table -> new ArrayList<>()).add(split[1]);
+                        columns.computeIfAbsent(split[0], table -> new ArrayList<>()).add(column);
+                        counts.put(split[0], new long[]{ Long.parseLong(split[2]), Long.parseLong(split[3]) });
+                    }
+                }
+            }
+        }
+        for(Map.Entry<String, long[]> table : counts.entrySet()){
+            statistics.put(table.getKey(), new TableStatistics(table.getValue()[0], table.getValue()[1],
+                    attributes.get(table.getKey()), columns.get(table.getKey())));
+        }
+        loaded = true;
+    }
+
+    private ColumnStatistics parseColumn(String[] fields){
+        try {
+            Long.parseLong(fields[2]);
+            Long.parseLong(fields[3]);
+            String[] buckets = fields[10].split(",");
+            if(buckets.length != ColumnStatistics.HISTOGRAM_BUCKETS){
+                return null;
+            }
+            long[] histogram = new long[buckets.length];
+            for(int i = 0; i < buckets.length; i++){
+                histogram[i] = Long.parseLong(buckets[i]);
+            }
+            return new ColumnStatistics(Long.parseLong(fields[4]), Long.parseLong(fields[5]),
+                    Float.parseFloat(fields[6]), Float.parseFloat(fields[7]), Float.parseFloat(fields[8]),
+                    Float.parseFloat(fields[9]), histogram, new DistinctCounter(Base64.getDecoder().decode(fields[11])));
+        } catch(IllegalArgumentException e){
+            // includes NumberFormatException
+            return null;
+        }
+    }
+
+    private void rewrite() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for(Map.Entry<String, TableStatistics> entry : statistics.entrySet()){
+            TableStatistics table = entry.getValue();
+            for(String attribute : table.getAttributes()){
+                ColumnStatistics column = table.getColumn(attribute);
+                StringBuilder histogram = new StringBuilder();
+                for(long bucket : column.getHistogram()){
+                    histogram.append(histogram.length() > 0 ? "," : "").append(bucket);
+                }
+                lines.add(String.join(":", entry.getKey(), attribute, Long.toString(table.getRowCount()),
+                        Long.toString(table.getModifiedRows()), Long.toString(column.getNullCount()),
+                        Long.toString(column.getNumericCount()), Float.toString(column.getMin()),
+                        Float.toString(column.getMax()), Float.toString(column.getLow()),
+                        Float.toString(column.getHigh()), histogram,
+                        Base64.getEncoder().encodeToString(column.getDistinctValues().getRegisters())));
+            }
+        }
+        File tempFile = new File(catalogFile.getPath() + TEMP_FILE_EXT);
+        try(BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile, false),
+                Charset.defaultCharset()))){
+            bw.write(String.join(System.lineSeparator(), lines));
+        }
+        DBTableFile.replaceFile(tempFile, catalogFile);
+    }
+
+}
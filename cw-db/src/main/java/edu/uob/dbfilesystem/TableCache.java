@@ -0,0 +1,142 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Table;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * Server-wide cache of parsed tables, keyed by the table's DB file (i.e., database and table name). Entries are evicted
+ * in least-recently-used order once the capacity is reached.
+ *
+ * Each entry remembers the last-modified time and length of the file it was read from (its 'version'), so if the file
+ * is changed behind the cache's back the stale entry is dropped and the table is re-read on the next lookup.
+ */
+public class TableCache {
+
+    private final int capacity;
+    private final LinkedHashMap<String, CachedTable> entries;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public TableCache(int capacity){
+        this.capacity = capacity;
+        // access-order, so iteration starts from the least-recently-used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cached table for the DB file, or null if the table is not cached or the file has changed since
+     * it was cached
+     * @param dbFile
+     * @return
+     */
+    public synchronized Table get(File dbFile){
+        String key = getKey(dbFile);
+        CachedTable cached = entries.get(key);
+        if(cached != null && cached.isCurrent(new File(key))){
+            hitCount++;
+            return cached.table;
+        }
+        if(cached != null){
+            entries.remove(key);
+        }
+        missCount++;
+        return null;
+    }
+
+    /**
+     * Removes the table from the cache and hands it to the caller (e.g., a command that is about to modify it). The
+     * caller is expected to put the table back once it has been stored.
+     * @param dbFile
+     * @return
+     */
+    public synchronized Table remove(File dbFile){
+        Table table = get(dbFile);
+        entries.remove(getKey(dbFile));
+        return table;
+    }
+
+    /**
+     * Caches the table, versioned against the current state of its DB file (so call this after the file is written)
+     * @param dbFile
+     * @param table
+     */
+    public synchronized void put(File dbFile, Table table){
+        if(dbFile == null || table == null){
+            return;
+        }
+        String key = getKey(dbFile);
+        File fileOnDisk = new File(key);
+        if(!fileOnDisk.exists()){
+            return;
+        }
+        entries.put(key, new CachedTable(table, fileOnDisk.lastModified(), fileOnDisk.length()));
+        while(entries.size() > capacity){
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    public synchronized void invalidate(File dbFile){
+        entries.remove(getKey(dbFile));
+    }
+
+    /**
+     * Drops every cached table that belongs to the given database directory
+     * @param databaseDirectory
+     */
+    public synchronized void invalidateDatabase(File databaseDirectory){
+        String prefix = getKey(databaseDirectory) + File.separator;
+        entries.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    public synchronized int size(){
+        return entries.size();
+    }
+
+    public synchronized long getHitCount(){
+        return hitCount;
+    }
+
+    public synchronized long getMissCount(){
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount(){
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString(){
+        return "TableCache[size=" + entries.size() + ", capacity=" + capacity + ", hits=" + hitCount + ", misses="
+                + missCount + ", evictions=" + evictionCount + "]";
+    }
+
+    private String getKey(File dbFile){
+        // DBTableFile lower-cases paths before opening them, so do the same here
+        return dbFile.getPath().toLowerCase(Locale.ROOT);
+    }
+
+    private static class CachedTable {
+        private final Table table;
+        private final long lastModified;
+        private final long length;
+
+        private CachedTable(Table table, long lastModified, long length){
+            this.table = table;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+
+        private boolean isCurrent(File dbFile){
+            return dbFile.lastModified() == lastModified && dbFile.length() == length;
+        }
+    }
+
+}
@@ -0,0 +1,144 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.exceptions.DBException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import static edu.uob.dbfilesystem.DBFileConstants.LSM_MANIFEST_EXT;
+
+/**
+ * Rewrites tables without their deleted rows in the background. DELETE only records the ids of the rows it removes
+ * (see TombstoneFile), so the rows stay in the DB file until the table is compacted; a table is queued for compaction
+ * once enough of its rows are dead that reading past them costs more than rewriting the file.
+ *
+ * It also merges the runs of LSM tables (see LsmTableFile) in the background, and folds them into the DB file once
+ * they are as big as it is.
+ *
+ * Compaction holds the given lock, which commands are expected to share, so a table is never rewritten while a
+ * command is reading or changing it.
+ */
+public class TableCompactor {
+
+    private final int minDeadRows;
+    private final double deadRowRatio;
+    private final Lock exclusiveLock;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queued;
+
+    public TableCompactor(int minDeadRows, double deadRowRatio, Lock exclusiveLock){
+        this.minDeadRows = minDeadRows;
+        this.deadRowRatio = deadRowRatio;
+        this.exclusiveLock = exclusiveLock;
+        // a single thread, which is let go while there is nothing to compact
+        this.executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "table-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.queued = ConcurrentHashMap.newKeySet();
+    }
+
+    public boolean needsCompaction(long liveRowCount, long deadRowCount){
+        return deadRowCount >= minDeadRows && deadRowCount > deadRowRatio * (liveRowCount + deadRowCount);
+    }
+
+    /**
+     * Queues the table for compaction if it has passed the dead-row threshold (and isn't already queued)
+     * @param dbFile
+     * @param liveRowCount the number of rows left in the table
+     * @return whether the table was queued
+     * @throws IOException
+     */
+    public boolean compactIfNeeded(File dbFile, long liveRowCount) throws IOException {
+        if(!needsCompaction(liveRowCount, TombstoneFile.read(dbFile).size())){
+            return false;
+        }
+        String key = dbFile.getPath().toLowerCase(Locale.ROOT);
+        if(queued.add(key)){
+            executor.execute(() -> compact(dbFile, key));
+        }
+        return true;
+    }
+
+    private void compact(File dbFile, String key){
+        exclusiveLock.lock();
+        try {
+            queued.remove(key);
+            // the table may have been dropped, or written out in full by a command, since it was queued
+            if(dbFile.exists() && TombstoneFile.getFile(dbFile).exists()){
+                DBTableFile dbTableFile = new DBTableFile();
+                dbTableFile.storeEntityIntoDBFile(dbTableFile.readDBFileIntoEntity(dbFile.getPath()));
+            }
+        } catch(IOException | DBException e){
+            System.out.println("ERROR: unable to compact table file '" + dbFile.getName() + "'");
+        } finally {
+            exclusiveLock.unlock();
+        }
+    }
+
+    /**
+     * Queues the LSM table for its runs to be merged if a tier of them is full, or for them to be merged into its DB
+     * file if they are as big as it is (and it isn't already queued)
+     * @param dbFile
+     * @return whether the table was queued
+     * @throws IOException
+     */
+    public boolean mergeRunsIfNeeded(File dbFile) throws IOException {
+        if(!LsmTableFile.isLsmTable(dbFile) || !LsmTableFile.needsMerge(dbFile) && !needsMajorMerge(dbFile)){
+            return false;
+        }
+        String key = dbFile.getPath().toLowerCase(Locale.ROOT) + LSM_MANIFEST_EXT;
+        if(queued.add(key)){
+            executor.execute(() -> mergeRuns(dbFile, key));
+        }
+        return true;
+    }
+
+    private boolean needsMajorMerge(File dbFile) throws IOException {
+        long runBytes = LsmTableFile.getRunBytes(dbFile);
+        return runBytes > 0 && runBytes >= dbFile.length();
+    }
+
+    private void mergeRuns(File dbFile, String key){
+        exclusiveLock.lock();
+        try {
+            queued.remove(key);
+            // the table may have been dropped, or written out in full by a command, since it was queued
+            if(dbFile.exists() && LsmTableFile.isLsmTable(dbFile)){
+                LsmTableFile.mergeRuns(dbFile);
+                if(needsMajorMerge(dbFile)){
+                    DBTableFile dbTableFile = new DBTableFile();
+                    dbTableFile.storeEntityIntoDBFile(dbTableFile.readDBFileIntoEntity(dbFile.getPath()));
+                }
+            }
+        } catch(IOException | DBException e){
+            System.out.println("ERROR: unable to merge runs of table file '" + dbFile.getName() + "'");
+        } finally {
+            exclusiveLock.unlock();
+        }
+    }
+
+    /**
+     * Waits for the tables queued so far to be compacted (or merged)
+     * @throws InterruptedException
+     */
+    public void awaitQueued() throws InterruptedException {
+        try {
+            // the queue is worked through in order by a single thread
+            executor.submit(() -> { }).get();
+        } catch(ExecutionException ee){
+            // nothing to report from an empty task
+        }
+    }
+
+}
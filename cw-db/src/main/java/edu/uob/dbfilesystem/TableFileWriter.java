@@ -0,0 +1,128 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.BloomFilter;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.exceptions.DBException;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.DBFileConstants.BLOOM_FILTER_SEGMENT_ROWS;
+import static edu.uob.dbfilesystem.DBFileConstants.TEMP_FILE_EXT;
+
+/**
+ * Writes a tab-separated DB file one row at a time. Rows go into a temporary file that only replaces the DB file when
+ * the writer is committed; closing the writer without committing throws the rows away and leaves the DB file as it was.
+ * The Bloom filters of the file's columns (see BloomFilterFile) are built as the rows are written.
+ */
+public class TableFileWriter implements Closeable {
+
+    private final DBTableFile dbTableFile;
+    private final File dbFile;
+    private final File tempFile;
+    private final FileOutputStream fos;
+    private final BufferedWriter writer;
+    private final BloomFilter.Builder[] bloomFilters;
+    private long rowCount;
+    private boolean committed;
+
+    /* default */ TableFileWriter(DBTableFile dbTableFile, File dbFile, List<ColumnHeader> colHeadings)
+            throws IOException, DBException {
+        this(dbTableFile, dbFile, colHeadings, true);
+    }
+
+    /**
+     * @param dbTableFile
+     * @param dbFile
+     * @param colHeadings
+     * @param withBloomFilters whether to build the file's Bloom filters (which are only read for a table's own DB
+     * file, not for the other files of a partitioned table)
+     * @throws IOException
+     * @throws DBException
+     */
+    /* default */ TableFileWriter(DBTableFile dbTableFile, File dbFile, List<ColumnHeader> colHeadings,
+                                  boolean withBloomFilters) throws IOException, DBException {
+        if (colHeadings == null || colHeadings.size() == 0) {
+            throw new DBException("Unable to store column headers in DB file");
+        }
+        this.dbTableFile = dbTableFile;
+        this.dbFile = dbFile;
+        this.tempFile = new File(dbFile.getPath() + TEMP_FILE_EXT);
+        this.fos = new FileOutputStream(tempFile, false);
+        this.writer = new BufferedWriter(new OutputStreamWriter(fos, Charset.defaultCharset()));
+        writer.write(dbTableFile.rowToString(colHeadings));
+        this.bloomFilters = new BloomFilter.Builder[withBloomFilters ? colHeadings.size() : 0];
+        for (int col = 0; col < bloomFilters.length; col++) {
+            bloomFilters[col] = new BloomFilter.Builder(BLOOM_FILTER_SEGMENT_ROWS);
+        }
+    }
+
+    public void write(Record record) throws IOException, DBException {
+        if (record.getAttributes() == null) {
+            throw new DBException("Unable to store rows in DB file");
+        }
+        // rows without any data are skipped, in line with storeRecordIntoDBFile
+        if (record.getAttributes().size() > 0) {
+            writer.write(System.lineSeparator());
+            writer.write(dbTableFile.rowToString(record.getAttributes()));
+            List<Attribute> values = record.getAttributes();
+            for (int col = 0; col < bloomFilters.length; col++) {
+                bloomFilters[col].add(col < values.size() ? values.get(col).getValue() : null);
+            }
+            rowCount++;
+        }
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Makes the written rows durable and swaps them in for the DB file. The rows are expected to have been read with
+     * the table's deleted rows left out, so its tombstone file is removed along with the old DB file. The rows of an
+     * LSM table's runs and memtable (see LsmTableFile) are expected to have been merged in, so those are emptied
+     * first, before the tombstones that may be hiding some of their rows.
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        writer.flush();
+        fos.getChannel().force(true);
+        writer.close();
+        BloomFilterFile.clear(dbFile);
+        DBTableFile.replaceFile(tempFile, dbFile);
+        if (LsmTableFile.isLsmTable(dbFile)) {
+            LsmTableFile.reset(dbFile);
+        }
+        TombstoneFile.clear(dbFile);
+        committed = true;
+        if (bloomFilters.length == 0) {
+            return;
+        }
+        try {
+            BloomFilterFile.write(dbFile, buildBloomFilters());
+        } catch (IOException ioe) {
+            // the rows are written; the table is just read without filters until it is next written out
+            BloomFilterFile.clear(dbFile);
+        }
+    }
+
+    private BloomFilter[] buildBloomFilters() {
+        BloomFilter[] filters = new BloomFilter[bloomFilters.length];
+        for (int col = 0; col < filters.length; col++) {
+            filters[col] = bloomFilters[col].build();
+        }
+        return filters;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!committed) {
+            writer.close();
+            tempFile.delete();
+        }
+    }
+
+}
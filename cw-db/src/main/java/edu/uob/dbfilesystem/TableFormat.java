@@ -0,0 +1,7 @@
+package edu.uob.dbfilesystem;
+
+public enum TableFormat {
+    TAB, // tab-separated text, one row per line (the original .tab format)
+    COLUMNAR, // binary, one typed block per column with a footer index
+    LSM // tab-separated, with new and changed rows written to sorted runs rather than the DB file (see LsmTableFile)
+}
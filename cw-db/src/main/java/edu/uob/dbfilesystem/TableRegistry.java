@@ -0,0 +1,73 @@
+package edu.uob.dbfilesystem;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+
+/**
+ * Server-wide record of the tables in each database, so checking whether a table exists is a set lookup rather than a
+ * listing of the database directory. A database's tables are listed once, the first time it is asked about, and then
+ * kept up to date by CREATE and DROP. A table that isn't in the registry is still looked for on disk (in case its file
+ * was put there by something else) before the registry says it doesn't exist.
+ */
+public class TableRegistry {
+
+    private final Map<String, Set<String>> tablesByDatabase;
+
+    public TableRegistry(){
+        this.tablesByDatabase = new ConcurrentHashMap<>();
+    }
+
+    public boolean hasTable(File databaseDirectory, String tableName){
+        String table = tableName.toLowerCase(Locale.ROOT);
+        Set<String> tables = getTables(databaseDirectory);
+        if(tables.contains(table)){
+            return true;
+        }
+        if(new File(databaseDirectory, table + TABLE_EXT).isFile()){
+            tables.add(table);
+            return true;
+        }
+        return false;
+    }
+
+    public void addTable(File databaseDirectory, String tableName){
+        getTables(databaseDirectory).add(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    public void removeTable(File databaseDirectory, String tableName){
+        getTables(databaseDirectory).remove(tableName.toLowerCase(Locale.ROOT));
+    }
+
+    public void removeDatabase(File databaseDirectory){
+        tablesByDatabase.remove(getKey(databaseDirectory));
+    }
+
+    private Set<String> getTables(File databaseDirectory){
+        return tablesByDatabase.computeIfAbsent(getKey(databaseDirectory), key -> listTables(databaseDirectory));
+    }
+
+    private Set<String> listTables(File directory){
+        Set<String> tables = ConcurrentHashMap.newKeySet();
+        File[] files = directory.listFiles();
+        if(files != null){
+            for(File file : files){
+                // the database directory also holds non-table files (e.g., the write-ahead log)
+                String fileName = file.getName().toLowerCase(Locale.ROOT);
+                if(fileName.endsWith(TABLE_EXT)){
+                    tables.add(fileName.substring(0, fileName.length() - TABLE_EXT.length()));
+                }
+            }
+        }
+        return tables;
+    }
+
+    private String getKey(File databaseDirectory){
+        return databaseDirectory.getPath().toLowerCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,44 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+
+import java.util.List;
+
+/**
+ * Cursor over a table that is already in memory (or mapped)
+ */
+public class TableRowCursor implements RowCursor {
+
+    private final Table table;
+    private int nextRow;
+
+    public TableRowCursor(Table table){
+        this.table = table;
+        this.nextRow = 0;
+    }
+
+    public Table getTable(){
+        return table;
+    }
+
+    @Override
+    public List<ColumnHeader> getColHeadings(){
+        return table.getColHeadings();
+    }
+
+    @Override
+    public Record next(){
+        if(nextRow < table.getRows().size()){
+            return table.getRows().get(nextRow++);
+        }
+        return null;
+    }
+
+    @Override
+    public void close(){
+
+    }
+
+}
@@ -0,0 +1,117 @@
+package edu.uob.dbfilesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.TOMBSTONE_EXT;
+
+/**
+ * Sidecar file (<table>.del) holding the ids of rows that have been deleted but are still in the table's DB file, one
+ * id per line. DELETE appends to it rather than rewriting the table, and readers skip the rows it lists. Ids are never
+ * reused, so the next time the whole table is written out (e.g., when it is compacted) the sidecar is simply removed.
+ */
+public class TombstoneFile {
+
+    private TombstoneFile(){
+
+    }
+
+    public static File getFile(File dbFile){
+        String path = dbFile.getPath();
+        if(path.endsWith(TABLE_EXT)){
+            path = path.substring(0, path.length() - TABLE_EXT.length());
+        }
+        return new File(path + TOMBSTONE_EXT);
+    }
+
+    /**
+     * Reads the ids of the table's deleted rows
+     * @param dbFile
+     * @return the ids, or an empty set if no rows have been deleted since the table was last written out
+     * @throws IOException
+     */
+    public static Set<String> read(File dbFile) throws IOException {
+        Set<String> ids = new HashSet<>();
+        File file = getFile(dbFile);
+        if(!file.exists()){
+            return ids;
+        }
+        String contents = new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset());
+        int start = 0;
+        int end;
+        // anything after the last line break is a torn append, not an id
+        while((end = contents.indexOf('\n', start)) >= 0){
+            String id = contents.substring(start, end).trim();
+            if(!id.isEmpty()){
+                ids.add(id);
+            }
+            start = end + 1;
+        }
+        return ids;
+    }
+
+    /**
+     * Adds the ids to the table's deleted rows, returning once they are on disk
+     * @param dbFile
+     * @param ids
+     * @throws IOException
+     */
+    public static void append(File dbFile, Collection<String> ids) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for(String id : ids){
+            lines.append(id).append(System.lineSeparator());
+        }
+        try(FileChannel channel = FileChannel.open(getFile(dbFile).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            long position = dropTornLine(channel);
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(Charset.defaultCharset()));
+            while(buffer.hasRemaining()){
+                position += channel.write(buffer, position);
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Cuts the file back to its last line break, so the tail of an append that didn't finish can't run into the next
+     * id written
+     * @param channel
+     * @return the new size of the file
+     * @throws IOException
+     */
+    /* default */ static long dropTornLine(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer oneByte = ByteBuffer.allocate(1);
+        long end = size;
+        while(end > 0){
+            oneByte.clear();
+            channel.read(oneByte, end - 1);
+            if(oneByte.get(0) == '\n'){
+                break;
+            }
+            end--;
+        }
+        if(end < size){
+            channel.truncate(end);
+        }
+        return end;
+    }
+
+    /**
+     * Removes the sidecar, once the table's DB file has been written out without the deleted rows
+     * @param dbFile
+     */
+    public static void clear(File dbFile){
+        getFile(dbFile).delete();
+    }
+
+}
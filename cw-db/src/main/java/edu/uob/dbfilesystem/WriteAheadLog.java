@@ -0,0 +1,331 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Table;
+import edu.uob.exceptions.DBException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static edu.uob.dbfilesystem.DBFileConstants.TABLE_EXT;
+import static edu.uob.dbfilesystem.DBFileConstants.WAL_CHECKPOINT_BYTES;
+import static edu.uob.dbfilesystem.DBFileConstants.WAL_FILENAME;
+
+/**
+ * Per-database write-ahead log. A command logs its change (see LogEntry) and waits for the entry to be durable before
+ * it writes the table file, so if the server dies between the two the change is redone from the log on the next start.
+ *
+ * Entries are framed as [payload length][payload][CRC32]; a torn entry at the end of the log (i.e., the write that was
+ * in progress when the server died) fails its checksum and is ignored. Writers that commit at the same time share a
+ * single fsync (group commit): the first one to sync writes and forces everything that is pending, the others wait. A
+ * batch that fails to reach the log is kept for the next sync to retry, so no later entry is reported durable before it.
+ *
+ * A change whose table file write fails is cancelled by an abort entry naming its position in the log, so it isn't
+ * redone on the next start for a command that has already reported an error.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private final File logFile;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream pending;
+    private long lastLsn;
+    private long durableLsn;
+    // the log sequence number just before the first entry in the log file, so an entry's position in the file can be
+    // worked out from its log sequence number
+    private long fileStartLsn;
+    private int unappliedCount;
+    private boolean flushing;
+
+    public WriteAheadLog(File databaseDirectory) throws IOException {
+        this.logFile = new File(databaseDirectory, WAL_FILENAME);
+        this.channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.pending = new ByteArrayOutputStream();
+        this.fileStartLsn = -readFrames(logFile).size();
+    }
+
+    /**
+     * Logs the entry and returns once it (and anything logged before it) is on disk
+     * @param entry
+     * @return the entry's log sequence number
+     * @throws IOException
+     */
+    public long commit(LogEntry entry) throws IOException {
+        return commitAll(List.of(entry));
+    }
+
+    /**
+     * Logs the entries together and returns once they are all on disk, so a batch of changes costs one flush. If they
+     * can't be written, they are aborted before the exception is thrown, so the log's retry of them (see sync) doesn't
+     * redo changes that were reported as errors.
+     * @param entries
+     * @return the log sequence number of the last entry
+     * @throws IOException
+     */
+    public long commitAll(List<LogEntry> entries) throws IOException {
+        long firstLsn;
+        long lsn = 0;
+        synchronized (this) {
+            // logged one after the other, so they can be aborted together (see aborted)
+            firstLsn = lastLsn + 1;
+            for (LogEntry entry : entries) {
+                lsn = append(entry);
+            }
+        }
+        try {
+            sync(lsn);
+        } catch (IOException ioe) {
+            appendAbort(firstLsn, lsn);
+            throw ioe;
+        }
+        return lsn;
+    }
+
+    /* default */ synchronized long append(LogEntry entry) throws IOException {
+        pending.write(frame(entry));
+        unappliedCount++;
+        return ++lastLsn;
+    }
+
+    /* default */ void sync(long lsn) throws IOException {
+        byte[] batch;
+        long batchLsn;
+        long start;
+
+        synchronized (this) {
+            while (durableLsn < lsn && flushing) {
+                try {
+                    wait();
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for write-ahead log");
+                }
+            }
+            if (durableLsn >= lsn) {
+                return;
+            }
+            // become the leader for everything logged so far
+            start = channel.position();
+            flushing = true;
+            batch = pending.toByteArray();
+            batchLsn = lastLsn;
+            pending.reset();
+        }
+
+        boolean written = false;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(batch);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            written = true;
+        } finally {
+            synchronized (this) {
+                if (written) {
+                    durableLsn = batchLsn;
+                } else {
+                    requeue(batch, start);
+                }
+                flushing = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Puts a batch that failed to reach the log back in front of anything logged since, so the next sync retries it
+     * rather than marking later entries durable without it. Whatever part of the batch was written is cut off the log.
+     * @param batch
+     * @param start the position in the log the batch was written at
+     */
+    private void requeue(byte[] batch, long start) {
+        byte[] later = pending.toByteArray();
+        pending.reset();
+        pending.write(batch, 0, batch.length);
+        pending.write(later, 0, later.length);
+        try {
+            channel.truncate(start);
+            channel.position(start);
+        } catch (IOException ioe) {
+            // the torn entry can't be cut off, so the retry written after it won't be read back
+        }
+    }
+
+    /**
+     * Records that a logged change has reached its table file. Once every logged change has been applied, the log is
+     * truncated if it has grown past its checkpoint size or the change altered a table's schema (schema changes are not
+     * safe to redo once later changes have been applied on top of them).
+     * @param entry
+     * @throws IOException
+     */
+    public synchronized void applied(LogEntry entry) throws IOException {
+        if (unappliedCount > 0) {
+            unappliedCount--;
+        }
+        if (entry.isSchemaChange() || channel.size() > WAL_CHECKPOINT_BYTES) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Records that logged changes never reached their table file (e.g., the write failed), logging an abort entry so
+     * they aren't redone on the next start. Returns once the abort entry is on disk.
+     * @param firstAbortedLsn the log sequence number of the first of the changes
+     * @param lastAbortedLsn the log sequence number of the last of the changes
+     * @throws IOException
+     */
+    public void aborted(long firstAbortedLsn, long lastAbortedLsn) throws IOException {
+        long lsn = appendAbort(firstAbortedLsn, lastAbortedLsn);
+        sync(lsn);
+        synchronized (this) {
+            if (channel.size() > WAL_CHECKPOINT_BYTES) {
+                checkpoint();
+            }
+        }
+    }
+
+    private synchronized long appendAbort(long firstAbortedLsn, long lastAbortedLsn) throws IOException {
+        List<Long> entryIndices = new ArrayList<>();
+        for (long abortedLsn = firstAbortedLsn; abortedLsn <= lastAbortedLsn; abortedLsn++) {
+            entryIndices.add(abortedLsn - fileStartLsn - 1);
+        }
+        long lsn = append(LogEntry.abort(entryIndices));
+        // neither the changes nor the abort entry are waiting to be applied (the log isn't emptied while the abort
+        // entry is still pending, see checkpoint)
+        unappliedCount = (int) Math.max(0, unappliedCount - (lastAbortedLsn - firstAbortedLsn + 2));
+        return lsn;
+    }
+
+    /**
+     * Empties the log, provided every change in it has been applied to the table files
+     * @throws IOException
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (unappliedCount == 0 && pending.size() == 0 && !flushing) {
+            channel.truncate(0);
+            channel.position(0);
+            fileStartLsn = lastLsn;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private static byte[] frame(LogEntry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            entry.writeTo(out);
+        }
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        ByteArrayOutputStream framed = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(framed)) {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeLong(crc.getValue());
+        }
+        return framed.toByteArray();
+    }
+
+    /**
+     * Reads every intact entry from the database's log, stopping at the first torn or corrupt entry. Entries that were
+     * aborted (and the abort entries themselves) are left out.
+     * @param databaseDirectory
+     * @return
+     * @throws IOException
+     */
+    public static List<LogEntry> readEntries(File databaseDirectory) throws IOException {
+        List<LogEntry> frames = readFrames(new File(databaseDirectory, WAL_FILENAME));
+        Set<Long> aborted = new HashSet<>();
+        for (LogEntry entry : frames) {
+            aborted.addAll(entry.getAbortedIndices());
+        }
+        List<LogEntry> entries = new ArrayList<>();
+        for (int index = 0; index < frames.size(); index++) {
+            if (frames.get(index).getOperation() != LogOperation.ABORT && !aborted.contains((long) index)) {
+                entries.add(frames.get(index));
+            }
+        }
+        return entries;
+    }
+
+    private static List<LogEntry> readFrames(File logFile) throws IOException {
+        List<LogEntry> entries = new ArrayList<>();
+        if (!logFile.exists()) {
+            return entries;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+            while (true) {
+                byte[] bytes;
+                long checksum;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || length > logFile.length()) {
+                        break;
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    checksum = in.readLong();
+                } catch (EOFException eof) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(bytes);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+                entries.add(LogEntry.readFrom(new DataInputStream(new ByteArrayInputStream(bytes))));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Redoes every logged change against the database's table files and then empties the log. Changes to tables that
+     * no longer exist are skipped.
+     * @param databaseDirectory
+     * @return the number of log entries replayed
+     * @throws IOException
+     * @throws DBException
+     */
+    public static int recover(File databaseDirectory) throws IOException, DBException {
+        List<LogEntry> entries = readEntries(databaseDirectory);
+        Map<String, List<LogEntry>> entriesByTable = new LinkedHashMap<>();
+        for (LogEntry entry : entries) {
+            entriesByTable.computeIfAbsent(entry.getTableName(), tableName -> new ArrayList<>()).add(entry);
+        }
+
+        DBTableFile dbFile = new DBTableFile();
+        for (Map.Entry<String, List<LogEntry>> tableEntries : entriesByTable.entrySet()) {
+            File tableFile = new File(databaseDirectory, tableEntries.getKey() + TABLE_EXT);
+            if (!tableFile.exists()) {
+                continue;
+            }
+            Table table = dbFile.readDBFileIntoEntity(tableFile.getPath());
+            for (LogEntry entry : tableEntries.getValue()) {
+                entry.redo(table);
+            }
+            dbFile.storeEntityIntoDBFile(table);
+        }
+
+        File logFile = new File(databaseDirectory, WAL_FILENAME);
+        if (logFile.exists()) {
+            new FileOutputStream(logFile, false).close();
+        }
+        return entries.size();
+    }
+
+}
@@ -53,6 +53,24 @@ public class DBException extends Exception {
         }
     }
 
+    public static class DBIndexExistsException extends DBException {
+        @Serial
+        private static final long serialVersionUID = 4718093216730218845L;
+
+        public DBIndexExistsException(String indexName) {
+            super("Index already exists: " + indexName);
+        }
+    }
+
+    public static class DBIndexDoesNotExistException extends DBException {
+        @Serial
+        private static final long serialVersionUID = 2984613007442159317L;
+
+        public DBIndexDoesNotExistException(String indexName) {
+            super("Index does not exist: " + indexName);
+        }
+    }
+
     public static class DBAttributeExistsException extends DBException {
 
         @Serial
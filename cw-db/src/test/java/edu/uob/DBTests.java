@@ -1,7 +1,12 @@
 package edu.uob;
 
 import edu.uob.dbelements.Table;
+import edu.uob.dbfilesystem.ColumnarTableFile;
+import edu.uob.dbfilesystem.DBFileConstants;
 import edu.uob.dbfilesystem.DBTableFile;
+import edu.uob.dbfilesystem.MemoryBudget;
+import edu.uob.dbfilesystem.SpillableRowList;
+import edu.uob.dbfilesystem.StatisticsCatalog;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,6 +14,7 @@ import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.nio.file.Files;
 
 // import static edu.uob.dbfilesystem.DBFileConstants.ROOT_DB_DIR;
 import static org.junit.jupiter.api.Assertions.*;
@@ -280,6 +286,105 @@ final class DBTests {
     teardown(db);
   }
 
+  @Test
+  public void test_handleCommand_insertIntoIndexedTable_indexesExtendedWithNewRows() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 55);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE INDEX byMark ON marks (mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE INDEX byName ON marks (name);").startsWith("[OK]"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nDave\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark < 60;"));
+
+    // when
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 35);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Clive', 55);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 80);").startsWith("[OK]"));
+
+    // then
+    assertEquals("[OK]" + System.lineSeparator() + "name\nDave\nBob\nClive\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark < 60;"));
+    assertEquals("[OK]" + System.lineSeparator() + "id\tname\tmark\n2\tDave\t55\n5\tDave\t80\n",
+            server.handleCommand("SELECT * FROM marks WHERE name == 'Dave';"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nSteve\nDave\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark > 60;"));
+
+    // a value that isn't a number means the mark index is rebuilt as an index of strings
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Anna', 'absent');").startsWith("[OK]"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nAnna\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark == 'absent';"));
+
+    assertTrue(server.handleCommand("DROP TABLE marks;").startsWith("[OK]"));
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_joinBeyondQueryMemory_statusError() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE students (name);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO students VALUES ('Amir');").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (studentId, mark);").startsWith("[OK]"));
+    for(int mark = 1; mark <= 20; mark++){
+      assertTrue(server.handleCommand("INSERT INTO marks VALUES (1, " + mark + ");").startsWith("[OK]"));
+    }
+    DBTableFile dbTableFile = new DBTableFile();
+    long tableBytes = SpillableRowList.estimateBytes(dbTableFile.readDBFileIntoEntity("markbook" + File.separator
+            + "students.tab").getRows()) + SpillableRowList.estimateBytes(dbTableFile.readDBFileIntoEntity("markbook"
+            + File.separator + "marks.tab").getRows());
+
+    // the joined tables don't fit
+    server.setMemoryBudget(new MemoryBudget(tableBytes - 1, tableBytes - 1));
+    String tablesTooLarge = server.handleCommand("JOIN students AND marks ON id AND studentId;");
+    assertTrue(tablesTooLarge.startsWith("[ERROR]"));
+    assertTrue(tablesTooLarge.contains("query memory"));
+
+    // the tables fit (and the joined rows spill), but the response doesn't
+    server.setMemoryBudget(new MemoryBudget(tableBytes + 40, tableBytes + 40));
+    String resultTooLarge = server.handleCommand("JOIN students AND marks ON id AND studentId;");
+    assertTrue(resultTooLarge.startsWith("[ERROR]"));
+    assertTrue(resultTooLarge.contains("20 rows"));
+    assertEquals(0, server.getMemoryBudget().getReservedBytes());
+
+    server.setMemoryBudget(new MemoryBudget(1 << 20, 1 << 20));
+    assertTrue(server.handleCommand("JOIN students AND marks ON id AND studentId;").startsWith("[OK]"));
+
+    assertTrue(server.handleCommand("DROP TABLE marks;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("DROP TABLE students;").startsWith("[OK]"));
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_columnarTable_rowsStoredAndSelected() throws Exception {
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE student (name, grade) WITH FORMAT COLUMNAR;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO student VALUES ('Anna', 67);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO student VALUES ('Bob', 55);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("UPDATE student SET grade = 56 WHERE name == 'Bob';").startsWith("[OK]"));
+
+    File table = new File("markbook" + File.separator + "student.tab");
+    assertTrue(ColumnarTableFile.isColumnarFile(table));
+    String result = server.handleCommand("SELECT name FROM student WHERE grade > 60;");
+    assertTrue(result.startsWith("[OK]"));
+    assertTrue(result.contains("Anna"));
+    assertFalse(result.contains("Bob"));
+    assertTrue(server.handleCommand("SELECT * FROM student WHERE grade == 56;").contains("Bob"));
+
+    new DBTableFile().removeTableFromMetadata("markbook", "student");
+    teardown(db);
+  }
+
   @Test
   public void test_handleCommand_selectCommand_statusOk() throws Exception {
     // create database
@@ -402,4 +507,349 @@ final class DBTests {
   }
 
 
+  @Test
+  public void test_handleCommand_changesAfterSelect_tableReadBySelectUnchanged() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark, pass);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65, TRUE);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 55, TRUE);").startsWith("[OK]"));
+
+    // the version of the table a query reads stays as it was while other commands change the table
+    assertTrue(server.handleCommand("SELECT * FROM marks;").startsWith("[OK]"));
+    Table snapshot = server.getTableCache().get(new File("markbook" + File.separator + "marks.tab"));
+    assertNotNull(snapshot);
+    String before = snapshot.toString();
+
+    assertTrue(server.handleCommand("UPDATE marks SET mark = 70 WHERE name == 'Steve';").startsWith("[OK]"));
+    assertTrue(server.handleCommand("DELETE FROM marks WHERE name == 'Dave';").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 35, FALSE);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("ALTER TABLE marks ADD age;").startsWith("[OK]"));
+
+    assertEquals(before, snapshot.toString());
+    String after = server.handleCommand("SELECT * FROM marks;");
+    assertTrue(after.contains("Steve\t70"));
+    assertFalse(after.contains("Dave"));
+    assertTrue(after.contains("Bob"));
+
+    new DBTableFile().removeTableFromMetadata("markbook", "marks");
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_conditionsOnTypedColumns_sameRowsAsRowByRow() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark, pass);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65, TRUE);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 55.5, TRUE);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 35, FALSE);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Clive', 20, FALSE);").startsWith("[OK]"));
+
+    // numeric and boolean columns are filtered a column at a time
+    String result = server.handleCommand("SELECT name FROM marks WHERE (mark >= 35) AND (mark < 65);");
+    assertEquals("[OK]" + System.lineSeparator() + "name\nDave\nBob\n", result);
+    result = server.handleCommand("SELECT name FROM marks WHERE (pass == FALSE) OR (name == 'Steve');");
+    assertEquals("[OK]" + System.lineSeparator() + "name\nSteve\nBob\nClive\n", result);
+    result = server.handleCommand("SELECT name FROM marks WHERE mark != 55.5;");
+    assertEquals("[OK]" + System.lineSeparator() + "name\nSteve\nBob\nClive\n", result);
+
+    // a column that isn't all numbers still fails a numeric comparison, as before
+    assertTrue(server.handleCommand("SELECT * FROM marks WHERE name > 10;").startsWith("[ERROR]"));
+
+    new DBTableFile().removeTableFromMetadata("markbook", "marks");
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_conditionOnId_rowsFoundThroughIdIndex() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 55);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 35);").startsWith("[OK]"));
+
+    String result = server.handleCommand("SELECT name FROM marks WHERE id == 2.0;");
+    assertEquals("[OK]" + System.lineSeparator() + "name\nDave\n", result);
+    Table marks = server.getTableCache().get(new File("markbook" + File.separator + "marks.tab"));
+    assertNotNull(marks.getIdIndex());
+
+    // the index carries over to the updated table, which still finds rows by id
+    assertTrue(server.handleCommand("UPDATE marks SET mark = 40 WHERE id == 3;").startsWith("[OK]"));
+    Table updated = server.getTableCache().get(new File("markbook" + File.separator + "marks.tab"));
+    assertNotSame(marks, updated);
+    assertSame(marks.getIdIndex(), updated.getIdIndex());
+    assertEquals("[OK]" + System.lineSeparator() + "mark\n40\n", server.handleCommand("SELECT mark FROM marks WHERE id == 3;"));
+
+    assertTrue(server.handleCommand("DELETE FROM marks WHERE id == 1;").startsWith("[OK]"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\n", server.handleCommand("SELECT name FROM marks WHERE id == 1;"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nBob\n", server.handleCommand("SELECT name FROM marks WHERE id == 3;"));
+
+    new DBTableFile().removeTableFromMetadata("markbook", "marks");
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_createIndex_indexUsedAndKeptAfterRestart() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 55);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 35);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Clive', 55);").startsWith("[OK]"));
+
+    assertTrue(server.handleCommand("CREATE INDEX byMark ON marks (mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE INDEX byName ON marks (Name);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE INDEX byMark ON marks (name);").startsWith("[ERROR]"));
+    assertTrue(server.handleCommand("CREATE INDEX byAge ON marks (age);").startsWith("[ERROR]"));
+
+    // the indexes are found again by a new server, and give the same rows as testing each row
+    server = new DBServer(db);
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nSteve\nDave\nClive\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark >= 55;"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nDave\nBob\nClive\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark <= 55;"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nDave\nClive\n",
+            server.handleCommand("SELECT name FROM marks WHERE (mark == 55) AND (name != 'Bob');"));
+    assertEquals("[OK]" + System.lineSeparator() + "mark\n35\n",
+            server.handleCommand("SELECT mark FROM marks WHERE name == 'Bob';"));
+    Table marks = server.getTableCache().get(new File("markbook" + File.separator + "marks.tab"));
+    assertNotNull(marks.getSortedIndex(2));
+
+    assertTrue(server.handleCommand("UPDATE marks SET mark = 70 WHERE mark > 60;").startsWith("[OK]"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nSteve\n",
+            server.handleCommand("SELECT name FROM marks WHERE mark > 65;"));
+
+    assertTrue(server.handleCommand("DROP INDEX bymark;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("DROP INDEX bymark;").startsWith("[ERROR]"));
+    assertTrue(server.handleCommand("ALTER TABLE marks DROP name;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE INDEX byName ON marks (mark);").startsWith("[OK]"));
+
+    new DBTableFile().removeTableFromMetadata("markbook", "marks");
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_conditionsOnFewDistinctValues_answeredFromBitmapIndex() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, grade);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 'A');").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 'B');").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 'A');").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Clive', 'C');").startsWith("[OK]"));
+
+    assertEquals("[OK]" + System.lineSeparator() + "name\nSteve\nBob\nClive\n",
+            server.handleCommand("SELECT name FROM marks WHERE (grade == 'A') OR (grade LIKE 'C');"));
+    assertEquals("[OK]" + System.lineSeparator() + "name\nBob\n",
+            server.handleCommand("SELECT name FROM marks WHERE (grade != 'B') AND (name LIKE 'o');"));
+    Table marks = server.getTableCache().get(new File("markbook" + File.separator + "marks.tab"));
+    assertEquals(3, marks.getBitmapIndex(2).getValueCount());
+
+    // a comparison that can't be made is still only an error if a row that is tested holds the value
+    assertEquals("[OK]" + System.lineSeparator() + "name\n",
+            server.handleCommand("SELECT name FROM marks WHERE (name == 'Nobody') AND (grade > 5);"));
+    assertTrue(server.handleCommand("SELECT name FROM marks WHERE grade > 5;").startsWith("[ERROR]"));
+
+    new DBTableFile().removeTableFromMetadata("markbook", "marks");
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_analyze_statisticsCollectedAndKeptUpToDate() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Dave', 55);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 'NULL');").startsWith("[OK]"));
+
+    String statistics = server.handleCommand("ANALYZE marks;");
+    assertTrue(statistics.startsWith("[OK]"));
+    assertTrue(statistics.contains("attribute\trows\tmodified\tdistinct\tnulls\tmin\tmax\thistogram"));
+    assertTrue(statistics.contains("mark\t3\tNULL\t2\t0.33\t55\t65\t1,"));
+    assertTrue(statistics.contains("name\t3\tNULL\t3\t0.00\tNULL\tNULL\tNULL"));
+
+    // writes since the last ANALYZE are counted, and kept in the statistics file
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Clive', 70);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("DELETE FROM marks WHERE name == 'Dave';").startsWith("[OK]"));
+    StatisticsCatalog catalog = new StatisticsCatalog(db);
+    assertEquals(3, catalog.getRowCount("marks"));
+    assertEquals(2, catalog.getStatistics("marks").getModifiedRows());
+    assertEquals(70f, catalog.getStatistics("marks", "mark").getMax());
+    assertTrue(server.handleCommand("ANALYZE marks;").contains("mark\t3\t2\t"));
+
+    assertTrue(server.handleCommand("ANALYZE nothing;").startsWith("[ERROR]"));
+
+    assertTrue(server.handleCommand("DROP TABLE marks;").startsWith("[OK]"));
+    assertEquals(-1, new StatisticsCatalog(db).getRowCount("marks"));
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_updateLargeTableReadFromFile_bloomFiltersNotUsedForChangedRows() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up a table bigger than a mapped read, written out in full so its DB file has Bloom filters
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE tab (aa, bb);").startsWith("[OK]"));
+    StringBuilder rows = new StringBuilder("aa\tbb\n");
+    for(int row = 1; row <= 20000; row++){
+      rows.append("alpha").append(row).append("padding-padding-padding-padding\tbravo").append(row).append("\n");
+    }
+    File data = new File(db, "tab.tsv");
+    Files.writeString(data.toPath(), rows.toString());
+    assertTrue(server.handleCommand("LOAD DATA 'tab.tsv' INTO tab;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("UPDATE tab SET aa = 'first' WHERE id == 1;").startsWith("[OK]"));
+    assertTrue(new File(db, "tab.tab").length() > DBFileConstants.MAPPED_READ_THRESHOLD_BYTES);
+
+    // when
+    DBServer restarted = new DBServer(new File(db.getName()));
+    assertTrue(restarted.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(restarted.handleCommand("UPDATE tab SET bb = 'zulu' WHERE id == 5;").startsWith("[OK]"));
+
+    // then
+    assertEquals("[OK]" + System.lineSeparator() + "id\n5\n",
+            restarted.handleCommand("SELECT id FROM tab WHERE bb == 'zulu';"));
+
+    assertTrue(restarted.handleCommand("DROP TABLE tab;").startsWith("[OK]"));
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_alterDropOnTableReadFromFile_bloomFiltersNotUsedForOtherColumns() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up a table, written out in full so its DB file has Bloom filters
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE tab (aa, bb);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO tab VALUES ('alpha', 'xray');").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO tab VALUES ('bravo', 'yankee');").startsWith("[OK]"));
+    assertTrue(server.handleCommand("UPDATE tab SET aa = 'charlie' WHERE id == 2;").startsWith("[OK]"));
+
+    // when
+    DBServer restarted = new DBServer(new File(db.getName()));
+    assertTrue(restarted.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(restarted.handleCommand("ALTER TABLE tab DROP aa;").startsWith("[OK]"));
+
+    // then
+    assertEquals("[OK]" + System.lineSeparator() + "id\tbb\n1\txray\n",
+            restarted.handleCommand("SELECT * FROM tab WHERE bb == 'xray';"));
+
+    assertTrue(restarted.handleCommand("DROP TABLE tab;").startsWith("[OK]"));
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_createTableWithTooManyPartitions_rejectedBeforeFileCreated() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+
+    // when
+    String tooMany = server.handleCommand("CREATE TABLE marks (name, mark) PARTITIONS "
+            + (DBFileConstants.MAX_PARTITIONS + 1) + ";");
+    String outOfRange = server.handleCommand("CREATE TABLE marks (name, mark) PARTITIONS 99999999999;");
+
+    // then
+    assertTrue(tooMany.startsWith("[ERROR]"));
+    assertTrue(tooMany.contains(Integer.toString(DBFileConstants.MAX_PARTITIONS)));
+    assertTrue(outOfRange.startsWith("[ERROR]"));
+    assertFalse(new File(db, "marks.tab").exists());
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark) PARTITIONS 4 BY name;").startsWith("[OK]"));
+
+    assertTrue(server.handleCommand("DROP TABLE marks;").startsWith("[OK]"));
+    teardown(db);
+  }
+
+  @Test
+  public void test_handleCommand_loadData_rowsAppendedWithNewIds() throws Exception {
+    // create database
+    assertTrue(server.handleCommand("CREATE DATABASE markbook;").startsWith("[OK]"));
+    File db = new File("markbook");
+    setup(db);
+
+    // set up table and data file (with its columns in another order, and ids that are replaced)
+    assertTrue(server.handleCommand("USE markbook;").startsWith("[OK]"));
+    assertTrue(server.handleCommand("CREATE TABLE marks (name, mark);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Steve', 65);").startsWith("[OK]"));
+    assertTrue(server.handleCommand("ANALYZE marks;").startsWith("[OK]"));
+    File data = new File(db, "marks.tsv");
+    Files.writeString(data.toPath(), "id\tmark\tname\n7\t55\tDave\n8\t70\tClive\n");
+
+    String loaded = server.handleCommand("LOAD DATA 'marks.tsv' INTO marks;");
+    assertTrue(loaded.startsWith("[OK]" + System.lineSeparator() + "rows\tseconds\trowsPerSecond\n2\t"));
+    assertEquals("[OK]" + System.lineSeparator() + "id\tname\tmark\n1\tSteve\t65\n2\tDave\t55\n3\tClive\t70\n",
+            server.handleCommand("SELECT * FROM marks;"));
+    assertTrue(server.handleCommand("INSERT INTO marks VALUES ('Bob', 40);").startsWith("[OK]"));
+    assertEquals("[OK]" + System.lineSeparator() + "id\tname\tmark\n4\tBob\t40\n",
+            server.handleCommand("SELECT * FROM marks WHERE name == 'Bob';"));
+    assertEquals(4, new StatisticsCatalog(db).getRowCount("marks"));
+
+    // a bad row fails the load before any row is added
+    Files.writeString(data.toPath(), "name\tmark\nAnna\t80\nBen\n");
+    assertTrue(server.handleCommand("LOAD DATA 'marks.tsv' INTO marks;").startsWith("[ERROR]"));
+    Files.writeString(data.toPath(), "name\tsecretgrade\nAnna\tA\n");
+    String badHeading = server.handleCommand("LOAD DATA 'marks.tsv' INTO marks;");
+    assertTrue(badHeading.startsWith("[ERROR]"));
+    assertFalse(badHeading.contains("secretgrade"));
+
+    // a file outside the database's directory can't be loaded
+    File outside = new File("marks.tsv");
+    Files.writeString(outside.toPath(), "name\tmark\nAnna\t80\n");
+    try {
+      assertTrue(server.handleCommand("LOAD DATA '../marks.tsv' INTO marks;").startsWith("[ERROR]"));
+      assertTrue(server.handleCommand("LOAD DATA '" + outside.getAbsolutePath() + "' INTO marks;")
+              .startsWith("[ERROR]"));
+      assertTrue(server.handleCommand("LOAD DATA '.' INTO marks;").startsWith("[ERROR]"));
+    } finally {
+      assertTrue(outside.delete());
+    }
+    assertEquals(4, new DBTableFile().readDBFileIntoEntity("markbook" + File.separator + "marks.tab").getRows().size());
+
+    assertTrue(server.handleCommand("DROP TABLE marks;").startsWith("[OK]"));
+    teardown(db);
+  }
+
 }
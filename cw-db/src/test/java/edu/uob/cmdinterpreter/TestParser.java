@@ -2,6 +2,7 @@ package edu.uob.cmdinterpreter;
 
 import edu.uob.cmdinterpreter.commands.*;
 import edu.uob.cmdinterpreter.commands.abstractcmd.DBCmd;
+import edu.uob.dbfilesystem.TableFormat;
 import edu.uob.exceptions.ParsingException;
 import edu.uob.exceptions.ParsingException.*;
 import org.junit.jupiter.api.Test;
@@ -130,6 +131,60 @@ public class TestParser {
         assertEquals("pass", cmd.getColNames().get(2));
     }
 
+    @Test
+    public void test_parse_createTableWithFormat_formatSetOnCmd() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE TABLE marks (name, mark) WITH FORMAT COLUMNAR;");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof CreateCMD);
+        assertEquals("marks", cmd.getTableNames().get(0));
+        assertEquals(2, cmd.getColNames().size());
+        assertEquals(TableFormat.COLUMNAR, ((CreateCMD) cmd).getTableFormat());
+    }
+
+    @Test
+    public void test_parse_createTableWithPartitions_partitionsSetOnCmd() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE TABLE marks (name, mark) WITH FORMAT TAB PARTITIONS 8 BY name;");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof CreateCMD);
+        assertEquals(2, cmd.getColNames().size());
+        assertEquals(8, ((CreateCMD) cmd).getPartitionCount());
+        assertEquals("name", ((CreateCMD) cmd).getPartitionKey());
+    }
+
+    @Test
+    public void test_parse_createTableWithZeroPartitions_throwsInvalidGrammarException() throws Exception{
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE TABLE marks (name, mark) PARTITIONS 0;");
+        Parser parser = new Parser(tokenizer);
+
+        assertThrows(InvalidGrammarException.class, parser::parse);
+    }
+
+    @Test
+    public void test_parse_createTableWithUnknownFormat_throwsInvalidGrammarException() throws Exception{
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE TABLE marks WITH FORMAT parquet;");
+        Parser parser = new Parser(tokenizer);
+
+        assertThrows(InvalidGrammarException.class, parser::parse);
+    }
+
     @Test
     public void test_parse_basicDropDatabase_dropCmdBuilt() throws Exception{
 
@@ -164,6 +219,116 @@ public class TestParser {
         assertEquals("TABLE", ((DropCMD) cmd).getDropType());
     }
 
+    @Test
+    public void test_parse_createIndex_createCmdBuilt() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE INDEX MarksIdx ON marks (mark);");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof CreateCMD);
+        assertEquals("INDEX", ((CreateCMD) cmd).getCreateType());
+        assertEquals("marksidx", cmd.getIndexName());
+        assertEquals("marks", cmd.getTableNames().get(0));
+        assertEquals("mark", cmd.getColNames().get(0));
+    }
+
+    @Test
+    public void test_parse_createIndexWithoutAttribute_throwsInvalidGrammarException() throws Exception{
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE INDEX marksidx ON marks;");
+        Parser parser = new Parser(tokenizer);
+
+        assertThrows(InvalidGrammarException.class, parser::parse);
+    }
+
+    @Test
+    public void test_parse_dropIndex_dropCmdBuilt() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("DROP INDEX marksidx;");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof DropCMD);
+        assertEquals("marksidx", cmd.getIndexName());
+        assertEquals("INDEX", ((DropCMD) cmd).getDropType());
+    }
+
+    @Test
+    public void test_parse_analyze_analyzeCmdBuilt() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("ANALYZE marks;");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof AnalyzeCMD);
+        assertEquals("marks", cmd.getTableNames().get(0));
+    }
+
+    @Test
+    public void test_parse_attributeNamedAnalyze_createCmdBuilt() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE TABLE kw (analyze, mark);");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof CreateCMD);
+        assertEquals("analyze", cmd.getColNames().get(0));
+    }
+
+    @Test
+    public void test_parse_loadData_loadCmdBuilt() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("LOAD DATA 'exports/marks.tsv' INTO marks;");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof LoadCMD);
+        assertEquals("exports/marks.tsv", ((LoadCMD) cmd).getFileName());
+        assertEquals("marks", cmd.getTableNames().get(0));
+    }
+
+    @Test
+    public void test_parse_attributeNamedLoad_createCmdBuilt() throws Exception{
+
+        // given
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.tokenize("CREATE TABLE kw (load, mark);");
+        Parser parser = new Parser(tokenizer);
+
+        // when
+        DBCmd cmd = parser.parse();
+
+        // then
+        assertTrue(cmd instanceof CreateCMD);
+        assertEquals("load", cmd.getColNames().get(0));
+    }
+
     @Test
     public void test_parse_basicAlter_alterCmdBuilt() throws Exception{
 
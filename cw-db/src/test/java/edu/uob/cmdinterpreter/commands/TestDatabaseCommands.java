@@ -645,7 +645,7 @@ public class TestDatabaseCommands {
 
         DBTableFile file = new DBTableFile();
         file.storeEntityIntoDBFile(table);
-        file.addTableToMetadata(tempDbDirName, tableName.toLowerCase(Locale.ROOT), 3);
+        server.getCatalog().addTable(tempDbDirName, tableName.toLowerCase(Locale.ROOT), 3);
 
         // ------------- when -------------
         String resultMessage = cmd.query(server);
@@ -0,0 +1,67 @@
+package edu.uob.dbelements;
+
+import org.junit.jupiter.api.Test;
+
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRowList {
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private RowList createRows(int rowCount){
+        RowList rows = new RowList();
+        for(int id = 1; id <= rowCount; id++){
+            rows.add(createRecord(Integer.toString(id), "name" + id));
+        }
+        return rows;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_add_rowsAppendedToCopies_otherVersionsUnchanged() {
+        // given
+        RowList version1 = createRows(20);
+        RowList version2 = version1.copy();
+        RowList failedVersion = version1.copy();
+
+        // when
+        version2.add(createRecord("21", "name21"));
+        failedVersion.add(createRecord("21", "other"));
+        RowList version3 = version2.copy();
+        version3.add(createRecord("22", "name22"));
+
+        // then
+        assertEquals(20, version1.size());
+        assertEquals(21, version2.size());
+        assertEquals(22, version3.size());
+        assertEquals("name21", version2.get(20).getAttributes().get(1).getValue());
+        assertEquals("other", failedVersion.get(20).getAttributes().get(1).getValue());
+        assertEquals("name21", version3.get(20).getAttributes().get(1).getValue());
+        assertEquals("name22", version3.get(21).getAttributes().get(1).getValue());
+        assertThrows(IndexOutOfBoundsException.class, () -> version1.get(20));
+    }
+
+    @Test
+    public void test_setAndRemove_sharedRows_onlyCopyChanged() {
+        // given
+        RowList version1 = createRows(5);
+        RowList version2 = version1.copy();
+        Record changed = createRecord("3", "changed");
+
+        // when
+        version2.set(2, changed);
+        version2.removeIf(row -> "1".equals(row.getId()));
+        version2.add(0, createRecord("0", "name0"));
+
+        // then
+        assertEquals("name3", version1.get(2).getAttributes().get(1).getValue());
+        assertEquals(5, version1.size());
+        assertEquals(5, version2.size());
+        assertEquals("0", version2.get(0).getId());
+        assertSame(changed, version2.get(2));
+        assertEquals("5", version2.get(4).getId());
+    }
+
+}
@@ -0,0 +1,38 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rows and tables shared by the tests of the DB file formats (and of the tables they are read into)
+ */
+public final class TableFixtures {
+
+    private TableFixtures(){
+    }
+
+    public static Record createRecord(String... values){
+        List<Attribute> attributes = new ArrayList<>();
+        for(String value : values){
+            attributes.add(new Attribute(value));
+        }
+        return new Record(attributes);
+    }
+
+    /**
+     * @param file
+     * @return a "people" table with id, Name and Age columns, and no rows yet
+     */
+    public static Table createPeopleTable(File file){
+        Table table = new Table("people", file);
+        table.setColHeadings(List.of(new ColumnHeader("id"), new ColumnHeader("Name"), new ColumnHeader("Age")));
+        return table;
+    }
+
+}
@@ -0,0 +1,88 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.BloomFilter;
+import edu.uob.dbelements.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.BitSet;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.TableFixtures.createPeopleTable;
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBloomFilterFile {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private Table createTable(File file, int rowCount){
+        Table table = createPeopleTable(file);
+        for(int id = 1; id <= rowCount; id++){
+            // the last row has no age
+            table.getRows().add(id == rowCount ? createRecord(Integer.toString(id), "name" + id)
+                    : createRecord(Integer.toString(id), "name" + id, Integer.toString(id)));
+        }
+        return table;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_storeEntityIntoDBFile_tabTable_filtersRuleOutSegmentsAndMovePastDeletedRows() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        int rowCount = 2 * DBFileConstants.BLOOM_FILTER_SEGMENT_ROWS + 10;
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        dbTableFile.storeEntityIntoDBFile(createTable(file, rowCount));
+
+        // then
+        assertTrue(BloomFilterFile.getFile(file).exists());
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        BloomFilter names = table.getBloomFilter(1);
+        assertEquals(3, names.getSegmentCount());
+        BitSet rows = names.mayEqual("name5000");
+        assertEquals(DBFileConstants.BLOOM_FILTER_SEGMENT_ROWS, rows.cardinality());
+        assertTrue(rows.get(4999));
+        // numbers are looked up as floats, and the segment with a missing age is always looked at
+        BloomFilter ages = table.getBloomFilter(2);
+        assertTrue(ages.mayEqual(7f).get(6));
+        assertEquals(10, ages.mayEqual(100000f).cardinality());
+
+        TombstoneFile.append(file, List.of("1", "2"));
+        dbTableFile.appendRecordIntoDBFile(table, createRecord(Integer.toString(rowCount + 1), "name1"));
+        Table read = dbTableFile.readDBFileIntoEntity(file.getPath());
+        BitSet readRows = read.getBloomFilter(1).mayEqual("name1");
+        assertEquals(DBFileConstants.BLOOM_FILTER_SEGMENT_ROWS - 2 + 1, readRows.cardinality());
+        assertEquals(Integer.toString(rowCount + 1), read.getRows().get(readRows.previousSetBit(read.getRows().size()))
+                .getId());
+    }
+
+    @Test
+    public void test_read_dbFileReplacedWithoutFilters_filtersIgnored() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(createTable(file, 3));
+        File replacement = new File(tempDir, "replacement" + DBFileConstants.TABLE_EXT);
+        try(FileWriter writer = new FileWriter(replacement)){
+            writer.write("id\tName\tAge\n7\tSam\t40\n8\tAlex\t41\n9\tJo\t42");
+        }
+
+        // when
+        DBTableFile.replaceFile(replacement, file);
+
+        // then
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertNull(table.getBloomFilter(1));
+        assertEquals("Sam", table.getRows().get(0).getAttributes().get(1).getValue());
+    }
+
+}
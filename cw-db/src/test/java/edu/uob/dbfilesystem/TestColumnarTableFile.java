@@ -0,0 +1,235 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.ColumnDictionary;
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.ZoneMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import static edu.uob.dbfilesystem.TableFixtures.createPeopleTable;
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestColumnarTableFile {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private Table createColumnarTable(File file){
+        Table table = createPeopleTable(file);
+        table.getHeader().setFormat(TableFormat.COLUMNAR);
+        table.getRows().add(createRecord("1", "Bob", "21"));
+        table.getRows().add(createRecord("2", "Sarah", "066"));
+        table.getRows().add(createRecord("3", "Chris"));
+        return table;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_storeEntityIntoDBFile_columnarTable_tableReadBackUnchanged() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        dbTableFile.storeEntityIntoDBFile(createColumnarTable(file));
+
+        // then
+        assertTrue(ColumnarTableFile.isColumnarFile(file));
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(TableFormat.COLUMNAR, table.getHeader().getFormat());
+        assertEquals("people", table.getHeader().getTableName());
+        assertEquals(3, table.getColHeadings().size());
+        assertEquals(3, table.getRows().size());
+        assertEquals("066", table.getRows().get(1).getAttributes().get(2).getValue());
+        assertEquals(2, table.getRows().get(2).getAttributes().size());
+    }
+
+    @Test
+    public void test_readDBFileColumnsIntoEntity_columnarTable_onlyNamedColumnsRead() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(createColumnarTable(file));
+
+        // when
+        Table table = dbTableFile.readDBFileColumnsIntoEntity(file.getPath(), List.of("name", "id"));
+
+        // then
+        assertEquals(2, table.getColHeadings().size());
+        assertEquals("id", table.getColHeadings().get(0).getColName());
+        assertEquals("Name", table.getColHeadings().get(1).getColName());
+        assertEquals("Sarah", table.getRows().get(1).getAttributes().get(1).getValue());
+    }
+
+    @Test
+    public void test_readDBFileColumnsIntoEntity_unknownColumn_wholeTableRead() throws Exception {
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(createColumnarTable(file));
+
+        Table table = dbTableFile.readDBFileColumnsIntoEntity(file.getPath(), List.of("Name", "Email"));
+
+        assertEquals(3, table.getColHeadings().size());
+    }
+
+    @Test
+    public void test_appendRecordIntoDBFile_columnarTable_rowAddedToFile() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        Table table = createColumnarTable(file);
+        dbTableFile.storeEntityIntoDBFile(table);
+
+        // when
+        dbTableFile.appendRecordIntoDBFile(table, createRecord("4", "Dave", "30"));
+
+        // then
+        Table readBack = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(4, readBack.getRows().size());
+        assertEquals("Dave", readBack.getRows().get(3).getAttributes().get(1).getValue());
+    }
+
+    @Test
+    public void test_convertDBFile_tabToColumnarAndBack_contentsUnchanged() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        String contents = "id\tName\tAge" + System.lineSeparator() + "1\tBob\t21" + System.lineSeparator() + "2\tSarah\t66";
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(contents);
+        }
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        assertTrue(dbTableFile.convertDBFile(file.getPath(), TableFormat.COLUMNAR));
+
+        // then
+        assertTrue(ColumnarTableFile.isColumnarFile(file));
+        assertEquals(2, dbTableFile.readDBFileIntoEntity(file.getPath()).getRows().size());
+
+        assertTrue(dbTableFile.convertDBFile(file.getPath(), TableFormat.TAB));
+        assertFalse(ColumnarTableFile.isColumnarFile(file));
+        assertEquals(contents, new String(java.nio.file.Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    public void test_storeEntityIntoDBFile_repetitiveColumn_storedAsDictionaryAndValuesShared() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        Table table = createColumnarTable(file);
+        table.getRows().add(createRecord("4", "Bob", "21"));
+        table.getRows().add(createRecord("5", "Bob", "30"));
+        table.getRows().add(createRecord("6", "Sarah", "30"));
+        table.getRows().add(createRecord("7", "Bob"));
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        dbTableFile.storeEntityIntoDBFile(table);
+
+        // then
+        Table readBack = dbTableFile.readDBFileIntoEntity(file.getPath());
+        List<Record> rows = readBack.getRows();
+        assertEquals(7, rows.size());
+        assertEquals("Sarah", rows.get(5).getAttributes().get(1).getValue());
+        assertSame(rows.get(0).getAttributes().get(1), rows.get(3).getAttributes().get(1));
+        assertTrue(rows.get(0).getAttributes().get(2) instanceof ColumnDictionary.Entry);
+        assertNotSame(rows.get(0).getAttributes().get(0), rows.get(3).getAttributes().get(0));
+        assertEquals(2, rows.get(2).getAttributes().size());
+        assertEquals(2, rows.get(6).getAttributes().size());
+    }
+
+    @Test
+    public void test_mapIntoEntity_columnarTable_sameRowsAsReadingInFull() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        Table table = createColumnarTable(file);
+        table.getRows().add(createRecord("4", "Bob", "21"));
+        table.getRows().add(createRecord("5", "Bob", "thirty"));
+        table.getRows().add(createRecord("6", "Sarah", "30"));
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(table);
+
+        // when
+        Table mapped = new ColumnarTableFile().mapIntoEntity(file, "people", Set.of("2"));
+
+        // then
+        assertTrue(OffHeapColumnStore.isOffHeap(mapped));
+        assertTrue(MappedTableFile.isMapped(mapped));
+        assertEquals(TableFormat.COLUMNAR, mapped.getHeader().getFormat());
+        assertEquals("Name", mapped.getColHeadings().get(1).getColName());
+        Table read = dbTableFile.readDBFileIntoEntity(file.getPath());
+        read.getRows().remove(1);
+        assertEquals(read.getRows().size(), mapped.getRows().size());
+        for(int row = 0; row < read.getRows().size(); row++){
+            List<Attribute> expected = read.getRows().get(row).getAttributes();
+            List<Attribute> actual = mapped.getRows().get(row).getAttributes();
+            assertEquals(expected.size(), actual.size());
+            for(int col = 0; col < expected.size(); col++){
+                assertEquals(expected.get(col).getValue(), actual.get(col).getValue());
+            }
+        }
+    }
+
+    @Test
+    public void test_allocateInts_severalSmallBuffers_slabShared(){
+        OffHeapAllocator allocator = new OffHeapAllocator(1024);
+
+        IntBuffer first = allocator.allocateInts(100);
+        IntBuffer second = allocator.allocateInts(100);
+        allocator.allocateInts(1000);
+
+        first.put(99, 7);
+        assertEquals(0, second.get(0));
+        assertEquals(7, first.get(99));
+        assertEquals(1024 + 4000, allocator.getAllocatedBytes());
+    }
+
+    @Test
+    public void test_storeEntityIntoDBFile_orderedColumn_zoneMapsKeptAndMovedPastDeletedRows() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        Table table = new Table("people", file);
+        table.getHeader().setFormat(TableFormat.COLUMNAR);
+        table.setColHeadings(List.of(new ColumnHeader("id"), new ColumnHeader("Age")));
+        int rowCount = 2 * DBFileConstants.ZONE_MAP_ROWS + 10;
+        for(int id = 1; id <= rowCount; id++){
+            table.getRows().add(createRecord(Integer.toString(id), id == rowCount ? "unknown" : Integer.toString(id)));
+        }
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        dbTableFile.storeEntityIntoDBFile(table);
+
+        // then
+        ZoneMap ages = dbTableFile.readDBFileIntoEntity(file.getPath()).getZoneMap(1);
+        assertEquals(3, ages.getZoneCount());
+        assertEquals(1f, ages.getMin(0));
+        assertEquals(DBFileConstants.ZONE_MAP_ROWS, ages.getMax(0));
+        assertEquals(0, ages.getNullCount(1));
+        assertEquals(1, ages.getNullCount(2));
+        assertEquals(DBFileConstants.ZONE_MAP_ROWS + 10, ages.mayEqual(5000).cardinality());
+        assertEquals(10, ages.mayBeGreaterThan(rowCount).cardinality());
+
+        Table mapped = new ColumnarTableFile().mapIntoEntity(file, "people", Set.of("1", "2", "5000"));
+        ZoneMap mappedAges = mapped.getZoneMap(1);
+        assertEquals(DBFileConstants.ZONE_MAP_ROWS - 2, mappedAges.getZoneStart(1));
+        assertEquals(rowCount - 3, mappedAges.getRowCount());
+        BitSet rows = mappedAges.mayBeLessThan(3);
+        assertEquals(DBFileConstants.ZONE_MAP_ROWS - 2 + 10, rows.cardinality());
+        assertEquals("3", mapped.getRows().get(rows.nextSetBit(0)).getAttributes().get(1).getValue());
+    }
+
+}
@@ -0,0 +1,191 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.exceptions.DBException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestDBCatalog {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private File createMetadataFile(String contents) throws Exception {
+        File file = new File(tempDir, DBFileConstants.METADATA_FILENAME);
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_load_existingMetadataFile_tablesMatchedOnExactName() throws Exception {
+        // given
+        File metadata = createMetadataFile(System.lineSeparator() + "markbook:marksheet:4" + System.lineSeparator()
+                + "MarkBook:Coursework:2" + System.lineSeparator() + "not an entry");
+        DBCatalog catalog = new DBCatalog(metadata);
+
+        // when
+        catalog.load();
+
+        // then
+        assertEquals(2, catalog.size());
+        assertTrue(catalog.containsTable("markbook", "marksheet"));
+        assertTrue(catalog.containsTable("MARKBOOK", "coursework"));
+        assertFalse(catalog.containsTable("markbook", "marks"));
+        assertFalse(catalog.containsTable("mark", "marksheet"));
+    }
+
+    @Test
+    public void test_nextSeq_severalCalls_oneBlockReservedInFile() throws Exception {
+        // given
+        File metadata = createMetadataFile("");
+        DBCatalog catalog = new DBCatalog(metadata);
+        catalog.load();
+        catalog.addTable("markbook", "marks");
+        long lengthBefore = metadata.length();
+
+        // when
+        for(int seq = 1; seq <= 10; seq++){
+            assertEquals(seq, catalog.nextSeq("markbook", "marks"));
+        }
+
+        // then
+        String expectedEntry = System.lineSeparator() + "markbook:marks:" + (1 + DBFileConstants.SEQ_BLOCK_SIZE);
+        assertEquals(lengthBefore + expectedEntry.length(), metadata.length());
+    }
+
+    @Test
+    public void test_nextSeq_catalogReloadedPartWayThroughBlock_unusedIdsSkippedNotReused() throws Exception {
+        // given
+        File metadata = createMetadataFile("markbook:marks:1");
+        DBCatalog catalog = new DBCatalog(metadata);
+        catalog.load();
+        assertEquals(1, catalog.nextSeq("markbook", "marks"));
+        assertEquals(2, catalog.nextSeq("markbook", "marks"));
+
+        // when
+        DBCatalog restarted = new DBCatalog(metadata);
+        restarted.load();
+
+        // then
+        assertEquals(1 + DBFileConstants.SEQ_BLOCK_SIZE, restarted.nextSeq("markbook", "marks"));
+    }
+
+    @Test
+    public void test_nextSeq_concurrentCallers_everyIdHandedOutOnce() throws Exception {
+        // given
+        DBCatalog catalog = new DBCatalog(createMetadataFile("markbook:marks:1"));
+        catalog.load();
+        int perThread = DBFileConstants.SEQ_BLOCK_SIZE;
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < 4; i++){
+            threads.add(new Thread(() -> {
+                try {
+                    for(int j = 0; j < perThread; j++){
+                        ids.add(catalog.nextSeq("markbook", "marks"));
+                    }
+                } catch(IOException ioe){
+                    throw new RuntimeException(ioe);
+                }
+            }));
+        }
+
+        // when
+        for(Thread thread : threads){
+            thread.start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        // then
+        assertEquals(4 * perThread, ids.size());
+        assertEquals(4 * perThread + 1, catalog.nextSeq("markbook", "marks"));
+    }
+
+    @Test
+    public void test_nextSeq_unknownTable_throwsIOException() throws Exception {
+        DBCatalog catalog = new DBCatalog(createMetadataFile(""));
+
+        assertThrows(IOException.class, () -> catalog.nextSeq("markbook", "marks"));
+    }
+
+    @Test
+    public void test_addTable_tableAlreadyInCatalog_throwsDBTableExistsException() throws Exception {
+        DBCatalog catalog = new DBCatalog(createMetadataFile("markbook:marks:1"));
+        catalog.load();
+
+        assertThrows(DBException.DBTableExistsException.class, () -> catalog.addTable("markbook", "MARKS"));
+    }
+
+    @Test
+    public void test_containsTable_tableAddedToFileAfterLoad_foundOnReload() throws Exception {
+        // given
+        File metadata = createMetadataFile("");
+        DBCatalog catalog = new DBCatalog(metadata);
+        catalog.load();
+
+        // when
+        try(FileWriter writer = new FileWriter(metadata, true)){
+            writer.write(System.lineSeparator() + "markbook:marks:3");
+        }
+
+        // then
+        assertTrue(catalog.containsTable("markbook", "marks"));
+        assertEquals(3, catalog.nextSeq("markbook", "marks"));
+    }
+
+    @Test
+    public void test_containsTable_fileUnchangedSinceLoad_fileNotReread() throws Exception {
+        // given
+        File metadata = createMetadataFile("markbook:marks:3");
+        DBCatalog catalog = new DBCatalog(metadata);
+        catalog.load();
+        long modified = metadata.lastModified();
+
+        // when (the file is replaced by one of the same length and modification time)
+        try(FileWriter writer = new FileWriter(metadata)){
+            writer.write("markbook:tests:3");
+        }
+        assertTrue(metadata.setLastModified(modified));
+
+        // then
+        assertFalse(catalog.containsTable("markbook", "tests"));
+        assertTrue(catalog.containsTable("markbook", "marks"));
+        assertTrue(metadata.setLastModified(modified + 1000));
+        assertTrue(catalog.containsTable("markbook", "tests"));
+    }
+
+    @Test
+    public void test_removeDatabase_tablesInOtherDatabasesKept() throws Exception {
+        // given
+        File metadata = createMetadataFile("markbook:marks:3" + System.lineSeparator() + "markbook2:marks:5"
+                + System.lineSeparator() + "markbook:coursework:1");
+        DBCatalog catalog = new DBCatalog(metadata);
+        catalog.load();
+
+        // when
+        catalog.removeDatabase("markbook");
+
+        // then
+        assertEquals(1, catalog.size());
+        assertEquals("markbook2:marks:5", new String(Files.readAllBytes(metadata.toPath())));
+    }
+
+}
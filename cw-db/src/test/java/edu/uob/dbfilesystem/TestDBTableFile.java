@@ -686,6 +686,215 @@ public class TestDBTableFile {
 
     }
 
+    @Test
+    public void test_storeEntityIntoDBFile_existingFile_fileReplacedAndNoTempFileLeft() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName" + System.lineSeparator() + "1\tBob" + System.lineSeparator() + "2\tSarah");
+        bw.close();
+
+        DBTableFile dbFile = new DBTableFile();
+        Table table = dbFile.readDBFileIntoEntity(tempFilePath);
+        table.getRows().remove(0);
+
+        // when
+        assertTrue(dbFile.storeEntityIntoDBFile(table));
+
+        // then
+        File stored = new File(tempFilePath);
+        assertFalse(checkDBFileContainsString(stored, "Bob"));
+        assertTrue(checkDBFileContainsString(stored, "2\tSarah"));
+        assertFalse(new File(tempFilePath + DBFileConstants.TEMP_FILE_EXT).exists());
+        assertEquals(stored.length(), table.getHeader().getTailOffset());
+        assertEquals(1, dbFile.readDBFileIntoEntity(tempFilePath).getRows().size());
+    }
+
+    @Test
+    public void test_appendRecordIntoDBFile_happyPath_rowAddedToEndOfFileAndTable() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName\tAge" + System.lineSeparator() + "1\tBob\t21");
+        bw.close();
+
+        DBTableFile dbFile = new DBTableFile();
+        Table table = dbFile.readDBFileIntoEntity(tempFilePath);
+        long tailOffsetBefore = table.getHeader().getTailOffset();
+
+        List<Attribute> attrs = new ArrayList<>();
+        attrs.add(new Attribute("2"));
+        attrs.add(new Attribute("Sarah"));
+        attrs.add(new Attribute("66"));
+
+        // when
+        assertTrue(dbFile.appendRecordIntoDBFile(table, new Record(attrs)));
+
+        // then
+        assertEquals(2, table.getRows().size());
+        assertTrue(table.getHeader().getTailOffset() > tailOffsetBefore);
+        assertEquals(new File(tempFilePath).length(), table.getHeader().getTailOffset());
+
+        Table reread = dbFile.readDBFileIntoEntity(tempFilePath);
+        assertEquals(2, reread.getRows().size());
+        assertEquals("Bob", reread.getRows().get(0).getAttributes().get(1).getValue());
+        assertEquals("Sarah", reread.getRows().get(1).getAttributes().get(1).getValue());
+    }
+
+    @Test
+    public void test_appendRecordIntoDBFile_fileEndsWithNewLine_noBlankRowWritten() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName" + System.lineSeparator() + "1\tBob" + System.lineSeparator());
+        bw.close();
+
+        DBTableFile dbFile = new DBTableFile();
+        Table table = dbFile.readDBFileIntoEntity(tempFilePath);
+        List<Attribute> attrs = new ArrayList<>();
+        attrs.add(new Attribute("2"));
+        attrs.add(new Attribute("Sarah"));
+
+        // when
+        assertTrue(dbFile.appendRecordIntoDBFile(table, new Record(attrs)));
+
+        // then
+        Table reread = dbFile.readDBFileIntoEntity(tempFilePath);
+        assertEquals(2, reread.getRows().size());
+        assertEquals("Sarah", reread.getRows().get(1).getAttributes().get(1).getValue());
+    }
+
+    @Test
+    public void test_appendRecordIntoDBFile_fileChangedSinceRead_wholeTableRewritten() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName" + System.lineSeparator() + "1\tBob");
+        bw.close();
+
+        DBTableFile dbFile = new DBTableFile();
+        Table table = dbFile.readDBFileIntoEntity(tempFilePath);
+
+        bw = new BufferedWriter(new FileWriter(tempFilePath, true));
+        bw.write(System.lineSeparator() + "9\tStranger");
+        bw.close();
+
+        List<Attribute> attrs = new ArrayList<>();
+        attrs.add(new Attribute("2"));
+        attrs.add(new Attribute("Sarah"));
+
+        // when
+        assertTrue(dbFile.appendRecordIntoDBFile(table, new Record(attrs)));
+
+        // then
+        Table reread = dbFile.readDBFileIntoEntity(tempFilePath);
+        assertEquals(2, reread.getRows().size());
+        assertFalse(checkDBFileContainsString(new File(tempFilePath), "Stranger"));
+        assertEquals("Sarah", reread.getRows().get(1).getAttributes().get(1).getValue());
+    }
+
+    @Test
+    public void test_openRowCursor_tabSeparatedFile_rowsReturnedInOrder() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName" + System.lineSeparator() + "1\tBob" + System.lineSeparator() + "2\tSarah");
+        bw.close();
+
+        // when
+        try(RowCursor cursor = new DBTableFile().openRowCursor(tempFilePath)){
+
+            // then
+            assertEquals(2, cursor.getColHeadings().size());
+            assertEquals("Bob", cursor.next().getAttributes().get(1).getValue());
+            assertEquals("Sarah", cursor.next().getAttributes().get(1).getValue());
+            assertNull(cursor.next());
+        }
+    }
+
+    @Test
+    public void test_openTableFileWriter_committed_fileReplaced() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName" + System.lineSeparator() + "1\tBob" + System.lineSeparator() + "2\tSarah");
+        bw.close();
+        DBTableFile dbFile = new DBTableFile();
+
+        // when
+        try(RowCursor cursor = dbFile.openRowCursor(tempFilePath);
+            TableFileWriter writer = dbFile.openTableFileWriter(tempFilePath, cursor.getColHeadings())){
+            Record row;
+            while((row = cursor.next()) != null){
+                if(!"1".equals(row.getId())){
+                    writer.write(row);
+                }
+            }
+            writer.commit();
+            assertEquals(1, writer.getRowCount());
+        }
+
+        // then
+        Table reread = dbFile.readDBFileIntoEntity(tempFilePath);
+        assertEquals(1, reread.getRows().size());
+        assertEquals("Sarah", reread.getRows().get(0).getAttributes().get(1).getValue());
+        assertFalse(new File(tempFilePath + DBFileConstants.TEMP_FILE_EXT).exists());
+    }
+
+    @Test
+    public void test_openTableFileWriter_notCommitted_fileUnchanged() throws Exception {
+        // given
+        String tempTableName = "people";
+        String tempFilePath = tempDirName + File.separator + tempTableName + fileExt;
+        createTempDBFile(tempTableName);
+        BufferedWriter bw = new BufferedWriter(new FileWriter(tempFilePath));
+        bw.write("id\tName" + System.lineSeparator() + "1\tBob");
+        bw.close();
+        DBTableFile dbFile = new DBTableFile();
+        Table table = dbFile.readDBFileIntoEntity(tempFilePath);
+
+        // when
+        try(TableFileWriter writer = dbFile.openTableFileWriter(tempFilePath, table.getColHeadings())){
+            writer.write(table.getRows().get(0));
+        }
+
+        // then
+        assertTrue(checkDBFileContainsString(new File(tempFilePath), "Bob"));
+        assertFalse(new File(tempFilePath + DBFileConstants.TEMP_FILE_EXT).exists());
+    }
+
+    @Test
+    public void test_readDBFileIntoEntity_repeatedValues_heldOnceAndNotModifiable() throws Exception {
+        // given
+        createTempDBFile("people");
+        try(FileWriter writer = new FileWriter(tempFile)){
+            writer.write("id\tName\tTown\n1\tBob\tBath\n2\tSarah\tBath\n3\tBob\tYork");
+        }
+
+        // when
+        Table table = new DBTableFile().readDBFileIntoEntity(tempFile.getPath());
+
+        // then
+        List<Record> rows = table.getRows();
+        assertSame(rows.get(0).getAttributes().get(1), rows.get(2).getAttributes().get(1));
+        assertSame(rows.get(0).getAttributes().get(2), rows.get(1).getAttributes().get(2));
+        assertEquals("York", rows.get(2).getAttributes().get(2).getValue());
+        Attribute shared = rows.get(0).getAttributes().get(1);
+        assertThrows(UnsupportedOperationException.class, () -> shared.setValue("Dave"));
+    }
+
     @Test
     public void test_variousMetadataTests() throws Exception{
 
@@ -695,24 +904,17 @@ public class TestDBTableFile {
             metadata.createNewFile();
         }
 
+        DBCatalog catalog = new DBCatalog(metadata);
+        catalog.addTable("markbook", "marks");
+        catalog.addTable("markbook", "coursework");
         DBTableFile db = new DBTableFile();
-        db.addTableToMetadata("markbook", "marks");
-        db.addTableToMetadata("markbook", "coursework");
-
-        assertTrue(db.containsDbTable("markbook", "marks"));
-        assertTrue(db.containsDbTable("markbook", "coursework"));
-        assertTrue(db.containsDbTable("MARKBOOK", "MARKS"));
-        assertTrue(db.containsDbTable("MarkBook", "Coursework"));
 
         assertTrue(db.removeTableFromMetadata("markbook", "marks"));
 
-        assertFalse(db.containsDbTable("markbook", "marks"));
-        assertTrue(db.containsDbTable("markbook", "coursework"));
-        assertFalse(db.containsDbTable("nope", "marks"));
-
-        assertEquals(1, db.nextSeq("markbook", "coursework"));
-        assertEquals(2, db.nextSeq("markbook", "coursework"));
-        assertEquals(3, db.nextSeq("markbook", "coursework"));
+        DBCatalog reloaded = new DBCatalog(metadata);
+        reloaded.load();
+        assertFalse(reloaded.containsTable("markbook", "marks"));
+        assertTrue(reloaded.containsTable("markbook", "coursework"));
 
         assertTrue(db.removeTableFromMetadata("markbook", "coursework"));
 
@@ -0,0 +1,97 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.TableFixtures.createPeopleTable;
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLsmTableFile {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private Table createTable(File file){
+        Table table = createPeopleTable(file);
+        table.getHeader().setFormat(TableFormat.LSM);
+        for(int id = 1; id <= 3; id++){
+            table.getRows().add(createRecord(Integer.toString(id), "name" + id, Integer.toString(20 + id)));
+        }
+        return table;
+    }
+
+    private String getName(Table table, int row){
+        return table.getRows().get(row).getAttributes().get(1).getValue();
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_put_lsmTable_readMergesChangesUntilWrittenOutInFull() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(createTable(file));
+        long length = file.length();
+
+        // when
+        LsmTableFile.put(file, List.of(createRecord("2", "changed", "30"), createRecord("4", "name4", "24")));
+        LsmTableFile.flush(file);
+        LsmTableFile.put(file, List.of(createRecord("10", "name10", "30"), createRecord("4", "again", "24")));
+
+        // then
+        assertEquals(length, file.length());
+        assertTrue(LsmTableFile.hasChanges(file));
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(TableFormat.LSM, table.getHeader().getFormat());
+        assertEquals(5, table.getRows().size());
+        assertEquals("changed", getName(table, 1));
+        // new rows come after the file's rows, in id order, and the memtable's version wins
+        assertEquals("again", getName(table, 3));
+        assertEquals("name10", getName(table, 4));
+
+        TombstoneFile.append(file, List.of("4"));
+        assertEquals(4, dbTableFile.readDBFileIntoEntity(file.getPath()).getRows().size());
+
+        dbTableFile.storeEntityIntoDBFile(dbTableFile.readDBFileIntoEntity(file.getPath()));
+        assertTrue(LsmTableFile.isLsmTable(file));
+        assertFalse(LsmTableFile.hasChanges(file));
+        assertEquals(0, LsmTableFile.getRunBytes(file));
+        Table read = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(4, read.getRows().size());
+        assertEquals("changed", getName(read, 1));
+    }
+
+    @Test
+    public void test_mergeRuns_fullTier_mergedIntoOneRunWithNewestRows() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(createTable(file));
+        for(int run = 1; run <= DBFileConstants.LSM_TIER_RUNS; run++){
+            LsmTableFile.put(file, List.of(createRecord("1", "run" + run, "20"),
+                    createRecord(Integer.toString(10 + run), "name", "20")));
+            LsmTableFile.flush(file);
+        }
+        assertTrue(LsmTableFile.needsMerge(file));
+
+        // when
+        LsmTableFile.mergeRuns(file);
+
+        // then
+        assertFalse(LsmTableFile.needsMerge(file));
+        File[] runs = tempDir.listFiles((dir, name) -> name.endsWith(DBFileConstants.LSM_RUN_EXT));
+        assertEquals(1, runs.length);
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(3 + DBFileConstants.LSM_TIER_RUNS, table.getRows().size());
+        assertEquals("run" + DBFileConstants.LSM_TIER_RUNS, getName(table, 0));
+    }
+
+}
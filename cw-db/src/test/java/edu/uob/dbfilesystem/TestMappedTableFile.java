@@ -0,0 +1,86 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.exceptions.DBException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestMappedTableFile {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private File createTableFile(String contents) throws Exception {
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    private void assertSameTable(Table expected, Table actual){
+        assertEquals(expected.getColHeadings().size(), actual.getColHeadings().size());
+        assertEquals(expected.getRows().size(), actual.getRows().size());
+        for(int row = 0; row < expected.getRows().size(); row++){
+            List<Attribute> expectedRow = expected.getRows().get(row).getAttributes();
+            List<Attribute> actualRow = actual.getRows().get(row).getAttributes();
+            assertEquals(expectedRow.size(), actualRow.size());
+            for(int col = 0; col < expectedRow.size(); col++){
+                assertEquals(expectedRow.get(col).getValue(), actualRow.get(col).getValue());
+            }
+        }
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_asTable_tabSeparatedFile_sameAsReadingLineByLine() throws Exception {
+        // given
+        File file = createTableFile("id\tName\tAge\r\n1\tBob\t21\r\n2\t\tSarah\n3\tChris\t\t\n4\t \t42");
+
+        // when
+        Table mapped = MappedTableFile.open(file).asTable("people", file);
+
+        // then
+        assertTrue(MappedTableFile.isMapped(mapped));
+        assertSameTable(new DBTableFile().readDBFileIntoEntity(file.getPath()), mapped);
+    }
+
+    @Test
+    public void test_getValue_singleField_onlyThatFieldDecoded() throws Exception {
+        File file = createTableFile("id\tName\tAge\n1\tBob\t21\n2\tSarah" + System.lineSeparator());
+
+        MappedTableFile mappedFile = MappedTableFile.open(file);
+
+        assertEquals(2, mappedFile.getRowCount());
+        assertEquals("21", mappedFile.getValue(0, 2));
+        assertEquals("Sarah", mappedFile.getValue(1, 1));
+        assertNull(mappedFile.getValue(1, 2));
+    }
+
+    @Test
+    public void test_open_emptyLineInFile_throwsDBException() throws Exception {
+        File file = createTableFile("id\tName\n\n1\tBob");
+
+        assertThrows(DBException.class, () -> MappedTableFile.open(file));
+    }
+
+    @Test
+    public void test_asTable_rowsModified_throwsUnsupportedOperationException() throws Exception {
+        File file = createTableFile("id\tName\n1\tBob");
+        Table mapped = MappedTableFile.open(file).asTable("people", file);
+
+        assertThrows(UnsupportedOperationException.class, () -> mapped.getRows().add(new Record()));
+    }
+
+}
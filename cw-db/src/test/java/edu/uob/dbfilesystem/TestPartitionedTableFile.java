@@ -0,0 +1,102 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Attribute;
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import edu.uob.dbelements.TablePartitioning;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.TableFixtures.createPeopleTable;
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestPartitionedTableFile {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private Table createTable(File file, TablePartitioning partitioning, int rowCount){
+        Table table = createPeopleTable(file);
+        table.getHeader().setPartitioning(partitioning);
+        for(int id = 1; id <= rowCount; id++){
+            table.getRows().add(createRecord(Integer.toString(id), "name" + id, Integer.toString(20 + id)));
+        }
+        return table;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_storeEntityIntoDBFile_partitionedTable_rowsSpreadByKeyAndReadBackGrouped() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        TablePartitioning partitioning = new TablePartitioning(4, "Name");
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        dbTableFile.storeEntityIntoDBFile(createTable(file, partitioning, 100));
+
+        // then
+        assertTrue(PartitionedTableFile.isPartitioned(file));
+        assertEquals(4, PartitionedTableFile.readPartitioning(file).getPartitionCount());
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(100, table.getRows().size());
+        int[] partitionStarts = table.getPartitionStarts();
+        assertNotNull(partitionStarts);
+        for(int partition = 0; partition < 4; partition++){
+            assertTrue(partitionStarts[partition + 1] > partitionStarts[partition]);
+            for(int row = partitionStarts[partition]; row < partitionStarts[partition + 1]; row++){
+                assertEquals(partition, partitioning.partitionOf(table.getRows().get(row), 1));
+            }
+        }
+
+        // a new row goes to the end of its partition, in the file and in the table
+        Record row = createRecord("101", "name101", "121");
+        int partition = partitioning.partitionOf(row, 1);
+        int partitionSize = partitionStarts[partition + 1] - partitionStarts[partition];
+        dbTableFile.appendRecordIntoDBFile(table, row);
+        assertSame(row, table.getRows().get(table.getPartitionStarts()[partition + 1] - 1));
+        Table read = dbTableFile.readDBFilePartitionIntoEntity(file.getPath(), partition);
+        assertEquals(partitionSize + 1, read.getRows().size());
+        assertEquals("name101", read.getRows().get(read.getRows().size() - 1).getAttributes().get(1).getValue());
+    }
+
+    @Test
+    public void test_storeEntityIntoDBFile_keyChanged_rowMovedToItsPartition() throws Exception {
+        // given
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        TablePartitioning partitioning = new TablePartitioning(2, "Name");
+        DBTableFile dbTableFile = new DBTableFile();
+        dbTableFile.storeEntityIntoDBFile(createTable(file, partitioning, 20));
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        int row = table.getPartitionStarts()[1] - 1;
+        String name = "name1";
+        while(partitioning.partitionOf(name) == 0){
+            name += "x";
+        }
+        String newName = name;
+        Record changed = table.getRows().get(row);
+        changed.getAttributes().set(1, new Attribute(newName));
+
+        // when
+        dbTableFile.storeEntityIntoDBFile(table);
+
+        // then
+        int[] partitionStarts = table.getPartitionStarts();
+        int index = table.getRows().indexOf(changed);
+        assertTrue(index >= partitionStarts[1] && index < partitionStarts[2]);
+        Table read = dbTableFile.readDBFilePartitionIntoEntity(file.getPath(), 1);
+        assertEquals(partitionStarts[2] - partitionStarts[1], read.getRows().size());
+        assertTrue(read.getRows().stream().anyMatch(r -> newName.equals(r.getAttributes().get(1).getValue())));
+
+        TombstoneFile.append(file, List.of(table.getRows().get(0).getId()));
+        assertEquals(19, dbTableFile.readDBFileIntoEntity(file.getPath()).getRows().size());
+    }
+
+}
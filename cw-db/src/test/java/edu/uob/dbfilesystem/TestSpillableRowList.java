@@ -0,0 +1,82 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.ColumnHeader;
+import edu.uob.dbelements.Record;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestSpillableRowList {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private File[] getSpillFiles(){
+        return tempDir.listFiles((dir, name) -> name.endsWith(DBFileConstants.SPILL_EXT));
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_add_reservationUsedUp_rowsSpilledAndReadBackInOrder() throws Exception {
+        // given
+        MemoryBudget budget = new MemoryBudget(10 * 1024, 1024);
+        List<ColumnHeader> colHeadings = List.of(new ColumnHeader("id"), new ColumnHeader("name"));
+
+        try (MemoryBudget.Reservation reservation = budget.open()) {
+            SpillableRowList rows = new SpillableRowList(colHeadings, reservation, tempDir);
+
+            // when
+            for(int id = 1; id <= 100; id++){
+                rows.add(createRecord(Integer.toString(id), "name" + id));
+            }
+
+            // then
+            assertEquals(100, rows.size());
+            assertTrue(rows.getSpilledRows() > 0);
+            assertTrue(reservation.getBytes() <= 1024);
+            assertEquals(1, getSpillFiles().length);
+            try (RowCursor cursor = rows.openCursor()) {
+                assertEquals(colHeadings, cursor.getColHeadings());
+                for(int id = 1; id <= 100; id++){
+                    Record row = cursor.next();
+                    assertEquals(Integer.toString(id), row.getAttributes().get(0).getValue());
+                    assertEquals("name" + id, row.getAttributes().get(1).getValue());
+                }
+                assertNull(cursor.next());
+            }
+
+            rows.close();
+            assertEquals(0, getSpillFiles().length);
+            assertEquals(0, reservation.getBytes());
+        }
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    @Test
+    public void test_tryReserve_beyondShareOrCapacity_turnedDown() {
+        // given
+        MemoryBudget budget = new MemoryBudget(1000, 600);
+        MemoryBudget.Reservation queryA = budget.open();
+        MemoryBudget.Reservation queryB = budget.open();
+
+        // when / then
+        assertTrue(queryA.tryReserve(500));
+        assertFalse(queryA.tryReserve(200));
+        assertTrue(queryB.tryReserve(500));
+        assertFalse(queryB.tryReserve(1));
+        assertEquals(1000, budget.getReservedBytes());
+
+        queryA.close();
+        assertTrue(queryB.tryReserve(100));
+        assertEquals(600, budget.getReservedBytes());
+    }
+
+}
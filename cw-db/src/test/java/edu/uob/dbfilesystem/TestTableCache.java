@@ -0,0 +1,122 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTableCache {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private File createTableFile(String tableName, String contents) throws Exception {
+        File file = new File(tempDir, tableName + DBFileConstants.TABLE_EXT);
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_get_tableNotCached_returnsNullAndCountsMiss(){
+        TableCache cache = new TableCache(2);
+
+        assertNull(cache.get(new File(tempDir, "people.tab")));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void test_get_fileUnchanged_returnsCachedTableAndCountsHit() throws Exception {
+        // given
+        File file = createTableFile("people", "id\tName");
+        TableCache cache = new TableCache(2);
+        Table table = new Table();
+        cache.put(file, table);
+
+        // when
+        Table cached = cache.get(file);
+
+        // then
+        assertSame(table, cached);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void test_get_fileChangedOnDisk_staleEntryDropped() throws Exception {
+        // given
+        File file = createTableFile("people", "id\tName");
+        TableCache cache = new TableCache(2);
+        cache.put(file, new Table());
+
+        // when
+        try(FileWriter writer = new FileWriter(file, true)){
+            writer.write(System.lineSeparator() + "1\tBob");
+        }
+
+        // then
+        assertNull(cache.get(file));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void test_put_capacityExceeded_leastRecentlyUsedEvicted() throws Exception {
+        // given
+        File people = createTableFile("people", "id\tName");
+        File marks = createTableFile("marks", "id\tMark");
+        File sheds = createTableFile("sheds", "id\tHeight");
+        TableCache cache = new TableCache(2);
+        cache.put(people, new Table());
+        cache.put(marks, new Table());
+
+        // when
+        assertNotNull(cache.get(people));
+        cache.put(sheds, new Table());
+
+        // then
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.get(people));
+        assertNull(cache.get(marks));
+        assertNotNull(cache.get(sheds));
+    }
+
+    @Test
+    public void test_remove_tableCached_tableReturnedAndNoLongerCached() throws Exception {
+        File file = createTableFile("people", "id\tName");
+        TableCache cache = new TableCache(2);
+        Table table = new Table();
+        cache.put(file, table);
+
+        assertSame(table, cache.remove(file));
+        assertNull(cache.get(file));
+    }
+
+    @Test
+    public void test_invalidateDatabase_onlyTablesInDatabaseDropped() throws Exception {
+        File people = createTableFile("people", "id\tName");
+        File otherDb = new File(tempDir, "otherdb");
+        assertTrue(otherDb.mkdir());
+        File marks = new File(otherDb, "marks" + DBFileConstants.TABLE_EXT);
+        assertTrue(marks.createNewFile());
+        TableCache cache = new TableCache(4);
+        cache.put(people, new Table());
+        cache.put(marks, new Table());
+
+        cache.invalidateDatabase(otherDb);
+
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(people));
+    }
+
+}
@@ -0,0 +1,60 @@
+package edu.uob.dbfilesystem;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTableRegistry {
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    public void test_hasTable_tablesInDirectory_foundWithoutListingAgain() throws Exception {
+        // given
+        assertTrue(new File(tempDir, "marks" + DBFileConstants.TABLE_EXT).createNewFile());
+        assertTrue(new File(tempDir, DBFileConstants.WAL_FILENAME).createNewFile());
+        TableRegistry registry = new TableRegistry();
+
+        // when
+        boolean hasMarks = registry.hasTable(tempDir, "MARKS");
+
+        // then
+        assertTrue(hasMarks);
+        assertFalse(registry.hasTable(tempDir, "database"));
+        assertFalse(registry.hasTable(tempDir, "coursework"));
+    }
+
+    @Test
+    public void test_hasTable_tableFileAddedAfterFirstLookup_found() throws Exception {
+        // given
+        TableRegistry registry = new TableRegistry();
+        assertFalse(registry.hasTable(tempDir, "marks"));
+
+        // when
+        assertTrue(new File(tempDir, "marks" + DBFileConstants.TABLE_EXT).createNewFile());
+
+        // then
+        assertTrue(registry.hasTable(tempDir, "marks"));
+    }
+
+    @Test
+    public void test_removeTable_tableFileDeleted_notFound() throws Exception {
+        // given
+        File tableFile = new File(tempDir, "marks" + DBFileConstants.TABLE_EXT);
+        assertTrue(tableFile.createNewFile());
+        TableRegistry registry = new TableRegistry();
+        assertTrue(registry.hasTable(tempDir, "marks"));
+
+        // when
+        assertTrue(tableFile.delete());
+        registry.removeTable(tempDir, "marks");
+
+        // then
+        assertFalse(registry.hasTable(tempDir, "marks"));
+    }
+
+}
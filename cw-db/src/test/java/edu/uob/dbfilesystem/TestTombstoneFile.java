@@ -0,0 +1,116 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Record;
+import edu.uob.dbelements.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTombstoneFile {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private File createTableFile(String contents) throws Exception {
+        File file = new File(tempDir, "people" + DBFileConstants.TABLE_EXT);
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_append_rowsDeleted_rowsSkippedByReadersButLeftInFile() throws Exception {
+        // given
+        String contents = "id\tName\n1\tBob\n2\tSarah\n3\tChris";
+        File file = createTableFile(contents);
+        DBTableFile dbTableFile = new DBTableFile();
+
+        // when
+        TombstoneFile.append(file, List.of("1", "3"));
+
+        // then
+        Table table = dbTableFile.readDBFileIntoEntity(file.getPath());
+        assertEquals(1, table.getRows().size());
+        assertEquals("Sarah", table.getRows().get(0).getAttributes().get(1).getValue());
+        try(RowCursor cursor = dbTableFile.openRowCursor(file.getPath())){
+            assertEquals("2", cursor.next().getId());
+            assertNull(cursor.next());
+        }
+        assertEquals(contents, new String(Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    public void test_asTable_mappedFileWithDeletedRows_rowsSkipped() throws Exception {
+        File file = createTableFile("id\tName\n1\tBob\n2\tSarah\n3\tChris");
+        TombstoneFile.append(file, List.of("2"));
+
+        Table mapped = MappedTableFile.open(file).asTable("people", file, TombstoneFile.read(file));
+
+        assertEquals(2, mapped.getRows().size());
+        assertEquals("3", mapped.getRows().get(1).getId());
+    }
+
+    @Test
+    public void test_read_tornLastAppend_partialIdIgnoredAndDroppedOnNextAppend() throws Exception {
+        // given
+        File file = createTableFile("id\tName\n1\tBob\n12\tSarah\n123\tChris");
+        TombstoneFile.append(file, List.of("1"));
+        try(FileWriter writer = new FileWriter(TombstoneFile.getFile(file), true)){
+            writer.write("12");
+        }
+        assertEquals(Set.of("1"), TombstoneFile.read(file));
+
+        // when
+        TombstoneFile.append(file, List.of("123"));
+
+        // then
+        assertEquals(Set.of("1", "123"), TombstoneFile.read(file));
+    }
+
+    @Test
+    public void test_storeEntityIntoDBFile_tableWithDeletedRows_rowsDroppedAndTombstonesCleared() throws Exception {
+        File file = createTableFile("id\tName\n1\tBob\n2\tSarah");
+        TombstoneFile.append(file, List.of("1"));
+        DBTableFile dbTableFile = new DBTableFile();
+
+        dbTableFile.storeEntityIntoDBFile(dbTableFile.readDBFileIntoEntity(file.getPath()));
+
+        assertFalse(TombstoneFile.getFile(file).exists());
+        assertEquals("id\tName" + System.lineSeparator() + "2\tSarah", new String(Files.readAllBytes(file.toPath())));
+    }
+
+    @Test
+    public void test_compactIfNeeded_deadRowRatioPassed_tableRewrittenInBackground() throws Exception {
+        // given
+        File file = createTableFile("id\tName\n1\tBob\n2\tSarah\n3\tChris\n4\tDave");
+        TableCompactor compactor = new TableCompactor(2, 0.4, new ReentrantLock());
+        TombstoneFile.append(file, List.of("1"));
+        assertFalse(compactor.compactIfNeeded(file, 3));
+
+        // when
+        TombstoneFile.append(file, List.of("3"));
+        boolean queued = compactor.compactIfNeeded(file, 2);
+        compactor.awaitQueued();
+
+        // then
+        assertTrue(queued);
+        assertFalse(TombstoneFile.getFile(file).exists());
+        List<Record> rows = new DBTableFile().readDBFileIntoEntity(file.getPath()).getRows();
+        assertEquals(2, rows.size());
+        assertEquals("4", rows.get(1).getId());
+    }
+
+}
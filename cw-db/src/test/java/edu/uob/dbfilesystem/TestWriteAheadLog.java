@@ -0,0 +1,179 @@
+package edu.uob.dbfilesystem;
+
+import edu.uob.dbelements.Table;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static edu.uob.dbfilesystem.TableFixtures.createRecord;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestWriteAheadLog {
+
+    @TempDir
+    private File tempDir;
+
+    /* ----------------------- HELPER METHODS ----------------------- */
+
+    private File createTableFile(String tableName, String contents) throws Exception {
+        File file = new File(tempDir, tableName + DBFileConstants.TABLE_EXT);
+        try(FileWriter writer = new FileWriter(file)){
+            writer.write(contents);
+        }
+        return file;
+    }
+
+    /* ----------------------- TESTS ----------------------- */
+
+    @Test
+    public void test_commit_entriesReadBackInOrder() throws Exception {
+        // given
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+
+        // when
+        assertEquals(1, log.commit(LogEntry.insert("people", createRecord("1", "Bob"))));
+        assertEquals(2, log.commit(LogEntry.delete("people", List.of("1"))));
+        log.close();
+
+        // then
+        List<LogEntry> entries = WriteAheadLog.readEntries(tempDir);
+        assertEquals(2, entries.size());
+        assertEquals(LogOperation.INSERT, entries.get(0).getOperation());
+        assertEquals(LogOperation.DELETE, entries.get(1).getOperation());
+        assertEquals("people", entries.get(1).getTableName());
+    }
+
+    @Test
+    public void test_readEntries_tornEntryAtEndOfLog_tornEntryIgnored() throws Exception {
+        // given
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+        log.commit(LogEntry.insert("people", createRecord("1", "Bob")));
+        log.close();
+
+        // when
+        try(FileOutputStream out = new FileOutputStream(new File(tempDir, DBFileConstants.WAL_FILENAME), true)){
+            out.write(new byte[]{0, 0, 0, 40, 1, 2, 3});
+        }
+
+        // then
+        assertEquals(1, WriteAheadLog.readEntries(tempDir).size());
+    }
+
+    @Test
+    public void test_commit_concurrentWriters_everyEntryDurable() throws Exception {
+        // given
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+        List<Thread> writers = new ArrayList<>();
+        for(int i = 0; i < 8; i++){
+            final String id = Integer.toString(i);
+            writers.add(new Thread(() -> {
+                try {
+                    for(int j = 0; j < 25; j++){
+                        log.commit(LogEntry.insert("people", createRecord(id + "-" + j, "name")));
+                    }
+                } catch(Exception e){
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+
+        // when
+        for(Thread writer : writers){
+            writer.start();
+        }
+        for(Thread writer : writers){
+            writer.join();
+        }
+        log.close();
+
+        // then
+        assertEquals(200, WriteAheadLog.readEntries(tempDir).size());
+    }
+
+    @Test
+    public void test_applied_schemaChange_logEmptied() throws Exception {
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+        LogEntry insert = LogEntry.insert("people", createRecord("1", "Bob"));
+        LogEntry alter = LogEntry.alter("people", "ADD", "Email");
+
+        log.commit(insert);
+        log.applied(insert);
+        assertEquals(1, WriteAheadLog.readEntries(tempDir).size());
+
+        log.commit(alter);
+        log.applied(alter);
+        assertEquals(0, WriteAheadLog.readEntries(tempDir).size());
+        log.close();
+    }
+
+    @Test
+    public void test_aborted_tableWriteFailed_changeNotRedoneAndLogEmptied() throws Exception {
+        // given
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+        LogEntry failed = LogEntry.delete("people", List.of("1"));
+        LogEntry insert = LogEntry.insert("people", createRecord("2", "Sarah"));
+        long failedLsn = log.commit(failed);
+        log.commit(insert);
+
+        // when
+        log.aborted(failedLsn, failedLsn);
+
+        // then
+        List<LogEntry> entries = WriteAheadLog.readEntries(tempDir);
+        assertEquals(1, entries.size());
+        assertEquals(LogOperation.INSERT, entries.get(0).getOperation());
+
+        log.applied(insert);
+        log.checkpoint();
+        assertEquals(0, new File(tempDir, DBFileConstants.WAL_FILENAME).length());
+        log.close();
+    }
+
+    @Test
+    public void test_recover_changesNotInTableFile_changesRedoneAndLogEmptied() throws Exception {
+        // given
+        File tableFile = createTableFile("people", "id\tName\tAge" + System.lineSeparator() + "1\tBob\t21"
+                + System.lineSeparator() + "2\tSarah\t66");
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+        log.commit(LogEntry.insert("people", createRecord("3", "Chris", "42")));
+        log.commit(LogEntry.update("people", List.of("1"), List.of("Age"), List.of("22")));
+        log.commit(LogEntry.delete("people", List.of("2")));
+        log.commit(LogEntry.alter("people", "ADD", "Email"));
+        log.close();
+
+        // when
+        assertEquals(4, WriteAheadLog.recover(tempDir));
+
+        // then
+        Table table = new DBTableFile().readDBFileIntoEntity(tableFile.getPath());
+        assertEquals(4, table.getColHeadings().size());
+        assertEquals(2, table.getRows().size());
+        assertEquals("22", table.getRows().get(0).getAttributes().get(2).getValue());
+        assertEquals("Chris", table.getRows().get(1).getAttributes().get(1).getValue());
+        assertEquals(0, WriteAheadLog.readEntries(tempDir).size());
+    }
+
+    @Test
+    public void test_recover_changesAlreadyInTableFile_tableUnchanged() throws Exception {
+        // given
+        File tableFile = createTableFile("people", "id\tName" + System.lineSeparator() + "1\tBob");
+        WriteAheadLog log = new WriteAheadLog(tempDir);
+        log.commit(LogEntry.insert("people", createRecord("1", "Bob")));
+        log.commit(LogEntry.insert("marks", createRecord("1", "80")));
+        log.close();
+
+        // when
+        WriteAheadLog.recover(tempDir);
+
+        // then
+        Table table = new DBTableFile().readDBFileIntoEntity(tableFile.getPath());
+        assertEquals(1, table.getRows().size());
+        assertFalse(new File(tempDir, "marks" + DBFileConstants.TABLE_EXT).exists());
+    }
+
+}